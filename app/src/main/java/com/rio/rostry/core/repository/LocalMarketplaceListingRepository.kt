@@ -0,0 +1,153 @@
+package com.rio.rostry.core.repository
+
+import com.rio.rostry.core.common.model.DataQuality
+import com.rio.rostry.core.database.dao.MarketplaceDao
+import com.rio.rostry.core.database.entities.MarketplaceEntity
+import com.rio.rostry.core.database.optimization.KeysetCursor
+import com.rio.rostry.marketplace.domain.model.*
+import com.rio.rostry.marketplace.domain.repository.MarketplaceListingRepository
+import javax.inject.Inject
+import javax.inject.Singleton
+
+/**
+ * Marketplace browsing served from the local marketplace_listings table
+ * Each page seeks from the (created_at, id) of the last listing shown.
+ */
+@Singleton
+class LocalMarketplaceListingRepository @Inject constructor(
+    private val marketplaceDao: MarketplaceDao
+) : MarketplaceListingRepository {
+
+    override suspend fun getListingsAfter(
+        after: MarketplaceListing?,
+        limit: Int,
+        sellerId: String?
+    ): List<MarketplaceListing> {
+        val cursor = after?.let { KeysetCursor(it.createdAt.time, it.id) }
+        val rows = if (sellerId == null) {
+            marketplaceDao.getActiveListingsPage(cursor, limit)
+        } else {
+            marketplaceDao.getSellerListingsPage(sellerId, cursor, limit)
+        }
+        return rows.map { it.toListing() }
+    }
+
+    private fun MarketplaceEntity.toListing() = MarketplaceListing(
+        id = id,
+        sellerId = sellerId,
+        fowlId = fowlId,
+        listingType = enumOrDefault(listingType, ListingType.FIXED_PRICE),
+        pricing = PricingInfo(
+            basePrice = basePrice,
+            currency = currency,
+            reservePrice = reservePrice,
+            buyNowPrice = buyNowPrice,
+            currentBid = currentBid,
+            bidIncrement = bidIncrement,
+            breedingFee = breedingFee,
+            studFee = studFee
+        ),
+        details = ListingDetails(
+            title = title,
+            description = description.orEmpty(),
+            breed = breed,
+            gender = gender.orEmpty(),
+            age = ageWeeks?.let { "$it weeks" }.orEmpty(),
+            weight = weight ?: 0.0,
+            color = "",
+            healthStatus = "",
+            vaccinated = false,
+            pedigreeAvailable = false,
+            registrationPapers = false
+        ),
+        media = ListingMedia(primaryPhotoUrl = primaryPhotoUrl),
+        location = ListingLocation(
+            district = district,
+            region = region,
+            delivery = DeliveryInfo(
+                available = deliveryAvailable,
+                radius = deliveryRadius,
+                cost = deliveryCost,
+                methods = deliveryMethods.mapNotNull { method ->
+                    DeliveryMethod.values().firstOrNull { it.name == method }
+                }
+            )
+        ),
+        auction = if (auctionStartTime != null && auctionEndTime != null) {
+            AuctionInfo(
+                startTime = auctionStartTime,
+                endTime = auctionEndTime,
+                autoExtend = autoExtend,
+                extensionTime = extensionTimeMinutes,
+                minimumBidders = minimumBidders,
+                totalBids = totalBids
+            )
+        } else null,
+        status = ListingStatus(
+            current = enumOrDefault(listingStatus, ListingState.ACTIVE),
+            visibility = enumOrDefault(visibility, ListingVisibility.PUBLIC),
+            featured = featured,
+            promoted = promoted,
+            availability = AvailabilityInfo(
+                isAvailable = isAvailable,
+                reservedBy = reservedBy,
+                reservedUntil = reservedUntil,
+                soldTo = soldTo,
+                soldAt = soldAt
+            )
+        ),
+        engagement = EngagementMetrics(
+            views = views,
+            uniqueViews = uniqueViews,
+            favorites = favorites,
+            shares = shares,
+            inquiries = inquiries,
+            contactClicks = contactClicks
+        ),
+        searchData = SearchData(
+            keywords = keywords,
+            tags = tags,
+            category = category,
+            subcategory = subcategory,
+            filters = SearchFilters(
+                priceRange = "",
+                ageGroup = "",
+                breedGroup = breed,
+                location = district
+            )
+        ),
+        timeline = ListingTimeline(
+            createdAt = createdAt,
+            publishedAt = publishedAt,
+            lastUpdatedAt = updatedAt,
+            expiresAt = expiresAt,
+            soldAt = soldAt,
+            renewalCount = renewalCount,
+            lastRenewedAt = lastRenewedAt,
+            autoRenew = autoRenew
+        ),
+        sellerPreferences = SellerPreferences(
+            acceptOffers = acceptOffers,
+            minimumOffer = minimumOffer,
+            preferredBuyers = preferredBuyers,
+            blacklistedBuyers = blacklistedBuyers,
+            communication = CommunicationPreferences(
+                allowDirectMessages = allowDirectMessages,
+                allowPhoneCalls = allowPhoneCalls,
+                preferredContactMethod = enumOrDefault(preferredContactMethod, ContactMethod.MESSAGE),
+                responseTime = responseTime
+            )
+        ),
+        metadata = ListingMetadata(
+            listingQuality = enumOrDefault(listingQuality, DataQuality.MEDIUM),
+            moderationStatus = enumOrDefault(moderationStatus, ModerationStatus.PENDING),
+            moderatedBy = moderatedBy,
+            moderatedAt = moderatedAt
+        ),
+        createdAt = createdAt,
+        updatedAt = updatedAt
+    )
+
+    private inline fun <reified E : Enum<E>> enumOrDefault(name: String, default: E): E =
+        enumValues<E>().firstOrNull { it.name == name } ?: default
+}
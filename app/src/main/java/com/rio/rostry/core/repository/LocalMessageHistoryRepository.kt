@@ -0,0 +1,62 @@
+package com.rio.rostry.core.repository
+
+import com.rio.rostry.chat.domain.model.Message
+import com.rio.rostry.chat.domain.model.MessageContent
+import com.rio.rostry.chat.domain.model.MessageMetadata
+import com.rio.rostry.chat.domain.model.MessageStatus
+import com.rio.rostry.chat.domain.repository.MessageHistoryRepository
+import com.rio.rostry.core.database.dao.MessageDaoV2
+import com.rio.rostry.core.database.entities.MessageEntity
+import com.rio.rostry.core.database.optimization.KeysetCursor
+import javax.inject.Inject
+import javax.inject.Singleton
+
+/**
+ * Conversation history served from the local messages table
+ * Each page seeks from the (createdAt, id) of the oldest message loaded.
+ */
+@Singleton
+class LocalMessageHistoryRepository @Inject constructor(
+    private val messageDao: MessageDaoV2
+) : MessageHistoryRepository {
+
+    override suspend fun getMessagesBefore(
+        conversationId: String,
+        before: Message?,
+        limit: Int
+    ): List<Message> =
+        messageDao.getMessagesPage(conversationId, before?.let { KeysetCursor(it.sentAt.time, it.id) }, limit)
+            .map { it.toMessage() }
+
+    private fun MessageEntity.toMessage() = Message(
+        id = id,
+        conversationId = conversationId,
+        senderId = senderId,
+        content = toContent(),
+        status = MessageStatus(
+            sent = isSynced,
+            delivered = isDelivered,
+            read = isRead,
+            sentAt = createdAt,
+            deliveredAt = deliveredAt,
+            readAt = readAt
+        ),
+        replyTo = replyToMessageId,
+        edited = isEdited,
+        metadata = MessageMetadata(),
+        sentAt = createdAt,
+        editedAt = editedAt
+    )
+
+    private fun MessageEntity.toContent(): MessageContent {
+        val url = mediaUrl ?: return MessageContent.Text(content)
+        val caption = content.ifBlank { null }
+        return when (messageType) {
+            "image" -> MessageContent.Image(url, caption)
+            "video" -> MessageContent.Video(url, caption)
+            "audio" -> MessageContent.Audio(url, duration = 0)
+            "document" -> MessageContent.File(url, fileName = content, fileSize = 0, mimeType = mediaType.orEmpty())
+            else -> MessageContent.Text(content)
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.rio.rostry.di
+
+import com.rio.rostry.chat.domain.repository.MessageHistoryRepository
+import com.rio.rostry.core.repository.LocalMarketplaceListingRepository
+import com.rio.rostry.core.repository.LocalMessageHistoryRepository
+import com.rio.rostry.marketplace.domain.repository.MarketplaceListingRepository
+import dagger.Binds
+import dagger.Module
+import dagger.hilt.InstallIn
+import dagger.hilt.components.SingletonComponent
+
+/**
+ * Hilt module binding the feature repository ports to their local implementations
+ * The feature modules only see core:common, so the app module wires them to the database.
+ */
+@Module
+@InstallIn(SingletonComponent::class)
+abstract class FeatureRepositoryModule {
+
+    @Binds
+    abstract fun bindMarketplaceListingRepository(
+        repository: LocalMarketplaceListingRepository
+    ): MarketplaceListingRepository
+
+    @Binds
+    abstract fun bindMessageHistoryRepository(
+        repository: LocalMessageHistoryRepository
+    ): MessageHistoryRepository
+}
@@ -3,10 +3,19 @@ package com.rio.rostry.sync
 import android.content.Context
 import androidx.work.*
 import com.google.firebase.auth.FirebaseAuth
+import com.google.firebase.firestore.DocumentSnapshot
+import com.google.firebase.firestore.FieldValue
 import com.google.firebase.firestore.FirebaseFirestore
-import com.rio.rostry.core.database.ROSTRYDatabase
+import com.rio.rostry.core.database.RIOLocalDatabase
 import com.rio.rostry.core.database.entities.FowlEntity
+import com.rio.rostry.core.database.entities.HybridTimestamp
+import com.rio.rostry.core.database.entities.hybridTimestamp
 import com.rio.rostry.core.database.entities.UserEntity
+import com.rio.rostry.core.sync.DeltaDownloader
+import com.rio.rostry.core.sync.DeltaSource
+import com.rio.rostry.core.sync.SyncDiff
+import com.rio.rostry.core.sync.SyncScope
+import com.rio.rostry.core.sync.hybridTimestamp
 import kotlinx.coroutines.flow.MutableStateFlow
 import kotlinx.coroutines.flow.StateFlow
 import kotlinx.coroutines.flow.asStateFlow
@@ -21,9 +30,10 @@ import java.util.concurrent.TimeUnit
  */
 class SimpleSyncManager(
     private val context: Context,
-    private val database: ROSTRYDatabase,
+    private val database: RIOLocalDatabase,
     private val firestore: FirebaseFirestore,
-    private val auth: FirebaseAuth
+    private val auth: FirebaseAuth,
+    private val deltaDownloader: DeltaDownloader
 ) {
     
     private val _syncStatus = MutableStateFlow<SyncStatus>(SyncStatus.IDLE)
@@ -182,78 +192,90 @@ class SimpleSyncManager(
     
     /**
      * Sync fowl data between local database and Firestore
+     * Downloads only fowls changed since this owner's watermark, then uploads local
+     * changes the pull did not supersede.
      */
     private suspend fun syncFowlData(userId: String): Int {
         return try {
             val fowlDao = database.fowlDao()
-            val localFowls = fowlDao.getFowlsByOwner(userId)
-            
-            // Get fowls from Firestore
-            val firestoreFowls = firestore.collection("fowls")
-                .whereEqualTo("ownerId", userId)
-                .get()
-                .await()
+            val scope = SyncScope(collection = "fowls", ownerId = userId)
             
+            // Read local edits before the pull so an older remote copy cannot replace them
+            val localChanges = fowlDao.getUnsyncedFowls().filter { it.ownerId == userId }
+            val localById = localChanges.associateBy { it.id }
             var syncedCount = 0
             
-            // Process Firestore fowls
-            for (doc in firestoreFowls.documents) {
-                val fowlEntity = FowlEntity(
-                    id = doc.id,
-                    ownerId = doc.getString("ownerId") ?: userId,
-                    name = doc.getString("name") ?: "",
-                    breed = doc.getString("breed") ?: "",
-                    gender = doc.getString("gender") ?: "UNKNOWN",
-                    birthDate = doc.getDate("birthDate"),
-                    color = doc.getString("color"),
-                    weight = doc.getDouble("weight"),
-                    status = doc.getString("status") ?: "ACTIVE",
-                    description = doc.getString("description"),
-                    imageUrls = doc.getString("imageUrls"),
-                    price = doc.getDouble("price"),
-                    isForSale = doc.getBoolean("isForSale") ?: false,
-                    region = doc.getString("region") ?: "",
-                    district = doc.getString("district") ?: "",
-                    createdAt = doc.getDate("createdAt") ?: Date(),
-                    updatedAt = doc.getDate("updatedAt") ?: Date()
+            val pull = deltaDownloader.pull(scope, object : DeltaSource<FowlEntity> {
+                override fun map(document: DocumentSnapshot) = document.toFowlEntity(userId)
+                override suspend fun upsert(items: List<FowlEntity>) {
+                    val applicable = SyncDiff.remoteWins(items, localById, { it.id }, { it.hybridTimestamp })
+                    if (applicable.isNotEmpty()) fowlDao.insertFowls(applicable)
+                    syncedCount += applicable.size
+                }
+            })
+            
+            // Upload local changes, skipping any the pull just replaced with a newer remote copy
+            val pendingUploads = SyncDiff.pendingUploads(
+                candidates = localChanges,
+                remoteChanges = pull.changed,
+                idOf = { it.id },
+                stampOf = { it.hybridTimestamp }
+            )
+            
+            for (localFowl in pendingUploads) {
+                val fowlMap = mapOf(
+                    "ownerId" to localFowl.ownerId,
+                    "name" to localFowl.name,
+                    "breed" to localFowl.breed,
+                    "gender" to localFowl.gender,
+                    "birthDate" to localFowl.birthDate,
+                    "color" to localFowl.color,
+                    "weight" to localFowl.weight,
+                    "status" to localFowl.status,
+                    "description" to localFowl.description,
+                    "imageUrls" to localFowl.imageUrls,
+                    "price" to localFowl.price,
+                    "isForSale" to localFowl.isForSale,
+                    "region" to localFowl.region,
+                    "district" to localFowl.district,
+                    "createdAt" to localFowl.createdAt,
+                    "updatedAt" to FieldValue.serverTimestamp(),
+                    HybridTimestamp.FIELD to HybridTimestamp.toField(localFowl.hybridTimestamp)
                 )
-                fowlDao.insertFowl(fowlEntity)
+                firestore.collection("fowls").document(localFowl.id).set(fowlMap).await()
+                fowlDao.markFowlAsSynced(localFowl.id)
                 syncedCount++
             }
             
-            // Upload local fowls that don't exist in Firestore
-            for (localFowl in localFowls) {
-                val existsInFirestore = firestoreFowls.documents.any { it.id == localFowl.id }
-                if (!existsInFirestore) {
-                    val fowlMap = mapOf(
-                        "ownerId" to localFowl.ownerId,
-                        "name" to localFowl.name,
-                        "breed" to localFowl.breed,
-                        "gender" to localFowl.gender,
-                        "birthDate" to localFowl.birthDate,
-                        "color" to localFowl.color,
-                        "weight" to localFowl.weight,
-                        "status" to localFowl.status,
-                        "description" to localFowl.description,
-                        "imageUrls" to localFowl.imageUrls,
-                        "price" to localFowl.price,
-                        "isForSale" to localFowl.isForSale,
-                        "region" to localFowl.region,
-                        "district" to localFowl.district,
-                        "createdAt" to localFowl.createdAt,
-                        "updatedAt" to localFowl.updatedAt
-                    )
-                    firestore.collection("fowls").document(localFowl.id).set(fowlMap).await()
-                    syncedCount++
-                }
-            }
-            
             syncedCount
         } catch (e: Exception) {
             0
         }
     }
     
+    private fun DocumentSnapshot.toFowlEntity(userId: String): FowlEntity {
+        return FowlEntity(
+            id = id,
+            ownerId = getString("ownerId") ?: userId,
+            name = getString("name") ?: "",
+            breed = getString("breed") ?: "",
+            gender = getString("gender") ?: "UNKNOWN",
+            birthDate = getDate("birthDate"),
+            color = getString("color"),
+            weight = getDouble("weight"),
+            status = getString("status") ?: "ACTIVE",
+            description = getString("description"),
+            imageUrls = getString("imageUrls"),
+            price = getDouble("price"),
+            isForSale = getBoolean("isForSale") ?: false,
+            region = getString("region") ?: "",
+            district = getString("district") ?: "",
+            createdAt = getDate("createdAt") ?: Date(),
+            updatedAt = getDate("updatedAt") ?: Date(),
+            hlc = hybridTimestamp()
+        )
+    }
+    
     /**
      * Cancel all sync operations
      */
@@ -0,0 +1,17 @@
+package com.rio.rostry.sync
+
+import com.rio.rostry.core.sync.DeltaDownloader
+import dagger.hilt.EntryPoint
+import dagger.hilt.InstallIn
+import dagger.hilt.components.SingletonComponent
+
+/**
+ * Hilt entry point for the sync singletons SimpleSyncManager needs
+ * SyncWorker and the sync settings screen are not built by Hilt, so they read the
+ * app-wide DeltaDownloader here instead of creating one with its own clock.
+ */
+@EntryPoint
+@InstallIn(SingletonComponent::class)
+interface SyncEntryPoint {
+    fun deltaDownloader(): DeltaDownloader
+}
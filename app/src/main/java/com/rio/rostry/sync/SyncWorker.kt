@@ -7,6 +7,7 @@ import androidx.work.workDataOf
 import com.google.firebase.auth.FirebaseAuth
 import com.google.firebase.firestore.FirebaseFirestore
 import com.rio.rostry.core.database.di.DatabaseProvider
+import dagger.hilt.android.EntryPointAccessors
 import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.withContext
 
@@ -40,7 +41,10 @@ class SyncWorker(
                 context = applicationContext,
                 database = database,
                 firestore = firestore,
-                auth = auth
+                auth = auth,
+                deltaDownloader = EntryPointAccessors
+                    .fromApplication(applicationContext, SyncEntryPoint::class.java)
+                    .deltaDownloader()
             )
             
             // Perform sync
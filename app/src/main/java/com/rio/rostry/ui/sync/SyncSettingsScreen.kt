@@ -17,6 +17,7 @@ import com.google.firebase.auth.FirebaseAuth
 import com.google.firebase.firestore.FirebaseFirestore
 import com.rio.rostry.core.database.di.DatabaseProvider
 import com.rio.rostry.sync.*
+import dagger.hilt.android.EntryPointAccessors
 import kotlinx.coroutines.launch
 import java.text.SimpleDateFormat
 import java.util.*
@@ -38,7 +39,10 @@ fun SyncSettingsScreen(
     val firestore = remember { FirebaseFirestore.getInstance() }
     val auth = remember { FirebaseAuth.getInstance() }
     val syncManager = remember {
-        SimpleSyncManager(context, database, firestore, auth)
+        val deltaDownloader = EntryPointAccessors
+            .fromApplication(context, SyncEntryPoint::class.java)
+            .deltaDownloader()
+        SimpleSyncManager(context, database, firestore, auth, deltaDownloader)
     }
     
     // State
@@ -68,8 +68,16 @@ dependencies {
     // Date/Time utilities
     implementation("org.jetbrains.kotlinx:kotlinx-datetime:0.5.0")
 
+    // Paging 3 sources shared by features
+    implementation(libs.androidx.paging.common)
+
+    // EXIF orientation for image decoding
+    implementation(libs.androidx.exifinterface)
+
     // Testing
     testImplementation(libs.junit)
+    testImplementation(libs.androidx.junit)
+    testImplementation(libs.robolectric)
     androidTestImplementation(libs.androidx.junit)
     androidTestImplementation(libs.androidx.espresso.core)
 }
\ No newline at end of file
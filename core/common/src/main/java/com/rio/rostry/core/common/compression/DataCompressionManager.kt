@@ -1,7 +1,6 @@
 package com.rio.rostry.core.common.compression
 
 import android.graphics.Bitmap
-import android.graphics.BitmapFactory
 import com.rio.rostry.core.common.exceptions.SyncException
 import java.io.*
 import java.util.zip.GZIPInputStream
@@ -18,8 +17,6 @@ class DataCompressionManager @Inject constructor() {
     
     companion object {
         private const val COMPRESSION_THRESHOLD = 1024 // 1KB - compress data larger than this
-        private const val MAX_IMAGE_WIDTH = 1920
-        private const val MAX_IMAGE_HEIGHT = 1080
         private const val THUMBNAIL_SIZE = 150
     }
     
@@ -112,28 +109,24 @@ class DataCompressionManager @Inject constructor() {
                 throw SyncException.MediaError.FileNotFound(imagePath)
             }
             
-            val originalBitmap = BitmapFactory.decodeFile(imagePath)
-                ?: throw SyncException.MediaError.CompressionFailed(imagePath, "Cannot decode image")
+            // Decoded straight to the target size; the full-resolution image is never in memory
+            val resizedBitmap = resizeImage(imagePath, targetQuality)
             
             val originalSize = originalFile.length()
             
-            // Resize if necessary
-            val resizedBitmap = resizeImage(originalBitmap, targetQuality)
-            
             // Compress with quality setting
             val compressedBytes = compressBitmap(resizedBitmap, targetQuality)
             
-            // Create thumbnail if requested
+            // Create thumbnail if requested; the resized image is still far larger than a thumbnail
             val thumbnailBytes = if (createThumbnail) {
-                val thumbnailBitmap = createThumbnail(originalBitmap)
-                compressBitmap(thumbnailBitmap, ImageQuality.THUMBNAIL)
+                val thumbnailBitmap = createThumbnail(resizedBitmap)
+                compressBitmap(thumbnailBitmap, ImageQuality.THUMBNAIL).also {
+                    if (thumbnailBitmap != resizedBitmap) thumbnailBitmap.recycle()
+                }
             } else null
             
             // Clean up bitmaps
-            if (resizedBitmap != originalBitmap) {
-                resizedBitmap.recycle()
-            }
-            originalBitmap.recycle()
+            resizedBitmap.recycle()
             
             ImageCompressionResult(
                 compressedData = compressedBytes,
@@ -153,49 +146,20 @@ class DataCompressionManager @Inject constructor() {
     }
     
     /**
-     * Resize image based on target quality
+     * Decode an image file upright and sized for the target quality
+     * Memory use depends on the target size, not the source resolution.
      */
-    private fun resizeImage(bitmap: Bitmap, quality: ImageQuality): Bitmap {
-        val (maxWidth, maxHeight) = when (quality) {
-            ImageQuality.HIGH -> Pair(MAX_IMAGE_WIDTH, MAX_IMAGE_HEIGHT)
-            ImageQuality.MEDIUM -> Pair(1280, 720)
-            ImageQuality.LOW -> Pair(854, 480)
-            ImageQuality.VERY_LOW -> Pair(640, 360)
-            ImageQuality.THUMBNAIL -> Pair(THUMBNAIL_SIZE, THUMBNAIL_SIZE)
-        }
-        
-        val originalWidth = bitmap.width
-        val originalHeight = bitmap.height
-        
-        if (originalWidth <= maxWidth && originalHeight <= maxHeight) {
-            return bitmap
-        }
-        
-        val ratio = minOf(
-            maxWidth.toFloat() / originalWidth,
-            maxHeight.toFloat() / originalHeight
-        )
-        
-        val newWidth = (originalWidth * ratio).toInt()
-        val newHeight = (originalHeight * ratio).toInt()
-        
-        return Bitmap.createScaledBitmap(bitmap, newWidth, newHeight, true)
+    private fun resizeImage(imagePath: String, quality: ImageQuality): Bitmap {
+        return SampledImageDecoder.decode({ FileInputStream(imagePath) }, quality.maxWidth, quality.maxHeight)?.bitmap
+            ?: throw SyncException.MediaError.CompressionFailed(imagePath, "Cannot decode image")
     }
     
     /**
      * Compress bitmap to byte array
      */
     private fun compressBitmap(bitmap: Bitmap, quality: ImageQuality): ByteArray {
-        val compressionQuality = when (quality) {
-            ImageQuality.HIGH -> 90
-            ImageQuality.MEDIUM -> 70
-            ImageQuality.LOW -> 50
-            ImageQuality.VERY_LOW -> 30
-            ImageQuality.THUMBNAIL -> 60
-        }
-        
         val output = ByteArrayOutputStream()
-        bitmap.compress(Bitmap.CompressFormat.JPEG, compressionQuality, output)
+        bitmap.compress(Bitmap.CompressFormat.JPEG, quality.jpegQuality, output)
         return output.toByteArray()
     }
     
@@ -207,6 +171,10 @@ class DataCompressionManager @Inject constructor() {
         val width = bitmap.width
         val height = bitmap.height
         
+        if (width <= size && height <= size) {
+            return bitmap
+        }
+        
         val ratio = if (width > height) {
             size.toFloat() / width
         } else {
@@ -277,14 +245,15 @@ class DataCompressionManager @Inject constructor() {
 }
 
 /**
- * Image quality levels for compression
+ * Image quality levels for compression, with the bounding box images are resized into
+ * and the JPEG quality they are encoded at
  */
-enum class ImageQuality {
-    HIGH,       // Original quality, minimal compression
-    MEDIUM,     // 70% quality, good balance
-    LOW,        // 50% quality, smaller size
-    VERY_LOW,   // 30% quality, very small size
-    THUMBNAIL   // Small thumbnail only
+enum class ImageQuality(val maxWidth: Int, val maxHeight: Int, val jpegQuality: Int) {
+    HIGH(1920, 1080, 90),     // Original quality, minimal compression
+    MEDIUM(1280, 720, 70),    // 70% quality, good balance
+    LOW(854, 480, 50),        // 50% quality, smaller size
+    VERY_LOW(640, 360, 30),   // 30% quality, very small size
+    THUMBNAIL(150, 150, 60)   // Small thumbnail only
 }
 
 /**
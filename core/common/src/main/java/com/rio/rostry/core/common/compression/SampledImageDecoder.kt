@@ -0,0 +1,227 @@
+package com.rio.rostry.core.common.compression
+
+import android.graphics.Bitmap
+import android.graphics.BitmapFactory
+import android.graphics.BitmapRegionDecoder
+import android.graphics.Canvas
+import android.graphics.Matrix
+import android.graphics.Paint
+import android.graphics.Rect
+import android.graphics.RectF
+import androidx.exifinterface.media.ExifInterface
+import java.io.IOException
+import java.io.InputStream
+import kotlin.math.roundToInt
+
+/**
+ * Decodes images straight to a target size without holding the full-resolution bitmap
+ *
+ * A bounds pass and an EXIF read (header only) decide the output size. The source is then
+ * decoded in horizontal strips with [BitmapRegionDecoder], each subsampled and drawn scaled and
+ * oriented into the output, so peak memory is the output plus one strip however large the
+ * source is. Formats the region decoder does not support fall back to a subsampled full decode.
+ *
+ * [open] is called once per pass and must return a fresh stream each time.
+ */
+object SampledImageDecoder {
+
+    /**
+     * Decoded image, upright, and the most bitmap memory held at once while producing it
+     */
+    data class Result(
+        val bitmap: Bitmap,
+        val peakBitmapBytes: Long,
+        val sourceWidth: Int,
+        val sourceHeight: Int
+    )
+
+    // Strips are kept to about a quarter of the output
+    private const val STRIP_FRACTION = 4
+    private const val MIN_STRIP_ROWS = 16
+
+    /**
+     * Decode to fit within [maxWidth] x [maxHeight] after orientation, never upscaling
+     *
+     * @return null if the source cannot be decoded
+     */
+    fun decode(open: () -> InputStream, maxWidth: Int, maxHeight: Int): Result? {
+        val bounds = BitmapFactory.Options().apply { inJustDecodeBounds = true }
+        open().use { BitmapFactory.decodeStream(it, null, bounds) }
+        val sourceWidth = bounds.outWidth
+        val sourceHeight = bounds.outHeight
+        if (sourceWidth <= 0 || sourceHeight <= 0) return null
+
+        val orientation = readOrientation(open)
+        val transposed = orientation.swapsDimensions()
+
+        // Fit in upright space, then express the size in source (stored) orientation
+        val uprightWidth = if (transposed) sourceHeight else sourceWidth
+        val uprightHeight = if (transposed) sourceWidth else sourceHeight
+        val scale = minOf(1f, maxWidth.toFloat() / uprightWidth, maxHeight.toFloat() / uprightHeight)
+        val targetWidth = (sourceWidth * scale).roundToInt().coerceAtLeast(1)
+        val targetHeight = (sourceHeight * scale).roundToInt().coerceAtLeast(1)
+
+        val sampleSize = sampleSizeFor(sourceWidth, sourceHeight, targetWidth, targetHeight)
+        val output = Bitmap.createBitmap(
+            if (transposed) targetHeight else targetWidth,
+            if (transposed) targetWidth else targetHeight,
+            Bitmap.Config.ARGB_8888
+        )
+        val canvas = Canvas(output).apply {
+            concat(orientationMatrix(orientation, targetWidth.toFloat(), targetHeight.toFloat()))
+        }
+
+        // Bytes of the strip (or sampled fallback) held alongside the output
+        val workingBytes = try {
+            decodeInStrips(open, canvas, sourceWidth, sourceHeight, targetWidth, targetHeight, sampleSize)
+        } catch (e: IOException) {
+            null
+        } ?: decodeWhole(open, canvas, sourceWidth, sourceHeight, targetWidth, targetHeight, sampleSize)
+
+        if (workingBytes == null) {
+            output.recycle()
+            return null
+        }
+        return Result(output, output.allocationByteCount + workingBytes, sourceWidth, sourceHeight)
+    }
+
+    /**
+     * EXIF orientation read from the header; [ExifInterface.ORIENTATION_NORMAL] if absent
+     */
+    fun readOrientation(open: () -> InputStream): Int {
+        return try {
+            open().use { ExifInterface(it) }
+                .getAttributeInt(ExifInterface.TAG_ORIENTATION, ExifInterface.ORIENTATION_NORMAL)
+        } catch (e: IOException) {
+            ExifInterface.ORIENTATION_NORMAL
+        }
+    }
+
+    /**
+     * Largest power of two that keeps the sampled image at least the target size
+     */
+    fun sampleSizeFor(sourceWidth: Int, sourceHeight: Int, targetWidth: Int, targetHeight: Int): Int {
+        var sampleSize = 1
+        while (sourceWidth / (sampleSize * 2) >= targetWidth && sourceHeight / (sampleSize * 2) >= targetHeight) {
+            sampleSize *= 2
+        }
+        return sampleSize
+    }
+
+    /**
+     * Draw the source onto [canvas] strip by strip; returns the strip's byte count, or null if
+     * the region decoder produced nothing
+     */
+    @Suppress("DEPRECATION")
+    private fun decodeInStrips(
+        open: () -> InputStream,
+        canvas: Canvas,
+        sourceWidth: Int,
+        sourceHeight: Int,
+        targetWidth: Int,
+        targetHeight: Int,
+        sampleSize: Int
+    ): Long? {
+        val regionDecoder = open().use { BitmapRegionDecoder.newInstance(it, false) } ?: return null
+        try {
+            val sampledWidth = ceilDiv(sourceWidth, sampleSize)
+            val stripRows = maxOf(MIN_STRIP_ROWS, ceilDiv(targetHeight, STRIP_FRACTION))
+            val strip = Bitmap.createBitmap(sampledWidth, stripRows, Bitmap.Config.ARGB_8888)
+            val options = BitmapFactory.Options().apply {
+                inSampleSize = sampleSize
+                inBitmap = strip
+            }
+            val paint = Paint(Paint.FILTER_BITMAP_FLAG)
+            val sourceRect = Rect()
+            val targetRect = RectF()
+            val scaleY = targetHeight.toFloat() / sourceHeight
+
+            try {
+                var top = 0
+                while (top < sourceHeight) {
+                    val bottom = minOf(sourceHeight, top + stripRows * sampleSize)
+                    // Draws into the strip without resizing it; rows past the region are left over
+                    regionDecoder.decodeRegion(Rect(0, top, sourceWidth, bottom), options) ?: return null
+                    sourceRect.set(0, 0, sampledWidth, ceilDiv(bottom - top, sampleSize))
+                    targetRect.set(0f, top * scaleY, targetWidth.toFloat(), bottom * scaleY)
+                    canvas.drawBitmap(strip, sourceRect, targetRect, paint)
+                    top = bottom
+                }
+                return strip.allocationByteCount.toLong()
+            } finally {
+                strip.recycle()
+            }
+        } finally {
+            regionDecoder.recycle()
+        }
+    }
+
+    /**
+     * Fallback for formats without region support: one subsampled decode, scaled onto [canvas]
+     */
+    private fun decodeWhole(
+        open: () -> InputStream,
+        canvas: Canvas,
+        sourceWidth: Int,
+        sourceHeight: Int,
+        targetWidth: Int,
+        targetHeight: Int,
+        sampleSize: Int
+    ): Long? {
+        val options = BitmapFactory.Options().apply { inSampleSize = sampleSize }
+        val sampled = open().use { BitmapFactory.decodeStream(it, null, options) } ?: return null
+        canvas.drawBitmap(
+            sampled,
+            null,
+            RectF(0f, 0f, targetWidth.toFloat(), targetHeight.toFloat()),
+            Paint(Paint.FILTER_BITMAP_FLAG)
+        )
+        val sampledBytes = sampled.allocationByteCount.toLong()
+        sampled.recycle()
+        return sampledBytes
+    }
+
+    /**
+     * Maps a [width] x [height] image in stored orientation to its upright position
+     */
+    fun orientationMatrix(orientation: Int, width: Float, height: Float): Matrix = Matrix().apply {
+        when (orientation) {
+            ExifInterface.ORIENTATION_FLIP_HORIZONTAL -> {
+                setScale(-1f, 1f)
+                postTranslate(width, 0f)
+            }
+            ExifInterface.ORIENTATION_ROTATE_180 -> {
+                setRotate(180f)
+                postTranslate(width, height)
+            }
+            ExifInterface.ORIENTATION_FLIP_VERTICAL -> {
+                setScale(1f, -1f)
+                postTranslate(0f, height)
+            }
+            ExifInterface.ORIENTATION_TRANSPOSE -> {
+                setRotate(90f)
+                postScale(-1f, 1f)
+            }
+            ExifInterface.ORIENTATION_ROTATE_90 -> {
+                setRotate(90f)
+                postTranslate(height, 0f)
+            }
+            ExifInterface.ORIENTATION_TRANSVERSE -> {
+                setRotate(270f)
+                postScale(-1f, 1f)
+                postTranslate(height, width)
+            }
+            ExifInterface.ORIENTATION_ROTATE_270 -> {
+                setRotate(270f)
+                postTranslate(0f, width)
+            }
+        }
+    }
+
+    private fun Int.swapsDimensions(): Boolean = this == ExifInterface.ORIENTATION_TRANSPOSE ||
+        this == ExifInterface.ORIENTATION_ROTATE_90 ||
+        this == ExifInterface.ORIENTATION_TRANSVERSE ||
+        this == ExifInterface.ORIENTATION_ROTATE_270
+
+    private fun ceilDiv(value: Int, divisor: Int): Int = (value + divisor - 1) / divisor
+}
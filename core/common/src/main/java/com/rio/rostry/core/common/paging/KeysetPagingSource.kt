@@ -0,0 +1,39 @@
+package com.rio.rostry.core.common.paging
+
+import androidx.paging.PagingSource
+import androidx.paging.PagingState
+import kotlinx.coroutines.CancellationException
+
+/**
+ * Append-only PagingSource that seeks from the last row of the previous page
+ *
+ * The key of the next page is derived from the last item loaded ([keyOf]), and [fetch]
+ * returns the rows strictly after it in the source's sort order; a null key means the first
+ * page. Unlike LIMIT/OFFSET, no skipped rows are read, so page N costs the same as page 1.
+ *
+ * Seeking only works forward, so a refresh restarts from the top. Sources are not observed;
+ * call [invalidate] (or refresh the Pager) after local writes that should show up.
+ */
+class KeysetPagingSource<K : Any, T : Any>(
+    private val fetch: suspend (after: K?, limit: Int) -> List<T>,
+    private val keyOf: (T) -> K
+) : PagingSource<K, T>() {
+
+    override suspend fun load(params: LoadParams<K>): LoadResult<K, T> {
+        return try {
+            val after = if (params is LoadParams.Refresh) null else params.key
+            val items = fetch(after, params.loadSize)
+            LoadResult.Page(
+                data = items,
+                prevKey = null,
+                nextKey = if (items.size < params.loadSize) null else keyOf(items.last())
+            )
+        } catch (e: CancellationException) {
+            throw e
+        } catch (e: Exception) {
+            LoadResult.Error(e)
+        }
+    }
+
+    override fun getRefreshKey(state: PagingState<K, T>): K? = null
+}
@@ -0,0 +1,202 @@
+package com.rio.rostry.core.common.performance
+
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.atomic.AtomicLongArray
+
+/**
+ * Fixed-size log-linear latency histogram in microseconds
+ *
+ * Values below 2^[SUB_BUCKET_BITS + 1] get one bucket each; above that every power of two
+ * is split into 2^[SUB_BUCKET_BITS] equal buckets, so any recorded value is reported within
+ * ~3% of its true value. Values above [MAX_TRACKABLE_MICROS] land in the last bucket.
+ *
+ * [record] touches only atomics and never allocates, so it is safe on hot paths and from
+ * any thread. Reads go through [snapshot], which can be merged with other snapshots.
+ */
+class LatencyHistogram(val name: String) {
+
+    private val counts = AtomicLongArray(BUCKET_COUNT)
+    private val totalCount = AtomicLong()
+    private val sum = AtomicLong()
+    private val min = AtomicLong(Long.MAX_VALUE)
+    private val max = AtomicLong(0L)
+
+    fun record(micros: Long) {
+        val value = micros.coerceIn(0L, MAX_TRACKABLE_MICROS)
+        counts.incrementAndGet(bucketIndex(value))
+        totalCount.incrementAndGet()
+        sum.addAndGet(value)
+        var currentMin = min.get()
+        while (value < currentMin && !min.compareAndSet(currentMin, value)) currentMin = min.get()
+        var currentMax = max.get()
+        while (value > currentMax && !max.compareAndSet(currentMax, value)) currentMax = max.get()
+    }
+
+    fun recordNanos(nanos: Long) = record(nanos / 1_000)
+
+    fun recordMillis(millis: Long) = record(millis * 1_000)
+
+    /**
+     * Point-in-time copy; concurrent records may be partially included
+     */
+    fun snapshot(): LatencySnapshot {
+        val copy = LongArray(BUCKET_COUNT) { counts.get(it) }
+        val count = copy.sum()
+        return LatencySnapshot(
+            name = name,
+            counts = copy,
+            totalCount = count,
+            sumMicros = sum.get(),
+            minMicros = if (count > 0) min.get() else 0L,
+            maxMicros = max.get()
+        )
+    }
+
+    fun reset() {
+        for (i in 0 until BUCKET_COUNT) counts.set(i, 0L)
+        totalCount.set(0L)
+        sum.set(0L)
+        min.set(Long.MAX_VALUE)
+        max.set(0L)
+    }
+
+    companion object {
+        const val SUB_BUCKET_BITS = 5
+        const val MAX_TRACKABLE_MICROS = 60 * 60 * 1_000_000L // one hour
+
+        private const val SUB_BUCKETS = 1 shl SUB_BUCKET_BITS
+        val BUCKET_COUNT = bucketIndex(MAX_TRACKABLE_MICROS) + 1
+
+        /**
+         * shift * 2^P + (value >>> shift), where shift keeps the mantissa in [2^P, 2^(P+1))
+         */
+        fun bucketIndex(value: Long): Int {
+            val exponent = 63 - java.lang.Long.numberOfLeadingZeros(value or 1L)
+            val shift = maxOf(0, exponent - SUB_BUCKET_BITS)
+            return shift * SUB_BUCKETS + (value ushr shift).toInt()
+        }
+
+        fun bucketLowerBound(index: Int): Long {
+            if (index < 2 * SUB_BUCKETS) return index.toLong()
+            val shift = index / SUB_BUCKETS - 1
+            val mantissa = index - shift * SUB_BUCKETS
+            return mantissa.toLong() shl shift
+        }
+
+        fun bucketUpperBound(index: Int): Long {
+            if (index < 2 * SUB_BUCKETS) return index.toLong()
+            val shift = index / SUB_BUCKETS - 1
+            val mantissa = index - shift * SUB_BUCKETS
+            return ((mantissa + 1).toLong() shl shift) - 1
+        }
+    }
+}
+
+/**
+ * Immutable histogram contents; values in microseconds
+ */
+class LatencySnapshot(
+    val name: String,
+    private val counts: LongArray,
+    val totalCount: Long,
+    val sumMicros: Long,
+    val minMicros: Long,
+    val maxMicros: Long
+) {
+    val meanMicros: Long
+        get() = if (totalCount > 0) sumMicros / totalCount else 0L
+
+    /**
+     * Upper bound of the bucket holding the [percentile]th value, capped at the observed max
+     */
+    fun valueAtPercentile(percentile: Double): Long {
+        if (totalCount == 0L) return 0L
+        val rank = maxOf(1L, Math.ceil(percentile / 100.0 * totalCount).toLong())
+        var seen = 0L
+        for (i in counts.indices) {
+            seen += counts[i]
+            if (seen >= rank) return minOf(LatencyHistogram.bucketUpperBound(i), maxMicros)
+        }
+        return maxMicros
+    }
+
+    fun countAt(index: Int): Long = counts[index]
+
+    /**
+     * Combine two snapshots, e.g. the same operation across processes or time windows
+     */
+    fun merge(other: LatencySnapshot, mergedName: String = name): LatencySnapshot {
+        val merged = LongArray(counts.size) { counts[it] + other.counts[it] }
+        return LatencySnapshot(
+            name = mergedName,
+            counts = merged,
+            totalCount = totalCount + other.totalCount,
+            sumMicros = sumMicros + other.sumMicros,
+            minMicros = when {
+                totalCount == 0L -> other.minMicros
+                other.totalCount == 0L -> minMicros
+                else -> minOf(minMicros, other.minMicros)
+            },
+            maxMicros = maxOf(maxMicros, other.maxMicros)
+        )
+    }
+
+    fun summary() = LatencySummary(
+        operation = name,
+        count = totalCount,
+        p50Ms = valueAtPercentile(50.0) / 1_000.0,
+        p95Ms = valueAtPercentile(95.0) / 1_000.0,
+        p99Ms = valueAtPercentile(99.0) / 1_000.0,
+        maxMs = maxMicros / 1_000.0,
+        meanMs = meanMicros / 1_000.0
+    )
+
+    /**
+     * JSON object with summary fields and the non-empty buckets as [lowerBound, count] pairs
+     */
+    fun toJson(): String = buildString {
+        append("{\"name\":").append(jsonString(name))
+        append(",\"count\":").append(totalCount)
+        append(",\"min\":").append(minMicros)
+        append(",\"max\":").append(maxMicros)
+        append(",\"mean\":").append(meanMicros)
+        append(",\"p50\":").append(valueAtPercentile(50.0))
+        append(",\"p95\":").append(valueAtPercentile(95.0))
+        append(",\"p99\":").append(valueAtPercentile(99.0))
+        append(",\"buckets\":[")
+        var first = true
+        counts.forEachIndexed { i, count ->
+            if (count == 0L) return@forEachIndexed
+            if (!first) append(',')
+            append('[').append(LatencyHistogram.bucketLowerBound(i)).append(',').append(count).append(']')
+            first = false
+        }
+        append("]}")
+    }
+
+    private fun jsonString(value: String): String = buildString {
+        append('"')
+        value.forEach { c ->
+            when {
+                c == '"' -> append("\\\"")
+                c == '\\' -> append("\\\\")
+                c < ' ' -> append(String.format("\\u%04x", c.code))
+                else -> append(c)
+            }
+        }
+        append('"')
+    }
+}
+
+/**
+ * Percentiles for one operation, in milliseconds, for dashboards
+ */
+data class LatencySummary(
+    val operation: String,
+    val count: Long,
+    val p50Ms: Double,
+    val p95Ms: Double,
+    val p99Ms: Double,
+    val maxMs: Double,
+    val meanMs: Double
+)
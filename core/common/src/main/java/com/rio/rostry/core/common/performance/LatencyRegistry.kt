@@ -0,0 +1,75 @@
+package com.rio.rostry.core.common.performance
+
+import java.util.concurrent.ConcurrentHashMap
+import javax.inject.Inject
+import javax.inject.Singleton
+
+/**
+ * Process-wide latency histograms keyed by operation name
+ *
+ * Names are dotted paths such as "sync.fowls", "db.select.fowls" or "media.upload.image".
+ * The number of distinct operations is capped; anything past the cap is recorded under
+ * [OVERFLOW_OPERATION] so a runaway key cannot grow memory without bound.
+ */
+@Singleton
+class LatencyRegistry @Inject constructor() {
+
+    private val histograms = ConcurrentHashMap<String, LatencyHistogram>()
+
+    fun histogram(operation: String): LatencyHistogram {
+        histograms[operation]?.let { return it }
+        val key = if (histograms.size >= MAX_OPERATIONS) OVERFLOW_OPERATION else operation
+        return histograms.getOrPut(key) { LatencyHistogram(key) }
+    }
+
+    fun recordNanos(operation: String, nanos: Long) = histogram(operation).recordNanos(nanos)
+
+    fun recordMillis(operation: String, millis: Long) = histogram(operation).recordMillis(millis)
+
+    /**
+     * Time [block] and record it under [operation], whether it returns or throws
+     */
+    inline fun <T> time(operation: String, block: () -> T): T {
+        val start = System.nanoTime()
+        try {
+            return block()
+        } finally {
+            recordNanos(operation, System.nanoTime() - start)
+        }
+    }
+
+    fun snapshot(operation: String): LatencySnapshot? = histograms[operation]?.snapshot()
+
+    fun snapshots(): List<LatencySnapshot> = histograms.values.map { it.snapshot() }.sortedBy { it.name }
+
+    /**
+     * p50/p95/p99 per operation, optionally restricted to names starting with [prefix]
+     */
+    fun summaries(prefix: String = ""): List<LatencySummary> {
+        return snapshots().filter { it.name.startsWith(prefix) && it.totalCount > 0 }.map { it.summary() }
+    }
+
+    /**
+     * All histograms as one JSON document; values are microseconds
+     */
+    fun exportJson(timestamp: Long = System.currentTimeMillis()): String = buildString {
+        append("{\"generatedAt\":").append(timestamp)
+        append(",\"unit\":\"us\"")
+        append(",\"subBucketBits\":").append(LatencyHistogram.SUB_BUCKET_BITS)
+        append(",\"operations\":[")
+        snapshots().forEachIndexed { i, snapshot ->
+            if (i > 0) append(',')
+            append(snapshot.toJson())
+        }
+        append("]}")
+    }
+
+    fun reset() {
+        histograms.values.forEach { it.reset() }
+    }
+
+    companion object {
+        const val MAX_OPERATIONS = 256
+        const val OVERFLOW_OPERATION = "other"
+    }
+}
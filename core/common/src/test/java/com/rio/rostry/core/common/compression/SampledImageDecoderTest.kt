@@ -0,0 +1,80 @@
+package com.rio.rostry.core.common.compression
+
+import android.graphics.Bitmap
+import android.graphics.Color
+import androidx.exifinterface.media.ExifInterface
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import org.junit.runner.RunWith
+import org.robolectric.annotation.GraphicsMode
+import java.io.File
+
+@RunWith(AndroidJUnit4::class)
+@GraphicsMode(GraphicsMode.Mode.NATIVE)
+class SampledImageDecoderTest {
+
+    @get:Rule
+    val folder = TemporaryFolder()
+
+    private fun photo(width: Int, height: Int, orientation: Int = ExifInterface.ORIENTATION_NORMAL): File {
+        val file = folder.newFile()
+        val source = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888).apply { eraseColor(Color.GRAY) }
+        file.outputStream().use { source.compress(Bitmap.CompressFormat.JPEG, 90, it) }
+        source.recycle()
+        if (orientation != ExifInterface.ORIENTATION_NORMAL) {
+            ExifInterface(file).apply {
+                setAttribute(ExifInterface.TAG_ORIENTATION, orientation.toString())
+                saveAttributes()
+            }
+        }
+        return file
+    }
+
+    @Test
+    fun peakMemoryFollowsTheTargetNotTheSource() {
+        val file = photo(4000, 3000)
+        val quality = ImageQuality.MEDIUM
+
+        val result = SampledImageDecoder.decode({ file.inputStream() }, quality.maxWidth, quality.maxHeight)!!
+
+        assertEquals(960, result.bitmap.width)
+        assertEquals(720, result.bitmap.height)
+        val outputBytes = result.bitmap.allocationByteCount.toLong()
+        val sourceBytes = 4000L * 3000 * 4
+        // Output plus a strip at most half its size
+        assertTrue(result.peakBitmapBytes <= outputBytes * 3 / 2)
+        assertTrue(result.peakBitmapBytes * 10 < sourceBytes)
+    }
+
+    @Test
+    fun exifRotationIsAppliedWithoutAFullDecode() {
+        val file = photo(3000, 2000, ExifInterface.ORIENTATION_ROTATE_90)
+
+        val result = SampledImageDecoder.decode({ file.inputStream() }, 1280, 720)!!
+
+        // Upright the photo is 2000x3000, which fits 720 high as 480x720
+        assertEquals(480, result.bitmap.width)
+        assertEquals(720, result.bitmap.height)
+    }
+
+    @Test
+    fun smallImagesAreNotUpscaled() {
+        val file = photo(300, 200)
+
+        val result = SampledImageDecoder.decode({ file.inputStream() }, 1280, 720)!!
+
+        assertEquals(300, result.bitmap.width)
+        assertEquals(200, result.bitmap.height)
+    }
+
+    @Test
+    fun sampleSizeKeepsTheSampledImageAtLeastTheTarget() {
+        assertEquals(1, SampledImageDecoder.sampleSizeFor(1000, 1000, 600, 600))
+        assertEquals(4, SampledImageDecoder.sampleSizeFor(8000, 6000, 960, 720))
+        assertEquals(8, SampledImageDecoder.sampleSizeFor(8000, 6000, 854, 480))
+    }
+}
@@ -0,0 +1,50 @@
+package com.rio.rostry.core.common.paging
+
+import androidx.paging.PagingSource.LoadParams
+import androidx.paging.PagingSource.LoadResult
+import kotlinx.coroutines.runBlocking
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+class KeysetPagingSourceTest {
+
+    private val rows = (0 until 8).toList()
+    private val requestedKeys = mutableListOf<Int?>()
+
+    private val source = KeysetPagingSource<Int, Int>(
+        fetch = { after, limit ->
+            requestedKeys.add(after)
+            rows.filter { after == null || it > after }.take(limit)
+        },
+        keyOf = { it }
+    )
+
+    @Test
+    fun pagesContinueFromTheLastRow() = runBlocking {
+        val first = source.load(LoadParams.Refresh(key = null, loadSize = 3, placeholdersEnabled = false)) as LoadResult.Page
+        val second = source.load(LoadParams.Append(key = first.nextKey!!, loadSize = 3, placeholdersEnabled = false)) as LoadResult.Page
+        val last = source.load(LoadParams.Append(key = second.nextKey!!, loadSize = 3, placeholdersEnabled = false)) as LoadResult.Page
+
+        assertEquals(listOf(0, 1, 2), first.data)
+        assertEquals(listOf(3, 4, 5), second.data)
+        assertEquals(listOf(6, 7), last.data)
+        assertNull(last.nextKey)
+        assertEquals(listOf(null, 2, 5), requestedKeys)
+    }
+
+    @Test
+    fun refreshRestartsFromTheTop() = runBlocking {
+        source.load(LoadParams.Refresh(key = 5, loadSize = 3, placeholdersEnabled = false))
+
+        assertEquals(listOf<Int?>(null), requestedKeys)
+    }
+
+    @Test
+    fun failuresBecomeErrorResults() = runBlocking {
+        val failing = KeysetPagingSource<Int, Int>(fetch = { _, _ -> error("offline") }, keyOf = { it })
+
+        assertTrue(failing.load(LoadParams.Refresh(key = null, loadSize = 3, placeholdersEnabled = false)) is LoadResult.Error)
+    }
+}
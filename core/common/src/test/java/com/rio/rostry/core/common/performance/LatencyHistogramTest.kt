@@ -0,0 +1,61 @@
+package com.rio.rostry.core.common.performance
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+class LatencyHistogramTest {
+
+    @Test
+    fun bucketsAreContiguousAndWithinThreePercent() {
+        var previousUpper = -1L
+        for (index in 0 until LatencyHistogram.BUCKET_COUNT) {
+            val lower = LatencyHistogram.bucketLowerBound(index)
+            val upper = LatencyHistogram.bucketUpperBound(index)
+            assertEquals(previousUpper + 1, lower)
+            assertEquals(index, LatencyHistogram.bucketIndex(lower))
+            assertEquals(index, LatencyHistogram.bucketIndex(upper))
+            assertTrue((upper - lower).toDouble() <= maxOf(1.0, lower / 32.0))
+            previousUpper = upper
+        }
+    }
+
+    @Test
+    fun percentilesExposeTheTail() {
+        val histogram = LatencyHistogram("sync.fowls")
+        repeat(980) { histogram.recordMillis(200) }
+        repeat(20) { histogram.recordMillis(30_000) }
+
+        val snapshot = histogram.snapshot()
+        assertEquals(1_000L, snapshot.totalCount)
+        assertEquals(200_000.0, snapshot.valueAtPercentile(50.0).toDouble(), 200_000 * 0.035)
+        assertEquals(200_000.0, snapshot.valueAtPercentile(95.0).toDouble(), 200_000 * 0.035)
+        assertEquals(30_000_000L, snapshot.valueAtPercentile(99.0))
+        assertTrue(snapshot.meanMicros < 1_000_000L) // the mean alone hides the 30 s stalls
+    }
+
+    @Test
+    fun snapshotsMerge() {
+        val a = LatencyHistogram("db.select.fowls").apply { repeat(10) { record(50) } }.snapshot()
+        val b = LatencyHistogram("db.select.fowls").apply { repeat(10) { record(10_000) } }.snapshot()
+
+        val merged = a.merge(b)
+        assertEquals(20L, merged.totalCount)
+        assertEquals(50L, merged.minMicros)
+        assertEquals(10_000L, merged.maxMicros)
+        assertEquals(50L, merged.valueAtPercentile(50.0))
+        assertEquals(10_000L, merged.valueAtPercentile(99.0))
+    }
+
+    @Test
+    fun registryExportsJson() {
+        val registry = LatencyRegistry()
+        registry.recordMillis("media.upload", 1_500)
+        registry.recordMillis("sync.all", 20)
+
+        val json = registry.exportJson(timestamp = 42L)
+        assertTrue(json.startsWith("{\"generatedAt\":42,\"unit\":\"us\""))
+        assertTrue(json.contains("{\"name\":\"media.upload\",\"count\":1,\"min\":1500000,\"max\":1500000"))
+        assertEquals(listOf("sync.all"), registry.summaries("sync.").map { it.operation })
+    }
+}
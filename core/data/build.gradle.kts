@@ -48,6 +48,9 @@ dependencies {
     implementation(libs.firebase.firestore)
     implementation(libs.firebase.functions)
     
+    // JSON outbox payloads
+    implementation(libs.gson)
+    
     // Coroutines
     implementation("org.jetbrains.kotlinx:kotlinx-coroutines-android:1.7.3")
     
@@ -4,7 +4,9 @@ import com.google.firebase.firestore.FirebaseFirestore
 import com.rio.rostry.core.data.repository.FowlRepositoryImpl
 import com.rio.rostry.core.data.repository.UserRepositoryImpl
 import com.rio.rostry.core.database.dao.FowlDao
+import com.rio.rostry.core.database.dao.OutboxDaoV2
 import com.rio.rostry.core.database.dao.UserDao
+import com.rio.rostry.core.database.entities.HybridClock
 import dagger.Module
 import dagger.Provides
 import dagger.hilt.InstallIn
@@ -31,8 +33,9 @@ object RepositoryModule {
     @Singleton
     fun provideFowlRepository(
         fowlDao: FowlDao,
-        firestore: FirebaseFirestore
+        outboxDao: OutboxDaoV2,
+        clock: HybridClock
     ): FowlRepositoryImpl {
-        return FowlRepositoryImpl(fowlDao, firestore)
+        return FowlRepositoryImpl(fowlDao, outboxDao, clock)
     }
 }
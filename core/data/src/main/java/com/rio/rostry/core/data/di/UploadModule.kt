@@ -0,0 +1,26 @@
+package com.rio.rostry.core.data.di
+
+import com.google.firebase.firestore.FirebaseFirestore
+import com.rio.rostry.core.data.util.BatchUploadPipeline
+import com.rio.rostry.core.data.util.FirestoreWriteBatchCommitter
+import dagger.Module
+import dagger.Provides
+import dagger.hilt.InstallIn
+import dagger.hilt.components.SingletonComponent
+import javax.inject.Singleton
+
+/**
+ * Hilt module for the shared Firestore upload pipeline
+ */
+@Module
+@InstallIn(SingletonComponent::class)
+object UploadModule {
+
+    @Provides
+    @Singleton
+    fun provideBatchUploadPipeline(
+        firestore: FirebaseFirestore
+    ): BatchUploadPipeline {
+        return BatchUploadPipeline(FirestoreWriteBatchCommitter(firestore))
+    }
+}
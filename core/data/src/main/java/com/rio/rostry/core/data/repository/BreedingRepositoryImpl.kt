@@ -2,10 +2,13 @@ package com.rio.rostry.core.data.repository
 
 import com.google.firebase.firestore.FirebaseFirestore
 import com.rio.rostry.core.data.service.UserValidationService
+import com.rio.rostry.core.data.util.BatchUploadPipeline
+import com.rio.rostry.core.data.util.SyncOperation
 import com.rio.rostry.core.database.dao.BreedingDao
 import com.rio.rostry.core.database.dao.FowlDao
 import com.rio.rostry.core.database.entities.BreedingRecordEntity
 import com.rio.rostry.core.database.entities.FowlEntity
+import com.rio.rostry.core.database.entities.HybridClock
 import com.rio.rostry.core.network.NetworkStateManager
 import kotlinx.coroutines.tasks.await
 import java.util.*
@@ -21,7 +24,9 @@ class BreedingRepositoryImpl @Inject constructor(
     private val breedingDao: BreedingDao,
     private val userValidationService: UserValidationService,
     private val firestore: FirebaseFirestore,
-    private val networkStateManager: NetworkStateManager
+    private val networkStateManager: NetworkStateManager,
+    private val uploadPipeline: BatchUploadPipeline,
+    private val clock: HybridClock
 ) {
 
     /**
@@ -85,7 +90,8 @@ class BreedingRepositoryImpl @Inject constructor(
                 healthStatus = "GOOD",
                 availabilityStatus = "AVAILABLE",
                 region = offspringData["region"] as? String ?: "",
-                district = offspringData["district"] as? String ?: ""
+                district = offspringData["district"] as? String ?: "",
+                hlc = clock.now()
                 // other fields will use defaults
             )
 
@@ -145,22 +151,46 @@ class BreedingRepositoryImpl @Inject constructor(
     }
 
     private suspend fun syncBreedingRecord(record: BreedingRecordEntity) {
-        try {
-            val recordData = mapOf(
-                "id" to record.id,
-                "maleId" to record.maleId,
-                "femaleId" to record.femaleId,
-                "breederId" to record.breederId,
-                "breedingDate" to record.breedingDate,
-                "expectedHatchDate" to record.expectedHatchDate,
-                "status" to record.status,
-                "createdAt" to Date(),
-                "updatedAt" to Date()
-            )
-            firestore.collection("breeding_records").document(record.id).set(recordData).await()
-            breedingDao.markAsSynced(record.id)
+        uploadBreedingRecords(listOf(record))
+    }
+
+    /**
+     * Uploads every unsynced breeding record in batched writes.
+     * Records that fail stay unsynced and are picked up on the next call.
+     */
+    suspend fun syncPendingRecords(): Result<Int> {
+        return try {
+            if (!networkStateManager.isConnected()) {
+                return Result.failure(Exception("No network connection"))
+            }
+            Result.success(uploadBreedingRecords(breedingDao.getUnsyncedRecords()))
         } catch (e: Exception) {
-            // Sync failed, will be retried later
+            Result.failure(e)
+        }
+    }
+
+    private suspend fun uploadBreedingRecords(records: List<BreedingRecordEntity>): Int {
+        val now = Date()
+        val operations = records.map { record ->
+            SyncOperation.Create(
+                collection = "breeding_records",
+                documentId = record.id,
+                data = mapOf(
+                    "id" to record.id,
+                    "maleId" to record.maleId,
+                    "femaleId" to record.femaleId,
+                    "breederId" to record.breederId,
+                    "breedingDate" to record.breedingDate,
+                    "expectedHatchDate" to record.expectedHatchDate,
+                    "status" to record.status,
+                    "createdAt" to now,
+                    "updatedAt" to now
+                )
+            )
+        }
+        val result = uploadPipeline.upload(operations) { batch ->
+            breedingDao.markAllAsSynced(batch.map { it.documentId })
         }
+        return result.committed.size
     }
 }
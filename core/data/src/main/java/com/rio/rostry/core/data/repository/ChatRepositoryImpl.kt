@@ -2,9 +2,14 @@ package com.rio.rostry.core.data.repository
 
 import com.google.firebase.firestore.FirebaseFirestore
 import com.rio.rostry.core.data.service.UserValidationService
+import com.rio.rostry.core.data.util.BatchUploadPipeline
+import com.rio.rostry.core.data.util.SyncOperation
 import com.rio.rostry.core.database.dao.MessageDao
 import com.rio.rostry.core.database.dao.ConversationDao
+import com.rio.rostry.core.database.entities.HybridClock
+import com.rio.rostry.core.database.entities.HybridTimestamp
 import com.rio.rostry.core.database.entities.MessageEntity
+import com.rio.rostry.core.database.entities.SyncMetadata
 import com.rio.rostry.core.database.entities.ConversationEntity
 import com.rio.rostry.core.network.NetworkStateManager
 import kotlinx.coroutines.flow.Flow
@@ -22,7 +27,9 @@ class ChatRepositoryImpl @Inject constructor(
     private val conversationDao: ConversationDao,
     private val userValidationService: UserValidationService,
     private val firestore: FirebaseFirestore,
-    private val networkStateManager: NetworkStateManager
+    private val networkStateManager: NetworkStateManager,
+    private val uploadPipeline: BatchUploadPipeline,
+    private val clock: HybridClock
 ) {
     
     /**
@@ -59,6 +66,7 @@ class ChatRepositoryImpl @Inject constructor(
             val conversation = getOrCreateConversation(senderId, recipientId)
             
             // Create message
+            val now = Date()
             val message = MessageEntity(
                 id = UUID.randomUUID().toString(),
                 conversationId = conversation.id,
@@ -68,9 +76,10 @@ class ChatRepositoryImpl @Inject constructor(
                 messageType = messageType,
                 isRead = false,
                 isDelivered = false,
-                createdAt = Date(),
-                updatedAt = Date(),
-                isSynced = false
+                createdAt = now,
+                updatedAt = now,
+                isSynced = false,
+                syncMetadata = SyncMetadata(createdAt = now, updatedAt = now, hlc = clock.now())
             )
             
             // Save locally first
@@ -162,24 +171,29 @@ class ChatRepositoryImpl @Inject constructor(
      * Sync message to server
      */
     private suspend fun syncMessageToServer(message: MessageEntity) {
-        val messageData = mapOf(
-            "conversationId" to message.conversationId,
-            "senderId" to message.senderId,
-            "recipientId" to message.recipientId,
-            "content" to message.content,
-            "messageType" to message.messageType,
-            "isRead" to message.isRead,
-            "isDelivered" to message.isDelivered,
-            "createdAt" to message.createdAt,
-            "updatedAt" to message.updatedAt
-        )
-        
-        firestore.collection("messages")
-            .document(message.id)
-            .set(messageData)
-            .await()
+        val result = uploadPipeline.upload(listOf(message.toSyncOperation()))
+        if (!result.isSuccess) {
+            throw (result.retryable + result.poisoned).first().error
+        }
     }
     
+    private fun MessageEntity.toSyncOperation() = SyncOperation.Create(
+        collection = "messages",
+        documentId = id,
+        data = mapOf(
+            "conversationId" to conversationId,
+            "senderId" to senderId,
+            "recipientId" to recipientId,
+            "content" to content,
+            "messageType" to messageType,
+            "isRead" to isRead,
+            "isDelivered" to isDelivered,
+            "createdAt" to createdAt,
+            "updatedAt" to updatedAt,
+            HybridTimestamp.FIELD to HybridTimestamp.toField(syncMetadata.hlc)
+        )
+    )
+    
     /**
      * Sync conversation to server
      */
@@ -209,15 +223,10 @@ class ChatRepositoryImpl @Inject constructor(
                 return Result.failure(Exception("No network connection"))
             }
             
-            // Sync unsynced messages
+            // Sync unsynced messages in batched writes; failures stay unsynced for the next pass
             val unsyncedMessages = messageDao.getUnsyncedMessages()
-            for (message in unsyncedMessages) {
-                try {
-                    syncMessageToServer(message)
-                    messageDao.markAsSynced(message.id)
-                } catch (e: Exception) {
-                    continue
-                }
+            uploadPipeline.upload(unsyncedMessages.map { it.toSyncOperation() }) { batch ->
+                messageDao.markAllAsSynced(batch.map { it.documentId })
             }
             
             Result.success(Unit)
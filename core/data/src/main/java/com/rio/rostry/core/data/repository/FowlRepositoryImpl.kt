@@ -6,6 +6,7 @@ import com.rio.rostry.core.data.model.FowlSummary
 import com.rio.rostry.core.database.dao.FowlDao
 import com.rio.rostry.core.database.dao.OutboxDaoV2
 import com.rio.rostry.core.database.entities.FowlEntity
+import com.rio.rostry.core.database.entities.HybridClock
 import com.rio.rostry.core.database.entities.OutboxEntity
 import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.flow.Flow
@@ -21,7 +22,8 @@ import javax.inject.Singleton
 @Singleton
 class FowlRepositoryImpl @Inject constructor(
     private val fowlDao: FowlDao,
-    private val outboxDao: OutboxDaoV2
+    private val outboxDao: OutboxDaoV2,
+    private val clock: HybridClock
 ) : FowlRepository {
     
     /**
@@ -44,7 +46,7 @@ class FowlRepositoryImpl @Inject constructor(
      */
     override suspend fun saveFowl(fowl: Fowl): Result<Unit> = withContext(Dispatchers.IO) {
         return@withContext try {
-            val entity = fowl.toEntity()
+            val entity = fowl.toEntity().copy(hlc = clock.now())
             fowlDao.insert(entity)
             
             // Add to outbox for sync
@@ -71,7 +73,7 @@ class FowlRepositoryImpl @Inject constructor(
      */
     override suspend fun updateFowl(fowl: Fowl): Result<Unit> = withContext(Dispatchers.IO) {
         return@withContext try {
-            val entity = fowl.toEntity()
+            val entity = fowl.toEntity().copy(hlc = clock.now())
             fowlDao.update(entity)
             
             // Add to outbox for sync
@@ -2,8 +2,12 @@ package com.rio.rostry.core.data.repository
 
 import com.google.firebase.firestore.FirebaseFirestore
 import com.google.firebase.firestore.ListenerRegistration
+import com.rio.rostry.core.data.util.BatchUploadPipeline
+import com.rio.rostry.core.data.util.SyncOperation
 import com.rio.rostry.core.database.dao.MarketplaceDao
+import com.rio.rostry.core.database.entities.HybridClock
 import com.rio.rostry.core.database.entities.MarketplaceListingEntity
+import com.rio.rostry.core.database.entities.SyncStatus
 import com.rio.rostry.core.network.NetworkStateManager
 import kotlinx.coroutines.channels.awaitClose
 import kotlinx.coroutines.flow.*
@@ -21,7 +25,9 @@ import javax.inject.Singleton
 class MarketplaceRepositoryImpl @Inject constructor(
     private val marketplaceDao: MarketplaceDao,
     private val firestore: FirebaseFirestore,
-    private val networkStateManager: NetworkStateManager
+    private val networkStateManager: NetworkStateManager,
+    private val uploadPipeline: BatchUploadPipeline,
+    private val clock: HybridClock
 ) : BaseOfflineRepository() {
 
     // ✅ Track active listeners for proper cleanup
@@ -205,27 +211,29 @@ class MarketplaceRepositoryImpl @Inject constructor(
     suspend fun createListing(listing: MarketplaceListingEntity): Result<String> {
         return try {
             // Save locally first
+            val now = Date()
             val localListing = listing.copy(
                 isSynced = false,
-                createdAt = Date(),
-                updatedAt = Date()
+                createdAt = now,
+                updatedAt = now,
+                syncMetadata = listing.syncMetadata.copy(
+                    syncStatus = SyncStatus.PENDING_UPLOAD,
+                    updatedAt = now,
+                    hlc = clock.now()
+                )
             )
             
             marketplaceDao.insert(localListing)
             
             // Try to sync to Firestore if online
             if (networkStateManager.isConnected.value) {
-                try {
-                    firestore.collection("marketplace")
-                        .document(listing.id)
-                        .set(listing)
-                        .await()
-                    
+                val result = uploadPipeline.upload(listOf(localListing.toSyncOperation())) { batch ->
                     // Mark as synced
-                    marketplaceDao.markAsSynced(listing.id)
-                } catch (e: Exception) {
+                    marketplaceDao.markListingsAsSynced(batch.map { it.documentId })
+                }
+                if (!result.isSuccess) {
                     // Will be synced later when online
-                    android.util.Log.w("MarketplaceRepo", "Failed to sync listing immediately", e)
+                    android.util.Log.w("MarketplaceRepo", "Failed to sync listing immediately", (result.retryable + result.poisoned).first().error)
                 }
             }
             
@@ -236,6 +244,12 @@ class MarketplaceRepositoryImpl @Inject constructor(
         }
     }
     
+    private fun MarketplaceListingEntity.toSyncOperation() = SyncOperation.CreateObject(
+        collection = "marketplace",
+        documentId = id,
+        value = this
+    )
+    
     /**
      * ✅ Cleanup all listeners and resources
      */
@@ -263,17 +277,11 @@ class MarketplaceRepositoryImpl @Inject constructor(
         try {
             val unsyncedListings = marketplaceDao.getUnsyncedListings()
             
-            unsyncedListings.forEach { listing ->
-                try {
-                    firestore.collection("marketplace")
-                        .document(listing.id)
-                        .set(listing)
-                        .await()
-                    
-                    marketplaceDao.markAsSynced(listing.id)
-                } catch (e: Exception) {
-                    android.util.Log.e("MarketplaceRepo", "Failed to sync listing ${listing.id}", e)
-                }
+            val result = uploadPipeline.upload(unsyncedListings.map { it.toSyncOperation() }) { batch ->
+                marketplaceDao.markListingsAsSynced(batch.map { it.documentId })
+            }
+            result.poisoned.forEach { failed ->
+                android.util.Log.e("MarketplaceRepo", "Failed to sync listing ${failed.operation.documentId}", failed.error)
             }
         } catch (e: Exception) {
             android.util.Log.e("MarketplaceRepo", "Sync failed", e)
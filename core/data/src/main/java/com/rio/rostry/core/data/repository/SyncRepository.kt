@@ -1,21 +1,32 @@
 package com.rio.rostry.core.data.repository
 
+import com.rio.rostry.core.data.util.OutboxProcessor
+import com.rio.rostry.core.data.util.OutboxStats
 import com.rio.rostry.core.database.entities.OutboxDaoV2
 import com.rio.rostry.core.database.entities.OutboxEntity
 import com.rio.rostry.core.common.model.Result
 import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.flow.StateFlow
 import kotlinx.coroutines.withContext
-import java.util.*
 import javax.inject.Inject
 import javax.inject.Singleton
 
 /**
  * Repository for handling synchronization operations with outbox pattern
+ * Uploading is delegated to [OutboxProcessor], which leases rows and dispatches them
+ * to the uploader registered for their entity type.
  */
 @Singleton
 class SyncRepository @Inject constructor(
-    private val outboxDao: OutboxDaoV2
+    private val outboxDao: OutboxDaoV2,
+    private val outboxProcessor: OutboxProcessor
 ) {
+    /**
+     * Throughput and latency counters for the outbox processor
+     */
+    val outboxStats: StateFlow<OutboxStats>
+        get() = outboxProcessor.stats
+    
     /**
      * Sync pending operations from the outbox
      *
@@ -24,67 +35,22 @@ class SyncRepository @Inject constructor(
      */
     suspend fun syncPendingOperations(limit: Int = 50): Result<SyncResult> = withContext(Dispatchers.IO) {
         return@withContext try {
-            // Get pending operations
-            val pendingOperations = outboxDao.getPendingOperations(limit)
-            val failedOperations = outboxDao.getFailedRetriableOperations(limit)
-            
-            val allOperations = (pendingOperations + failedOperations).distinctBy { it.id }
-                .sortedByDescending { it.priority }
-                .take(limit)
-            
-            var syncedCount = 0
-            var failedCount = 0
-            
-            // Process each operation
-            for (operation in allOperations) {
-                val result = processOperation(operation)
-                when (result) {
-                    is SyncOperationResult.Success -> {
-                        syncedCount++
-                    }
-                    is SyncOperationResult.Failure -> {
-                        failedCount++
-                        // Update operation with failure details
-                        outboxDao.updateSyncStatus(
-                            id = operation.id,
-                            status = "FAILED",
-                            syncedAt = null,
-                            attemptAt = Date(),
-                            errorMessage = result.error.message
-                        )
-                    }
-                }
-            }
-            
-            Result.Success(SyncResult(syncedCount, failedCount))
+            val pass = outboxProcessor.processBatch(limit)
+            Result.Success(SyncResult(pass.succeeded, pass.failed))
         } catch (e: Exception) {
             Result.Error(e)
         }
     }
     
     /**
-     * Process a single outbox operation
+     * Sync until the outbox is empty or stops making progress
      */
-    private suspend fun processOperation(operation: OutboxEntity): SyncOperationResult {
-        return try {
-            // In a real implementation, this would:
-            // 1. Deserialize the entity data
-            // 2. Perform the appropriate API call based on entity type and operation type
-            // 3. Handle the response
-            // 4. Update the outbox entry with the result
-            
-            // For now, we'll simulate a successful sync
-            outboxDao.updateSyncStatus(
-                id = operation.id,
-                status = "SUCCESS",
-                syncedAt = Date(),
-                attemptAt = Date(),
-                errorMessage = null
-            )
-            
-            SyncOperationResult.Success
+    suspend fun drainOutbox(): Result<SyncResult> = withContext(Dispatchers.IO) {
+        return@withContext try {
+            val total = outboxProcessor.drain()
+            Result.Success(SyncResult(total.succeeded, total.failed))
         } catch (e: Exception) {
-            SyncOperationResult.Failure(e)
+            Result.Error(e)
         }
     }
     
@@ -120,11 +86,3 @@ data class SyncResult(
     val syncedCount: Int,
     val failedCount: Int
 )
-
-/**
- * Result of processing a single sync operation
- */
-sealed class SyncOperationResult {
-    object Success : SyncOperationResult()
-    data class Failure(val error: Exception) : SyncOperationResult()
-}
\ No newline at end of file
@@ -0,0 +1,242 @@
+package com.rio.rostry.core.data.util
+
+import com.google.firebase.firestore.FirebaseFirestore
+import com.google.firebase.firestore.FirebaseFirestoreException
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.async
+import kotlinx.coroutines.awaitAll
+import kotlinx.coroutines.coroutineScope
+import kotlinx.coroutines.sync.Mutex
+import kotlinx.coroutines.sync.Semaphore
+import kotlinx.coroutines.sync.withLock
+import kotlinx.coroutines.sync.withPermit
+import kotlinx.coroutines.tasks.await
+import java.io.IOException
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * Shared upload path for pending Firestore writes
+ *
+ * Operations are packed into WriteBatches of up to [BatchUploadConfig.maxBatchSize] writes
+ * and several batches are committed concurrently. All writes to the same document stay in
+ * one batch, in order. A batch rejected for a non-transient reason is bisected until the
+ * offending documents are isolated, so one bad document no longer blocks its neighbours.
+ * Transient failures (offline, deadline, quota) are not bisected; the whole batch is
+ * returned as retryable. Once a batch of a multi-batch lane fails, the rest of the lane is
+ * returned as retryable uncommitted, so a later write never lands before an earlier one's
+ * retry. Provided as a singleton by UploadModule.
+ */
+class BatchUploadPipeline(
+    private val committer: WriteBatchCommitter,
+    private val config: BatchUploadConfig = BatchUploadConfig()
+) {
+
+    /**
+     * Upload [operations] and report what happened to each one
+     *
+     * @param onCommitted called once per committed batch with its operations, typically to
+     * mark the local rows as synced in a single statement or transaction
+     */
+    suspend fun upload(
+        operations: List<SyncOperation>,
+        onCommitted: suspend (List<SyncOperation>) -> Unit = {}
+    ): BatchUploadResult = coroutineScope {
+        if (operations.isEmpty()) return@coroutineScope BatchUploadResult.EMPTY
+
+        val permits = Semaphore(config.maxInFlight.coerceAtLeast(1))
+        val commitCalls = AtomicInteger(0)
+        val collector = OutcomeCollector()
+
+        // Returns the first error if any part of the batch did not commit
+        suspend fun commitIsolating(batch: List<SyncOperation>): Exception? {
+            commitCalls.incrementAndGet()
+            try {
+                committer.commit(batch)
+            } catch (e: CancellationException) {
+                throw e
+            } catch (e: Exception) {
+                return when {
+                    committer.isTransient(e) -> e.also { collector.retryable(batch, it) }
+                    batch.size == 1 -> e.also { collector.poisoned(batch.single(), it) }
+                    else -> {
+                        val mid = batch.size / 2
+                        val first = commitIsolating(batch.subList(0, mid))
+                        val second = commitIsolating(batch.subList(mid, batch.size))
+                        first ?: second
+                    }
+                }
+            }
+            collector.committed(batch)
+            try {
+                onCommitted(batch)
+            } catch (e: CancellationException) {
+                throw e
+            } catch (e: Exception) {
+                collector.unmarked(batch)
+            }
+            return null
+        }
+
+        plan(operations).map { lane ->
+            async {
+                permits.withPermit {
+                    var failure: Exception? = null
+                    lane.forEach { batch ->
+                        val earlier = failure
+                        if (earlier != null) collector.retryable(batch, earlier)
+                        else failure = commitIsolating(batch)
+                    }
+                }
+            }
+        }.awaitAll()
+
+        collector.result(commitCalls.get())
+    }
+
+    /**
+     * Pack operations into lanes of batches
+     * Lanes run concurrently; batches inside a lane run in order. Only a document with
+     * more writes than fit in one batch gets a multi-batch lane.
+     */
+    private fun plan(operations: List<SyncOperation>): List<List<List<SyncOperation>>> {
+        val maxBatchSize = config.maxBatchSize.coerceIn(1, FIRESTORE_MAX_BATCH_WRITES)
+        val byDocument = operations.groupByTo(LinkedHashMap()) { it.collection + "/" + it.documentId }
+
+        val lanes = mutableListOf<List<List<SyncOperation>>>()
+        var current = mutableListOf<SyncOperation>()
+        byDocument.values.forEach { writes ->
+            if (writes.size > maxBatchSize) {
+                lanes.add(writes.chunked(maxBatchSize))
+                return@forEach
+            }
+            if (current.size + writes.size > maxBatchSize) {
+                lanes.add(listOf(current))
+                current = mutableListOf()
+            }
+            current.addAll(writes)
+        }
+        if (current.isNotEmpty()) lanes.add(listOf(current))
+        return lanes
+    }
+
+    private class OutcomeCollector {
+        private val lock = Mutex()
+        private val committed = mutableListOf<SyncOperation>()
+        private val retryable = mutableListOf<FailedOperation>()
+        private val poisoned = mutableListOf<FailedOperation>()
+        private val unmarked = mutableListOf<SyncOperation>()
+
+        suspend fun committed(batch: List<SyncOperation>) = lock.withLock { committed.addAll(batch) }
+
+        suspend fun retryable(batch: List<SyncOperation>, error: Exception) = lock.withLock {
+            batch.mapTo(retryable) { FailedOperation(it, error) }
+        }
+
+        suspend fun poisoned(operation: SyncOperation, error: Exception) = lock.withLock {
+            poisoned.add(FailedOperation(operation, error))
+        }
+
+        suspend fun unmarked(batch: List<SyncOperation>) = lock.withLock { unmarked.addAll(batch) }
+
+        suspend fun result(commitCalls: Int) = lock.withLock {
+            BatchUploadResult(committed.toList(), retryable.toList(), poisoned.toList(), unmarked.toList(), commitCalls)
+        }
+    }
+
+    companion object {
+        const val FIRESTORE_MAX_BATCH_WRITES = 500
+    }
+}
+
+/**
+ * Pipeline tuning
+ */
+data class BatchUploadConfig(
+    val maxBatchSize: Int = BatchUploadPipeline.FIRESTORE_MAX_BATCH_WRITES,
+    val maxInFlight: Int = 3
+)
+
+/**
+ * Commits one group of operations atomically
+ */
+interface WriteBatchCommitter {
+    suspend fun commit(operations: List<SyncOperation>)
+
+    /**
+     * True if retrying the same batch later could succeed
+     */
+    fun isTransient(error: Exception): Boolean
+}
+
+/**
+ * [WriteBatchCommitter] backed by a Firestore WriteBatch
+ */
+class FirestoreWriteBatchCommitter(
+    private val firestore: FirebaseFirestore
+) : WriteBatchCommitter {
+
+    override suspend fun commit(operations: List<SyncOperation>) {
+        val batch = firestore.batch()
+        operations.forEach { operation ->
+            val document = firestore.collection(operation.collection).document(operation.documentId)
+            when (operation) {
+                is SyncOperation.Create -> batch.set(document, operation.data)
+                is SyncOperation.CreateObject -> batch.set(document, operation.value)
+                is SyncOperation.Update -> batch.update(document, operation.data)
+                is SyncOperation.Delete -> batch.delete(document)
+            }
+        }
+        batch.commit().await()
+    }
+
+    override fun isTransient(error: Exception): Boolean {
+        return when (error) {
+            is FirebaseFirestoreException -> error.code in TRANSIENT_CODES
+            is IOException -> true
+            else -> false
+        }
+    }
+
+    private companion object {
+        // UNAUTHENTICATED is not here: resending with the same missing or expired
+        // credentials fails the same way, so it must not loop as retryable
+        val TRANSIENT_CODES = setOf(
+            FirebaseFirestoreException.Code.UNAVAILABLE,
+            FirebaseFirestoreException.Code.DEADLINE_EXCEEDED,
+            FirebaseFirestoreException.Code.RESOURCE_EXHAUSTED,
+            FirebaseFirestoreException.Code.ABORTED,
+            FirebaseFirestoreException.Code.INTERNAL
+        )
+    }
+}
+
+/**
+ * An operation the pipeline could not commit
+ */
+data class FailedOperation(
+    val operation: SyncOperation,
+    val error: Exception
+)
+
+/**
+ * Outcome of one upload
+ *
+ * @param retryable failed for transient reasons; safe to queue again as-is
+ * @param poisoned rejected on their own after bisection; retrying will not help
+ * @param unmarked committed remotely but the local onCommitted callback failed
+ * @param commitCalls number of Firestore commits issued, including bisection retries
+ */
+data class BatchUploadResult(
+    val committed: List<SyncOperation>,
+    val retryable: List<FailedOperation>,
+    val poisoned: List<FailedOperation>,
+    val unmarked: List<SyncOperation>,
+    val commitCalls: Int
+) {
+    val isSuccess: Boolean
+        get() = retryable.isEmpty() && poisoned.isEmpty()
+
+    companion object {
+        val EMPTY = BatchUploadResult(emptyList(), emptyList(), emptyList(), emptyList(), 0)
+    }
+}
@@ -1,11 +1,9 @@
 package com.rio.rostry.core.data.util
 
 import android.util.Log
-import com.google.firebase.firestore.FirebaseFirestore
 import kotlinx.coroutines.CoroutineScope
 import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.launch
-import kotlinx.coroutines.tasks.await
 import kotlinx.coroutines.withContext
 import java.util.*
 import javax.inject.Inject
@@ -16,7 +14,7 @@ import javax.inject.Singleton
  */
 @Singleton
 class DataSyncManager @Inject constructor(
-    private val firestore: FirebaseFirestore
+    private val uploadPipeline: BatchUploadPipeline
 ) {
     private val syncQueue = mutableListOf<SyncOperation>()
     private val coroutineScope = CoroutineScope(Dispatchers.IO)
@@ -37,45 +35,7 @@ class DataSyncManager @Inject constructor(
      */
     private fun processSyncQueue() {
         coroutineScope.launch {
-            val operationsToProcess = synchronized(syncQueue) {
-                val operations = syncQueue.toList()
-                syncQueue.clear()
-                operations
-            }
-
-            operationsToProcess.forEach { operation ->
-                try {
-                    when (operation) {
-                        is SyncOperation.Create -> {
-                            firestore.collection(operation.collection)
-                                .document(operation.documentId)
-                                .set(operation.data)
-                                .await()
-                            Log.d(tag, "Successfully created document ${operation.documentId} in ${operation.collection}")
-                        }
-                        is SyncOperation.Update -> {
-                            firestore.collection(operation.collection)
-                                .document(operation.documentId)
-                                .update(operation.data)
-                                .await()
-                            Log.d(tag, "Successfully updated document ${operation.documentId} in ${operation.collection}")
-                        }
-                        is SyncOperation.Delete -> {
-                            firestore.collection(operation.collection)
-                                .document(operation.documentId)
-                                .delete()
-                                .await()
-                            Log.d(tag, "Successfully deleted document ${operation.documentId} in ${operation.collection}")
-                        }
-                    }
-                } catch (e: Exception) {
-                    Log.e(tag, "Failed to sync operation for ${operation.documentId} in ${operation.collection}", e)
-                    // Re-queue failed operations
-                    synchronized(syncQueue) {
-                        syncQueue.add(operation)
-                    }
-                }
-            }
+            uploadQueued()
         }
     }
 
@@ -84,43 +44,44 @@ class DataSyncManager @Inject constructor(
      */
     suspend fun forceSync(): Result<Unit> = withContext(Dispatchers.IO) {
         return@withContext try {
-            val operationsToProcess = synchronized(syncQueue) {
-                val operations = syncQueue.toList()
-                syncQueue.clear()
-                operations
+            val result = uploadQueued()
+            if (result.isSuccess) {
+                Result.success(Unit)
+            } else {
+                val firstError = (result.retryable + result.poisoned).first().error
+                Result.failure(firstError)
             }
-
-            operationsToProcess.forEach { operation ->
-                when (operation) {
-                    is SyncOperation.Create -> {
-                        firestore.collection(operation.collection)
-                            .document(operation.documentId)
-                            .set(operation.data)
-                            .await()
-                        Log.d(tag, "Successfully created document ${operation.documentId} in ${operation.collection}")
-                    }
-                    is SyncOperation.Update -> {
-                        firestore.collection(operation.collection)
-                            .document(operation.documentId)
-                            .update(operation.data)
-                            .await()
-                        Log.d(tag, "Successfully updated document ${operation.documentId} in ${operation.collection}")
-                    }
-                    is SyncOperation.Delete -> {
-                        firestore.collection(operation.collection)
-                            .document(operation.documentId)
-                            .delete()
-                            .await()
-                        Log.d(tag, "Successfully deleted document ${operation.documentId} in ${operation.collection}")
-                    }
-                }
-            }
-            Result.success(Unit)
         } catch (e: Exception) {
             Log.e(tag, "Failed to force sync", e)
             Result.failure(e)
         }
     }
+
+    /**
+     * Drain the queue through the batched upload pipeline
+     * Transient failures go back on the queue; poisoned operations are logged and dropped.
+     */
+    private suspend fun uploadQueued(): BatchUploadResult {
+        val operationsToProcess = synchronized(syncQueue) {
+            val operations = syncQueue.toList()
+            syncQueue.clear()
+            operations
+        }
+
+        val result = uploadPipeline.upload(operationsToProcess)
+
+        result.poisoned.forEach { failed ->
+            Log.e(tag, "Dropping rejected operation for ${failed.operation.documentId} in ${failed.operation.collection}", failed.error)
+        }
+        if (result.retryable.isNotEmpty()) {
+            Log.w(tag, "Re-queueing ${result.retryable.size} operations after transient failure", result.retryable.first().error)
+            // Re-queue failed operations
+            synchronized(syncQueue) {
+                syncQueue.addAll(result.retryable.map { it.operation })
+            }
+        }
+        return result
+    }
 }
 
 /**
@@ -136,6 +97,15 @@ sealed class SyncOperation {
         val data: Map<String, Any?>
     ) : SyncOperation()
 
+    /**
+     * Full-document write of a mapped object, e.g. a Room entity Firestore can serialize
+     */
+    data class CreateObject(
+        override val collection: String,
+        override val documentId: String,
+        val value: Any
+    ) : SyncOperation()
+
     data class Update(
         override val collection: String,
         override val documentId: String,
@@ -0,0 +1,354 @@
+package com.rio.rostry.core.data.util
+
+import com.google.gson.GsonBuilder
+import com.google.gson.ToNumberPolicy
+import com.google.gson.reflect.TypeToken
+import com.rio.rostry.core.database.entities.HybridTimestamp
+import com.rio.rostry.core.database.entities.OutboxDaoV2
+import com.rio.rostry.core.database.entities.OutboxEntity
+import kotlinx.coroutines.flow.MutableStateFlow
+import kotlinx.coroutines.flow.StateFlow
+import kotlinx.coroutines.flow.asStateFlow
+import kotlinx.coroutines.flow.update
+import kotlinx.coroutines.sync.Mutex
+import kotlinx.coroutines.sync.withLock
+import java.util.*
+import java.util.concurrent.ConcurrentHashMap
+import javax.inject.Inject
+import javax.inject.Singleton
+
+/**
+ * Drains the outbox table into pluggable uploaders
+ *
+ * Each pass reclaims expired leases, then leases a batch of due rows with a single
+ * PENDING -> IN_PROGRESS UPDATE under a fresh owner token. Leased rows are grouped by
+ * (entityType, operationType) and handed to the matching [OutboxUploader]. Results are
+ * written back guarded by the owner token, so a pass whose lease expired cannot clobber
+ * a row another pass has since reclaimed.
+ *
+ * A failed row goes back to PENDING with an exponentially growing next attempt time and
+ * ends FAILED once it has used [OutboxProcessorConfig.maxRetries] attempts. A rejected row
+ * ends FAILED straight away.
+ */
+@Singleton
+class OutboxProcessor @Inject constructor(
+    private val outboxDao: OutboxDaoV2,
+    private val uploaders: OutboxUploaderRegistry
+) {
+
+    @Volatile
+    var config: OutboxProcessorConfig = OutboxProcessorConfig()
+
+    private val processLock = Mutex()
+
+    private val _stats = MutableStateFlow(OutboxStats())
+    val stats: StateFlow<OutboxStats> = _stats.asStateFlow()
+
+    /**
+     * Lease and upload up to [limit] operations
+     * Concurrent callers are serialized; each one processes its own lease.
+     */
+    suspend fun processBatch(limit: Int = config.batchSize): OutboxPassResult = processLock.withLock {
+        val startNanos = System.nanoTime()
+        val now = Date()
+
+        val reclaimed = outboxDao.reclaimExpiredLeases(now)
+        val leaseOwner = UUID.randomUUID().toString()
+        val leased = outboxDao.leaseBatch(
+            leaseOwner = leaseOwner,
+            leaseExpiresAt = Date(now.time + config.leaseDurationMs),
+            now = now,
+            limit = limit
+        )
+
+        var succeeded = 0
+        var failed = 0
+        val queueLatencies = ArrayList<Long>(leased.size)
+
+        leased.groupBy { OutboxKey(it.entityType.uppercase(), it.operationType.uppercase()) }
+            .forEach { (key, operations) ->
+                val uploader = uploaders.uploaderFor(key.entityType, key.operationType)
+                val outcome = if (uploader == null) {
+                    OutboxUploadOutcome(failed = operations.associate {
+                        it.id to "No uploader registered for ${key.entityType}/${key.operationType}"
+                    })
+                } else {
+                    try {
+                        uploader.upload(operations)
+                    } catch (e: Exception) {
+                        OutboxUploadOutcome(failed = operations.associate { it.id to (e.message ?: "Upload failed") })
+                    }
+                }
+
+                // Anything the uploader did not report on is treated as a failure and retried
+                val reported = outcome.succeeded.toSet() + outcome.failed.keys + outcome.rejected.keys
+                val unreported = operations.filter { it.id !in reported }
+                    .associate { it.id to "Uploader returned no result" }
+
+                val syncedAt = Date()
+                outcome.succeeded.chunked(SQLITE_MAX_BIND_ARGS).forEach { ids ->
+                    succeeded += outboxDao.markLeasedSucceeded(ids, leaseOwner, syncedAt)
+                }
+                val retryCounts = operations.associate { it.id to it.retryCount }
+                (outcome.failed + unreported).forEach { (id, error) ->
+                    val attempt = (retryCounts[id] ?: 0) + 1
+                    val nextAttemptAt = Date(syncedAt.time + config.retryDelayMs(attempt))
+                    failed += outboxDao.markLeasedFailed(id, leaseOwner, error, config.maxRetries, nextAttemptAt)
+                }
+                outcome.rejected.forEach { (id, error) ->
+                    failed += outboxDao.markLeasedFailed(id, leaseOwner, error, maxRetries = 0, nextAttemptAt = syncedAt)
+                }
+
+                val succeededIds = outcome.succeeded.toSet()
+                operations.filter { it.id in succeededIds }
+                    .mapTo(queueLatencies) { syncedAt.time - it.createdAt.time }
+            }
+
+        val elapsedMs = (System.nanoTime() - startNanos) / 1_000_000
+        _stats.update { it.record(leased.size, succeeded, failed, reclaimed, elapsedMs, queueLatencies) }
+
+        OutboxPassResult(
+            leased = leased.size,
+            succeeded = succeeded,
+            failed = failed,
+            reclaimed = reclaimed,
+            durationMs = elapsedMs
+        )
+    }
+
+    /**
+     * Keep processing batches until the outbox is empty or a pass makes no progress
+     */
+    suspend fun drain(maxPasses: Int = config.maxPassesPerDrain): OutboxPassResult {
+        var total = OutboxPassResult()
+        repeat(maxPasses) {
+            val pass = processBatch()
+            total += pass
+            if (pass.leased == 0 || pass.succeeded == 0) return total
+        }
+        return total
+    }
+
+    private data class OutboxKey(val entityType: String, val operationType: String)
+
+    companion object {
+        // Stay under SQLite's default host parameter limit of 999
+        private const val SQLITE_MAX_BIND_ARGS = 900
+    }
+}
+
+/**
+ * Processor tuning
+ *
+ * @param maxRetries attempts a row gets before it is left FAILED
+ * @param retryBaseDelayMs wait after the first failed attempt; doubles with each further one
+ */
+data class OutboxProcessorConfig(
+    val batchSize: Int = 100,
+    val leaseDurationMs: Long = 2 * 60 * 1000L,
+    val maxRetries: Int = 3,
+    val maxPassesPerDrain: Int = 20,
+    val retryBaseDelayMs: Long = 30 * 1000L,
+    val maxRetryDelayMs: Long = 30 * 60 * 1000L
+) {
+    /**
+     * Backoff before the attempt after failed attempt number [attempt] (1-based)
+     */
+    fun retryDelayMs(attempt: Int): Long {
+        val shift = (attempt - 1).coerceIn(0, 30)
+        return (retryBaseDelayMs shl shift).coerceAtMost(maxRetryDelayMs)
+    }
+}
+
+/**
+ * Uploads one group of outbox rows sharing an entity type and operation type
+ */
+interface OutboxUploader {
+    suspend fun upload(operations: List<OutboxEntity>): OutboxUploadOutcome
+}
+
+/**
+ * Per-row result of an upload
+ *
+ * @param failed operation id -> error message, for failures worth retrying
+ * @param rejected operation id -> error message, for rows that can never succeed as written
+ */
+data class OutboxUploadOutcome(
+    val succeeded: List<String> = emptyList(),
+    val failed: Map<String, String> = emptyMap(),
+    val rejected: Map<String, String> = emptyMap()
+)
+
+/**
+ * Uploaders keyed by entity type, optionally narrowed by operation type
+ * Keys are case-insensitive since callers write both "fowl" and "FOWL".
+ */
+@Singleton
+class OutboxUploaderRegistry @Inject constructor(
+    firestoreUploader: FirestoreOutboxUploader
+) {
+    private val uploaders = ConcurrentHashMap<String, OutboxUploader>()
+
+    init {
+        DEFAULT_COLLECTIONS.keys.forEach { register(it, firestoreUploader) }
+    }
+
+    fun register(entityType: String, uploader: OutboxUploader, operationType: String? = null) {
+        uploaders[key(entityType, operationType)] = uploader
+    }
+
+    fun uploaderFor(entityType: String, operationType: String): OutboxUploader? {
+        return uploaders[key(entityType, operationType)] ?: uploaders[key(entityType, null)]
+    }
+
+    private fun key(entityType: String, operationType: String?) =
+        entityType.uppercase() + "/" + (operationType?.uppercase() ?: "*")
+
+    companion object {
+        val DEFAULT_COLLECTIONS = mapOf(
+            "FOWL" to "fowls",
+            "FOWL_RECORD" to "fowl_records",
+            "TRANSFER_LOG" to "transfer_logs",
+            "TIMELINE_EVENT" to "timeline_events",
+            "MARKETPLACE" to "marketplace"
+        )
+    }
+}
+
+/**
+ * Default uploader: writes the row's JSON entity_data to the entity's Firestore collection
+ * through [BatchUploadPipeline], so a group of rows becomes a handful of WriteBatch commits.
+ */
+@Singleton
+class FirestoreOutboxUploader @Inject constructor(
+    private val uploadPipeline: BatchUploadPipeline
+) : OutboxUploader {
+
+    // Without LONG_OR_DOUBLE every JSON number comes back as a Double and is written as one
+    private val gson = GsonBuilder().setObjectToNumberStrategy(ToNumberPolicy.LONG_OR_DOUBLE).create()
+    private val mapType = object : TypeToken<Map<String, Any?>>() {}.type
+
+    override suspend fun upload(operations: List<OutboxEntity>): OutboxUploadOutcome {
+        val failed = mutableMapOf<String, String>()
+        val rejected = mutableMapOf<String, String>()
+        // Identity keys: two rows may carry equal operations but must be reported separately
+        val byOperation = IdentityHashMap<SyncOperation, String>()
+
+        operations.forEach { row ->
+            val collection = OutboxUploaderRegistry.DEFAULT_COLLECTIONS[row.entityType.uppercase()]
+            if (collection == null) {
+                rejected[row.id] = "No Firestore collection for ${row.entityType}"
+                return@forEach
+            }
+            val operation = try {
+                toSyncOperation(row, collection)
+            } catch (e: Exception) {
+                rejected[row.id] = "Unreadable entity_data: ${e.message}"
+                return@forEach
+            }
+            byOperation[operation] = row.id
+        }
+
+        val result = uploadPipeline.upload(byOperation.keys.toList())
+        result.retryable.forEach { failure ->
+            byOperation[failure.operation]?.let { failed[it] = failure.error.message ?: "Upload failed" }
+        }
+        result.poisoned.forEach { failure ->
+            byOperation[failure.operation]?.let { rejected[it] = failure.error.message ?: "Upload rejected" }
+        }
+
+        return OutboxUploadOutcome(
+            succeeded = result.committed.mapNotNull { byOperation[it] },
+            failed = failed,
+            rejected = rejected
+        )
+    }
+
+    private fun toSyncOperation(row: OutboxEntity, collection: String): SyncOperation {
+        return when (row.operationType.uppercase()) {
+            "DELETE" -> SyncOperation.Delete(collection, row.entityId)
+            "UPDATE" -> SyncOperation.Update(collection, row.entityId, parse(row))
+            else -> SyncOperation.Create(collection, row.entityId, parse(row))
+        }
+    }
+
+    private fun parse(row: OutboxEntity): Map<String, Any?> {
+        val data = row.entityData?.let { gson.fromJson<Map<String, Any?>>(it, mapType) } ?: return emptyMap()
+        return withHybridTimestamp(data)
+    }
+
+    /**
+     * Copy the entity's SyncMetadata.hlc to the top-level field other devices read it from
+     */
+    private fun withHybridTimestamp(data: Map<String, Any?>): Map<String, Any?> {
+        val stamp = (data["syncMetadata"] as? Map<*, *>)?.get("hlc") as? Long ?: return data
+        if (stamp == HybridTimestamp.NONE) return data
+        return data + (HybridTimestamp.FIELD to HybridTimestamp.toField(stamp))
+    }
+}
+
+/**
+ * Outcome of one or more processor passes
+ */
+data class OutboxPassResult(
+    val leased: Int = 0,
+    val succeeded: Int = 0,
+    val failed: Int = 0,
+    val reclaimed: Int = 0,
+    val durationMs: Long = 0
+) {
+    operator fun plus(other: OutboxPassResult) = OutboxPassResult(
+        leased = leased + other.leased,
+        succeeded = succeeded + other.succeeded,
+        failed = failed + other.failed,
+        reclaimed = reclaimed + other.reclaimed,
+        durationMs = durationMs + other.durationMs
+    )
+}
+
+/**
+ * Running counters since process start
+ *
+ * Queue latency is the time from an operation entering the outbox to its successful upload.
+ */
+data class OutboxStats(
+    val passes: Long = 0,
+    val leased: Long = 0,
+    val succeeded: Long = 0,
+    val failed: Long = 0,
+    val reclaimed: Long = 0,
+    val busyTimeMs: Long = 0,
+    val lastPassMs: Long = 0,
+    val maxPassMs: Long = 0,
+    val totalQueueLatencyMs: Long = 0,
+    val maxQueueLatencyMs: Long = 0
+) {
+    /**
+     * Successful uploads per second of processing time
+     */
+    val throughputPerSecond: Double
+        get() = if (busyTimeMs > 0) succeeded * 1000.0 / busyTimeMs else 0.0
+
+    val averageQueueLatencyMs: Long
+        get() = if (succeeded > 0) totalQueueLatencyMs / succeeded else 0L
+
+    fun record(
+        leasedCount: Int,
+        succeededCount: Int,
+        failedCount: Int,
+        reclaimedCount: Int,
+        elapsedMs: Long,
+        queueLatencies: List<Long>
+    ) = copy(
+        passes = passes + 1,
+        leased = leased + leasedCount,
+        succeeded = succeeded + succeededCount,
+        failed = failed + failedCount,
+        reclaimed = reclaimed + reclaimedCount,
+        busyTimeMs = busyTimeMs + elapsedMs,
+        lastPassMs = elapsedMs,
+        maxPassMs = maxOf(maxPassMs, elapsedMs),
+        totalQueueLatencyMs = totalQueueLatencyMs + queueLatencies.sum(),
+        maxQueueLatencyMs = maxOf(maxQueueLatencyMs, queueLatencies.maxOrNull() ?: 0L)
+    )
+}
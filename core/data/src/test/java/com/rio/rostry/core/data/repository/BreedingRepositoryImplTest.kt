@@ -3,9 +3,12 @@ package com.rio.rostry.core.data.repository
 import com.google.firebase.firestore.FirebaseFirestore
 import com.rio.rostry.core.data.service.UserValidationService
 import com.rio.rostry.core.data.service.ValidationResult
+import com.rio.rostry.core.data.util.BatchUploadPipeline
+import com.rio.rostry.core.data.util.WriteBatchCommitter
 import com.rio.rostry.core.database.dao.BreedingDao
 import com.rio.rostry.core.database.dao.FowlDao
 import com.rio.rostry.core.database.entities.FowlEntity
+import com.rio.rostry.core.database.entities.HybridClock
 import com.rio.rostry.core.network.NetworkStateManager
 import kotlinx.coroutines.ExperimentalCoroutinesApi
 import kotlinx.coroutines.flow.MutableStateFlow
@@ -24,6 +27,10 @@ class BreedingRepositoryImplTest {
     private val userValidationService: UserValidationService = mock()
     private val firestore: FirebaseFirestore = mock()
     private val networkStateManager: NetworkStateManager = mock()
+    private val uploadPipeline = BatchUploadPipeline(mock<WriteBatchCommitter>())
+    private val clock = object : HybridClock {
+        override fun now() = STAMP
+    }
 
     @Before
     fun setUp() {
@@ -32,7 +39,9 @@ class BreedingRepositoryImplTest {
             breedingDao,
             userValidationService,
             firestore,
-            networkStateManager
+            networkStateManager,
+            uploadPipeline,
+            clock
         )
         // Assume network is connected for simplicity in most tests
         whenever(networkStateManager.isConnected()).thenReturn(true)
@@ -123,5 +132,10 @@ class BreedingRepositoryImplTest {
         assert(capturedFowl.ownerId == breederId)
         assert(capturedFowl.parentMaleId == maleId)
         assert(capturedFowl.parentFemaleId == femaleId)
+        assert(capturedFowl.hlc == STAMP)
+    }
+
+    private companion object {
+        const val STAMP = 42L shl 16
     }
 }
@@ -0,0 +1,115 @@
+package com.rio.rostry.core.data.util
+
+import com.google.firebase.firestore.FirebaseFirestoreException
+import kotlinx.coroutines.runBlocking
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import org.mockito.kotlin.mock
+import java.io.IOException
+import java.util.concurrent.atomic.AtomicInteger
+
+class BatchUploadPipelineTest {
+
+    /**
+     * Stands in for Firestore: a commit fails atomically if it contains a poison document
+     */
+    private class FakeCommitter(
+        private val poisonIds: Set<String> = emptySet(),
+        private val offline: Boolean = false,
+        private val transientFailures: Int = 0
+    ) : WriteBatchCommitter {
+        val commits = AtomicInteger(0)
+        val written = mutableListOf<String>()
+
+        override suspend fun commit(operations: List<SyncOperation>) {
+            if (commits.incrementAndGet() <= transientFailures || offline) throw IOException("offline")
+            require(operations.size <= BatchUploadPipeline.FIRESTORE_MAX_BATCH_WRITES)
+            if (operations.any { it.documentId in poisonIds }) throw IllegalStateException("PERMISSION_DENIED")
+            synchronized(written) { operations.mapTo(written) { it.documentId } }
+        }
+
+        override fun isTransient(error: Exception) = error is IOException
+    }
+
+    private fun operations(count: Int) = (0 until count).map {
+        SyncOperation.Create(collection = "messages", documentId = "m$it", data = mapOf("n" to it))
+    }
+
+    @Test
+    fun batchesReplacePerDocumentRoundTrips() = runBlocking {
+        val committer = FakeCommitter()
+        val marked = mutableListOf<String>()
+
+        val result = BatchUploadPipeline(committer).upload(operations(1_200)) { batch ->
+            synchronized(marked) { batch.mapTo(marked) { it.documentId } }
+        }
+
+        // 1,200 sequential set() calls before; three WriteBatch commits now
+        assertEquals(3, committer.commits.get())
+        assertEquals(1_200, result.committed.size)
+        assertEquals(1_200, marked.size)
+        assertTrue(result.isSuccess)
+    }
+
+    @Test
+    fun bisectionIsolatesPoisonDocuments() = runBlocking {
+        val committer = FakeCommitter(poisonIds = setOf("m17", "m301"))
+
+        val result = BatchUploadPipeline(committer).upload(operations(400))
+
+        assertEquals(setOf("m17", "m301"), result.poisoned.map { it.operation.documentId }.toSet())
+        assertEquals(398, result.committed.size)
+        assertEquals(398, committer.written.size)
+        // Two bisection paths of ~log2(400) levels each instead of one commit per document
+        assertEquals(35, committer.commits.get())
+    }
+
+    @Test
+    fun transientFailuresAreNotBisected() = runBlocking {
+        val committer = FakeCommitter(offline = true)
+
+        val result = BatchUploadPipeline(committer).upload(operations(600))
+
+        assertEquals(2, committer.commits.get())
+        assertEquals(600, result.retryable.size)
+        assertTrue(result.poisoned.isEmpty())
+    }
+
+    @Test
+    fun unauthenticatedIsPermanent() {
+        val committer = FirestoreWriteBatchCommitter(mock())
+        fun error(code: FirebaseFirestoreException.Code) = FirebaseFirestoreException(code.name, code)
+
+        assertFalse(committer.isTransient(error(FirebaseFirestoreException.Code.UNAUTHENTICATED)))
+        assertFalse(committer.isTransient(error(FirebaseFirestoreException.Code.PERMISSION_DENIED)))
+        assertTrue(committer.isTransient(error(FirebaseFirestoreException.Code.UNAVAILABLE)))
+    }
+
+    @Test
+    fun writesToOneDocumentShareABatch() = runBlocking {
+        val committer = FakeCommitter()
+        val ops = operations(500) + SyncOperation.Update("messages", "m0", mapOf("n" to -1))
+
+        BatchUploadPipeline(committer, BatchUploadConfig(maxInFlight = 4)).upload(ops)
+
+        val first = committer.written.indexOf("m0")
+        assertEquals(2, committer.commits.get())
+        assertEquals(first + 1, committer.written.lastIndexOf("m0"))
+    }
+
+    @Test
+    fun laneStopsAtItsFirstFailedBatch() = runBlocking {
+        val committer = FakeCommitter(transientFailures = 1)
+        val ops = (0 until 5).map { SyncOperation.Update("messages", "m0", mapOf("n" to it)) }
+
+        // One document, five writes, batches of two: a lane of three ordered batches
+        val result = BatchUploadPipeline(committer, BatchUploadConfig(maxBatchSize = 2)).upload(ops)
+
+        // The first batch failed, so the later writes wait for its retry instead of landing first
+        assertEquals(1, committer.commits.get())
+        assertTrue(committer.written.isEmpty())
+        assertEquals(ops, result.retryable.map { it.operation })
+    }
+}
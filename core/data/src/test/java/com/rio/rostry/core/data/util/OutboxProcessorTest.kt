@@ -0,0 +1,228 @@
+package com.rio.rostry.core.data.util
+
+import com.rio.rostry.core.database.entities.HybridTimestamp
+import com.rio.rostry.core.database.entities.OutboxDaoV2
+import com.rio.rostry.core.database.entities.OutboxEntity
+import kotlinx.coroutines.runBlocking
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.util.*
+
+class OutboxProcessorTest {
+
+    private val dao = FakeOutboxDao()
+
+    private fun processor(uploader: OutboxUploader) = OutboxProcessor(
+        dao,
+        OutboxUploaderRegistry(FirestoreOutboxUploader(BatchUploadPipeline(RecordingCommitter())))
+            .apply { register("FOWL", uploader) }
+    ).apply {
+        config = OutboxProcessorConfig(maxRetries = 3, retryBaseDelayMs = 1_000, maxRetryDelayMs = 3_000)
+    }
+
+    private fun enqueue(id: String, entityData: String? = "{}") = dao.insertSync(OutboxEntity(
+        id = id,
+        entityType = "FOWL",
+        entityId = "fowl-$id",
+        operationType = "UPDATE",
+        entityData = entityData,
+        createdAt = Date(),
+        updatedAt = Date(),
+        syncStatus = "PENDING"
+    ))
+
+    // Pretend the backoff has elapsed
+    private fun makeDue(id: String) {
+        dao.rows.computeIfPresent(id) { _, row -> row.copy(nextAttemptAt = Date(0)) }
+    }
+
+    @Test
+    fun failedRowsBackOffAndFailOnceRetriesRunOut() = runBlocking {
+        enqueue("a")
+        val processor = processor(object : OutboxUploader {
+            override suspend fun upload(operations: List<OutboxEntity>) =
+                OutboxUploadOutcome(failed = operations.associate { it.id to "UNAVAILABLE" })
+        })
+
+        val delays = mutableListOf<Long>()
+        repeat(2) {
+            val before = System.currentTimeMillis()
+            assertEquals(1, processor.processBatch().leased)
+            val row = dao.rows.getValue("a")
+            assertEquals("PENDING", row.syncStatus)
+            delays += row.nextAttemptAt!!.time - before
+
+            // Not leased again while it is backing off
+            assertEquals(0, processor.processBatch().leased)
+            makeDue("a")
+        }
+
+        assertTrue("delays $delays", delays[0] in 1_000L..1_500L)
+        assertTrue("delays $delays", delays[1] in 2_000L..2_500L)
+
+        assertEquals(1, processor.processBatch().leased)
+        val row = dao.rows.getValue("a")
+        assertEquals("FAILED", row.syncStatus)
+        assertEquals(3, row.retryCount)
+        assertEquals(0, processor.processBatch().leased)
+    }
+
+    @Test
+    fun rejectedRowsFailWithoutRetrying() = runBlocking {
+        enqueue("good")
+        enqueue("bad")
+        val processor = processor(object : OutboxUploader {
+            override suspend fun upload(operations: List<OutboxEntity>) = OutboxUploadOutcome(
+                succeeded = listOf("good"),
+                rejected = mapOf("bad" to "PERMISSION_DENIED")
+            )
+        })
+
+        val pass = processor.processBatch()
+
+        assertEquals(1, pass.succeeded)
+        assertEquals(1, pass.failed)
+        assertEquals("SUCCESS", dao.rows.getValue("good").syncStatus)
+        assertEquals("FAILED", dao.rows.getValue("bad").syncStatus)
+        assertEquals(1, dao.rows.getValue("bad").retryCount)
+    }
+
+    @Test
+    fun integersSurviveTheJsonRoundTrip() = runBlocking {
+        val committer = RecordingCommitter()
+        val uploader = FirestoreOutboxUploader(BatchUploadPipeline(committer))
+        enqueue("a", """{"eggCount":12,"hatchedAt":1700000000123,"weight":2.5}""")
+        enqueue("b", "[1, 2]")
+
+        val outcome = uploader.upload(dao.rows.values.toList())
+
+        val data = (committer.operations.single() as SyncOperation.Update).data
+        assertEquals(12L, data["eggCount"])
+        assertEquals(1_700_000_000_123L, data["hatchedAt"])
+        assertEquals(2.5, data["weight"])
+        assertEquals(listOf("a"), outcome.succeeded)
+        assertEquals(setOf("b"), outcome.rejected.keys)
+    }
+
+    @Test
+    fun hybridTimestampIsUploadedAsText() = runBlocking {
+        val committer = RecordingCommitter()
+        val stamp = HybridTimestamp.encode(1_700_000_000_123L, 5)
+        enqueue("a", """{"name":"Raja","syncMetadata":{"hlc":$stamp}}""")
+
+        FirestoreOutboxUploader(BatchUploadPipeline(committer)).upload(dao.rows.values.toList())
+
+        val data = (committer.operations.single() as SyncOperation.Update).data
+        assertEquals("1700000000123.5", data[HybridTimestamp.FIELD])
+        assertEquals(stamp, HybridTimestamp.fromField(data[HybridTimestamp.FIELD]))
+    }
+
+    private class RecordingCommitter : WriteBatchCommitter {
+        val operations = mutableListOf<SyncOperation>()
+
+        override suspend fun commit(operations: List<SyncOperation>) {
+            synchronized(this.operations) { this.operations.addAll(operations) }
+        }
+
+        override fun isTransient(error: Exception) = false
+    }
+
+    /**
+     * The queries [OutboxProcessor] uses, over a map
+     */
+    private class FakeOutboxDao : OutboxDaoV2 {
+        val rows = LinkedHashMap<String, OutboxEntity>()
+
+        fun insertSync(row: OutboxEntity) {
+            rows[row.id] = row
+        }
+
+        private val leaseOrder = compareByDescending<OutboxEntity> { it.priority }
+            .thenBy { it.retryCount }
+            .thenBy { it.createdAt }
+
+        override suspend fun getById(id: String) = rows[id]
+
+        override suspend fun getPendingOperations(limit: Int) =
+            rows.values.filter { it.syncStatus == "PENDING" }.take(limit)
+
+        override suspend fun getFailedRetriableOperations(limit: Int) =
+            rows.values.filter { it.syncStatus == "FAILED" && it.retryCount < 3 }.take(limit)
+
+        override suspend fun getPendingCount() = rows.values.count { it.syncStatus == "PENDING" }
+
+        override suspend fun getInProgressCount() = rows.values.count { it.syncStatus == "IN_PROGRESS" }
+
+        override suspend fun insert(outboxEntity: OutboxEntity): Long {
+            insertSync(outboxEntity)
+            return rows.size.toLong()
+        }
+
+        override suspend fun insertAll(outboxEntities: List<OutboxEntity>) = outboxEntities.map { insert(it) }
+
+        override suspend fun update(outboxEntity: OutboxEntity): Int {
+            if (outboxEntity.id !in rows) return 0
+            rows[outboxEntity.id] = outboxEntity
+            return 1
+        }
+
+        override suspend fun updateSyncStatus(
+            id: String,
+            status: String,
+            syncedAt: Date?,
+            attemptAt: Date,
+            errorMessage: String?
+        ) = change(listOf(id)) {
+            it.copy(syncStatus = status, syncedAt = syncedAt, retryCount = it.retryCount + 1, lastAttemptAt = attemptAt, errorMessage = errorMessage)
+        }
+
+        override suspend fun leasePending(leaseOwner: String, leaseExpiresAt: Date, now: Date, limit: Int): Int {
+            val due = rows.values
+                .filter { it.syncStatus == "PENDING" && (it.nextAttemptAt == null || it.nextAttemptAt!! <= now) }
+                .sortedWith(leaseOrder)
+                .take(limit)
+            return change(due.map { it.id }) {
+                it.copy(syncStatus = "IN_PROGRESS", leaseOwner = leaseOwner, leaseExpiresAt = leaseExpiresAt, lastAttemptAt = now)
+            }
+        }
+
+        override suspend fun getLeased(leaseOwner: String) = rows.values
+            .filter { it.syncStatus == "IN_PROGRESS" && it.leaseOwner == leaseOwner }
+            .sortedWith(leaseOrder)
+
+        override suspend fun reclaimExpiredLeases(now: Date) = change(
+            rows.values.filter { it.syncStatus == "IN_PROGRESS" && it.leaseExpiresAt!! < now }.map { it.id }
+        ) { it.copy(syncStatus = "PENDING", leaseOwner = null, leaseExpiresAt = null) }
+
+        override suspend fun markLeasedSucceeded(ids: List<String>, leaseOwner: String, syncedAt: Date) = change(
+            ids.filter { rows[it]?.leaseOwner == leaseOwner }
+        ) { it.copy(syncStatus = "SUCCESS", syncedAt = syncedAt, errorMessage = null, leaseOwner = null, leaseExpiresAt = null) }
+
+        override suspend fun markLeasedFailed(
+            id: String,
+            leaseOwner: String,
+            errorMessage: String?,
+            maxRetries: Int,
+            nextAttemptAt: Date
+        ) = change(listOf(id).filter { rows[it]?.leaseOwner == leaseOwner }) {
+            it.copy(
+                syncStatus = if (it.retryCount + 1 >= maxRetries) "FAILED" else "PENDING",
+                retryCount = it.retryCount + 1,
+                errorMessage = errorMessage,
+                nextAttemptAt = nextAttemptAt,
+                leaseOwner = null,
+                leaseExpiresAt = null
+            )
+        }
+
+        override suspend fun delete(outboxEntity: OutboxEntity) = deleteById(outboxEntity.id)
+
+        override suspend fun deleteById(id: String) = if (rows.remove(id) != null) 1 else 0
+
+        private fun change(ids: List<String>, update: (OutboxEntity) -> OutboxEntity): Int {
+            ids.forEach { id -> rows[id] = update(rows.getValue(id)) }
+            return ids.size
+        }
+    }
+}
@@ -42,6 +42,9 @@ dependencies {
     // Room
     implementation("androidx.room:room-runtime:2.6.1")
     implementation("androidx.room:room-ktx:2.6.1")
+    implementation("androidx.room:room-paging:2.6.1")
+    implementation("androidx.sqlite:sqlite-framework:2.4.0")
+    implementation(libs.androidx.paging.common)
     "kapt"(libs.androidx.room.compiler)
 
     // JSON processing
@@ -57,6 +60,11 @@ dependencies {
     // kapt(libs.hilt.compiler)
     
     testImplementation(libs.junit)
+    testImplementation(libs.androidx.junit)
+    testImplementation(libs.androidx.test.core)
+    testImplementation(libs.robolectric)
+    testImplementation(libs.truth)
+    testImplementation(libs.kotlinx.coroutines.test)
     androidTestImplementation(libs.androidx.junit)
     androidTestImplementation(libs.androidx.espresso.core)
 }
@@ -0,0 +1,17 @@
+package com.rio.rostry.core.database
+
+import androidx.room.migration.Migration
+import androidx.sqlite.db.SupportSQLiteDatabase
+
+/**
+ * Database migration from version 10 to 11
+ * Adds next_attempt_at to the outbox so failed rows back off before they are leased again.
+ * Existing rows keep NULL, which means due now. The lease index is rebuilt to cover the new column.
+ */
+object Migration10_11 : Migration(10, 11) {
+    override fun migrate(database: SupportSQLiteDatabase) {
+        database.execSQL("ALTER TABLE `outbox` ADD COLUMN `next_attempt_at` INTEGER")
+        database.execSQL("DROP INDEX IF EXISTS `index_outbox_sync_status_priority_retry_count_created_at_id`")
+        database.execSQL("CREATE INDEX IF NOT EXISTS `index_outbox_sync_status_priority_retry_count_created_at_id_next_attempt_at` ON `outbox` (`sync_status` ASC, `priority` DESC, `retry_count` ASC, `created_at` ASC, `id` ASC, `next_attempt_at` ASC)")
+    }
+}
@@ -0,0 +1,17 @@
+package com.rio.rostry.core.database
+
+import androidx.room.migration.Migration
+import androidx.sqlite.db.SupportSQLiteDatabase
+import com.rio.rostry.core.database.entities.HybridTimestamp
+
+/**
+ * Database migration from version 11 to 12
+ * Adds the hlc column to fowls, which keeps its sync fields flattened and so missed the
+ * SyncMetadata column added in 7 to 8. Existing rows are backfilled from updated_at the same way.
+ */
+object Migration11_12 : Migration(11, 12) {
+    override fun migrate(database: SupportSQLiteDatabase) {
+        database.execSQL("ALTER TABLE `fowls` ADD COLUMN `hlc` INTEGER NOT NULL DEFAULT 0")
+        database.execSQL("UPDATE `fowls` SET `hlc` = `updated_at` << ${HybridTimestamp.COUNTER_BITS} WHERE `updated_at` > 0")
+    }
+}
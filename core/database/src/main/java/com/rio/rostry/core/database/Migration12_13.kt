@@ -0,0 +1,33 @@
+package com.rio.rostry.core.database
+
+import androidx.room.migration.Migration
+import androidx.sqlite.db.SupportSQLiteDatabase
+import com.rio.rostry.core.database.optimization.HotQueryIndexes
+
+/**
+ * Database migration from version 12 to 13
+ * Adds the listing detail columns that browse and search filter and sort on (title, description,
+ * breed, gender, age_weeks, weight, primary_photo_url) and the breed search index over them.
+ * Existing listings take title, breed and photo from their fowl; the rest stay empty until the
+ * listing is next downloaded or edited.
+ */
+object Migration12_13 : Migration(12, 13) {
+    override fun migrate(database: SupportSQLiteDatabase) {
+        database.execSQL("ALTER TABLE `marketplace_listings` ADD COLUMN `title` TEXT NOT NULL DEFAULT ''")
+        database.execSQL("ALTER TABLE `marketplace_listings` ADD COLUMN `description` TEXT")
+        database.execSQL("ALTER TABLE `marketplace_listings` ADD COLUMN `breed` TEXT NOT NULL DEFAULT ''")
+        database.execSQL("ALTER TABLE `marketplace_listings` ADD COLUMN `gender` TEXT")
+        database.execSQL("ALTER TABLE `marketplace_listings` ADD COLUMN `age_weeks` INTEGER")
+        database.execSQL("ALTER TABLE `marketplace_listings` ADD COLUMN `weight` REAL")
+        database.execSQL("ALTER TABLE `marketplace_listings` ADD COLUMN `primary_photo_url` TEXT")
+        database.execSQL(
+            """
+            UPDATE `marketplace_listings` SET
+                `title` = COALESCE((SELECT `name` FROM `fowls` WHERE `fowls`.`id` = `marketplace_listings`.`fowl_id`), ''),
+                `breed` = COALESCE((SELECT `breed_primary` FROM `fowls` WHERE `fowls`.`id` = `marketplace_listings`.`fowl_id`), ''),
+                `primary_photo_url` = (SELECT `primary_photo` FROM `fowls` WHERE `fowls`.`id` = `marketplace_listings`.`fowl_id`)
+            """.trimIndent()
+        )
+        HotQueryIndexes.marketplaceBreed.forEach { database.execSQL(it) }
+    }
+}
@@ -0,0 +1,48 @@
+package com.rio.rostry.core.database
+
+import androidx.room.migration.Migration
+import androidx.sqlite.db.SupportSQLiteDatabase
+
+/**
+ * Database migration from version 3 to 4
+ * Rebuilds offline_actions in the shape used by the offline action queue, adding the
+ * indexed next_attempt column that drives retry scheduling.
+ * The previous table had no readers, so its rows are not carried over.
+ */
+object Migration3_4 : Migration(3, 4) {
+    override fun migrate(database: SupportSQLiteDatabase) {
+        database.execSQL("DROP TABLE IF EXISTS `offline_actions`")
+
+        database.execSQL("""
+            CREATE TABLE IF NOT EXISTS `offline_actions` (
+                `id` TEXT NOT NULL,
+                `entity_type` TEXT NOT NULL,
+                `entity_id` TEXT NOT NULL,
+                `action_type` TEXT NOT NULL,
+                `action_data` TEXT NOT NULL,
+                `priority` INTEGER NOT NULL,
+                `depends_on` TEXT NOT NULL,
+                `validation_rules` TEXT NOT NULL,
+                `retry_count` INTEGER NOT NULL,
+                `max_retries` INTEGER NOT NULL,
+                `status` TEXT NOT NULL,
+                `queued_at` INTEGER NOT NULL,
+                `next_attempt` INTEGER NOT NULL,
+                `processed_at` INTEGER,
+                `error_message` TEXT,
+                `sync_syncStatus` TEXT NOT NULL,
+                `sync_lastSyncTime` INTEGER,
+                `sync_conflictVersion` INTEGER NOT NULL,
+                `sync_retryCount` INTEGER NOT NULL,
+                `sync_isDeleted` INTEGER NOT NULL,
+                `sync_priority` TEXT NOT NULL,
+                `sync_createdAt` INTEGER NOT NULL,
+                `sync_updatedAt` INTEGER NOT NULL,
+                PRIMARY KEY(`id`)
+            )
+        """.trimIndent())
+
+        database.execSQL("CREATE INDEX IF NOT EXISTS `index_offline_actions_status_next_attempt` ON `offline_actions` (`status`, `next_attempt`)")
+        database.execSQL("CREATE INDEX IF NOT EXISTS `index_offline_actions_entity_type_entity_id` ON `offline_actions` (`entity_type`, `entity_id`)")
+    }
+}
@@ -0,0 +1,14 @@
+package com.rio.rostry.core.database
+
+import androidx.room.migration.Migration
+import androidx.sqlite.db.SupportSQLiteDatabase
+
+/**
+ * Database migration from version 4 to 5
+ * Adds the (status, priority, queued_at, id) index used by the keyset queue drain
+ */
+object Migration4_5 : Migration(4, 5) {
+    override fun migrate(database: SupportSQLiteDatabase) {
+        database.execSQL("CREATE INDEX IF NOT EXISTS `index_offline_actions_status_priority_queued_at_id` ON `offline_actions` (`status`, `priority`, `queued_at`, `id`)")
+    }
+}
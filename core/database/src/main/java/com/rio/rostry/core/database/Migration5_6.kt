@@ -0,0 +1,15 @@
+package com.rio.rostry.core.database
+
+import androidx.room.migration.Migration
+import androidx.sqlite.db.SupportSQLiteDatabase
+
+/**
+ * Database migration from version 5 to 6
+ * Adds the sync_watermarks table used by incremental download sync
+ */
+object Migration5_6 : Migration(5, 6) {
+    override fun migrate(database: SupportSQLiteDatabase) {
+        database.execSQL("CREATE TABLE IF NOT EXISTS `sync_watermarks` (`scope_key` TEXT NOT NULL, `collection` TEXT NOT NULL, `owner_id` TEXT, `region` TEXT, `district` TEXT, `updated_at` INTEGER NOT NULL, `document_id` TEXT NOT NULL, `synced_at` INTEGER NOT NULL, PRIMARY KEY(`scope_key`))")
+        database.execSQL("CREATE INDEX IF NOT EXISTS `index_sync_watermarks_collection` ON `sync_watermarks` (`collection`)")
+    }
+}
@@ -0,0 +1,34 @@
+package com.rio.rostry.core.database
+
+import androidx.room.migration.Migration
+import androidx.sqlite.db.SupportSQLiteDatabase
+
+/**
+ * Database migration from version 6 to 7
+ * Registers the outbox table with lease columns and the covering lease index.
+ * Retriable FAILED rows become PENDING, which is how retries are now represented.
+ */
+object Migration6_7 : Migration(6, 7) {
+    override fun migrate(database: SupportSQLiteDatabase) {
+        database.execSQL("CREATE TABLE IF NOT EXISTS `outbox` (`id` TEXT NOT NULL, `entity_type` TEXT NOT NULL, `entity_id` TEXT NOT NULL, `operation_type` TEXT NOT NULL, `entity_data` TEXT, `created_at` INTEGER NOT NULL, `updated_at` INTEGER NOT NULL, `sync_status` TEXT NOT NULL, `retry_count` INTEGER NOT NULL, `priority` INTEGER NOT NULL, `error_message` TEXT, `last_attempt_at` INTEGER, `synced_at` INTEGER, PRIMARY KEY(`id`))")
+        
+        val columns = mutableSetOf<String>()
+        database.query("PRAGMA table_info(`outbox`)").use { cursor ->
+            val nameIndex = cursor.getColumnIndex("name")
+            while (cursor.moveToNext()) columns.add(cursor.getString(nameIndex))
+        }
+        if ("lease_owner" !in columns) database.execSQL("ALTER TABLE `outbox` ADD COLUMN `lease_owner` TEXT")
+        if ("lease_expires_at" !in columns) database.execSQL("ALTER TABLE `outbox` ADD COLUMN `lease_expires_at` INTEGER")
+        
+        database.execSQL("DROP INDEX IF EXISTS `index_outbox_sync_status`")
+        database.execSQL("DROP INDEX IF EXISTS `index_outbox_priority`")
+        database.execSQL("CREATE INDEX IF NOT EXISTS `index_outbox_entity_type` ON `outbox` (`entity_type`)")
+        database.execSQL("CREATE INDEX IF NOT EXISTS `index_outbox_operation_type` ON `outbox` (`operation_type`)")
+        database.execSQL("CREATE INDEX IF NOT EXISTS `index_outbox_created_at` ON `outbox` (`created_at`)")
+        database.execSQL("CREATE INDEX IF NOT EXISTS `index_outbox_sync_status_priority_retry_count_created_at_id` ON `outbox` (`sync_status` ASC, `priority` DESC, `retry_count` ASC, `created_at` ASC, `id` ASC)")
+        database.execSQL("CREATE INDEX IF NOT EXISTS `index_outbox_sync_status_lease_expires_at` ON `outbox` (`sync_status`, `lease_expires_at`)")
+        
+        database.execSQL("UPDATE `outbox` SET `sync_status` = 'PENDING' WHERE `sync_status` = 'FAILED' AND `retry_count` < 3")
+        database.execSQL("UPDATE `outbox` SET `sync_status` = 'PENDING' WHERE `sync_status` = 'IN_PROGRESS'")
+    }
+}
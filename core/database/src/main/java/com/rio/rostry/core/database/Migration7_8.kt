@@ -0,0 +1,36 @@
+package com.rio.rostry.core.database
+
+import androidx.room.migration.Migration
+import androidx.sqlite.db.SupportSQLiteDatabase
+import com.rio.rostry.core.database.entities.HybridTimestamp
+
+/**
+ * Database migration from version 7 to 8
+ * Adds the hybrid logical clock column to every table that embeds SyncMetadata.
+ * Existing rows are stamped from their updatedAt time with a zero counter.
+ */
+object Migration7_8 : Migration(7, 8) {
+    override fun migrate(database: SupportSQLiteDatabase) {
+        val tables = mutableListOf<String>()
+        database.query("SELECT name FROM sqlite_master WHERE type = 'table' AND name NOT LIKE 'sqlite_%' AND name NOT LIKE 'room_%' AND name != 'android_metadata'").use { cursor ->
+            while (cursor.moveToNext()) tables.add(cursor.getString(0))
+        }
+
+        tables.forEach { table ->
+            val columns = mutableSetOf<String>()
+            database.query("PRAGMA table_info(`$table`)").use { cursor ->
+                val nameIndex = cursor.getColumnIndex("name")
+                while (cursor.moveToNext()) columns.add(cursor.getString(nameIndex))
+            }
+            // Embedded without a prefix, or with "sync_" as on offline_actions
+            listOf("", "sync_").forEach { prefix ->
+                if ("${prefix}conflictVersion" in columns && "${prefix}hlc" !in columns) {
+                    database.execSQL("ALTER TABLE `$table` ADD COLUMN `${prefix}hlc` INTEGER NOT NULL DEFAULT 0")
+                    if ("${prefix}updatedAt" in columns) {
+                        database.execSQL("UPDATE `$table` SET `${prefix}hlc` = `${prefix}updatedAt` << ${HybridTimestamp.COUNTER_BITS} WHERE `${prefix}updatedAt` > 0")
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.rio.rostry.core.database
+
+import androidx.room.migration.Migration
+import androidx.sqlite.db.SupportSQLiteDatabase
+import com.rio.rostry.core.database.optimization.HotQueryIndexes
+
+/**
+ * Database migration from version 8 to 9
+ * Replaces the single-column marketplace indexes with the composite indexes used by
+ * browse and search (is_deleted + sort column + id, and region/district/status by date).
+ */
+object Migration8_9 : Migration(8, 9) {
+    override fun migrate(database: SupportSQLiteDatabase) {
+        HotQueryIndexes.marketplaceReplaced.forEach { index ->
+            database.execSQL("DROP INDEX IF EXISTS `$index`")
+        }
+        HotQueryIndexes.marketplace.forEach { database.execSQL(it) }
+    }
+}
@@ -0,0 +1,41 @@
+package com.rio.rostry.core.database
+
+import androidx.room.migration.Migration
+import androidx.sqlite.db.SupportSQLiteDatabase
+
+/**
+ * Database migration from version 9 to 10
+ * Adds the media table, which also holds the upload queue and resumable session state.
+ */
+object Migration9_10 : Migration(9, 10) {
+    override fun migrate(database: SupportSQLiteDatabase) {
+        database.execSQL(
+            """
+            CREATE TABLE IF NOT EXISTS `media` (
+                `id` TEXT NOT NULL,
+                `entity_type` TEXT NOT NULL,
+                `entity_id` TEXT NOT NULL,
+                `media_type` TEXT NOT NULL,
+                `file_name` TEXT NOT NULL,
+                `file_size` INTEGER NOT NULL,
+                `mime_type` TEXT NOT NULL,
+                `local_path` TEXT NOT NULL,
+                `storage_path` TEXT NOT NULL,
+                `remote_url` TEXT,
+                `upload_status` TEXT NOT NULL,
+                `upload_progress` INTEGER NOT NULL,
+                `compression_applied` INTEGER NOT NULL,
+                `created_at` INTEGER NOT NULL,
+                `uploaded_at` INTEGER,
+                `upload_session_uri` TEXT,
+                `uploaded_bytes` INTEGER NOT NULL,
+                `upload_attempts` INTEGER NOT NULL,
+                `last_error` TEXT,
+                PRIMARY KEY(`id`)
+            )
+            """.trimIndent()
+        )
+        database.execSQL("CREATE INDEX IF NOT EXISTS `index_media_upload_status` ON `media` (`upload_status`)")
+        database.execSQL("CREATE INDEX IF NOT EXISTS `index_media_entity_type_entity_id` ON `media` (`entity_type`, `entity_id`)")
+    }
+}
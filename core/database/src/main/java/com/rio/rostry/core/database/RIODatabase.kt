@@ -6,6 +6,7 @@ import androidx.sqlite.db.SupportSQLiteDatabase
 import com.rio.rostry.core.database.dao.*
 import com.rio.rostry.core.database.entities.*
 import com.rio.rostry.core.database.converters.*
+import com.rio.rostry.core.database.optimization.HotQueryIndexes
 import java.util.*
 
 /**
@@ -25,7 +26,7 @@ import java.util.*
         NotificationEntity::class,
         SyncQueueEntity::class
     ],
-    version = 1,
+    version = 2,
     exportSchema = true
 )
 @TypeConverters(
@@ -52,11 +53,12 @@ abstract class RIODatabase : RoomDatabase() {
         const val DATABASE_NAME = "rio_database"
         
         /**
-         * Migration from version 1 to 2 (when needed)
+         * Migration from version 1 to 2
+         * Per-user and per-conversation message indexes ordered by createdAt
          */
         val MIGRATION_1_2 = object : Migration(1, 2) {
             override fun migrate(database: SupportSQLiteDatabase) {
-                // Add migration logic when needed
+                HotQueryIndexes.messages.forEach { database.execSQL(it) }
             }
         }
     }
@@ -123,7 +125,14 @@ data class TransferEntity(
     override val syncMetadata: SyncMetadata = SyncMetadata()
 ) : SyncableEntity
 
-@Entity(tableName = "messages")
+@Entity(
+    tableName = "messages",
+    indices = [
+        Index(value = ["senderId", "createdAt"]),
+        Index(value = ["recipientId", "createdAt"]),
+        Index(value = ["conversationId", "createdAt"])
+    ]
+)
 data class MessageEntity(
     @PrimaryKey
     override val id: String,
@@ -36,15 +36,18 @@ import java.util.*
 
         // Sync and cache entities
         OfflineActionEntity::class,
+        SyncWatermarkEntity::class,
+        OutboxEntity::class,
 
         // Supporting entities
         NotificationEntity::class,
         NotificationPreferenceEntity::class,
         TopicSubscriptionEntity::class,
         NotificationAnalyticsEntity::class,
-        TimelineEntity::class
+        TimelineEntity::class,
+        MediaEntity::class
     ],
-    version = 3, // Update version since we're adding a new entity
+    version = 13, // Marketplace listing details
     exportSchema = true
 )
 @TypeConverters(Converters::class, FowlConverters::class) // Add our new converters
@@ -64,6 +67,9 @@ abstract class RIOLocalDatabase : RoomDatabase() {
     // Sync and cache DAOs
     // abstract fun syncQueueDao(): SyncQueueDao // Removed - not implemented
     abstract fun cacheDao(): CacheDao
+    abstract fun offlineActionDao(): OfflineActionDao
+    abstract fun offlineValidationDao(): OfflineValidationDao
+    abstract fun syncWatermarkDao(): SyncWatermarkDao
 
     // Coin payment system DAOs
     abstract fun coinTransactionDao(): CoinTransactionDao
@@ -74,7 +80,7 @@ abstract class RIOLocalDatabase : RoomDatabase() {
     abstract fun coinPackageDao(): CoinPackageDao
 
     // Supporting DAOs
-    // abstract fun mediaDao(): MediaDao // Removed - not implemented
+    abstract fun mediaDao(): MediaDao
     abstract fun notificationDao(): NotificationDao
     abstract fun notificationPreferenceDao(): NotificationPreferenceDao
     abstract fun topicSubscriptionDao(): TopicSubscriptionDao
@@ -106,19 +112,83 @@ data class CacheEntity(
 
 /**
  * Offline action entity for queuing operations
+ * next_attempt holds the earliest time the action may run; the (status, next_attempt)
+ * index lets the retry scheduler fetch only due actions and find the next wake-up time.
  */
-@Entity(tableName = "offline_actions")
+@Entity(
+    tableName = "offline_actions",
+    indices = [
+        Index(value = ["status", "next_attempt"]),
+        Index(value = ["status", "priority", "queued_at", "id"]),
+        Index(value = ["entity_type", "entity_id"])
+    ]
+)
 data class OfflineActionEntity(
-    @PrimaryKey val id: String,
-    val action: String, // CREATE, UPDATE, DELETE
-    val collection: String,
-    val documentId: String,
-    val data: String,
-    val timestamp: Date,
+    @PrimaryKey
+    @ColumnInfo(name = "id")
+    val id: String,
+    
+    @ColumnInfo(name = "entity_type")
+    val entityType: String,
+    
+    @ColumnInfo(name = "entity_id")
+    val entityId: String,
+    
+    @ColumnInfo(name = "action_type")
+    val actionType: String, // CREATE, UPDATE, DELETE, TRANSFER, PAYMENT
+    
+    @ColumnInfo(name = "action_data")
+    val actionData: String, // JSON payload
+    
+    @ColumnInfo(name = "priority")
+    val priority: Int,
+    
+    @ColumnInfo(name = "depends_on")
+    val dependsOn: List<String> = emptyList(),
+    
+    @ColumnInfo(name = "validation_rules")
+    val validationRules: List<String> = emptyList(),
+    
+    @ColumnInfo(name = "retry_count")
     val retryCount: Int = 0,
+    
+    @ColumnInfo(name = "max_retries")
     val maxRetries: Int = 3,
-    val status: String = "pending", // pending, synced, failed
-    val lastRetryAt: Date? = null
+    
+    @ColumnInfo(name = "status")
+    val status: String = "QUEUED", // QUEUED, PROCESSING, COMPLETED, FAILED, CANCELLED
+    
+    @ColumnInfo(name = "queued_at")
+    val queuedAt: Date,
+    
+    @ColumnInfo(name = "next_attempt")
+    val nextAttempt: Date = queuedAt,
+    
+    @ColumnInfo(name = "processed_at")
+    val processedAt: Date? = null,
+    
+    @ColumnInfo(name = "error_message")
+    val errorMessage: String? = null,
+    
+    @Embedded(prefix = "sync_")
+    val syncMetadata: com.rio.rostry.core.database.entities.SyncMetadata = com.rio.rostry.core.database.entities.SyncMetadata()
+)
+
+/**
+ * Id/status projection of an offline action for dependency checks
+ */
+data class OfflineActionStatusTuple(
+    @ColumnInfo(name = "id") val id: String,
+    @ColumnInfo(name = "status") val status: String,
+    @ColumnInfo(name = "next_attempt") val nextAttempt: Date
+)
+
+/**
+ * (entity_type, entity_id) projection used to find compaction candidates
+ */
+data class OfflineActionKey(
+    @ColumnInfo(name = "entity_type") val entityType: String,
+    @ColumnInfo(name = "entity_id") val entityId: String
 )
 
 /**
@@ -184,26 +254,111 @@ interface CacheDao : BaseSyncableDao<CacheEntity>
 @Dao
 interface OfflineActionDao {
     
-    @Query("SELECT * FROM offline_actions WHERE status = 'pending' ORDER BY timestamp ASC")
-    suspend fun getAllPending(): List<OfflineActionEntity>
-    
-    @Query("SELECT COUNT(*) FROM offline_actions WHERE status = 'pending'")
-    suspend fun getPendingCount(): Int
-    
+    @Query("SELECT * FROM offline_actions WHERE id = :id")
+    suspend fun getById(id: String): OfflineActionEntity?
+    
+    @Query("SELECT * FROM offline_actions WHERE status = 'QUEUED' ORDER BY priority ASC, queued_at ASC")
+    suspend fun getAllQueued(): List<OfflineActionEntity>
+    
+    /**
+     * Earliest pending attempt time, answered from the (status, next_attempt) index
+     */
+    @Query("SELECT MIN(next_attempt) FROM offline_actions WHERE status = 'QUEUED'")
+    suspend fun getEarliestNextAttempt(): Long?
+    
+    /**
+     * One keyset window of due actions in (priority, queued_at, id) order
+     * Row-value comparison is spelled out because minSdk 24 ships SQLite older than 3.15.
+     */
+    @Query("""
+        SELECT * FROM offline_actions
+        WHERE status = 'QUEUED' AND next_attempt <= :now
+          AND (priority > :afterPriority
+            OR (priority = :afterPriority AND queued_at > :afterQueuedAt)
+            OR (priority = :afterPriority AND queued_at = :afterQueuedAt AND id > :afterId))
+        ORDER BY priority ASC, queued_at ASC, id ASC
+        LIMIT :limit
+    """)
+    suspend fun getDueQueuedAfter(
+        now: Long,
+        afterPriority: Int,
+        afterQueuedAt: Long,
+        afterId: String,
+        limit: Int
+    ): List<OfflineActionEntity>
+    
+    @Query("SELECT COUNT(*) FROM offline_actions WHERE status = 'QUEUED' AND next_attempt <= :now")
+    suspend fun getDueCount(now: Long): Int
+    
+    @Query("SELECT id, status, next_attempt FROM offline_actions WHERE id IN (:ids)")
+    suspend fun getStatuses(ids: List<String>): List<OfflineActionStatusTuple>
+    
+    @Query("SELECT * FROM offline_actions WHERE status = 'QUEUED' AND entity_type = :entityType AND entity_id = :entityId ORDER BY queued_at ASC, id ASC")
+    suspend fun getQueuedForEntity(entityType: String, entityId: String): List<OfflineActionEntity>
+    
+    /**
+     * Entities with more than one queued action, i.e. candidates for compaction
+     */
+    @Query("SELECT entity_type, entity_id FROM offline_actions WHERE status = 'QUEUED' GROUP BY entity_type, entity_id HAVING COUNT(*) > 1")
+    suspend fun getCompactableKeys(): List<OfflineActionKey>
+    
+    /**
+     * Queued actions with at least one dependsOn edge, read once so callers can walk the
+     * reverse edges in memory instead of pattern-matching depends_on per action
+     */
+    @Query("SELECT * FROM offline_actions WHERE status = 'QUEUED' AND depends_on != '[]'")
+    suspend fun getQueuedWithDependencies(): List<OfflineActionEntity>
+    
+    @Query("UPDATE offline_actions SET status = 'CANCELLED', processed_at = :processedAt, error_message = :reason WHERE id IN (:ids)")
+    suspend fun markCancelled(ids: List<String>, processedAt: Date, reason: String)
+
+    @Query("UPDATE offline_actions SET status = :status, processed_at = :processedAt, error_message = :reason WHERE id IN (:ids) AND status = 'QUEUED'")
+    suspend fun closeQueued(ids: List<String>, status: String, processedAt: Date, reason: String)
+
+    /**
+     * Push queued actions back to [nextAttempt]; never brings one forward
+     */
+    @Query("UPDATE offline_actions SET next_attempt = :nextAttempt WHERE id IN (:ids) AND status = 'QUEUED' AND next_attempt < :nextAttempt")
+    suspend fun deferQueued(ids: List<String>, nextAttempt: Long)
+
     @Insert(onConflict = OnConflictStrategy.REPLACE)
     suspend fun insert(action: OfflineActionEntity)
     
     @Update
     suspend fun update(action: OfflineActionEntity)
     
-    @Query("UPDATE offline_actions SET status = 'synced' WHERE id = :id")
-    suspend fun markAsSynced(id: String)
+    @Query("UPDATE offline_actions SET status = :status, processed_at = :processedAt, error_message = :errorMessage WHERE id = :id")
+    suspend fun updateStatus(id: String, status: String, processedAt: Date, errorMessage: String? = null)
+    
+    @Query("UPDATE offline_actions SET retry_count = :retryCount, next_attempt = :nextAttempt WHERE id = :id")
+    suspend fun updateRetryCount(id: String, retryCount: Int, nextAttempt: Date)
+    
+    @Query("UPDATE offline_actions SET status = 'QUEUED', retry_count = 0, next_attempt = :now, error_message = NULL WHERE status = 'FAILED'")
+    suspend fun resetFailedToQueued(now: Long = System.currentTimeMillis())
+    
+    @Query("SELECT COUNT(*) FROM offline_actions WHERE status = 'QUEUED'")
+    suspend fun getQueuedCount(): Int
+    
+    @Query("SELECT COUNT(*) FROM offline_actions WHERE status = 'PROCESSING'")
+    suspend fun getProcessingCount(): Int
+    
+    @Query("SELECT COUNT(*) FROM offline_actions WHERE status = 'FAILED'")
+    suspend fun getFailedCount(): Int
+    
+    @Query("SELECT COUNT(*) FROM offline_actions WHERE status = 'COMPLETED'")
+    suspend fun getCompletedCount(): Int
+    
+    @Query("SELECT COUNT(*) FROM offline_actions WHERE status = 'CANCELLED'")
+    suspend fun getCancelledCount(): Int
+    
+    @Query("SELECT * FROM offline_actions WHERE status = 'QUEUED' ORDER BY queued_at ASC LIMIT 1")
+    suspend fun getOldestQueuedAction(): OfflineActionEntity?
     
-    @Query("UPDATE offline_actions SET status = 'failed' WHERE id = :id")
-    suspend fun markAsFailed(id: String)
+    @Query("SELECT AVG(processed_at - queued_at) FROM offline_actions WHERE status = 'COMPLETED' AND processed_at IS NOT NULL")
+    suspend fun getAverageProcessingTime(): Long?
     
-    @Query("DELETE FROM offline_actions WHERE status = 'synced' AND timestamp < :cutoffTime")
-    suspend fun cleanupSynced(cutoffTime: Long)
+    @Query("DELETE FROM offline_actions WHERE status IN ('COMPLETED', 'CANCELLED') AND processed_at < :olderThan")
+    suspend fun deleteCompletedOlderThan(olderThan: Date): Int
 }
 
 /**
@@ -347,7 +502,17 @@ object DatabaseBuilder {
         )
         .addMigrations(
             MIGRATION_1_2,
-            MIGRATION_2_3 // Add our new migration
+            MIGRATION_2_3, // Add our new migration
+            Migration3_4,
+            Migration4_5,
+            Migration5_6,
+            Migration6_7,
+            Migration7_8,
+            Migration8_9,
+            Migration9_10,
+            Migration10_11,
+            Migration11_12,
+            Migration12_13
         )
         .fallbackToDestructiveMigration() // For development only
         .enableMultiInstanceInvalidation()
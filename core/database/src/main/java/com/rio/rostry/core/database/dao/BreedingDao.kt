@@ -42,4 +42,7 @@ interface BreedingDao {
     
     @Query("UPDATE breeding_records SET is_synced = 1 WHERE id = :breedingId")
     suspend fun markAsSynced(breedingId: String)
+    
+    @Query("UPDATE breeding_records SET is_synced = 1 WHERE id IN (:breedingIds)")
+    suspend fun markAllAsSynced(breedingIds: List<String>)
 }
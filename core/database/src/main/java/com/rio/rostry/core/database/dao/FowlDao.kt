@@ -1,6 +1,7 @@
 package com.rio.rostry.core.database.dao
 
 import androidx.room.*
+import com.rio.rostry.core.database.entities.ConflictPagingDao
 import com.rio.rostry.core.database.entities.FowlEntity
 import kotlinx.coroutines.flow.Flow
 import java.util.*
@@ -9,7 +10,7 @@ import java.util.*
  * Data Access Object for fowl-related operations
  */
 @Dao
-interface FowlDaoV2 {
+interface FowlDaoV2 : ConflictPagingDao<FowlEntity> {
     
     @Query("SELECT * FROM fowls WHERE id = :fowlId")
     suspend fun getFowlById(fowlId: String): FowlEntity?
@@ -60,6 +61,25 @@ interface FowlDaoV2 {
     @Query("UPDATE fowls SET isSynced = 1 WHERE id = :fowlId")
     suspend fun markFowlAsSynced(fowlId: String)
     
+    // Conflict resolution, paged by id
+    @Update
+    override suspend fun update(entity: FowlEntity): Int
+    
+    @Query("SELECT COUNT(*) FROM fowls WHERE has_conflict = 1 AND is_deleted = 0")
+    override suspend fun getConflictCount(): Int
+    
+    @Query("SELECT * FROM fowls WHERE has_conflict = 1 AND is_deleted = 0 AND id > :afterId ORDER BY id LIMIT :limit")
+    override suspend fun getConflictedAfter(afterId: String, limit: Int): List<FowlEntity>
+    
+    @Query("UPDATE fowls SET has_conflict = 0 WHERE id IN (:ids)")
+    override suspend fun clearConflicts(ids: List<String>): Int
+    
+    @Query("UPDATE fowls SET sync_status = 'PENDING_DOWNLOAD' WHERE id IN (:ids)")
+    override suspend fun markPendingDownload(ids: List<String>): Int
+    
+    @Query("UPDATE fowls SET sync_status = 'SYNCED' WHERE id IN (:ids)")
+    override suspend fun markSynced(ids: List<String>): Int
+    
     // Search operations
     @Query("SELECT * FROM fowls WHERE name LIKE '%' || :query || '%' OR breed LIKE '%' || :query || '%' OR description LIKE '%' || :query || '%' ORDER BY createdAt DESC LIMIT :limit")
     suspend fun searchFowls(query: String, limit: Int = 50): List<FowlEntity>
@@ -1,7 +1,12 @@
 package com.rio.rostry.core.database.dao
 
 import androidx.room.*
+import androidx.sqlite.db.SupportSQLiteQuery
+import com.rio.rostry.core.database.entities.BaseSyncableDao
+import com.rio.rostry.core.database.entities.ConflictPagingDao
 import com.rio.rostry.core.database.entities.MarketplaceEntity
+import com.rio.rostry.core.database.optimization.KeysetCursor
+import com.rio.rostry.core.database.optimization.QueryOptimizer
 import kotlinx.coroutines.flow.Flow
 import java.util.*
 
@@ -9,7 +14,7 @@ import java.util.*
  * Data Access Object for marketplace operations with optimized queries for filters
  */
 @Dao
-interface MarketplaceDao : BaseSyncableDao<MarketplaceEntity> {
+interface MarketplaceDao : BaseSyncableDao<MarketplaceEntity>, ConflictPagingDao<MarketplaceEntity> {
     
     @Query("SELECT * FROM marketplace_listings WHERE id = :listingId AND is_deleted = 0")
     suspend fun getListingById(listingId: String): MarketplaceEntity?
@@ -23,9 +28,38 @@ interface MarketplaceDao : BaseSyncableDao<MarketplaceEntity> {
     @Query("SELECT * FROM marketplace_listings WHERE fowl_id = :fowlId AND is_deleted = 0")
     suspend fun getListingByFowl(fowlId: String): MarketplaceEntity?
     
+    /**
+     * Prefer [getActiveListingsPage]: OFFSET reads and discards every skipped row
+     */
     @Query("SELECT * FROM marketplace_listings WHERE listing_status = 'ACTIVE' AND is_deleted = 0 ORDER BY created_at DESC LIMIT :limit OFFSET :offset")
     suspend fun getActiveListings(limit: Int, offset: Int): List<MarketplaceEntity>
     
+    /**
+     * Active listings newest first, continuing after [after] (created_at and id of the last row seen)
+     */
+    suspend fun getActiveListingsPage(after: KeysetCursor?, limit: Int): List<MarketplaceEntity> =
+        if (after == null) getActiveListingsFirstPage(limit)
+        else getActiveListingsAfter(after.longValue, after.id, limit)
+    
+    @Query(ACTIVE_LISTINGS_FIRST_PAGE)
+    suspend fun getActiveListingsFirstPage(limit: Int): List<MarketplaceEntity>
+    
+    @Query(ACTIVE_LISTINGS_AFTER)
+    suspend fun getActiveListingsAfter(createdAt: Long, id: String, limit: Int): List<MarketplaceEntity>
+    
+    /**
+     * A seller's listings in any state, newest first, continuing after [after] (created_at and id of the last row seen)
+     */
+    suspend fun getSellerListingsPage(sellerId: String, after: KeysetCursor?, limit: Int): List<MarketplaceEntity> =
+        if (after == null) getSellerListingsFirstPage(sellerId, limit)
+        else getSellerListingsAfter(sellerId, after.longValue, after.id, limit)
+    
+    @Query(SELLER_LISTINGS_FIRST_PAGE)
+    suspend fun getSellerListingsFirstPage(sellerId: String, limit: Int): List<MarketplaceEntity>
+    
+    @Query(SELLER_LISTINGS_AFTER)
+    suspend fun getSellerListingsAfter(sellerId: String, createdAt: Long, id: String, limit: Int): List<MarketplaceEntity>
+    
     @Query("SELECT * FROM marketplace_listings WHERE listing_status = 'ACTIVE' AND breed = :breed AND is_deleted = 0 ORDER BY created_at DESC LIMIT :limit")
     suspend fun getActiveListingsByBreed(breed: String, limit: Int = 50): List<MarketplaceEntity>
     
@@ -43,31 +77,10 @@ interface MarketplaceDao : BaseSyncableDao<MarketplaceEntity> {
     
     /**
      * Search marketplace listings with advanced filters
+     * Built from [QueryOptimizer.searchListings]: absent filters are left out of the SQL
+     * rather than tested with `:x IS NULL OR ...`, and each sort order is a plain ORDER BY,
+     * so the is_deleted-led indexes serve both the filter and the sort.
      */
-    @Query("""
-        SELECT * FROM marketplace_listings 
-        WHERE is_deleted = 0
-        AND (:query IS NULL OR title LIKE '%' || :query || '%' OR description LIKE '%' || :query || '%')
-        AND (:minPrice IS NULL OR price_in_coins >= :minPrice)
-        AND (:maxPrice IS NULL OR price_in_coins <= :maxPrice)
-        AND (:breed IS NULL OR breed_primary = :breed)
-        AND (:gender IS NULL OR gender = :gender)
-        AND (:ageWeeksMin IS NULL OR age_weeks >= :ageWeeksMin)
-        AND (:ageWeeksMax IS NULL OR age_weeks <= :ageWeeksMax)
-        AND (:location IS NULL OR location LIKE '%' || :location || '%')
-        AND (:availabilityOnly = 0 OR availability_status = 'AVAILABLE')
-        ORDER BY 
-            CASE 
-                WHEN :sortBy = 'NEWEST' THEN created_at DESC
-                WHEN :sortBy = 'OLDEST' THEN created_at ASC
-                WHEN :sortBy = 'PRICE_LOW_TO_HIGH' THEN price_in_coins ASC
-                WHEN :sortBy = 'PRICE_HIGH_TO_LOW' THEN price_in_coins DESC
-                WHEN :sortBy = 'AGE_YOUNG_TO_OLD' THEN age_weeks ASC
-                WHEN :sortBy = 'AGE_OLD_TO_YOUNG' THEN age_weeks DESC
-                ELSE created_at DESC
-            END
-        LIMIT :limit
-    """)
     suspend fun searchListings(
         query: String?,
         minPrice: Double?,
@@ -79,19 +92,38 @@ interface MarketplaceDao : BaseSyncableDao<MarketplaceEntity> {
         location: String?,
         sortBy: String,
         availabilityOnly: Boolean,
+        after: KeysetCursor? = null,
         limit: Int = 50
-    ): List<MarketplaceEntity>
+    ): List<MarketplaceEntity> = searchListingsRaw(
+        QueryOptimizer.searchListings(
+            query = query,
+            minPrice = minPrice,
+            maxPrice = maxPrice,
+            breed = breed,
+            gender = gender,
+            ageMin = ageWeeksMin,
+            ageMax = ageWeeksMax,
+            location = location,
+            sortBy = sortBy,
+            availabilityOnly = availabilityOnly,
+            after = after,
+            limit = limit
+        )
+    )
+    
+    @RawQuery(observedEntities = [MarketplaceEntity::class])
+    suspend fun searchListingsRaw(query: SupportSQLiteQuery): List<MarketplaceEntity>
     
     /**
      * Get distinct breeds available in the marketplace
      */
-    @Query("SELECT DISTINCT breed_primary FROM marketplace_listings WHERE is_deleted = 0 AND availability_status = 'AVAILABLE'")
+    @Query("SELECT DISTINCT breed FROM marketplace_listings WHERE is_deleted = 0 AND is_available = 1 AND breed != ''")
     suspend fun getAvailableBreeds(): List<String>
     
     /**
      * Get distinct locations available in the marketplace
      */
-    @Query("SELECT DISTINCT location FROM marketplace_listings WHERE is_deleted = 0 AND availability_status = 'AVAILABLE'")
+    @Query("SELECT DISTINCT region FROM marketplace_listings WHERE is_deleted = 0 AND is_available = 1")
     suspend fun getAvailableLocations(): List<String>
     
     @Insert(onConflict = OnConflictStrategy.REPLACE)
@@ -118,4 +150,58 @@ interface MarketplaceDao : BaseSyncableDao<MarketplaceEntity> {
     
     @Query("UPDATE marketplace_listings SET sync_status = 'SYNCED' WHERE id = :listingId")
     suspend fun markListingAsSynced(listingId: String)
+    
+    @Query("UPDATE marketplace_listings SET sync_status = 'SYNCED' WHERE id IN (:listingIds)")
+    suspend fun markListingsAsSynced(listingIds: List<String>)
+    
+    // Conflict resolution, paged by id
+    @Update
+    override suspend fun update(entity: MarketplaceEntity): Int
+    
+    @Query("SELECT COUNT(*) FROM marketplace_listings WHERE has_conflict = 1 AND is_deleted = 0")
+    override suspend fun getConflictCount(): Int
+    
+    @Query("SELECT * FROM marketplace_listings WHERE has_conflict = 1 AND is_deleted = 0 AND id > :afterId ORDER BY id LIMIT :limit")
+    override suspend fun getConflictedAfter(afterId: String, limit: Int): List<MarketplaceEntity>
+    
+    @Query("UPDATE marketplace_listings SET has_conflict = 0 WHERE id IN (:ids)")
+    override suspend fun clearConflicts(ids: List<String>): Int
+    
+    @Query("UPDATE marketplace_listings SET sync_status = 'PENDING_DOWNLOAD' WHERE id IN (:ids)")
+    override suspend fun markPendingDownload(ids: List<String>): Int
+    
+    @Query("UPDATE marketplace_listings SET sync_status = 'SYNCED' WHERE id IN (:ids)")
+    override suspend fun markSynced(ids: List<String>): Int
+    
+    companion object {
+        const val ACTIVE_LISTINGS_FIRST_PAGE = """
+            SELECT * FROM marketplace_listings
+            WHERE is_deleted = 0 AND listing_status = 'ACTIVE'
+            ORDER BY created_at DESC, id DESC
+            LIMIT :limit
+        """
+        
+        const val ACTIVE_LISTINGS_AFTER = """
+            SELECT * FROM marketplace_listings
+            WHERE is_deleted = 0 AND listing_status = 'ACTIVE'
+            AND created_at <= :createdAt AND (created_at < :createdAt OR id < :id)
+            ORDER BY created_at DESC, id DESC
+            LIMIT :limit
+        """
+        
+        const val SELLER_LISTINGS_FIRST_PAGE = """
+            SELECT * FROM marketplace_listings
+            WHERE seller_id = :sellerId AND is_deleted = 0
+            ORDER BY created_at DESC, id DESC
+            LIMIT :limit
+        """
+        
+        const val SELLER_LISTINGS_AFTER = """
+            SELECT * FROM marketplace_listings
+            WHERE seller_id = :sellerId AND is_deleted = 0
+            AND created_at <= :createdAt AND (created_at < :createdAt OR id < :id)
+            ORDER BY created_at DESC, id DESC
+            LIMIT :limit
+        """
+    }
 }
\ No newline at end of file
@@ -0,0 +1,64 @@
+package com.rio.rostry.core.database.dao
+
+import androidx.room.*
+import com.rio.rostry.core.database.entities.MediaEntity
+import java.util.Date
+
+/**
+ * Data Access Object for media files and their upload queue
+ */
+@Dao
+interface MediaDao {
+    
+    @Query("SELECT * FROM media WHERE id = :id")
+    suspend fun getById(id: String): MediaEntity?
+    
+    @Query("SELECT * FROM media WHERE entity_type = :entityType AND entity_id = :entityId ORDER BY created_at ASC")
+    suspend fun getForEntity(entityType: String, entityId: String): List<MediaEntity>
+    
+    /**
+     * Uploads still to do, in upload order
+     * Rows left UPLOADING by a killed process are included so they resume.
+     */
+    @Query(PENDING_UPLOADS)
+    suspend fun getPendingUploads(maxAttempts: Int = MAX_UPLOAD_ATTEMPTS): List<MediaEntity>
+    
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    suspend fun insert(media: MediaEntity): Long
+    
+    @Query("UPDATE media SET upload_status = :status, upload_progress = :progress WHERE id = :id")
+    suspend fun updateUploadStatus(id: String, status: String, progress: Int): Int
+    
+    @Query("UPDATE media SET upload_session_uri = :sessionUri, uploaded_bytes = :uploadedBytes WHERE id = :id")
+    suspend fun updateUploadSession(id: String, sessionUri: String?, uploadedBytes: Long): Int
+    
+    @Query("UPDATE media SET uploaded_bytes = :uploadedBytes, upload_progress = :progress WHERE id = :id")
+    suspend fun updateUploadedBytes(id: String, uploadedBytes: Long, progress: Int): Int
+    
+    @Query("UPDATE media SET upload_status = :status, upload_attempts = upload_attempts + 1, last_error = :error WHERE id = :id")
+    suspend fun recordUploadFailure(id: String, status: String, error: String?): Int
+    
+    /**
+     * Record a finished upload in one statement, so a crash cannot leave a URL on a row still marked in progress
+     */
+    @Query("UPDATE media SET remote_url = :remoteUrl, uploaded_at = :uploadedAt, upload_status = :status, upload_progress = 100, upload_session_uri = NULL, last_error = NULL WHERE id = :id")
+    suspend fun completeUpload(id: String, status: String, remoteUrl: String, uploadedAt: Date): Int
+    
+    @Query("UPDATE media SET local_path = :localPath WHERE id = :id")
+    suspend fun updateLocalPath(id: String, localPath: String): Int
+    
+    @Query("DELETE FROM media WHERE id = :id")
+    suspend fun deleteById(id: String): Int
+    
+    companion object {
+        const val MAX_UPLOAD_ATTEMPTS = 5
+        
+        // Small proof images first, videos last, oldest first within a size
+        const val PENDING_UPLOADS = """
+            SELECT * FROM media
+            WHERE upload_status IN ('PENDING', 'UPLOADING') AND upload_attempts < :maxAttempts
+            ORDER BY CASE media_type WHEN 'IMAGE' THEN 0 WHEN 'DOCUMENT' THEN 1 ELSE 2 END,
+                file_size ASC, created_at ASC
+        """
+    }
+}
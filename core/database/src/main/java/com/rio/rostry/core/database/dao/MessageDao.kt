@@ -2,6 +2,7 @@ package com.rio.rostry.core.database.dao
 
 import androidx.room.*
 import com.rio.rostry.core.database.entities.MessageEntity
+import com.rio.rostry.core.database.optimization.KeysetCursor
 import kotlinx.coroutines.flow.Flow
 import java.util.*
 
@@ -17,10 +18,10 @@ interface MessageDaoV2 {
     @Query("SELECT * FROM messages WHERE conversationId = :conversationId ORDER BY createdAt ASC")
     fun getMessagesByConversation(conversationId: String): Flow<List<MessageEntity>>
     
-    @Query("SELECT * FROM messages WHERE (senderId = :userId OR recipientId = :userId) ORDER BY createdAt DESC")
+    @Query(MESSAGES_BY_USER)
     fun getMessagesByUser(userId: String): Flow<List<MessageEntity>>
     
-    @Query("SELECT DISTINCT conversationId FROM messages WHERE senderId = :userId OR recipientId = :userId ORDER BY createdAt DESC")
+    @Query(CONVERSATIONS_BY_USER)
     suspend fun getConversationsByUser(userId: String): List<String>
     
     @Query("SELECT * FROM messages WHERE recipientId = :userId AND isRead = 0 ORDER BY createdAt DESC")
@@ -77,9 +78,25 @@ interface MessageDaoV2 {
     @Query("SELECT * FROM messages WHERE conversationId = :conversationId ORDER BY createdAt DESC LIMIT 1")
     suspend fun getLastMessageInConversation(conversationId: String): MessageEntity?
     
+    /**
+     * Prefer [getMessagesPage]: OFFSET reads and discards every skipped row
+     */
     @Query("SELECT * FROM messages WHERE conversationId = :conversationId ORDER BY createdAt DESC LIMIT :limit OFFSET :offset")
     suspend fun getMessagesPaginated(conversationId: String, limit: Int = 20, offset: Int = 0): List<MessageEntity>
     
+    /**
+     * Conversation history newest first, continuing before [before] (createdAt and id of the oldest message loaded)
+     */
+    suspend fun getMessagesPage(conversationId: String, before: KeysetCursor?, limit: Int = 20): List<MessageEntity> =
+        if (before == null) getMessagesFirstPage(conversationId, limit)
+        else getMessagesBefore(conversationId, before.longValue, before.id, limit)
+    
+    @Query(MESSAGES_FIRST_PAGE)
+    suspend fun getMessagesFirstPage(conversationId: String, limit: Int): List<MessageEntity>
+    
+    @Query(MESSAGES_BEFORE)
+    suspend fun getMessagesBefore(conversationId: String, createdAt: Long, id: String, limit: Int): List<MessageEntity>
+    
     // Media messages
     @Query("SELECT * FROM messages WHERE conversationId = :conversationId AND messageType IN ('image', 'video', 'audio', 'document') ORDER BY createdAt DESC")
     suspend fun getMediaMessages(conversationId: String): List<MessageEntity>
@@ -97,7 +114,7 @@ interface MessageDaoV2 {
     @Query("SELECT messageType, COUNT(*) as count FROM messages WHERE senderId = :userId OR recipientId = :userId GROUP BY messageType ORDER BY count DESC")
     suspend fun getMessageTypeDistribution(userId: String): List<MessageTypeCount>
     
-    @Query("SELECT * FROM messages WHERE (senderId = :userId OR recipientId = :userId) AND createdAt >= :startDate AND createdAt <= :endDate ORDER BY createdAt DESC")
+    @Query(MESSAGES_BY_DATE_RANGE)
     suspend fun getMessagesByDateRange(userId: String, startDate: Date, endDate: Date): List<MessageEntity>
     
     // Cleanup operations
@@ -106,6 +123,51 @@ interface MessageDaoV2 {
     
     @Query("SELECT COUNT(*) FROM messages WHERE conversationId = :conversationId")
     suspend fun getMessageCountInConversation(conversationId: String): Int
+    
+    /**
+     * Per-user queries as one index range per side instead of `senderId = ? OR recipientId = ?`
+     * The recipient branch skips messages to self so no row is returned twice.
+     */
+    companion object {
+        const val MESSAGES_BY_USER = """
+            SELECT * FROM messages WHERE senderId = :userId
+            UNION ALL
+            SELECT * FROM messages WHERE recipientId = :userId AND senderId != :userId
+            ORDER BY createdAt DESC
+        """
+        
+        const val CONVERSATIONS_BY_USER = """
+            SELECT conversationId FROM (
+                SELECT conversationId, createdAt FROM messages WHERE senderId = :userId
+                UNION ALL
+                SELECT conversationId, createdAt FROM messages WHERE recipientId = :userId AND senderId != :userId
+            )
+            GROUP BY conversationId
+            ORDER BY MAX(createdAt) DESC
+        """
+        
+        const val MESSAGES_BY_DATE_RANGE = """
+            SELECT * FROM messages WHERE senderId = :userId AND createdAt >= :startDate AND createdAt <= :endDate
+            UNION ALL
+            SELECT * FROM messages WHERE recipientId = :userId AND senderId != :userId AND createdAt >= :startDate AND createdAt <= :endDate
+            ORDER BY createdAt DESC
+        """
+        
+        const val MESSAGES_FIRST_PAGE = """
+            SELECT * FROM messages
+            WHERE conversationId = :conversationId
+            ORDER BY createdAt DESC, id DESC
+            LIMIT :limit
+        """
+        
+        const val MESSAGES_BEFORE = """
+            SELECT * FROM messages
+            WHERE conversationId = :conversationId
+            AND createdAt <= :createdAt AND (createdAt < :createdAt OR id < :id)
+            ORDER BY createdAt DESC, id DESC
+            LIMIT :limit
+        """
+    }
 }
 
 data class MessageTypeCount(
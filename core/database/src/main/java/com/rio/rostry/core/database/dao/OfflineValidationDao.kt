@@ -0,0 +1,33 @@
+package com.rio.rostry.core.database.dao
+
+import androidx.room.*
+
+/**
+ * Set-based lookups used to pre-validate a batch of queued offline actions
+ * Each query takes a chunk of ids (keep chunks under SQLite's 999 bind-argument limit)
+ * and returns only the ids that match, so a whole batch is checked in a few round trips.
+ */
+@Dao
+interface OfflineValidationDao {
+    
+    @Query("SELECT id FROM fowls WHERE id IN (:ids)")
+    suspend fun getExistingFowlIds(ids: List<String>): List<String>
+    
+    @Query("SELECT id FROM users WHERE id IN (:ids)")
+    suspend fun getExistingUserIds(ids: List<String>): List<String>
+    
+    @Query("SELECT id FROM marketplace_listings WHERE id IN (:ids)")
+    suspend fun getExistingListingIds(ids: List<String>): List<String>
+    
+    @Query("SELECT id FROM messages WHERE id IN (:ids)")
+    suspend fun getExistingMessageIds(ids: List<String>): List<String>
+    
+    @Query("SELECT id FROM transfers WHERE id IN (:ids)")
+    suspend fun getExistingTransferIds(ids: List<String>): List<String>
+    
+    @Query("SELECT DISTINCT fowl_id FROM transfers WHERE fowl_id IN (:fowlIds) AND transfer_status IN ('INITIATED', 'PENDING_APPROVAL', 'APPROVED', 'IN_TRANSIT') AND is_deleted = 0")
+    suspend fun getFowlIdsWithActiveTransfers(fowlIds: List<String>): List<String>
+    
+    @Query("SELECT id FROM marketplace_listings WHERE id IN (:ids) AND listing_status = 'SOLD'")
+    suspend fun getSoldListingIds(ids: List<String>): List<String>
+}
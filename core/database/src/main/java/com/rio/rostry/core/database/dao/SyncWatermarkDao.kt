@@ -0,0 +1,30 @@
+package com.rio.rostry.core.database.dao
+
+import androidx.room.*
+import com.rio.rostry.core.database.entities.SyncWatermarkEntity
+
+/**
+ * Storage for delta sync cursors
+ * Writes are expected to run inside the same transaction as the rows they describe.
+ */
+@Dao
+interface SyncWatermarkDao {
+    
+    @Query("SELECT * FROM sync_watermarks WHERE scope_key = :scopeKey")
+    suspend fun get(scopeKey: String): SyncWatermarkEntity?
+    
+    @Query("SELECT * FROM sync_watermarks WHERE collection = :collection")
+    suspend fun getForCollection(collection: String): List<SyncWatermarkEntity>
+    
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    suspend fun upsert(watermark: SyncWatermarkEntity)
+    
+    @Query("DELETE FROM sync_watermarks WHERE scope_key = :scopeKey")
+    suspend fun delete(scopeKey: String)
+    
+    @Query("DELETE FROM sync_watermarks WHERE collection = :collection")
+    suspend fun deleteForCollection(collection: String)
+    
+    @Query("DELETE FROM sync_watermarks")
+    suspend fun deleteAll()
+}
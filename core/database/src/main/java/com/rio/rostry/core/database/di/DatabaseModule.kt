@@ -8,6 +8,19 @@ import com.rio.rostry.core.database.entities.OutboxDaoV2
 import com.rio.rostry.core.database.entities.TransferLogDao
 import com.rio.rostry.core.database.Migration1_2
 import com.rio.rostry.core.database.Migration2_3
+import com.rio.rostry.core.database.Migration3_4
+import com.rio.rostry.core.database.Migration4_5
+import com.rio.rostry.core.database.Migration5_6
+import com.rio.rostry.core.database.Migration6_7
+import com.rio.rostry.core.database.Migration7_8
+import com.rio.rostry.core.database.Migration8_9
+import com.rio.rostry.core.database.Migration9_10
+import com.rio.rostry.core.database.Migration10_11
+import com.rio.rostry.core.database.Migration11_12
+import com.rio.rostry.core.database.Migration12_13
+import com.rio.rostry.core.database.optimization.StorageInspector
+import com.rio.rostry.core.database.optimization.TimedOpenHelperFactory
+import com.rio.rostry.core.common.performance.LatencyRegistry
 import dagger.Module
 import dagger.Provides
 import dagger.hilt.InstallIn
@@ -29,7 +42,8 @@ object DatabaseModule {
     @Provides
     @Singleton
     fun provideRIOLocalDatabase(
-        @ApplicationContext context: Context
+        @ApplicationContext context: Context,
+        latencyRegistry: LatencyRegistry
     ): RIOLocalDatabase {
         return Room.databaseBuilder(
             context,
@@ -38,11 +52,22 @@ object DatabaseModule {
         )
         .addMigrations(
             Migration1_2,
-            Migration2_3
+            Migration2_3,
+            Migration3_4,
+            Migration4_5,
+            Migration5_6,
+            Migration6_7,
+            Migration7_8,
+            Migration8_9,
+            Migration9_10,
+            Migration10_11,
+            Migration11_12,
+            Migration12_13
         )
         .fallbackToDestructiveMigration() // For development only - remove in production
         .enableMultiInstanceInvalidation()
         .setJournalMode(androidx.room.RoomDatabase.JournalMode.WRITE_AHEAD_LOGGING)
+        .openHelperFactory(TimedOpenHelperFactory(latencyRegistry)) // per-query latency histograms
         .build()
     }
     
@@ -106,4 +131,14 @@ object DatabaseModule {
     
     @Provides
     fun provideFowlRecordDao(database: RIOLocalDatabase): FowlRecordDao = database.fowlRecordDao()
-}
\ No newline at end of file
+
+    @Provides
+    fun provideMediaDao(database: RIOLocalDatabase): MediaDao = database.mediaDao()
+
+    /**
+     * Cached per-table storage sizes for the storage settings screen
+     */
+    @Provides
+    @Singleton
+    fun provideStorageInspector(database: RIOLocalDatabase): StorageInspector = StorageInspector(database)
+}
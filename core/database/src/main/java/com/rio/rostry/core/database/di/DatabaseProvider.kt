@@ -2,6 +2,16 @@ package com.rio.rostry.core.database.di
 
 import android.content.Context
 import androidx.room.Room
+import com.rio.rostry.core.database.Migration3_4
+import com.rio.rostry.core.database.Migration4_5
+import com.rio.rostry.core.database.Migration5_6
+import com.rio.rostry.core.database.Migration6_7
+import com.rio.rostry.core.database.Migration7_8
+import com.rio.rostry.core.database.Migration8_9
+import com.rio.rostry.core.database.Migration9_10
+import com.rio.rostry.core.database.Migration10_11
+import com.rio.rostry.core.database.Migration11_12
+import com.rio.rostry.core.database.Migration12_13
 import com.rio.rostry.core.database.RIOLocalDatabase
 
 /**
@@ -22,7 +32,17 @@ object DatabaseProvider {
             )
             .addMigrations(
                 RIOLocalDatabase.MIGRATION_1_2,
-                RIOLocalDatabase.MIGRATION_2_3
+                RIOLocalDatabase.MIGRATION_2_3,
+                Migration3_4,
+                Migration4_5,
+                Migration5_6,
+                Migration6_7,
+                Migration7_8,
+                Migration8_9,
+                Migration9_10,
+                Migration10_11,
+                Migration11_12,
+                Migration12_13
             )
             .fallbackToDestructiveMigration() // For development only - remove in production
             .enableMultiInstanceInvalidation()
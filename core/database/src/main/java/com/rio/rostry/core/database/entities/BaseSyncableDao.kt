@@ -32,3 +32,31 @@ interface BaseSyncableDao<T : SyncableEntity> {
     suspend fun deleteLowPriorityItems(limit: Int): Int
     suspend fun getStorageSize(): Long
 }
+
+/**
+ * Conflicted rows paged by id, for batch conflict resolution
+ * Implemented by DAOs whose table carries has_conflict; ids compare as text, so paging
+ * from "" starts at the first row.
+ */
+interface ConflictPagingDao<T : SyncableEntity> {
+    suspend fun getConflictCount(): Int
+
+    /**
+     * Up to [limit] conflicted rows with id greater than [afterId], ordered by id
+     */
+    suspend fun getConflictedAfter(afterId: String, limit: Int): List<T>
+
+    suspend fun update(entity: T): Int
+
+    suspend fun clearConflicts(ids: List<String>): Int
+
+    /**
+     * Flag rows whose server copy won, so the next pull overwrites them
+     */
+    suspend fun markPendingDownload(ids: List<String>): Int
+
+    /**
+     * Flag rows just overwritten with their server copy as in sync
+     */
+    suspend fun markSynced(ids: List<String>): Int
+}
@@ -163,6 +163,9 @@ data class FowlEntity(
     @ColumnInfo(name = "updated_at")
     override val updatedAt: Date = Date(),
 
+    @ColumnInfo(name = "hlc", defaultValue = "0")
+    val hlc: Long = HybridTimestamp.NONE,
+
     // Additional sync fields
     @ColumnInfo(name = "sync_priority")
     val syncPriority: Int = 1,
@@ -0,0 +1,92 @@
+package com.rio.rostry.core.database.entities
+
+import java.util.*
+
+/**
+ * Hybrid logical clock timestamps packed into a single Long
+ *
+ * The upper 48 bits hold wall-clock milliseconds and the lower 16 bits a logical counter,
+ * so plain Long comparison orders timestamps and the value fits one INTEGER column.
+ * A timestamp of 0 means the row was written before HLC stamping existed.
+ */
+object HybridTimestamp {
+
+    const val COUNTER_BITS = 16
+    const val MAX_COUNTER = (1 shl COUNTER_BITS) - 1
+    const val NONE = 0L
+
+    /**
+     * Firestore field holding the stamp of the document's last write
+     * Stored as text: a packed stamp is above 2^53 and would lose its counter in JavaScript clients.
+     */
+    const val FIELD = "hlc"
+
+    private const val COUNTER_MASK = MAX_COUNTER.toLong()
+
+    fun encode(physicalMillis: Long, counter: Int): Long {
+        require(physicalMillis >= 0 && physicalMillis ushr (64 - COUNTER_BITS - 1) == 0L) {
+            "Physical time out of range: $physicalMillis"
+        }
+        require(counter in 0..MAX_COUNTER) { "Counter out of range: $counter" }
+        return (physicalMillis shl COUNTER_BITS) or counter.toLong()
+    }
+
+    fun physicalMillis(timestamp: Long): Long = timestamp ushr COUNTER_BITS
+
+    fun counter(timestamp: Long): Int = (timestamp and COUNTER_MASK).toInt()
+
+    /**
+     * Timestamp for a legacy row, derived from its wall-clock update time
+     */
+    fun fromDate(date: Date): Long = encode(maxOf(0L, date.time), 0)
+
+    /**
+     * Compact text form "<millis>.<counter>" for logs and Firestore fields
+     */
+    fun format(timestamp: Long): String = "${physicalMillis(timestamp)}.${counter(timestamp)}"
+
+    fun parse(text: String): Long {
+        val dot = text.indexOf('.')
+        if (dot < 0) return encode(text.toLong(), 0)
+        return encode(text.substring(0, dot).toLong(), text.substring(dot + 1).toInt())
+    }
+
+    fun toField(timestamp: Long): String = format(timestamp)
+
+    /**
+     * Stamp from a downloaded [FIELD] value, or [NONE] for documents uploaded without one
+     */
+    fun fromField(value: Any?): Long {
+        return when (value) {
+            is String -> try {
+                parse(value)
+            } catch (e: IllegalArgumentException) {
+                NONE
+            }
+            is Long -> value
+            else -> NONE
+        }
+    }
+}
+
+/**
+ * Source of [HybridTimestamp]s for local writes
+ * Lets repositories that cannot see the sync module stamp the rows they mark dirty.
+ */
+interface HybridClock {
+    fun now(): Long
+}
+
+/**
+ * HLC of the last local or downloaded write, falling back to [SyncMetadata.updatedAt]
+ * for rows stamped before the clock existed
+ */
+val SyncMetadata.hybridTimestamp: Long
+    get() = if (hlc != HybridTimestamp.NONE) hlc else HybridTimestamp.fromDate(updatedAt)
+
+/**
+ * HLC of the fowl's last write, falling back to [FowlEntity.updatedAt] for rows stamped
+ * before the column existed
+ */
+val FowlEntity.hybridTimestamp: Long
+    get() = if (hlc != HybridTimestamp.NONE) hlc else HybridTimestamp.fromDate(updatedAt)
@@ -12,14 +12,15 @@ import java.util.*
     indices = [
         Index(value = ["seller_id"]),
         Index(value = ["fowl_id"]),
-        Index(value = ["region", "district"]),
+        Index(value = ["region", "district", "listing_status", "created_at"]),
         Index(value = ["listing_type"]),
         Index(value = ["listing_status"]),
-        Index(value = ["base_price"]),
-        Index(value = ["breed"]),
         Index(value = ["sync_status"]),
         Index(value = ["expires_at"]),
-        Index(value = ["is_deleted"])
+        // Browse and search: is_deleted = 0, then the sort column with id as tiebreaker
+        Index(value = ["is_deleted", "created_at", "id"]),
+        Index(value = ["is_deleted", "base_price", "id"]),
+        Index(value = ["is_deleted", "breed", "created_at", "id"])
     ],
     foreignKeys = [
         ForeignKey(
@@ -47,6 +48,28 @@ data class MarketplaceEntity(
     @ColumnInfo(name = "fowl_id")
     val fowlId: String,
     
+    // Listing details, copied from the fowl when listed so browse and search need no join
+    @ColumnInfo(name = "title", defaultValue = "")
+    val title: String = "",
+    
+    @ColumnInfo(name = "description")
+    val description: String? = null,
+    
+    @ColumnInfo(name = "breed", defaultValue = "")
+    val breed: String = "",
+    
+    @ColumnInfo(name = "gender")
+    val gender: String? = null,
+    
+    @ColumnInfo(name = "age_weeks")
+    val ageWeeks: Int? = null,
+    
+    @ColumnInfo(name = "weight")
+    val weight: Double? = null,
+    
+    @ColumnInfo(name = "primary_photo_url")
+    val primaryPhotoUrl: String? = null,
+    
     // Listing type and pricing
     @ColumnInfo(name = "listing_type")
     val listingType: String, // FIXED_PRICE, AUCTION, NEGOTIABLE, BREEDING_SERVICE
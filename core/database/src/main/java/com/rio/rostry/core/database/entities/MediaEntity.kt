@@ -0,0 +1,82 @@
+package com.rio.rostry.core.database.entities
+
+import androidx.room.ColumnInfo
+import androidx.room.Entity
+import androidx.room.Index
+import androidx.room.PrimaryKey
+import java.util.Date
+
+/**
+ * Room entity for uploaded and pending media files
+ * Pending rows double as the persistent upload queue: a resumable upload keeps its session
+ * URI and committed byte count here, so it continues where it stopped after a dropped
+ * connection or process death.
+ */
+@Entity(
+    tableName = "media",
+    indices = [
+        Index(value = ["upload_status"]),
+        Index(value = ["entity_type", "entity_id"])
+    ]
+)
+data class MediaEntity(
+    @PrimaryKey
+    @ColumnInfo(name = "id")
+    val id: String,
+    
+    @ColumnInfo(name = "entity_type")
+    val entityType: String,
+    
+    @ColumnInfo(name = "entity_id")
+    val entityId: String,
+    
+    @ColumnInfo(name = "media_type")
+    val mediaType: String, // IMAGE, VIDEO, DOCUMENT
+    
+    @ColumnInfo(name = "file_name")
+    val fileName: String,
+    
+    @ColumnInfo(name = "file_size")
+    val fileSize: Long,
+    
+    @ColumnInfo(name = "mime_type")
+    val mimeType: String,
+    
+    @ColumnInfo(name = "local_path")
+    val localPath: String,
+    
+    @ColumnInfo(name = "storage_path")
+    val storagePath: String = "",
+    
+    @ColumnInfo(name = "remote_url")
+    val remoteUrl: String? = null,
+    
+    @ColumnInfo(name = "upload_status")
+    val uploadStatus: String, // PENDING, UPLOADING, COMPLETED, FAILED
+    
+    @ColumnInfo(name = "upload_progress")
+    val uploadProgress: Int = 0,
+    
+    @ColumnInfo(name = "compression_applied")
+    val compressionApplied: Boolean = false,
+    
+    @ColumnInfo(name = "created_at")
+    val createdAt: Date,
+    
+    @ColumnInfo(name = "uploaded_at")
+    val uploadedAt: Date? = null,
+    
+    // Resumable session for an unfinished upload; cleared once it completes
+    @ColumnInfo(name = "upload_session_uri")
+    val uploadSessionUri: String? = null,
+    
+    // Bytes the server has committed for the session
+    @ColumnInfo(name = "uploaded_bytes")
+    val uploadedBytes: Long = 0,
+    
+    @ColumnInfo(name = "upload_attempts")
+    val uploadAttempts: Int = 0,
+    
+    @ColumnInfo(name = "last_error")
+    val lastError: String? = null
+)
@@ -373,6 +373,9 @@ interface MessageDao : BaseSyncableDao<MessageEntity> {
     @Query("UPDATE messages SET retry_count = 0 WHERE id = :id")
     override suspend fun clearRetryCount(id: String)
     
+    @Query("UPDATE messages SET sync_status = 'SYNCED', last_sync_time = :lastSyncTime WHERE id IN (:ids)")
+    suspend fun markAllAsSynced(ids: List<String>, lastSyncTime: Date = Date())
+    
     // Cleanup operations
     @Query("DELETE FROM messages WHERE sync_status = 'SYNCED' AND updated_at < :olderThan AND sync_priority = 'LOW'")
     override suspend fun deleteOldSyncedItems(olderThan: Date): Int
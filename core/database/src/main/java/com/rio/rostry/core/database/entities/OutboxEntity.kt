@@ -13,8 +13,12 @@ import java.util.*
         Index(value = ["entity_type"]),
         Index(value = ["operation_type"]),
         Index(value = ["created_at"]),
-        Index(value = ["sync_status"]),
-        Index(value = ["priority"])
+        // Covers the lease query: filter on status and due time, order by priority/retry_count/age, return id
+        Index(
+            value = ["sync_status", "priority", "retry_count", "created_at", "id", "next_attempt_at"],
+            orders = [Index.Order.ASC, Index.Order.DESC, Index.Order.ASC, Index.Order.ASC, Index.Order.ASC, Index.Order.ASC]
+        ),
+        Index(value = ["sync_status", "lease_expires_at"])
     ]
 )
 data class OutboxEntity(
@@ -41,7 +45,7 @@ data class OutboxEntity(
     val updatedAt: Date,
     
     @ColumnInfo(name = "sync_status")
-    val syncStatus: String, // PENDING, IN_PROGRESS, SUCCESS, FAILED
+    val syncStatus: String, // PENDING, IN_PROGRESS, SUCCESS, FAILED (retries exhausted)
     
     @ColumnInfo(name = "retry_count")
     val retryCount: Int = 0,
@@ -56,7 +60,18 @@ data class OutboxEntity(
     val lastAttemptAt: Date? = null,
     
     @ColumnInfo(name = "synced_at")
-    val syncedAt: Date? = null
+    val syncedAt: Date? = null,
+    
+    // Set while a processor holds the row IN_PROGRESS; an expired lease is reclaimed
+    @ColumnInfo(name = "lease_owner")
+    val leaseOwner: String? = null,
+    
+    @ColumnInfo(name = "lease_expires_at")
+    val leaseExpiresAt: Date? = null,
+    
+    // A PENDING row is not leased before this; NULL means due now
+    @ColumnInfo(name = "next_attempt_at")
+    val nextAttemptAt: Date? = null
 )
 
 /**
@@ -77,6 +92,9 @@ interface OutboxDaoV2 {
     @Query("SELECT COUNT(*) FROM outbox WHERE sync_status = 'PENDING'")
     suspend fun getPendingCount(): Int
     
+    @Query("SELECT COUNT(*) FROM outbox WHERE sync_status = 'IN_PROGRESS'")
+    suspend fun getInProgressCount(): Int
+    
     @Insert(onConflict = OnConflictStrategy.REPLACE)
     suspend fun insert(outboxEntity: OutboxEntity): Long
     
@@ -95,6 +113,58 @@ interface OutboxDaoV2 {
         errorMessage: String?
     ): Int
     
+    // Leasing: PENDING -> IN_PROGRESS in one statement, ordered by the covering index
+    @Query("""
+        UPDATE outbox
+        SET sync_status = 'IN_PROGRESS', lease_owner = :leaseOwner, lease_expires_at = :leaseExpiresAt, last_attempt_at = :now
+        WHERE id IN (
+            SELECT id FROM outbox
+            WHERE sync_status = 'PENDING' AND (next_attempt_at IS NULL OR next_attempt_at <= :now)
+            ORDER BY priority DESC, retry_count ASC, created_at ASC
+            LIMIT :limit
+        )
+    """)
+    suspend fun leasePending(leaseOwner: String, leaseExpiresAt: Date, now: Date, limit: Int): Int
+    
+    @Query("SELECT * FROM outbox WHERE sync_status = 'IN_PROGRESS' AND lease_owner = :leaseOwner ORDER BY priority DESC, retry_count ASC, created_at ASC")
+    suspend fun getLeased(leaseOwner: String): List<OutboxEntity>
+    
+    /**
+     * Lease up to [limit] operations under a fresh [leaseOwner] token and return them
+     */
+    @Transaction
+    suspend fun leaseBatch(leaseOwner: String, leaseExpiresAt: Date, now: Date, limit: Int): List<OutboxEntity> {
+        if (leasePending(leaseOwner, leaseExpiresAt, now, limit) == 0) return emptyList()
+        return getLeased(leaseOwner)
+    }
+    
+    // Return rows whose lease ran out (process death, hung upload) to the queue
+    @Query("UPDATE outbox SET sync_status = 'PENDING', lease_owner = NULL, lease_expires_at = NULL WHERE sync_status = 'IN_PROGRESS' AND lease_expires_at < :now")
+    suspend fun reclaimExpiredLeases(now: Date): Int
+    
+    @Query("UPDATE outbox SET sync_status = 'SUCCESS', synced_at = :syncedAt, error_message = NULL, lease_owner = NULL, lease_expires_at = NULL WHERE id IN (:ids) AND lease_owner = :leaseOwner")
+    suspend fun markLeasedSucceeded(ids: List<String>, leaseOwner: String, syncedAt: Date): Int
+    
+    // Failed rows go back to PENDING, due at :nextAttemptAt, until retries run out, then stay FAILED.
+    // Pass maxRetries = 0 for a permanent rejection.
+    @Query("""
+        UPDATE outbox
+        SET sync_status = CASE WHEN retry_count + 1 >= :maxRetries THEN 'FAILED' ELSE 'PENDING' END,
+            retry_count = retry_count + 1,
+            error_message = :errorMessage,
+            next_attempt_at = :nextAttemptAt,
+            lease_owner = NULL,
+            lease_expires_at = NULL
+        WHERE id = :id AND lease_owner = :leaseOwner
+    """)
+    suspend fun markLeasedFailed(
+        id: String,
+        leaseOwner: String,
+        errorMessage: String?,
+        maxRetries: Int,
+        nextAttemptAt: Date
+    ): Int
+    
     @Delete
     suspend fun delete(outboxEntity: OutboxEntity): Int
     
@@ -0,0 +1,43 @@
+package com.rio.rostry.core.database.entities
+
+import androidx.room.*
+
+/**
+ * Per-scope high-water mark for incremental (delta) download sync
+ * A scope is one Firestore collection narrowed by owner and/or region/district.
+ * The cursor is the (updatedAt, documentId) pair of the last document applied locally,
+ * so the next pull resumes strictly after it even when many documents share a timestamp.
+ */
+@Entity(
+    tableName = "sync_watermarks",
+    indices = [
+        Index(value = ["collection"])
+    ]
+)
+data class SyncWatermarkEntity(
+    @PrimaryKey
+    @ColumnInfo(name = "scope_key")
+    val scopeKey: String,
+    
+    @ColumnInfo(name = "collection")
+    val collection: String,
+    
+    @ColumnInfo(name = "owner_id")
+    val ownerId: String? = null,
+    
+    @ColumnInfo(name = "region")
+    val region: String? = null,
+    
+    @ColumnInfo(name = "district")
+    val district: String? = null,
+    
+    // Epoch millis of the last applied document's updatedAt
+    @ColumnInfo(name = "updated_at")
+    val updatedAt: Long,
+    
+    @ColumnInfo(name = "document_id")
+    val documentId: String,
+    
+    @ColumnInfo(name = "synced_at")
+    val syncedAt: Long
+)
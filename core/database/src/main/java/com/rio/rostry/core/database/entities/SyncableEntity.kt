@@ -1,5 +1,6 @@
 package com.rio.rostry.core.database.entities
 
+import androidx.room.ColumnInfo
 import androidx.room.Embedded
 import java.util.*
 
@@ -17,6 +18,7 @@ interface SyncableEntity {
 
 /**
  * Synchronization metadata for offline-first entities
+ * [hlc] is the [HybridTimestamp] of the last write and orders writes across devices.
  */
 data class SyncMetadata(
     val syncStatus: SyncStatus = SyncStatus.PENDING_UPLOAD,
@@ -26,7 +28,9 @@ data class SyncMetadata(
     val isDeleted: Boolean = false,
     val priority: SyncPriority = SyncPriority.NORMAL,
     val createdAt: Date = Date(),
-    val updatedAt: Date = Date()
+    val updatedAt: Date = Date(),
+    @ColumnInfo(defaultValue = "0")
+    val hlc: Long = HybridTimestamp.NONE
 )
 
 /**
@@ -10,227 +10,98 @@ import androidx.sqlite.db.SupportSQLiteDatabase
 
 /**
  * Database migration with performance optimizations
+ *
+ * Column names follow the current entities. Marketplace and message indexes are declared on
+ * their entities (see [HotQueryIndexes]) and are not repeated here. An index whose columns
+ * are missing from the installed table is skipped rather than failing the migration.
  */
 val MIGRATION_1_2 = object : Migration(1, 2) {
     override fun migrate(database: SupportSQLiteDatabase) {
-        // Add performance indexes for critical queries
-        
-        // Fowl indexes for owner and regional queries
-        database.execSQL("""
-            CREATE INDEX IF NOT EXISTS idx_fowls_owner_region 
-            ON fowls(owner_id, region, district, is_deleted)
-        """)
-        
-        database.execSQL("""
-            CREATE INDEX IF NOT EXISTS idx_fowls_breed_region 
-            ON fowls(breed_primary, region, availability_status, is_deleted)
-        """)
-        
-        database.execSQL("""
-            CREATE INDEX IF NOT EXISTS idx_fowls_sync_priority 
-            ON fowls(sync_status, sync_priority, retry_count)
-        """)
-        
-        // Marketplace indexes for search and filtering
-        database.execSQL("""
-            CREATE INDEX IF NOT EXISTS idx_marketplace_region_status 
-            ON marketplace_listings(region, district, listing_status, expires_at, is_deleted)
-        """)
-        
-        database.execSQL("""
-            CREATE INDEX IF NOT EXISTS idx_marketplace_breed_price 
-            ON marketplace_listings(breed, base_price, listing_status, is_deleted)
-        """)
-        
-        database.execSQL("""
-            CREATE INDEX IF NOT EXISTS idx_marketplace_seller_status 
-            ON marketplace_listings(seller_id, listing_status, created_at, is_deleted)
-        """)
-        
-        // Message indexes for conversation queries
-        database.execSQL("""
-            CREATE INDEX IF NOT EXISTS idx_messages_conversation_time 
-            ON messages(conversation_id, sent_at, is_deleted)
-        """)
-        
-        database.execSQL("""
-            CREATE INDEX IF NOT EXISTS idx_messages_delivery_status 
-            ON messages(delivery_status, retry_count, sent_at)
-        """)
-        
-        // Transfer indexes for critical operations
-        database.execSQL("""
-            CREATE INDEX IF NOT EXISTS idx_transfers_fowl_status 
-            ON transfers(fowl_id, transfer_status, initiated_at)
-        """)
-        
-        database.execSQL("""
-            CREATE INDEX IF NOT EXISTS idx_transfers_user_status 
-            ON transfers(from_user_id, to_user_id, transfer_status, verification_required)
-        """)
-        
-        database.execSQL("""
-            CREATE INDEX IF NOT EXISTS idx_transfers_verification 
-            ON transfers(verification_status, verification_required, initiated_at)
-        """)
-        
-        // User indexes for authentication and search
-        database.execSQL("""
-            CREATE INDEX IF NOT EXISTS idx_users_email_tier 
-            ON users(email, user_tier, verification_status, is_deleted)
-        """)
-        
-        database.execSQL("""
-            CREATE INDEX IF NOT EXISTS idx_users_region_tier 
-            ON users(region, district, user_tier, verification_status, is_deleted)
-        """)
-        
-        // Sync queue indexes for processing
-        database.execSQL("""
-            CREATE INDEX IF NOT EXISTS idx_sync_queue_priority_status 
-            ON sync_queue(sync_priority, sync_status, scheduled_at)
-        """)
-        
-        database.execSQL("""
-            CREATE INDEX IF NOT EXISTS idx_sync_queue_entity_type 
-            ON sync_queue(entity_type, sync_status, retry_count)
-        """)
-        
-        // Offline action indexes
-        database.execSQL("""
-            CREATE INDEX IF NOT EXISTS idx_offline_actions_priority_status 
-            ON offline_actions(priority, status, queued_at)
-        """)
-        
-        database.execSQL("""
-            CREATE INDEX IF NOT EXISTS idx_offline_actions_dependencies 
-            ON offline_actions(depends_on, status)
-        """)
-        
-        // Media indexes for upload management
-        database.execSQL("""
-            CREATE INDEX IF NOT EXISTS idx_media_entity_upload 
-            ON media(entity_type, entity_id, upload_status, created_at)
-        """)
-        
-        // Notification indexes
-        database.execSQL("""
-            CREATE INDEX IF NOT EXISTS idx_notifications_user_read 
-            ON notifications(user_id, is_read, created_at, is_deleted)
-        """)
+        val columnsByTable = mutableMapOf<String, Set<String>>()
+        performanceIndexes.forEach { index ->
+            val columns = columnsByTable.getOrPut(index.table) { tableColumns(database, index.table) }
+            if (columns.containsAll(index.columns)) {
+                database.execSQL(
+                    "CREATE INDEX IF NOT EXISTS `${index.name}` ON `${index.table}` (${index.columns.joinToString { "`$it`" }})"
+                )
+            }
+        }
     }
 }
 
+private class PerformanceIndex(val name: String, val table: String, val columns: List<String>)
+
+private val performanceIndexes = listOf(
+    // Fowl owner and regional queries
+    PerformanceIndex("idx_fowls_owner_region", "fowls", listOf("owner_id", "region", "district", "is_deleted")),
+    PerformanceIndex("idx_fowls_breed_region", "fowls", listOf("breed_primary", "region", "availability_status", "is_deleted")),
+    PerformanceIndex("idx_fowls_sync_priority", "fowls", listOf("sync_status", "sync_priority", "retry_count")),
+
+    // Transfers by fowl, by either party, and pending verification
+    PerformanceIndex("idx_transfers_fowl_status", "transfers", listOf("fowl_id", "transfer_status", "initiated_at")),
+    PerformanceIndex("idx_transfers_from_status", "transfers", listOf("from_user_id", "transfer_status", "initiated_at")),
+    PerformanceIndex("idx_transfers_to_status", "transfers", listOf("to_user_id", "transfer_status", "initiated_at")),
+    PerformanceIndex("idx_transfers_verification", "transfers", listOf("verification_status", "verification_required", "initiated_at")),
+
+    // Users by region
+    PerformanceIndex("idx_users_region_tier", "users", listOf("region", "district", "tier")),
+
+    // Sync queue processing order
+    PerformanceIndex("idx_sync_queue_entity_priority", "sync_queue", listOf("entityType", "priority", "createdAt")),
+
+    // Unread notifications
+    PerformanceIndex("idx_notifications_read", "notifications", listOf("isRead", "createdAt"))
+)
+
+private fun tableColumns(database: SupportSQLiteDatabase, table: String): Set<String> {
+    val columns = mutableSetOf<String>()
+    database.query("PRAGMA table_info(`$table`)").use { cursor ->
+        val nameIndex = cursor.getColumnIndex("name")
+        while (cursor.moveToNext()) columns.add(cursor.getString(nameIndex))
+    }
+    return columns
+}
+
 /**
  * Database cleanup and maintenance operations
  */
-class DatabaseMaintenanceManager {
+class DatabaseMaintenanceManager(
+    private val maintenance: IncrementalMaintenance = IncrementalMaintenance()
+) {
     
     /**
      * Cleanup old synced data to free storage space
+     * Runs one budgeted window; see [IncrementalMaintenance]. Scheduled runs go through
+     * DatabaseMaintenanceWorker, which only starts when the device is idle and charging.
      */
-    suspend fun performMaintenance(database: SupportSQLiteDatabase) {
-        val olderThanDays = 30
-        val olderThanMillis = System.currentTimeMillis() - (olderThanDays * 24 * 60 * 60 * 1000L)
-        
-        // Clean up old completed sync queue items
-        database.execSQL("""
-            DELETE FROM sync_queue 
-            WHERE sync_status = 'COMPLETED' 
-            AND last_attempt_at < $olderThanMillis
-        """)
-        
-        // Clean up old completed offline actions
-        database.execSQL("""
-            DELETE FROM offline_actions 
-            WHERE status = 'COMPLETED' 
-            AND processed_at < $olderThanMillis
-        """)
-        
-        // Clean up old notifications
-        database.execSQL("""
-            DELETE FROM notifications 
-            WHERE (expires_at < ${System.currentTimeMillis()} OR created_at < $olderThanMillis)
-            AND is_deleted = 0
-        """)
-        
-        // Clean up old media files that failed to upload
-        database.execSQL("""
-            DELETE FROM media 
-            WHERE upload_status = 'FAILED' 
-            AND created_at < $olderThanMillis
-        """)
-        
-        // Vacuum database to reclaim space
-        database.execSQL("VACUUM")
-        
-        // Analyze tables for query optimization
-        database.execSQL("ANALYZE")
+    suspend fun performMaintenance(
+        database: SupportSQLiteDatabase,
+        budget: MaintenanceBudget = MaintenanceBudget()
+    ): MaintenanceReport {
+        return maintenance.run(database, budget)
     }
     
     /**
      * Get database storage statistics
+     * Sizes come from page headers rather than row scans; see [StorageMeasurement].
+     * Screens that refresh often should hold a [StorageInspector], which caches per table.
      */
     suspend fun getStorageStatistics(database: SupportSQLiteDatabase): DatabaseStorageStats {
-        val cursor = database.query("PRAGMA page_count")
-        val pageCount = if (cursor.moveToFirst()) cursor.getLong(0) else 0L
-        cursor.close()
-        
-        val pageSizeCursor = database.query("PRAGMA page_size")
-        val pageSize = if (pageSizeCursor.moveToFirst()) pageSizeCursor.getLong(0) else 4096L
-        pageSizeCursor.close()
-        
-        val totalSize = pageCount * pageSize
-        
-        // Get table sizes
-        val tableSizes = mutableMapOf<String, Long>()
-        val tablesCursor = database.query("""
-            SELECT name FROM sqlite_master 
-            WHERE type='table' AND name NOT LIKE 'sqlite_%'
-        """)
-        
-        while (tablesCursor.moveToNext()) {
-            val tableName = tablesCursor.getString(0)
-            val sizeCursor = database.query("SELECT COUNT(*) FROM $tableName")
-            val rowCount = if (sizeCursor.moveToFirst()) sizeCursor.getLong(0) else 0L
-            sizeCursor.close()
-            tableSizes[tableName] = rowCount
-        }
-        tablesCursor.close()
-        
-        return DatabaseStorageStats(
-            totalSizeBytes = totalSize,
-            pageCount = pageCount,
-            pageSize = pageSize,
-            tableSizes = tableSizes
-        )
+        val measurement = StorageMeasurement.measure(database)
+        return StorageMeasurement.toStats(database, measurement.objects, measurement.exact, System.currentTimeMillis())
     }
 }
 
 /**
  * Query optimization utilities
+ * Each query is a [QueryShape]: filter values are bound rather than inlined, so repeated
+ * browsing reuses a few prepared statements, and pages continue from a [KeysetCursor].
  */
 object QueryOptimizer {
     
-    /**
-     * Get optimized fowl query with proper joins
-     */
-    fun getOptimizedFowlQuery(
-        region: String? = null,
-        district: String? = null,
-        ownerId: String? = null,
-        breed: String? = null,
-        limit: Int = 50
-    ): String {
-        val conditions = mutableListOf<String>()
-        conditions.add("f.is_deleted = 0")
-        
-        region?.let { conditions.add("f.region = '$it'") }
-        district?.let { conditions.add("f.district = '$it'") }
-        ownerId?.let { conditions.add("f.owner_id = '$it'") }
-        breed?.let { conditions.add("f.breed_primary = '$it'") }
-        
-        return """
+    private val fowlShape = QueryShape(
+        name = "fowls",
+        select = """
             SELECT 
                 f.id,
                 f.owner_id,
@@ -244,40 +115,47 @@ object QueryOptimizer {
                 f.primary_photo,
                 f.region,
                 f.district,
+                f.created_at,
                 u.display_name as owner_name,
                 u.user_tier as owner_tier,
                 u.rating as owner_rating
             FROM fowls f
             INNER JOIN users u ON f.owner_id = u.id
-            WHERE ${conditions.joinToString(" AND ")}
-            ORDER BY f.created_at DESC
-            LIMIT $limit
-        """.trimIndent()
-    }
+        """.trimIndent(),
+        fixedConditions = listOf("f.is_deleted = 0"),
+        optionalConditions = listOf(
+            "f.region = ?",
+            "f.district = ?",
+            "f.owner_id = ?",
+            "f.breed_primary = ?"
+        ),
+        keyset = KeysetOrder("f.created_at", "f.id")
+    )
     
-    /**
-     * Get optimized marketplace query with seller info
-     */
-    fun getOptimizedMarketplaceQuery(
-        region: String? = null,
-        district: String? = null,
-        breed: String? = null,
-        minPrice: Double? = null,
-        maxPrice: Double? = null,
-        limit: Int = 50
-    ): String {
-        val conditions = mutableListOf<String>()
-        conditions.add("m.is_deleted = 0")
-        conditions.add("m.listing_status = 'ACTIVE'")
-        conditions.add("(m.expires_at IS NULL OR m.expires_at > ${System.currentTimeMillis()})")
-        
-        region?.let { conditions.add("m.region = '$it'") }
-        district?.let { conditions.add("m.district = '$it'") }
-        breed?.let { conditions.add("m.breed = '$it'") }
-        minPrice?.let { conditions.add("m.base_price >= $it") }
-        maxPrice?.let { conditions.add("m.base_price <= $it") }
-        
-        return """
+    private val marketplaceFrom = """
+        FROM marketplace_listings m
+        INNER JOIN users u ON m.seller_id = u.id
+        INNER JOIN fowls f ON m.fowl_id = f.id
+    """.trimIndent()
+    
+    // Price bounds are always bound (open-ended by default) so they never add shapes
+    private val marketplaceConditions = listOf(
+        "m.is_deleted = 0",
+        "m.listing_status = 'ACTIVE'",
+        "(m.expires_at IS NULL OR m.expires_at > ?)",
+        "m.base_price >= ?",
+        "m.base_price <= ?"
+    )
+    
+    private val marketplaceFilters = listOf(
+        "m.region = ?",
+        "m.district = ?",
+        "m.breed = ?"
+    )
+    
+    private val marketplaceShape = QueryShape(
+        name = "marketplace",
+        select = """
             SELECT 
                 m.id,
                 m.seller_id,
@@ -289,7 +167,7 @@ object QueryOptimizer {
                 m.current_bid,
                 m.breed,
                 m.gender,
-                m.age,
+                m.age_weeks,
                 m.weight,
                 m.primary_photo_url,
                 m.delivery_available,
@@ -297,36 +175,27 @@ object QueryOptimizer {
                 m.favorites,
                 m.region,
                 m.district,
-                u.display_name as seller_name,
-                u.user_tier as seller_tier,
-                u.rating as seller_rating,
+                m.created_at,
+                u.displayName as seller_name,
+                u.tier as seller_tier,
                 f.health_status as fowl_health_status
-            FROM marketplace_listings m
-            INNER JOIN users u ON m.seller_id = u.id
-            INNER JOIN fowls f ON m.fowl_id = f.id
-            WHERE ${conditions.joinToString(" AND ")}
-            ORDER BY m.created_at DESC
-            LIMIT $limit
-        """.trimIndent()
-    }
+        """.trimIndent() + "\n" + marketplaceFrom,
+        fixedConditions = marketplaceConditions,
+        optionalConditions = marketplaceFilters,
+        keyset = KeysetOrder("m.created_at", "m.id")
+    )
     
-    /**
-     * Get optimized transfer query with user and fowl info
-     */
-    fun getOptimizedTransferQuery(
-        userId: String? = null,
-        status: String? = null,
-        limit: Int = 50
-    ): String {
-        val conditions = mutableListOf<String>()
-        conditions.add("t.is_deleted = 0")
-        
-        userId?.let { 
-            conditions.add("(t.from_user_id = '$it' OR t.to_user_id = '$it')") 
-        }
-        status?.let { conditions.add("t.transfer_status = '$it'") }
-        
-        return """
+    private val marketplaceCountShape = QueryShape(
+        name = "marketplace_count",
+        select = "SELECT COUNT(*)\n" + marketplaceFrom,
+        fixedConditions = marketplaceConditions,
+        optionalConditions = marketplaceFilters,
+        keyset = null
+    )
+    
+    private val transferShape = QueryShape(
+        name = "transfers",
+        select = """
             SELECT 
                 t.id,
                 t.fowl_id,
@@ -348,21 +217,188 @@ object QueryOptimizer {
             INNER JOIN users from_user ON t.from_user_id = from_user.id
             INNER JOIN users to_user ON t.to_user_id = to_user.id
             INNER JOIN fowls f ON t.fowl_id = f.id
-            WHERE ${conditions.joinToString(" AND ")}
-            ORDER BY t.initiated_at DESC
-            LIMIT $limit
-        """.trimIndent()
+        """.trimIndent(),
+        fixedConditions = listOf("t.is_deleted = 0"),
+        optionalConditions = listOf(
+            "(t.from_user_id = ? OR t.to_user_id = ?)",
+            "t.transfer_status = ?"
+        ),
+        keyset = KeysetOrder("t.initiated_at", "t.id")
+    )
+    
+    // Listing search: one shape per sort order, each served by an is_deleted-led index.
+    // Price bounds stay optional here so an unfiltered newest-first search walks the
+    // created_at index instead of being planned as a price range plus a sort.
+    private val searchFilters = listOf(
+        "base_price >= ?",
+        "base_price <= ?",
+        "breed = ?",
+        "gender = ?",
+        "age_weeks >= ?",
+        "age_weeks <= ?",
+        "(region = ? OR district = ?)",
+        "is_available = ?",
+        "(title LIKE '%' || ? || '%' OR description LIKE '%' || ? || '%')"
+    )
+    
+    private val searchShapes = mapOf(
+        "NEWEST" to KeysetOrder("created_at", "id", descending = true),
+        "OLDEST" to KeysetOrder("created_at", "id", descending = false),
+        "PRICE_LOW_TO_HIGH" to KeysetOrder("base_price", "id", descending = false, sortType = KeysetType.REAL),
+        "PRICE_HIGH_TO_LOW" to KeysetOrder("base_price", "id", descending = true, sortType = KeysetType.REAL),
+        "AGE_YOUNG_TO_OLD" to KeysetOrder("age_weeks", "id", descending = false),
+        "AGE_OLD_TO_YOUNG" to KeysetOrder("age_weeks", "id", descending = true)
+    ).mapValues { (sortBy, order) ->
+        QueryShape(
+            name = "marketplace_search_$sortBy",
+            select = "SELECT * FROM marketplace_listings",
+            fixedConditions = listOf("is_deleted = 0"),
+            optionalConditions = searchFilters,
+            keyset = order
+        )
+    }
+    
+    /**
+     * Get optimized fowl query with proper joins
+     *
+     * @param after created_at and id of the last row of the previous page
+     */
+    fun getOptimizedFowlQuery(
+        region: String? = null,
+        district: String? = null,
+        ownerId: String? = null,
+        breed: String? = null,
+        after: KeysetCursor? = null,
+        limit: Int = 50
+    ): BoundQuery {
+        return fowlShape.bind()
+            .optional(0, region)
+            .optional(1, district)
+            .optional(2, ownerId)
+            .optional(3, breed)
+            .after(after)
+            .limit(limit)
+            .build()
+    }
+    
+    /**
+     * Get optimized marketplace query with seller info
+     *
+     * @param after created_at and id of the last row of the previous page
+     */
+    fun getOptimizedMarketplaceQuery(
+        region: String? = null,
+        district: String? = null,
+        breed: String? = null,
+        minPrice: Double? = null,
+        maxPrice: Double? = null,
+        after: KeysetCursor? = null,
+        limit: Int = 50,
+        now: Long = System.currentTimeMillis()
+    ): BoundQuery {
+        return marketplaceShape.bind()
+            .fixed(now, minPrice ?: -Double.MAX_VALUE, maxPrice ?: Double.MAX_VALUE)
+            .optional(0, region)
+            .optional(1, district)
+            .optional(2, breed)
+            .after(after)
+            .limit(limit)
+            .build()
+    }
+    
+    /**
+     * Count of listings matching the same filters as [getOptimizedMarketplaceQuery]
+     * Run through a [CompiledStatementCache] so the statement is compiled once per shape.
+     */
+    fun countMarketplaceListings(
+        statements: CompiledStatementCache,
+        region: String? = null,
+        district: String? = null,
+        breed: String? = null,
+        minPrice: Double? = null,
+        maxPrice: Double? = null,
+        now: Long = System.currentTimeMillis()
+    ): Long {
+        val query = marketplaceCountShape.bind()
+            .fixed(now, minPrice ?: -Double.MAX_VALUE, maxPrice ?: Double.MAX_VALUE)
+            .optional(0, region)
+            .optional(1, district)
+            .optional(2, breed)
+            .build()
+        return statements.simpleQueryForLong(query)
+    }
+    
+    /**
+     * Marketplace search with optional filters, for [com.rio.rostry.core.database.dao.MarketplaceDao.searchListings]
+     * Unknown [sortBy] values sort newest first. [location] matches region or district.
+     *
+     * @param after sort value and id of the last row of the previous page; price orders take
+     * a [KeysetValue.Real] base_price, the others an integer created_at or age_weeks
+     */
+    fun searchListings(
+        query: String? = null,
+        minPrice: Double? = null,
+        maxPrice: Double? = null,
+        breed: String? = null,
+        gender: String? = null,
+        ageMin: Int? = null,
+        ageMax: Int? = null,
+        location: String? = null,
+        sortBy: String = "NEWEST",
+        availabilityOnly: Boolean = false,
+        after: KeysetCursor? = null,
+        limit: Int = 50
+    ): BoundQuery {
+        val shape = searchShapes[sortBy] ?: searchShapes.getValue("NEWEST")
+        return shape.bind()
+            .optional(0, minPrice)
+            .optional(1, maxPrice)
+            .optional(2, breed)
+            .optional(3, gender)
+            .optional(4, ageMin)
+            .optional(5, ageMax)
+            .optional(6, location?.takeIf { it.isNotBlank() })
+            .optional(7, if (availabilityOnly) true else null)
+            .optional(8, query?.takeIf { it.isNotBlank() })
+            .after(after)
+            .limit(limit)
+            .build()
+    }
+    
+    /**
+     * Get optimized transfer query with user and fowl info
+     *
+     * @param after initiated_at and id of the last row of the previous page
+     */
+    fun getOptimizedTransferQuery(
+        userId: String? = null,
+        status: String? = null,
+        after: KeysetCursor? = null,
+        limit: Int = 50
+    ): BoundQuery {
+        return transferShape.bind()
+            .optional(0, userId)
+            .optional(1, status)
+            .after(after)
+            .limit(limit)
+            .build()
     }
 }
 
 /**
  * Database storage statistics
+ * [tableSizes] holds bytes per table including its indexes; [exact] is false when sizes
+ * were estimated because this SQLite build lacks dbstat.
  */
 data class DatabaseStorageStats(
     val totalSizeBytes: Long,
     val pageCount: Long,
     val pageSize: Long,
-    val tableSizes: Map<String, Long>
+    val tableSizes: Map<String, Long>,
+    val objects: List<StorageObjectSize> = emptyList(),
+    val freeBytes: Long = 0L,
+    val exact: Boolean = true,
+    val measuredAt: Long = 0L
 ) {
     val totalSizeMB: Double
         get() = totalSizeBytes / (1024.0 * 1024.0)
@@ -372,4 +408,10 @@ data class DatabaseStorageStats(
             .sortedByDescending { it.second }
             .take(count)
     }
+    
+    fun getLargestIndexes(count: Int = 5): List<StorageObjectSize> {
+        return objects.filter { !it.isTable }
+            .sortedByDescending { it.bytes }
+            .take(count)
+    }
 }
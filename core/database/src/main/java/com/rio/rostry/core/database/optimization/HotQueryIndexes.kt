@@ -0,0 +1,41 @@
+package com.rio.rostry.core.database.optimization
+
+/**
+ * DDL for the composite indexes behind the hot marketplace and message queries
+ *
+ * The same indexes are declared on the entities; these statements are what the migrations
+ * run on existing installs, using Room's index names so the schema validates afterwards.
+ * Each index leads with the equality columns of its queries and ends with the sort column
+ * and primary key, so filtering and ORDER BY (including the keyset tiebreaker) are served
+ * by one index walk without a temp b-tree.
+ */
+object HotQueryIndexes {
+
+    val marketplace = listOf(
+        "CREATE INDEX IF NOT EXISTS `index_marketplace_listings_is_deleted_created_at_id` ON `marketplace_listings` (`is_deleted`, `created_at`, `id`)",
+        "CREATE INDEX IF NOT EXISTS `index_marketplace_listings_is_deleted_base_price_id` ON `marketplace_listings` (`is_deleted`, `base_price`, `id`)",
+        "CREATE INDEX IF NOT EXISTS `index_marketplace_listings_region_district_listing_status_created_at` ON `marketplace_listings` (`region`, `district`, `listing_status`, `created_at`)"
+    )
+
+    /**
+     * Breed search index, created once the breed column exists (Migration12_13)
+     */
+    val marketplaceBreed = listOf(
+        "CREATE INDEX IF NOT EXISTS `index_marketplace_listings_is_deleted_breed_created_at_id` ON `marketplace_listings` (`is_deleted`, `breed`, `created_at`, `id`)"
+    )
+
+    /**
+     * Single-column indexes made redundant by [marketplace]
+     */
+    val marketplaceReplaced = listOf(
+        "index_marketplace_listings_region_district",
+        "index_marketplace_listings_base_price",
+        "index_marketplace_listings_is_deleted"
+    )
+
+    val messages = listOf(
+        "CREATE INDEX IF NOT EXISTS `index_messages_senderId_createdAt` ON `messages` (`senderId`, `createdAt`)",
+        "CREATE INDEX IF NOT EXISTS `index_messages_recipientId_createdAt` ON `messages` (`recipientId`, `createdAt`)",
+        "CREATE INDEX IF NOT EXISTS `index_messages_conversationId_createdAt` ON `messages` (`conversationId`, `createdAt`)"
+    )
+}
@@ -0,0 +1,219 @@
+package com.rio.rostry.core.database.optimization
+
+import android.database.sqlite.SQLiteException
+import androidx.sqlite.db.SupportSQLiteDatabase
+import com.rio.rostry.core.common.performance.LatencyRegistry
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.yield
+
+/**
+ * Database maintenance that never holds the write lock for long
+ *
+ * Old rows are purged in small DELETE chunks, each its own short transaction, with a
+ * pause between chunks so UI writes get in. Free pages are returned to the file system
+ * with `PRAGMA incremental_vacuum(N)` instead of rewriting the whole file with VACUUM,
+ * and `PRAGMA optimize` refreshes only the statistics SQLite considers stale. Every
+ * step checks the time budget, so a run stops early and the next one continues.
+ */
+class IncrementalMaintenance(
+    private val registry: LatencyRegistry? = null,
+    private val clock: () -> Long = System::currentTimeMillis
+) {
+
+    /**
+     * Run one maintenance window
+     *
+     * @param shouldStop polled between steps, e.g. WorkManager's isStopped
+     */
+    suspend fun run(
+        database: SupportSQLiteDatabase,
+        budget: MaintenanceBudget = MaintenanceBudget(),
+        rules: List<PurgeRule> = PurgeRule.defaults(clock()),
+        shouldStop: () -> Boolean = { false }
+    ): MaintenanceReport {
+        val start = clock()
+        val deadline = start + budget.timeBudgetMs
+        val outOfTime = { clock() >= deadline || shouldStop() }
+        val deleted = linkedMapOf<String, Int>()
+        val errors = mutableListOf<String>()
+
+        // 1. Purge in bounded chunks
+        val existing = existingTables(database)
+        for (rule in rules) {
+            if (outOfTime()) break
+            if (rule.table !in existing) continue
+            try {
+                deleted[rule.table] = purge(database, rule, budget, outOfTime)
+            } catch (e: SQLiteException) {
+                errors.add("${rule.table}: ${e.message}")
+            }
+        }
+
+        // 2. Make sure free pages can be reclaimed incrementally
+        var converted = false
+        if (!outOfTime() && autoVacuumMode(database) != AUTO_VACUUM_INCREMENTAL && budget.allowAutoVacuumConversion) {
+            registry.timed("db.maintenance.convert") {
+                database.execSQL("PRAGMA auto_vacuum = INCREMENTAL")
+                database.execSQL("VACUUM") // once per install; the mode only applies after a rebuild
+            }
+            converted = true
+        }
+
+        // 3. Reclaim free pages a step at a time
+        val freeBefore = pragmaLong(database, "freelist_count")
+        var vacuumSteps = 0
+        if (autoVacuumMode(database) == AUTO_VACUUM_INCREMENTAL) {
+            while (!outOfTime() && pragmaLong(database, "freelist_count") > 0) {
+                registry.timed("db.maintenance.vacuum") {
+                    drain(database, "PRAGMA incremental_vacuum(${budget.vacuumPagesPerStep})")
+                }
+                vacuumSteps++
+                pause(budget)
+            }
+        }
+        val freeAfter = pragmaLong(database, "freelist_count")
+
+        // 4. Refresh planner statistics only where they drifted
+        var optimized = false
+        if (!outOfTime()) {
+            registry.timed("db.maintenance.optimize") { drain(database, "PRAGMA optimize") }
+            optimized = true
+        }
+
+        val duration = clock() - start
+        registry?.recordMillis("db.maintenance.run", duration)
+        return MaintenanceReport(
+            rowsDeleted = deleted,
+            pagesReclaimed = (freeBefore - freeAfter).coerceAtLeast(0L),
+            bytesReclaimed = (freeBefore - freeAfter).coerceAtLeast(0L) * pragmaLong(database, "page_size"),
+            freePagesRemaining = freeAfter,
+            vacuumSteps = vacuumSteps,
+            convertedToIncremental = converted,
+            optimized = optimized,
+            budgetExhausted = clock() >= deadline,
+            durationMs = duration,
+            errors = errors
+        )
+    }
+
+    private suspend fun purge(
+        database: SupportSQLiteDatabase,
+        rule: PurgeRule,
+        budget: MaintenanceBudget,
+        outOfTime: () -> Boolean
+    ): Int {
+        val statement = database.compileStatement(rule.chunkedDeleteSql(budget.deleteChunkSize))
+        var total = 0
+        try {
+            while (!outOfTime()) {
+                val start = System.nanoTime()
+                val count = statement.executeUpdateDelete()
+                registry?.recordNanos("db.maintenance.purge.${rule.table}", System.nanoTime() - start)
+                total += count
+                if (count < budget.deleteChunkSize) break
+                pause(budget)
+            }
+        } finally {
+            statement.close()
+        }
+        return total
+    }
+
+    private suspend fun pause(budget: MaintenanceBudget) {
+        yield()
+        if (budget.pauseBetweenStepsMs > 0) delay(budget.pauseBetweenStepsMs)
+    }
+
+    private fun existingTables(database: SupportSQLiteDatabase): Set<String> {
+        val tables = mutableSetOf<String>()
+        database.query("SELECT name FROM sqlite_master WHERE type = 'table'").use { cursor ->
+            while (cursor.moveToNext()) tables.add(cursor.getString(0))
+        }
+        return tables
+    }
+
+    private fun autoVacuumMode(database: SupportSQLiteDatabase): Long = pragmaLong(database, "auto_vacuum")
+
+    private fun pragmaLong(database: SupportSQLiteDatabase, pragma: String): Long {
+        database.query("PRAGMA $pragma").use { cursor ->
+            return if (cursor.moveToFirst()) cursor.getLong(0) else 0L
+        }
+    }
+
+    /**
+     * Pragmas with side effects only run as far as their cursor is stepped
+     */
+    private fun drain(database: SupportSQLiteDatabase, sql: String) {
+        database.query(sql).use { cursor -> while (cursor.moveToNext()) Unit }
+    }
+
+    private inline fun LatencyRegistry?.timed(operation: String, block: () -> Unit) {
+        if (this == null) block() else time(operation, block)
+    }
+
+    companion object {
+        const val AUTO_VACUUM_INCREMENTAL = 2L
+    }
+}
+
+/**
+ * Limits for one maintenance window
+ *
+ * @param allowAutoVacuumConversion permits the one-off full VACUUM that switches an existing
+ *   database to incremental auto-vacuum; only enable it when the device is idle and charging
+ */
+data class MaintenanceBudget(
+    val timeBudgetMs: Long = 5_000L,
+    val deleteChunkSize: Int = 500,
+    val vacuumPagesPerStep: Int = 256,
+    val pauseBetweenStepsMs: Long = 25L,
+    val allowAutoVacuumConversion: Boolean = false
+)
+
+/**
+ * Rows of [table] matching [predicate] are purged; the predicate is trusted SQL
+ */
+data class PurgeRule(
+    val table: String,
+    val predicate: String
+) {
+
+    /**
+     * Android's SQLite is built without DELETE ... LIMIT, so chunks go through rowid
+     */
+    fun chunkedDeleteSql(chunkSize: Int): String =
+        "DELETE FROM `$table` WHERE rowid IN (SELECT rowid FROM `$table` WHERE $predicate LIMIT $chunkSize)"
+
+    companion object {
+        private const val RETENTION_DAYS = 30
+
+        fun defaults(now: Long): List<PurgeRule> {
+            val cutoff = now - RETENTION_DAYS * 24 * 60 * 60 * 1000L
+            return listOf(
+                PurgeRule("sync_queue", "sync_status = 'COMPLETED' AND last_attempt_at < $cutoff"),
+                PurgeRule("offline_actions", "status = 'COMPLETED' AND processed_at < $cutoff"),
+                PurgeRule("notifications", "(expires_at < $now OR created_at < $cutoff) AND is_deleted = 0"),
+                PurgeRule("media", "upload_status = 'FAILED' AND created_at < $cutoff")
+            )
+        }
+    }
+}
+
+/**
+ * Outcome of one maintenance window, also exported as worker output
+ */
+data class MaintenanceReport(
+    val rowsDeleted: Map<String, Int>,
+    val pagesReclaimed: Long,
+    val bytesReclaimed: Long,
+    val freePagesRemaining: Long,
+    val vacuumSteps: Int,
+    val convertedToIncremental: Boolean,
+    val optimized: Boolean,
+    val budgetExhausted: Boolean,
+    val durationMs: Long,
+    val errors: List<String> = emptyList()
+) {
+    val totalRowsDeleted: Int
+        get() = rowsDeleted.values.sum()
+}
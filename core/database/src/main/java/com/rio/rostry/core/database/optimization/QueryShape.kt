@@ -0,0 +1,254 @@
+package com.rio.rostry.core.database.optimization
+
+import androidx.sqlite.db.SimpleSQLiteQuery
+import androidx.sqlite.db.SupportSQLiteDatabase
+import androidx.sqlite.db.SupportSQLiteProgram
+import androidx.sqlite.db.SupportSQLiteQuery
+import androidx.sqlite.db.SupportSQLiteStatement
+
+/**
+ * A dynamic query declared once as a fixed set of clauses
+ *
+ * Values are always bound, never written into the SQL, so a shape produces one SQL text per
+ * combination of optional filters (plus first page vs. next page). SQLite keeps prepared
+ * statements per connection keyed by SQL text; a handful of stable texts is what lets those
+ * statements be reused instead of re-parsed and re-planned on every browse.
+ *
+ * Conditions are trusted SQL fragments with `?` placeholders. An optional condition binds
+ * the same value to each of its placeholders. Shapes without a [KeysetOrder] (counts) have
+ * no ORDER BY or LIMIT.
+ */
+class QueryShape(
+    private val name: String,
+    private val select: String,
+    private val fixedConditions: List<String>,
+    private val optionalConditions: List<String>,
+    private val keyset: KeysetOrder?
+) {
+
+    private val fixedArgCount = fixedConditions.sumOf { placeholders(it) }
+    private val optionalArgCounts = optionalConditions.map { placeholders(it) }
+    private val sqlByMask = HashMap<Int, String>()
+
+    init {
+        require(optionalConditions.size <= MAX_OPTIONAL) { "Too many optional conditions in $name" }
+    }
+
+    /**
+     * Number of distinct SQL texts produced so far
+     */
+    val shapesBuilt: Int
+        @Synchronized get() = sqlByMask.size
+
+    fun bind(): Binder = Binder()
+
+    @Synchronized
+    private fun sql(mask: Int): String {
+        sqlByMask[mask]?.let { return it }
+        val conditions = ArrayList<String>(fixedConditions.size + optionalConditions.size + 1)
+        conditions.addAll(fixedConditions)
+        optionalConditions.forEachIndexed { index, condition ->
+            if (mask and (1 shl index) != 0) conditions.add(condition)
+        }
+        if (keyset != null && mask and keysetBit != 0) conditions.add(keyset.afterCondition)
+        val sql = buildString {
+            append(select)
+            append(" WHERE ")
+            append(conditions.joinToString(" AND "))
+            if (keyset != null) {
+                append(" ORDER BY ")
+                append(keyset.orderBy)
+                append(" LIMIT ?")
+            }
+        }
+        sqlByMask[mask] = sql
+        return sql
+    }
+
+    private val keysetBit: Int
+        get() = 1 shl optionalConditions.size
+
+    inner class Binder internal constructor() {
+        private val fixed = ArrayList<Any?>(fixedArgCount)
+        private val optional = arrayOfNulls<Any>(optionalConditions.size)
+        private var after: KeysetCursor? = null
+        private var limit = 50
+
+        fun fixed(vararg values: Any?) = apply { fixed.addAll(values) }
+
+        /**
+         * Bind optional condition [index]; a null value leaves the condition out
+         */
+        fun optional(index: Int, value: Any?) = apply { optional[index] = value }
+
+        fun after(cursor: KeysetCursor?) = apply { after = cursor }
+
+        fun limit(count: Int) = apply { limit = count }
+
+        fun build(): BoundQuery {
+            check(fixed.size == fixedArgCount) { "$name expects $fixedArgCount fixed arguments, got ${fixed.size}" }
+            var mask = 0
+            val args = ArrayList<Any?>(fixedArgCount + optionalConditions.size * 2 + 4)
+            args.addAll(fixed)
+            optional.forEachIndexed { index, value ->
+                if (value != null) {
+                    mask = mask or (1 shl index)
+                    repeat(optionalArgCounts[index]) { args.add(value) }
+                }
+            }
+            if (keyset != null) {
+                after?.let { cursor ->
+                    mask = mask or keysetBit
+                    args.addAll(keyset.afterArgs(cursor))
+                }
+                args.add(limit)
+            }
+            return BoundQuery(sql(mask), args.toTypedArray(), "$name#$mask")
+        }
+    }
+
+    companion object {
+        private const val MAX_OPTIONAL = 12
+
+        private fun placeholders(condition: String) = condition.count { it == '?' }
+    }
+}
+
+/**
+ * Stable ordering for keyset pagination: a sort column plus the primary key as tiebreaker
+ *
+ * The next page starts strictly after the last row seen, so the cost of a page does not
+ * grow with its offset and rows inserted meanwhile do not shift pages. Written without
+ * row values, which need SQLite 3.15 (API 26). The leading `sort <= ?` bound is what lets
+ * SQLite seek into the index; an OR on its own is only checked row by row after a walk
+ * from the start of the range.
+ *
+ * [sortType] is the storage class of the sort column. Cursors must carry a value of that
+ * type: a REAL price read back as a Long lands between rows and skips or repeats them.
+ */
+class KeysetOrder(
+    private val sortColumn: String,
+    private val idColumn: String,
+    private val descending: Boolean = true,
+    private val sortType: KeysetType = KeysetType.INTEGER
+) {
+    private val op = if (descending) "<" else ">"
+    private val direction = if (descending) "DESC" else "ASC"
+
+    internal val orderBy = "$sortColumn $direction, $idColumn $direction"
+
+    internal val afterCondition = "$sortColumn $op= ? AND ($sortColumn $op ? OR $idColumn $op ?)"
+
+    internal fun afterArgs(cursor: KeysetCursor): List<Any?> {
+        require(cursor.sortValue.type == sortType) {
+            "$sortColumn is $sortType, cursor carries ${cursor.sortValue.type}"
+        }
+        val value = cursor.sortValue.bound
+        return listOf(value, value, cursor.id)
+    }
+}
+
+/**
+ * Storage class of a keyset sort column
+ */
+enum class KeysetType { INTEGER, REAL }
+
+/**
+ * Sort value of a [KeysetCursor], typed like the column it was read from
+ */
+sealed class KeysetValue {
+    internal abstract val type: KeysetType
+    internal abstract val bound: Any
+
+    data class Integer(val value: Long) : KeysetValue() {
+        override val type get() = KeysetType.INTEGER
+        override val bound: Any get() = value
+    }
+
+    data class Real(val value: Double) : KeysetValue() {
+        override val type get() = KeysetType.REAL
+        override val bound: Any get() = value
+    }
+}
+
+/**
+ * Position after the last row of a page: its sort value and id
+ */
+data class KeysetCursor(
+    val sortValue: KeysetValue,
+    val id: String
+) {
+    constructor(sortValue: Long, id: String) : this(KeysetValue.Integer(sortValue), id)
+
+    constructor(sortValue: Double, id: String) : this(KeysetValue.Real(sortValue), id)
+
+    /**
+     * Sort value of a cursor over an INTEGER column (timestamps), as the DAO seek queries take it
+     */
+    val longValue: Long
+        get() = (sortValue as? KeysetValue.Integer)?.value
+            ?: throw IllegalArgumentException("Cursor over a REAL column has no integer sort value")
+}
+
+/**
+ * SQL text with bound arguments; [shape] identifies the canonical text it came from
+ */
+class BoundQuery(
+    override val sql: String,
+    val args: Array<Any?>,
+    val shape: String
+) : SupportSQLiteQuery {
+
+    override val argCount: Int
+        get() = args.size
+
+    override fun bindTo(statement: SupportSQLiteProgram) {
+        SimpleSQLiteQuery.bind(statement, args)
+    }
+
+    override fun toString(): String = "BoundQuery($shape, ${args.size} args)"
+}
+
+/**
+ * LRU of compiled statements keyed by SQL text
+ *
+ * Cursor queries go through SQLite's own per-connection statement cache; this cache is for
+ * single-value statements (counts, existence checks) run through [SupportSQLiteStatement],
+ * which skips cursor setup entirely. Evicted statements are closed.
+ */
+class CompiledStatementCache(
+    private val database: SupportSQLiteDatabase,
+    private val capacity: Int = 16
+) {
+
+    private val statements = object : LinkedHashMap<String, SupportSQLiteStatement>(capacity, 0.75f, true) {
+        override fun removeEldestEntry(eldest: MutableMap.MutableEntry<String, SupportSQLiteStatement>): Boolean {
+            if (size <= capacity) return false
+            eldest.value.close()
+            return true
+        }
+    }
+
+    var compiled = 0
+        private set
+
+    @Synchronized
+    fun simpleQueryForLong(query: BoundQuery): Long = withStatement(query) { it.simpleQueryForLong() }
+
+    @Synchronized
+    fun <R> withStatement(query: BoundQuery, block: (SupportSQLiteStatement) -> R): R {
+        val statement = statements.getOrPut(query.sql) {
+            compiled++
+            database.compileStatement(query.sql)
+        }
+        statement.clearBindings()
+        query.bindTo(statement)
+        return block(statement)
+    }
+
+    @Synchronized
+    fun clear() {
+        statements.values.forEach { it.close() }
+        statements.clear()
+    }
+}
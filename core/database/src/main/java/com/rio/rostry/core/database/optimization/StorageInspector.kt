@@ -0,0 +1,274 @@
+package com.rio.rostry.core.database.optimization
+
+import android.database.Cursor
+import android.database.sqlite.SQLiteException
+import androidx.room.InvalidationTracker
+import androidx.room.RoomDatabase
+import androidx.sqlite.db.SupportSQLiteDatabase
+
+/**
+ * Per-table and per-index storage sizes, cached until the measured tables change
+ *
+ * Results are kept per table. A write reported by Room's invalidation tracker marks only
+ * that table stale, and the next call re-measures just the stale tables and their indexes.
+ * [maxAgeMs] covers writes Room does not see, such as raw maintenance SQL.
+ */
+class StorageInspector(
+    private val database: RoomDatabase,
+    private val maxAgeMs: Long = 10 * 60 * 1000L,
+    private val clock: () -> Long = System::currentTimeMillis
+) {
+
+    private var cached: List<StorageObjectSize> = emptyList()
+    private var measuredAt = 0L
+    private var exact = true
+    private val staleTables = mutableSetOf<String>()
+    private var observing = false
+
+    /**
+     * Current statistics; blocking, call off the main thread
+     */
+    @Synchronized
+    fun statistics(forceRefresh: Boolean = false): DatabaseStorageStats {
+        val db = database.openHelper.writableDatabase
+        val now = clock()
+        val expired = measuredAt == 0L || now - measuredAt > maxAgeMs
+
+        if (forceRefresh || expired) {
+            val measurement = StorageMeasurement.measure(db)
+            cached = measurement.objects
+            exact = measurement.exact
+            measuredAt = now
+            staleTables.clear()
+            observeTables(cached.filter { it.isTable }.map { it.name })
+        } else if (staleTables.isNotEmpty()) {
+            val measurement = StorageMeasurement.measure(db, onlyTables = staleTables.toSet())
+            cached = cached.filterNot { it.table in staleTables } + measurement.objects
+            exact = exact && measurement.exact
+            staleTables.clear()
+        }
+
+        return StorageMeasurement.toStats(db, cached, exact, measuredAt)
+    }
+
+    @Synchronized
+    fun invalidate(table: String? = null) {
+        if (table == null) measuredAt = 0L else staleTables.add(table)
+    }
+
+    private fun observeTables(tables: List<String>) {
+        if (observing) return
+        observing = true
+        // Room rejects names it does not track, so register table by table
+        tables.forEach { table ->
+            try {
+                database.invalidationTracker.addObserver(object : InvalidationTracker.Observer(table) {
+                    override fun onInvalidated(tables: Set<String>) {
+                        tables.forEach { invalidate(it) }
+                    }
+                })
+            } catch (e: IllegalArgumentException) {
+                // Not a Room entity table; covered by maxAgeMs
+            }
+        }
+    }
+}
+
+/**
+ * Storage measurement without touching row data
+ *
+ * The `dbstat` virtual table reports the pages of every b-tree, so sizes are exact and the
+ * cost is one pass over page headers. Builds of SQLite without dbstat fall back to an
+ * estimate: row counts from sqlite_stat1 (kept fresh by PRAGMA optimize) or the rowid range,
+ * and row width from a small sample of rows.
+ */
+object StorageMeasurement {
+
+    private const val SAMPLE_ROWS = 32
+    private const val BTREE_OVERHEAD = 1.15
+
+    data class Measurement(val objects: List<StorageObjectSize>, val exact: Boolean)
+
+    fun measure(database: SupportSQLiteDatabase, onlyTables: Set<String>? = null): Measurement {
+        val schema = schema(database).filter { onlyTables == null || it.table in onlyTables }
+        val measured = try {
+            fromDbstat(database, schema, onlyTables)
+        } catch (e: SQLiteException) {
+            null
+        }
+        return if (measured != null) Measurement(measured, exact = true)
+        else Measurement(estimate(database, schema), exact = false)
+    }
+
+    fun toStats(
+        database: SupportSQLiteDatabase,
+        objects: List<StorageObjectSize>,
+        exact: Boolean,
+        measuredAt: Long
+    ): DatabaseStorageStats {
+        val pageSize = pragmaLong(database, "page_size").takeIf { it > 0 } ?: 4096L
+        val pageCount = pragmaLong(database, "page_count")
+        return DatabaseStorageStats(
+            totalSizeBytes = pageCount * pageSize,
+            pageCount = pageCount,
+            pageSize = pageSize,
+            tableSizes = objects.groupBy { it.table }.mapValues { (_, parts) -> parts.sumOf { it.bytes } },
+            objects = objects.sortedByDescending { it.bytes },
+            freeBytes = pragmaLong(database, "freelist_count") * pageSize,
+            exact = exact,
+            measuredAt = measuredAt
+        )
+    }
+
+    private data class SchemaObject(val name: String, val type: String, val table: String)
+
+    private fun schema(database: SupportSQLiteDatabase): List<SchemaObject> {
+        val objects = mutableListOf<SchemaObject>()
+        database.query(
+            "SELECT name, type, tbl_name FROM sqlite_master WHERE type IN ('table', 'index') AND name NOT LIKE 'sqlite_%'"
+        ).use { cursor ->
+            while (cursor.moveToNext()) {
+                objects.add(SchemaObject(cursor.getString(0), cursor.getString(1), cursor.getString(2)))
+            }
+        }
+        return objects
+    }
+
+    private fun fromDbstat(
+        database: SupportSQLiteDatabase,
+        schema: List<SchemaObject>,
+        onlyTables: Set<String>?
+    ): List<StorageObjectSize> {
+        val byName = schema.associateBy { it.name }
+        val sizes = mutableListOf<StorageObjectSize>()
+        val sql = "SELECT name, SUM(pgsize), COUNT(*), SUM(CASE WHEN pagetype = 'leaf' THEN ncell ELSE 0 END) FROM dbstat"
+        // dbstat walks only the named b-tree when filtered by name
+        val queries = if (onlyTables == null) listOf(sql to emptyArray<Any?>())
+        else byName.keys.map { "$sql WHERE name = ?" to arrayOf<Any?>(it) }
+
+        queries.forEach { (query, args) ->
+            database.query("$query GROUP BY name", args).use { cursor ->
+                while (cursor.moveToNext()) {
+                    val obj = byName[cursor.getString(0)] ?: continue
+                    sizes.add(StorageObjectSize(
+                        name = obj.name,
+                        type = obj.type,
+                        table = obj.table,
+                        bytes = cursor.getLong(1),
+                        pages = cursor.getLong(2),
+                        rows = cursor.getLong(3)
+                    ))
+                }
+            }
+        }
+        return sizes
+    }
+
+    private fun estimate(database: SupportSQLiteDatabase, schema: List<SchemaObject>): List<StorageObjectSize> {
+        val pageSize = pragmaLong(database, "page_size").takeIf { it > 0 } ?: 4096L
+        val statRows = statRows(database)
+        val sizes = mutableListOf<StorageObjectSize>()
+
+        schema.filter { it.type == "table" }.forEach { table ->
+            val rows = statRows[table.name] ?: rowidRange(database, table.name)
+            val widths = sampleWidths(database, table.name)
+            val rowBytes = widths.values.sum() + 8.0
+            val tableBytes = (rows * rowBytes * BTREE_OVERHEAD).toLong()
+            sizes.add(StorageObjectSize(table.name, "table", table.name, tableBytes, divideUp(tableBytes, pageSize), rows))
+
+            schema.filter { it.type == "index" && it.table == table.name }.forEach { index ->
+                val keyBytes = indexColumns(database, index.name).sumOf { widths[it] ?: 8.0 } + 8.0
+                val indexBytes = (rows * keyBytes * BTREE_OVERHEAD).toLong()
+                sizes.add(StorageObjectSize(index.name, "index", table.name, indexBytes, divideUp(indexBytes, pageSize), rows))
+            }
+        }
+        return sizes
+    }
+
+    /**
+     * Row counts recorded by ANALYZE / PRAGMA optimize, keyed by table
+     */
+    private fun statRows(database: SupportSQLiteDatabase): Map<String, Long> {
+        val rows = mutableMapOf<String, Long>()
+        try {
+            database.query("SELECT tbl, stat FROM sqlite_stat1").use { cursor ->
+                while (cursor.moveToNext()) {
+                    val count = cursor.getString(1)?.substringBefore(' ')?.toLongOrNull() ?: continue
+                    rows[cursor.getString(0)] = maxOf(rows[cursor.getString(0)] ?: 0L, count)
+                }
+            }
+        } catch (e: SQLiteException) {
+            // No statistics yet
+        }
+        return rows
+    }
+
+    /**
+     * Upper bound from the rowid b-tree ends; two index seeks, no scan
+     */
+    private fun rowidRange(database: SupportSQLiteDatabase, table: String): Long = try {
+        database.query("SELECT MAX(rowid) - MIN(rowid) + 1 FROM `$table`").use { cursor ->
+            if (cursor.moveToFirst() && !cursor.isNull(0)) cursor.getLong(0) else 0L
+        }
+    } catch (e: SQLiteException) {
+        0L // WITHOUT ROWID table
+    }
+
+    /**
+     * Average stored width per column over the first rows
+     */
+    private fun sampleWidths(database: SupportSQLiteDatabase, table: String): Map<String, Double> {
+        database.query("SELECT * FROM `$table` LIMIT $SAMPLE_ROWS").use { cursor ->
+            val totals = DoubleArray(cursor.columnCount)
+            var sampled = 0
+            while (cursor.moveToNext()) {
+                for (i in totals.indices) totals[i] += storedWidth(cursor, i)
+                sampled++
+            }
+            if (sampled == 0) return emptyMap()
+            return cursor.columnNames.indices.associate { cursor.columnNames[it] to totals[it] / sampled }
+        }
+    }
+
+    private fun storedWidth(cursor: Cursor, index: Int): Int = when (cursor.getType(index)) {
+        Cursor.FIELD_TYPE_NULL -> 1
+        Cursor.FIELD_TYPE_INTEGER, Cursor.FIELD_TYPE_FLOAT -> 8
+        Cursor.FIELD_TYPE_STRING -> cursor.getString(index).toByteArray(Charsets.UTF_8).size + 1
+        Cursor.FIELD_TYPE_BLOB -> cursor.getBlob(index).size + 2
+        else -> 8
+    }
+
+    private fun indexColumns(database: SupportSQLiteDatabase, index: String): List<String> {
+        val columns = mutableListOf<String>()
+        database.query("PRAGMA index_info(`$index`)").use { cursor ->
+            val nameIndex = cursor.getColumnIndex("name")
+            while (cursor.moveToNext()) cursor.getString(nameIndex)?.let { columns.add(it) }
+        }
+        return columns
+    }
+
+    private fun pragmaLong(database: SupportSQLiteDatabase, pragma: String): Long {
+        database.query("PRAGMA $pragma").use { cursor ->
+            return if (cursor.moveToFirst()) cursor.getLong(0) else 0L
+        }
+    }
+
+    private fun divideUp(bytes: Long, pageSize: Long) = (bytes + pageSize - 1) / pageSize
+}
+
+/**
+ * Size of one table or index b-tree
+ *
+ * @param rows leaf cells for dbstat results (rows for tables, entries for indexes)
+ */
+data class StorageObjectSize(
+    val name: String,
+    val type: String,
+    val table: String,
+    val bytes: Long,
+    val pages: Long,
+    val rows: Long
+) {
+    val isTable: Boolean
+        get() = type == "table"
+}
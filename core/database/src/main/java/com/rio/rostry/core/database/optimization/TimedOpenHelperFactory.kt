@@ -0,0 +1,170 @@
+package com.rio.rostry.core.database.optimization
+
+import android.content.ContentValues
+import android.database.Cursor
+import android.os.CancellationSignal
+import androidx.sqlite.db.SupportSQLiteDatabase
+import androidx.sqlite.db.SupportSQLiteOpenHelper
+import androidx.sqlite.db.SupportSQLiteQuery
+import androidx.sqlite.db.SupportSQLiteStatement
+import androidx.sqlite.db.framework.FrameworkSQLiteOpenHelperFactory
+import com.rio.rostry.core.common.performance.LatencyHistogram
+import com.rio.rostry.core.common.performance.LatencyRegistry
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * Open helper factory that records every DAO query into [LatencyRegistry]
+ *
+ * Room's QueryCallback fires before a statement runs and carries no timing, so the
+ * measurement happens one layer lower: the database and its compiled statements are
+ * wrapped and each execution is recorded as "db.<verb>.<table>". Query timings include
+ * filling the first cursor window, which is where SQLite actually runs the statement.
+ */
+class TimedOpenHelperFactory(
+    private val registry: LatencyRegistry,
+    private val delegate: SupportSQLiteOpenHelper.Factory = FrameworkSQLiteOpenHelperFactory()
+) : SupportSQLiteOpenHelper.Factory {
+
+    override fun create(configuration: SupportSQLiteOpenHelper.Configuration): SupportSQLiteOpenHelper {
+        return TimedOpenHelper(delegate.create(configuration), registry)
+    }
+}
+
+private class TimedOpenHelper(
+    private val delegate: SupportSQLiteOpenHelper,
+    private val registry: LatencyRegistry
+) : SupportSQLiteOpenHelper by delegate {
+
+    @Volatile
+    private var cached: TimedDatabase? = null
+
+    override val writableDatabase: SupportSQLiteDatabase
+        get() = wrap(delegate.writableDatabase)
+
+    override val readableDatabase: SupportSQLiteDatabase
+        get() = wrap(delegate.readableDatabase)
+
+    private fun wrap(database: SupportSQLiteDatabase): SupportSQLiteDatabase {
+        cached?.let { if (it.delegate === database) return it }
+        return TimedDatabase(database, registry).also { cached = it }
+    }
+}
+
+private class TimedDatabase(
+    val delegate: SupportSQLiteDatabase,
+    private val registry: LatencyRegistry
+) : SupportSQLiteDatabase by delegate {
+
+    override fun query(query: String): Cursor =
+        timedQuery(query) { delegate.query(query) }
+
+    override fun query(query: String, bindArgs: Array<out Any?>): Cursor =
+        timedQuery(query) { delegate.query(query, bindArgs) }
+
+    override fun query(query: SupportSQLiteQuery): Cursor =
+        timedQuery(query.sql) { delegate.query(query) }
+
+    override fun query(query: SupportSQLiteQuery, cancellationSignal: CancellationSignal?): Cursor =
+        timedQuery(query.sql) { delegate.query(query, cancellationSignal) }
+
+    override fun execSQL(sql: String) =
+        registry.time(SqlOperationNames.of(sql)) { delegate.execSQL(sql) }
+
+    override fun execSQL(sql: String, bindArgs: Array<out Any?>) =
+        registry.time(SqlOperationNames.of(sql)) { delegate.execSQL(sql, bindArgs) }
+
+    override fun compileStatement(sql: String): SupportSQLiteStatement =
+        TimedStatement(delegate.compileStatement(sql), registry.histogram(SqlOperationNames.of(sql)))
+
+    override fun insert(table: String, conflictAlgorithm: Int, values: ContentValues): Long =
+        registry.time("db.insert.$table") { delegate.insert(table, conflictAlgorithm, values) }
+
+    override fun update(
+        table: String,
+        conflictAlgorithm: Int,
+        values: ContentValues,
+        whereClause: String?,
+        whereArgs: Array<out Any?>?
+    ): Int = registry.time("db.update.$table") {
+        delegate.update(table, conflictAlgorithm, values, whereClause, whereArgs)
+    }
+
+    override fun delete(table: String, whereClause: String?, whereArgs: Array<out Any?>?): Int =
+        registry.time("db.delete.$table") { delegate.delete(table, whereClause, whereArgs) }
+
+    private inline fun timedQuery(sql: String, block: () -> Cursor): Cursor {
+        val start = System.nanoTime()
+        val cursor = block()
+        cursor.count // forces the first window fill
+        registry.recordNanos(SqlOperationNames.of(sql), System.nanoTime() - start)
+        return cursor
+    }
+}
+
+/**
+ * Room keeps compiled INSERT/UPDATE/DELETE statements for reuse, so the histogram is
+ * resolved once at compile time and each execution only records into it
+ */
+private class TimedStatement(
+    private val delegate: SupportSQLiteStatement,
+    private val histogram: LatencyHistogram
+) : SupportSQLiteStatement by delegate {
+
+    override fun execute() = timed { delegate.execute() }
+
+    override fun executeUpdateDelete(): Int = timed { delegate.executeUpdateDelete() }
+
+    override fun executeInsert(): Long = timed { delegate.executeInsert() }
+
+    override fun simpleQueryForLong(): Long = timed { delegate.simpleQueryForLong() }
+
+    override fun simpleQueryForString(): String? = timed { delegate.simpleQueryForString() }
+
+    private inline fun <T> timed(block: () -> T): T {
+        val start = System.nanoTime()
+        try {
+            return block()
+        } finally {
+            histogram.recordNanos(System.nanoTime() - start)
+        }
+    }
+}
+
+/**
+ * Derives "db.<verb>.<table>" from SQL text without a full parse
+ */
+internal object SqlOperationNames {
+
+    private const val MAX_CACHED = 512
+    private val cache = ConcurrentHashMap<String, String>()
+
+    fun of(sql: String): String {
+        cache[sql]?.let { return it }
+        val name = parse(sql)
+        if (cache.size < MAX_CACHED) cache[sql] = name
+        return name
+    }
+
+    fun parse(sql: String): String {
+        val tokens = sql.trim()
+            .split(WHITESPACE, limit = MAX_TOKENS)
+            .map { it.trim('`', '"', '[', ']', '(', ')', ';').lowercase() }
+        val verb = tokens.firstOrNull().orEmpty().ifEmpty { "unknown" }
+        val table = when (verb) {
+            "select", "delete", "with" -> tokens.after("from")
+            "insert", "replace" -> tokens.after("into")
+            "update" -> tokens.getOrNull(1)?.takeUnless { it == "or" } ?: tokens.getOrNull(3)
+            "pragma" -> tokens.getOrNull(1)?.substringBefore('=')?.substringBefore('(')
+            else -> null
+        }
+        return if (table.isNullOrEmpty()) "db.$verb" else "db.$verb.$table"
+    }
+
+    private fun List<String>.after(keyword: String): String? {
+        val index = indexOf(keyword)
+        return if (index >= 0) getOrNull(index + 1) else null
+    }
+
+    private val WHITESPACE = Regex("\\s+")
+    private const val MAX_TOKENS = 48
+}
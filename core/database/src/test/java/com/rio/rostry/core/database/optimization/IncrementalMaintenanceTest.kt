@@ -0,0 +1,92 @@
+package com.rio.rostry.core.database.optimization
+
+import androidx.sqlite.db.SupportSQLiteDatabase
+import androidx.sqlite.db.SupportSQLiteOpenHelper
+import androidx.sqlite.db.framework.FrameworkSQLiteOpenHelperFactory
+import androidx.test.core.app.ApplicationProvider
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import com.google.common.truth.Truth.assertThat
+import kotlinx.coroutines.test.runTest
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+
+@RunWith(AndroidJUnit4::class)
+class IncrementalMaintenanceTest {
+
+    private lateinit var helper: SupportSQLiteOpenHelper
+    private lateinit var database: SupportSQLiteDatabase
+
+    @Before
+    fun setup() {
+        helper = FrameworkSQLiteOpenHelperFactory().create(
+            SupportSQLiteOpenHelper.Configuration.builder(ApplicationProvider.getApplicationContext())
+                .name(null)
+                .callback(object : SupportSQLiteOpenHelper.Callback(1) {
+                    override fun onCreate(db: SupportSQLiteDatabase) {
+                        db.execSQL("CREATE TABLE offline_actions (id TEXT PRIMARY KEY, status TEXT, processed_at INTEGER)")
+                    }
+
+                    override fun onUpgrade(db: SupportSQLiteDatabase, oldVersion: Int, newVersion: Int) = Unit
+                })
+                .build()
+        )
+        database = helper.writableDatabase
+        database.beginTransaction()
+        repeat(1_250) { i ->
+            val status = if (i % 5 == 0) "QUEUED" else "COMPLETED"
+            database.execSQL("INSERT INTO offline_actions VALUES ('a$i', '$status', ${i.toLong()})")
+        }
+        database.setTransactionSuccessful()
+        database.endTransaction()
+    }
+
+    @After
+    fun tearDown() {
+        helper.close()
+    }
+
+    @Test
+    fun purgesInChunksAndSkipsMissingTables() = runTest {
+        val report = IncrementalMaintenance().run(
+            database,
+            MaintenanceBudget(deleteChunkSize = 300, pauseBetweenStepsMs = 0),
+            rules = listOf(
+                PurgeRule("offline_actions", "status = 'COMPLETED' AND processed_at < 10000"),
+                PurgeRule("media", "upload_status = 'FAILED'")
+            )
+        )
+
+        assertThat(report.rowsDeleted).containsExactly("offline_actions", 1_000)
+        assertThat(report.errors).isEmpty()
+        assertThat(report.optimized).isTrue()
+        database.query("SELECT COUNT(*) FROM offline_actions").use {
+            it.moveToFirst()
+            assertThat(it.getLong(0)).isEqualTo(250L)
+        }
+    }
+
+    @Test
+    fun stopsWhenTheBudgetIsSpent() = runTest {
+        var now = 0L
+        val maintenance = IncrementalMaintenance(clock = { now.also { now += 10 } })
+
+        val report = maintenance.run(
+            database,
+            MaintenanceBudget(timeBudgetMs = 25, deleteChunkSize = 100, pauseBetweenStepsMs = 0),
+            rules = listOf(PurgeRule("offline_actions", "status = 'COMPLETED'"))
+        )
+
+        assertThat(report.totalRowsDeleted).isLessThan(1_000)
+        assertThat(report.budgetExhausted).isTrue()
+        assertThat(report.optimized).isFalse()
+    }
+
+    @Test
+    fun chunkedDeleteGoesThroughRowid() {
+        assertThat(PurgeRule("media", "upload_status = 'FAILED'").chunkedDeleteSql(50)).isEqualTo(
+            "DELETE FROM `media` WHERE rowid IN (SELECT rowid FROM `media` WHERE upload_status = 'FAILED' LIMIT 50)"
+        )
+    }
+}
@@ -0,0 +1,165 @@
+package com.rio.rostry.core.database.optimization
+
+import androidx.sqlite.db.SupportSQLiteDatabase
+import androidx.sqlite.db.SupportSQLiteOpenHelper
+import androidx.sqlite.db.framework.FrameworkSQLiteOpenHelperFactory
+import androidx.test.core.app.ApplicationProvider
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import com.google.common.truth.Truth.assertThat
+import com.google.common.truth.Truth.assertWithMessage
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+
+/**
+ * Marketplace browse with inlined values vs. bound shapes
+ *
+ * Counts go through [CompiledStatementCache] so the number of prepares is observable: the
+ * inlined form prepares a new statement per call, the shaped form once per shape, and the
+ * shaped loop must come out faster than the inlined one.
+ */
+@RunWith(AndroidJUnit4::class)
+class MarketplaceBrowseBenchmarkTest {
+
+    private lateinit var helper: SupportSQLiteOpenHelper
+    private lateinit var database: SupportSQLiteDatabase
+
+    @Before
+    fun setup() {
+        helper = FrameworkSQLiteOpenHelperFactory().create(
+            SupportSQLiteOpenHelper.Configuration.builder(ApplicationProvider.getApplicationContext())
+                .name(null)
+                .callback(object : SupportSQLiteOpenHelper.Callback(1) {
+                    override fun onCreate(db: SupportSQLiteDatabase) {
+                        db.execSQL("CREATE TABLE users (id TEXT PRIMARY KEY, displayName TEXT, tier TEXT)")
+                        db.execSQL("CREATE TABLE fowls (id TEXT PRIMARY KEY, health_status TEXT)")
+                        db.execSQL(
+                            "CREATE TABLE marketplace_listings (id TEXT PRIMARY KEY, seller_id TEXT, fowl_id TEXT, " +
+                                "title TEXT, description TEXT, listing_type TEXT, base_price REAL, current_bid REAL, " +
+                                "breed TEXT, gender TEXT, age_weeks INTEGER, weight REAL, primary_photo_url TEXT, " +
+                                "delivery_available INTEGER, views INTEGER, favorites INTEGER, region TEXT, district TEXT, " +
+                                "created_at INTEGER, expires_at INTEGER, listing_status TEXT, is_deleted INTEGER)"
+                        )
+                        db.execSQL("CREATE INDEX idx_listing_browse ON marketplace_listings(region, listing_status, created_at)")
+                    }
+
+                    override fun onUpgrade(db: SupportSQLiteDatabase, oldVersion: Int, newVersion: Int) = Unit
+                })
+                .build()
+        )
+        database = helper.writableDatabase
+        database.beginTransaction()
+        repeat(20) { database.execSQL("INSERT INTO users VALUES ('u$it', 'Seller $it', 'FARMER')") }
+        repeat(LISTINGS) { i ->
+            database.execSQL("INSERT INTO fowls VALUES ('f$i', 'HEALTHY')")
+            database.execSQL(
+                "INSERT INTO marketplace_listings VALUES ('m$i', 'u${i % 20}', 'f$i', 'Listing $i', '', 'FIXED', " +
+                    "${100 + i % 400 + i % 4 * 0.25}, NULL, 'Aseel', 'MALE', 12, 2.5, NULL, 1, 0, 0, '${REGIONS[i % 3]}', 'D1', " +
+                    "${1_000_000L + i}, NULL, 'ACTIVE', 0)"
+            )
+        }
+        database.setTransactionSuccessful()
+        database.endTransaction()
+    }
+
+    @After
+    fun tearDown() {
+        helper.close()
+    }
+
+    @Test
+    fun boundShapesPrepareOncePerShape() {
+        val inlined = CompiledStatementCache(database, capacity = 16)
+        val shaped = CompiledStatementCache(database, capacity = 16)
+
+        val inlinedNanos = measure { call ->
+            inlined.simpleQueryForLong(BoundQuery(inlinedCountSql(call), emptyArray(), "inlined"))
+        }
+        val shapedNanos = measure { call ->
+            QueryOptimizer.countMarketplaceListings(
+                shaped,
+                region = REGIONS[call % 3],
+                minPrice = 100.0 + call % 50,
+                now = 2_000_000L + call
+            )
+        }
+
+        assertThat(inlined.compiled).isEqualTo(CALLS)
+        assertThat(shaped.compiled).isEqualTo(1)
+        assertWithMessage("inlined ${inlinedNanos / CALLS / 1000} us/op, bound ${shapedNanos / CALLS / 1000} us/op")
+            .that(shapedNanos).isLessThan(inlinedNanos)
+    }
+
+    @Test
+    fun keysetPagesCoverEveryRowOnce() {
+        val seen = mutableListOf<String>()
+        var after: KeysetCursor? = null
+        do {
+            val query = QueryOptimizer.getOptimizedMarketplaceQuery(region = "R1", after = after, limit = 70, now = 0L)
+            val page = database.query(query).use { cursor ->
+                val id = cursor.getColumnIndexOrThrow("id")
+                val createdAt = cursor.getColumnIndexOrThrow("created_at")
+                buildList {
+                    while (cursor.moveToNext()) add(KeysetCursor(cursor.getLong(createdAt), cursor.getString(id)))
+                }
+            }
+            seen.addAll(page.map { it.id })
+            after = page.lastOrNull()
+        } while (page.size == 70)
+
+        assertThat(seen).hasSize(LISTINGS / 3 + if (LISTINGS % 3 > 1) 1 else 0)
+        assertThat(seen.toSet()).hasSize(seen.size)
+    }
+
+    @Test
+    fun pricePagesSplitRunsOfFractionalPrices() {
+        val seen = mutableListOf<Pair<String, Double>>()
+        var after: KeysetCursor? = null
+        do {
+            val query = QueryOptimizer.searchListings(sortBy = "PRICE_LOW_TO_HIGH", after = after, limit = 7)
+            val page = database.query(query).use { cursor ->
+                val id = cursor.getColumnIndexOrThrow("id")
+                val price = cursor.getColumnIndexOrThrow("base_price")
+                buildList {
+                    while (cursor.moveToNext()) add(cursor.getString(id) to cursor.getDouble(price))
+                }
+            }
+            seen.addAll(page)
+            after = page.lastOrNull()?.let { (id, price) -> KeysetCursor(price, id) }
+        } while (page.size == 7)
+
+        // Pages of 7 over runs of 5 equal prices: most boundaries fall inside a run
+        assertThat(seen.map { it.second }.distinct().any { it % 1.0 != 0.0 }).isTrue()
+        assertThat(seen).hasSize(LISTINGS)
+        assertThat(seen.map { it.first }.toSet()).hasSize(LISTINGS)
+        assertThat(seen).isInOrder(compareBy<Pair<String, Double>>({ it.second }, { it.first }))
+    }
+
+    private inline fun measure(block: (Int) -> Long): Long {
+        val start = System.nanoTime()
+        var checksum = 0L
+        for (call in 0 until CALLS) checksum += block(call)
+        assertThat(checksum).isGreaterThan(0L)
+        return System.nanoTime() - start
+    }
+
+    /**
+     * The shape of the old QueryOptimizer output: values and the clock written into the text
+     */
+    private fun inlinedCountSql(call: Int) = """
+        SELECT COUNT(*)
+        FROM marketplace_listings m
+        INNER JOIN users u ON m.seller_id = u.id
+        INNER JOIN fowls f ON m.fowl_id = f.id
+        WHERE m.is_deleted = 0 AND m.listing_status = 'ACTIVE'
+        AND (m.expires_at IS NULL OR m.expires_at > ${2_000_000L + call})
+        AND m.region = '${REGIONS[call % 3]}' AND m.base_price >= ${100.0 + call % 50}
+    """.trimIndent()
+
+    companion object {
+        private const val LISTINGS = 2_000
+        private const val CALLS = 200
+        private val REGIONS = listOf("R0", "R1", "R2")
+    }
+}
@@ -0,0 +1,131 @@
+package com.rio.rostry.core.database.optimization
+
+import androidx.room.Room
+import androidx.sqlite.db.SupportSQLiteDatabase
+import androidx.test.core.app.ApplicationProvider
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import com.google.common.truth.Truth.assertWithMessage
+import com.rio.rostry.core.database.RIOLocalDatabase
+import com.rio.rostry.core.database.dao.MarketplaceDao
+import com.rio.rostry.core.database.dao.MessageDaoV2
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+
+/**
+ * Query plans for the hot marketplace and message queries
+ *
+ * The schema is the one Room generates for [RIOLocalDatabase], so a query naming a column
+ * the entities do not declare fails to prepare, and a plan that falls back to a SCAN of a
+ * large table means a query stopped matching the declared indexes.
+ */
+@RunWith(AndroidJUnit4::class)
+class QueryPlanTest {
+
+    private lateinit var room: RIOLocalDatabase
+    private lateinit var database: SupportSQLiteDatabase
+
+    @Before
+    fun setup() {
+        room = Room.inMemoryDatabaseBuilder(
+            ApplicationProvider.getApplicationContext(),
+            RIOLocalDatabase::class.java
+        ).allowMainThreadQueries().build()
+        database = room.openHelper.writableDatabase
+    }
+
+    @After
+    fun tearDown() {
+        room.close()
+    }
+
+    @Test
+    fun migratedIndexesMatchTheDeclaredSchema() {
+        val declared = buildSet {
+            database.query("SELECT name FROM sqlite_master WHERE type = 'index' AND tbl_name IN ('marketplace_listings', 'messages')").use { cursor ->
+                while (cursor.moveToNext()) add(cursor.getString(0))
+            }
+        }
+        val migrated = (HotQueryIndexes.marketplace + HotQueryIndexes.marketplaceBreed + HotQueryIndexes.messages)
+            .map { INDEX_NAME.find(it)!!.groupValues[1] }
+
+        assertWithMessage(declared.toString()).that(declared.containsAll(migrated)).isTrue()
+    }
+
+    @Test
+    fun searchUsesAnIndexForEverySortOrder() {
+        listOf("NEWEST", "OLDEST", "PRICE_LOW_TO_HIGH", "PRICE_HIGH_TO_LOW", "AGE_YOUNG_TO_OLD", "AGE_OLD_TO_YOUNG").forEach { sortBy ->
+            assertNoLargeScan(QueryOptimizer.searchListings(sortBy = sortBy).sql)
+            assertNoLargeScan(
+                QueryOptimizer.searchListings(
+                    query = "aseel",
+                    minPrice = 100.0,
+                    breed = "Aseel",
+                    gender = "MALE",
+                    ageMin = 10,
+                    location = "Telangana",
+                    sortBy = sortBy,
+                    availabilityOnly = true
+                ).sql
+            )
+        }
+    }
+
+    @Test
+    fun newestFirstNeedsNoSort() {
+        val plan = plan(QueryOptimizer.searchListings(sortBy = "NEWEST").sql)
+
+        assertWithMessage(plan.joinToString("\n")).that(plan.none { "TEMP B-TREE" in it }).isTrue()
+    }
+
+    @Test
+    fun browseAndCountUseIndexes() {
+        assertNoLargeScan(QueryOptimizer.getOptimizedMarketplaceQuery().sql)
+        assertNoLargeScan(QueryOptimizer.getOptimizedMarketplaceQuery(region = "R1", district = "D1").sql)
+        assertNoLargeScan(QueryOptimizer.getOptimizedMarketplaceQuery(breed = "Aseel", after = KeysetCursor(1L, "m1")).sql)
+        assertNoLargeScan(MarketplaceDao.SELLER_LISTINGS_AFTER)
+    }
+
+    @Test
+    fun messagesByUserSearchBothSides() {
+        listOf(
+            MessageDaoV2.MESSAGES_BY_USER,
+            MessageDaoV2.CONVERSATIONS_BY_USER,
+            MessageDaoV2.MESSAGES_BY_DATE_RANGE
+        ).forEach { assertNoLargeScan(it) }
+    }
+
+    @Test
+    fun seekPagesStartInsideTheIndex() {
+        listOf(
+            MarketplaceDao.ACTIVE_LISTINGS_AFTER to "created_at<?",
+            MessageDaoV2.MESSAGES_BEFORE to "createdAt<?"
+        ).forEach { (sql, range) ->
+            val plan = plan(sql)
+
+            assertNoLargeScan(sql)
+            assertWithMessage(plan.joinToString("\n")).that(plan.any { it.startsWith("SEARCH") && range in it }).isTrue()
+        }
+    }
+
+    private fun plan(sql: String): List<String> {
+        database.query("EXPLAIN QUERY PLAN $sql").use { cursor ->
+            val detail = cursor.getColumnIndexOrThrow("detail")
+            return buildList { while (cursor.moveToNext()) add(cursor.getString(detail)) }
+        }
+    }
+
+    private fun assertNoLargeScan(sql: String) {
+        val plan = plan(sql)
+        // "SCAN TABLE x" on older SQLite, "SCAN x" since 3.36; subqueries are not tables
+        val scanned = plan.mapNotNull { SCAN.find(it)?.groupValues?.get(1) }.filter { it in LARGE_TABLES }
+        assertWithMessage("${sql.trim()}\n${plan.joinToString("\n")}").that(scanned).isEmpty()
+    }
+
+    companion object {
+        private val SCAN = Regex("""^SCAN (?:TABLE )?(\w+)""")
+        private val INDEX_NAME = Regex("""INDEX IF NOT EXISTS `(\w+)`""")
+        private val LARGE_TABLES = setOf("marketplace_listings", "m", "messages", "fowls", "f", "users", "u")
+    }
+}
@@ -0,0 +1,67 @@
+package com.rio.rostry.core.database.optimization
+
+import com.google.common.truth.Truth.assertThat
+import org.junit.Assert.assertThrows
+import org.junit.Test
+
+class QueryShapeTest {
+
+    @Test
+    fun valuesAreBoundNeverInlined() {
+        val query = QueryOptimizer.getOptimizedMarketplaceQuery(region = "x' OR '1'='1", now = 42L)
+
+        assertThat(query.sql).doesNotContain("OR '1'='1")
+        assertThat(query.args.toList()).containsAtLeast(42L, "x' OR '1'='1", 50).inOrder()
+    }
+
+    @Test
+    fun browsingProducesAHandfulOfStatements() {
+        val shapes = mutableSetOf<String>()
+        val texts = mutableSetOf<String>()
+        listOf(null, "Telangana").forEach { region ->
+            listOf(null, 100.0).forEach { minPrice ->
+                repeat(20) { page ->
+                    val query = QueryOptimizer.getOptimizedMarketplaceQuery(
+                        region = region,
+                        minPrice = minPrice,
+                        maxPrice = 500.0 + page,
+                        after = if (page == 0) null else KeysetCursor(1_000L - page, "m$page"),
+                        now = 1_000L + page
+                    )
+                    shapes.add(query.shape)
+                    texts.add(query.sql)
+                }
+            }
+        }
+
+        // region on/off x first/next page; prices and time never change the text
+        assertThat(texts).hasSize(4)
+        assertThat(shapes).hasSize(4)
+    }
+
+    @Test
+    fun keysetCursorContinuesAfterTheLastRow() {
+        val query = QueryOptimizer.getOptimizedTransferQuery(
+            userId = "u1",
+            after = KeysetCursor(500L, "t9"),
+            limit = 20
+        )
+
+        assertThat(query.sql).contains("t.initiated_at <= ? AND (t.initiated_at < ? OR t.id < ?)")
+        assertThat(query.sql).endsWith("ORDER BY t.initiated_at DESC, t.id DESC LIMIT ?")
+        assertThat(query.args.toList()).containsExactly("u1", "u1", 500L, 500L, "t9", 20).inOrder()
+    }
+
+    @Test
+    fun priceOrdersBindTheCursorAsReal() {
+        val query = QueryOptimizer.searchListings(sortBy = "PRICE_HIGH_TO_LOW", after = KeysetCursor(149.5, "m7"))
+
+        assertThat(query.sql).contains("base_price <= ? AND (base_price < ? OR id < ?)")
+        assertThat(query.args.toList()).containsAtLeast(149.5, 149.5, "m7").inOrder()
+
+        // A price truncated to a Long would resume in the wrong place
+        assertThrows(IllegalArgumentException::class.java) {
+            QueryOptimizer.searchListings(sortBy = "PRICE_HIGH_TO_LOW", after = KeysetCursor(149L, "m7"))
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.rio.rostry.core.database.optimization
+
+import androidx.sqlite.db.SupportSQLiteDatabase
+import androidx.sqlite.db.SupportSQLiteOpenHelper
+import androidx.sqlite.db.framework.FrameworkSQLiteOpenHelperFactory
+import androidx.test.core.app.ApplicationProvider
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import com.google.common.truth.Truth.assertThat
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+
+@RunWith(AndroidJUnit4::class)
+class StorageMeasurementTest {
+
+    private lateinit var helper: SupportSQLiteOpenHelper
+    private lateinit var database: SupportSQLiteDatabase
+
+    @Before
+    fun setup() {
+        helper = FrameworkSQLiteOpenHelperFactory().create(
+            SupportSQLiteOpenHelper.Configuration.builder(ApplicationProvider.getApplicationContext())
+                .name(null)
+                .callback(object : SupportSQLiteOpenHelper.Callback(1) {
+                    override fun onCreate(db: SupportSQLiteDatabase) {
+                        db.execSQL("CREATE TABLE counters (id INTEGER PRIMARY KEY, value INTEGER)")
+                        db.execSQL("CREATE TABLE photos (id INTEGER PRIMARY KEY, owner TEXT, data BLOB)")
+                        db.execSQL("CREATE INDEX idx_photos_owner ON photos(owner)")
+                    }
+
+                    override fun onUpgrade(db: SupportSQLiteDatabase, oldVersion: Int, newVersion: Int) = Unit
+                })
+                .build()
+        )
+        database = helper.writableDatabase
+        database.beginTransaction()
+        repeat(1_000) { database.execSQL("INSERT INTO counters (value) VALUES ($it)") }
+        repeat(100) { database.execSQL("INSERT INTO photos (owner, data) VALUES ('u$it', zeroblob(2048))") }
+        database.setTransactionSuccessful()
+        database.endTransaction()
+    }
+
+    @After
+    fun tearDown() {
+        helper.close()
+    }
+
+    @Test
+    fun largestTablesAreRankedByBytesNotRows() {
+        val measurement = StorageMeasurement.measure(database)
+        val stats = StorageMeasurement.toStats(database, measurement.objects, measurement.exact, measuredAt = 1L)
+
+        assertThat(stats.getLargestTables(1).single().first).isEqualTo("photos")
+        assertThat(stats.getLargestIndexes().map { it.name }).contains("idx_photos_owner")
+        assertThat(stats.objects.single { it.name == "counters" }.rows).isAtLeast(1_000L)
+        assertThat(stats.tableSizes.getValue("photos")).isAtLeast(100L * 2048)
+    }
+
+    @Test
+    fun measuringOneTableLeavesOthersOut() {
+        val measurement = StorageMeasurement.measure(database, onlyTables = setOf("photos"))
+
+        assertThat(measurement.objects.map { it.name }).containsExactly("photos", "idx_photos_owner")
+    }
+}
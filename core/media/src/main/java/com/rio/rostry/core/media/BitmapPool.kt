@@ -0,0 +1,117 @@
+package com.rio.rostry.core.media
+
+import android.graphics.Bitmap
+import java.util.TreeMap
+
+/**
+ * Pool of mutable bitmaps for reuse as decode targets ([android.graphics.BitmapFactory.Options.inBitmap])
+ * and canvases, bucketed by allocation size
+ *
+ * Since API 19 a bitmap can be reused for any image that fits its allocation, so buckets are
+ * keyed by byte count and a request takes the smallest bitmap that is large enough, but no
+ * more than [MAX_OVERSIZE] times too large. The pool holds at most [maxBytes]; the largest
+ * bitmaps are dropped first when it is full.
+ *
+ * Only bitmaps nothing else references may be put back; the pool hands them out again as-is.
+ */
+class BitmapPool(private val maxBytes: Long) {
+
+    private val buckets = TreeMap<Int, ArrayDeque<Bitmap>>()
+    private var pooledBytes = 0L
+
+    /**
+     * Bytes allocated because the pool had nothing suitable
+     */
+    var missBytes = 0L
+        private set
+
+    /**
+     * Bytes served from pooled bitmaps instead of new allocations
+     */
+    var hitBytes = 0L
+        private set
+
+    /**
+     * A pooled bitmap whose allocation fits [width] x [height] in [config], or null
+     * The content and dimensions are left as they are; decoders overwrite both.
+     */
+    fun getReusable(width: Int, height: Int, config: Bitmap.Config): Bitmap? = synchronized(this) {
+        val needed = byteCount(width, height, config)
+        var size = buckets.ceilingKey(needed)
+        while (size != null && size <= needed * MAX_OVERSIZE) {
+            val bitmap = take(size)
+            if (bitmap != null) {
+                hitBytes += needed
+                return bitmap
+            }
+            size = buckets.higherKey(size)
+        }
+        missBytes += needed
+        null
+    }
+
+    /**
+     * A blank bitmap of exactly [width] x [height], reconfigured from the pool when possible
+     */
+    fun get(width: Int, height: Int, config: Bitmap.Config): Bitmap {
+        val bitmap = getReusable(width, height, config)
+            ?: return Bitmap.createBitmap(width, height, config)
+        bitmap.reconfigure(width, height, config)
+        bitmap.eraseColor(android.graphics.Color.TRANSPARENT)
+        return bitmap
+    }
+
+    /**
+     * Offer a bitmap for reuse; it is recycled instead if it cannot be pooled
+     */
+    fun put(bitmap: Bitmap) {
+        if (bitmap.isRecycled) return
+        // Immutable (including hardware) bitmaps cannot be decode targets
+        if (!bitmap.isMutable || bitmap.allocationByteCount > maxBytes / 2) {
+            bitmap.recycle()
+            return
+        }
+        val evicted = mutableListOf<Bitmap>()
+        synchronized(this) {
+            buckets.getOrPut(bitmap.allocationByteCount) { ArrayDeque() }.addLast(bitmap)
+            pooledBytes += bitmap.allocationByteCount
+            while (pooledBytes > maxBytes) {
+                take(buckets.lastKey())?.let { evicted.add(it) }
+            }
+        }
+        evicted.forEach { it.recycle() }
+    }
+
+    fun clear() {
+        val evicted = synchronized(this) {
+            buckets.values.flatten().also {
+                buckets.clear()
+                pooledBytes = 0L
+            }
+        }
+        evicted.forEach { it.recycle() }
+    }
+
+    fun size(): Long = synchronized(this) { pooledBytes }
+
+    private fun take(size: Int): Bitmap? {
+        val bucket = buckets[size] ?: return null
+        val bitmap = bucket.removeLastOrNull()
+        if (bucket.isEmpty()) buckets.remove(size)
+        if (bitmap != null) pooledBytes -= size
+        return bitmap
+    }
+
+    companion object {
+        private const val MAX_OVERSIZE = 2
+
+        fun byteCount(width: Int, height: Int, config: Bitmap.Config): Int {
+            val bytesPerPixel = when (config) {
+                Bitmap.Config.ALPHA_8 -> 1
+                Bitmap.Config.RGB_565, Bitmap.Config.ARGB_4444 -> 2
+                else -> 4
+            }
+            return width * height * bytesPerPixel
+        }
+    }
+}
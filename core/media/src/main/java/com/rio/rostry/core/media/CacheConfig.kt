@@ -34,6 +34,18 @@ object CacheConfig {
         }
     }
     
+    /**
+     * Get bitmap pool size based on device class
+     * Enough for a few screens of list thumbnails; low-end devices benefit most from reuse
+     */
+    fun getBitmapPoolSize(context: Context): Long {
+        return when (getDeviceClass(context)) {
+            DeviceClass.HIGH_END -> 8L * 1024 * 1024 // 8MB
+            DeviceClass.MID_END -> 6L * 1024 * 1024  // 6MB
+            DeviceClass.LOW_END -> 4L * 1024 * 1024  // 4MB
+        }
+    }
+    
     /**
      * Determine device class based on hardware specifications
      */
@@ -0,0 +1,74 @@
+package com.rio.rostry.core.media
+
+import kotlinx.coroutines.CoroutineDispatcher
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.CoroutineStart
+import kotlinx.coroutines.Deferred
+import kotlinx.coroutines.async
+import kotlinx.coroutines.ensureActive
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * Loads values on a bounded dispatcher, sharing one load between concurrent requests for a key
+ *
+ * The first caller for a key starts the load; callers arriving while it runs await the same
+ * result. The load is cancelled once every caller waiting on it has been cancelled, so work
+ * for list rows that scrolled away before their turn on [dispatcher] never starts.
+ *
+ * [load] is blocking and runs on [dispatcher]; it is not interrupted once started.
+ */
+class CoalescingLoader<K : Any, V : Any>(
+    private val scope: CoroutineScope,
+    private val dispatcher: CoroutineDispatcher,
+    private val cached: (K) -> V?,
+    private val load: (K) -> V?
+) {
+
+    private class InFlight<V>(val result: Deferred<V?>) {
+        var waiters = 0
+    }
+
+    private val inFlight = HashMap<K, InFlight<V>>()
+
+    private val started = AtomicInteger()
+
+    /**
+     * Number of times [load] has run
+     */
+    val loadsStarted: Int get() = started.get()
+
+    suspend fun get(key: K): V? {
+        cached(key)?.let { return it }
+
+        val request = synchronized(inFlight) {
+            inFlight.getOrPut(key) {
+                InFlight(scope.async(dispatcher, start = CoroutineStart.LAZY) {
+                    // Skip the work if every caller left while this was queued
+                    coroutineContext.ensureActive()
+                    cached(key) ?: run {
+                        started.incrementAndGet()
+                        load(key)
+                    }
+                })
+            }.also { it.waiters++ }
+        }
+        request.result.start()
+
+        try {
+            return request.result.await()
+        } finally {
+            synchronized(inFlight) {
+                request.waiters--
+                if (request.waiters == 0) {
+                    if (inFlight[key] === request) inFlight.remove(key)
+                    if (!request.result.isCompleted) request.result.cancel()
+                }
+            }
+        }
+    }
+
+    /**
+     * Keys with a load queued or running
+     */
+    fun pending(): Int = synchronized(inFlight) { inFlight.size }
+}
@@ -2,19 +2,41 @@ package com.rio.rostry.core.media
 
 import android.content.Context
 import android.graphics.Bitmap
+import android.graphics.BitmapShader
 import android.graphics.Canvas
+import android.graphics.Matrix
 import android.graphics.Paint
-import android.graphics.PorterDuff
-import android.graphics.PorterDuffXfermode
 import android.graphics.Rect
 import android.graphics.RectF
+import android.graphics.Shader
 import java.security.MessageDigest
 
 /**
  * Utility for generating cover thumbnails for fowls
  * Creates tiny thumbnails for list cards and profile headers to reduce cold-start cost
+ *
+ * Placeholders and rounded corners can be drawn straight onto a view's canvas with
+ * [drawPlaceholder] and [drawRoundedBitmap], which allocate no bitmaps and reuse their paints.
  */
-class CoverThumbnailGenerator(private val context: Context) {
+class CoverThumbnailGenerator(
+    private val context: Context,
+    private val bitmapPool: BitmapPool = ThumbnailCacheManager.getInstance(context).bitmapPool
+) {
+    
+    private val fillPaint = Paint(Paint.ANTI_ALIAS_FLAG).apply {
+        style = Paint.Style.FILL
+    }
+    private val textPaint = Paint(Paint.ANTI_ALIAS_FLAG).apply {
+        color = android.graphics.Color.WHITE
+        textAlign = Paint.Align.CENTER
+        isFakeBoldText = true
+    }
+    private val shaderPaint = Paint(Paint.ANTI_ALIAS_FLAG)
+    private val shaderMatrix = Matrix()
+    private val textBounds = Rect()
+    private val drawBounds = RectF()
+    private var shaderBitmap: Bitmap? = null
+    private var colorSeed: String? = null
     
     /**
      * Generate a cover thumbnail from a list of proof URLs
@@ -33,41 +55,44 @@ class CoverThumbnailGenerator(private val context: Context) {
     
     /**
      * Generate a placeholder cover thumbnail with colored circle and initials
-     * Useful when no proof images are available
+     * Useful when no proof images are available. The bitmap comes from the pool; prefer
+     * [drawPlaceholder] when drawing into a view.
      */
     fun generatePlaceholderThumbnail(name: String?, color: String, size: Int = 40): Bitmap {
-        val bitmap = Bitmap.createBitmap(size, size, Bitmap.Config.ARGB_8888)
-        val canvas = Canvas(bitmap)
+        val bitmap = bitmapPool.get(size, size, Bitmap.Config.ARGB_8888)
+        // The circle leaves the corners transparent, so no separate rounding pass is needed
+        drawPlaceholder(Canvas(bitmap), size.toFloat(), size.toFloat(), name, color)
+        return bitmap
+    }
+    
+    /**
+     * Draw the colored circle and initials centred in a [width] x [height] area of [canvas]
+     */
+    fun drawPlaceholder(canvas: Canvas, width: Float, height: Float, name: String?, color: String) {
+        synchronized(this) { drawPlaceholderLocked(canvas, width, height, name, color) }
+    }
+    
+    private fun drawPlaceholderLocked(canvas: Canvas, width: Float, height: Float, name: String?, color: String) {
+        val radius = minOf(width, height) / 2f
+        val cx = width / 2f
+        val cy = height / 2f
         
-        // Draw background circle
-        val paint = Paint().apply {
-            this.isAntiAlias = true
-            style = Paint.Style.FILL
-            this.color = getColorFromString(color)
+        // Hashing the seed on every frame would allocate; lists redraw the same seed repeatedly
+        if (color != colorSeed) {
+            colorSeed = color
+            fillPaint.color = getColorFromString(color)
         }
-        
-        val radius = size / 2f
-        canvas.drawCircle(radius, radius, radius, paint)
+        canvas.drawCircle(cx, cy, radius, fillPaint)
         
         // Draw initials if name is available
         if (!name.isNullOrEmpty()) {
             val initials = getInitials(name)
             
-            paint.color = android.graphics.Color.WHITE
-            paint.textSize = size / 2.5f
-            paint.textAlign = Paint.Align.CENTER
-            paint.isFakeBoldText = true
+            textPaint.textSize = radius * 2 / 2.5f
+            textPaint.getTextBounds(initials, 0, initials.length, textBounds)
             
-            val textBounds = Rect()
-            paint.getTextBounds(initials, 0, initials.length, textBounds)
-            
-            val x = size / 2f
-            val y = (size / 2f) - textBounds.exactCenterY()
-            
-            canvas.drawText(initials, x, y, paint)
+            canvas.drawText(initials, cx, cy - textBounds.exactCenterY(), textPaint)
         }
-        
-        return getRoundedCornerBitmap(bitmap, size / 10)
     }
     
     /**
@@ -125,27 +150,52 @@ class CoverThumbnailGenerator(private val context: Context) {
     
     /**
      * Create a rounded corner bitmap
+     * The output comes from the pool; prefer [drawRoundedBitmap] when drawing into a view.
      */
     fun getRoundedCornerBitmap(bitmap: Bitmap, pixels: Int): Bitmap {
-        val output = Bitmap.createBitmap(bitmap.width, bitmap.height, Bitmap.Config.ARGB_8888)
-        val canvas = Canvas(output)
-        
-        val color = android.graphics.Color.RED
-        val paint = Paint()
-        val rect = Rect(0, 0, bitmap.width, bitmap.height)
-        val rectF = RectF(rect)
-        
-        paint.isAntiAlias = true
-        canvas.drawARGB(0, 0, 0, 0)
-        paint.color = color
-        canvas.drawRoundRect(rectF, pixels.toFloat(), pixels.toFloat(), paint)
-        
-        paint.xfermode = PorterDuffXfermode(PorterDuff.Mode.SRC_IN)
-        canvas.drawBitmap(bitmap, rect, rect, paint)
-        
+        val output = bitmapPool.get(bitmap.width, bitmap.height, Bitmap.Config.ARGB_8888)
+        drawRoundedBitmap(Canvas(output), bitmap, 0f, 0f, bitmap.width.toFloat(), bitmap.height.toFloat(), pixels.toFloat())
         return output
     }
     
+    /**
+     * Draw [bitmap] scaled into the given bounds with rounded corners, through a shader
+     * rather than a masked copy
+     */
+    fun drawRoundedBitmap(
+        canvas: Canvas,
+        bitmap: Bitmap,
+        left: Float,
+        top: Float,
+        right: Float,
+        bottom: Float,
+        radius: Float
+    ) {
+        synchronized(this) { drawRoundedBitmapLocked(canvas, bitmap, left, top, right, bottom, radius) }
+    }
+    
+    private fun drawRoundedBitmapLocked(
+        canvas: Canvas,
+        bitmap: Bitmap,
+        left: Float,
+        top: Float,
+        right: Float,
+        bottom: Float,
+        radius: Float
+    ) {
+        // Rebuilt only when the bitmap changes; the matrix handles position and scale
+        if (shaderBitmap !== bitmap) {
+            shaderPaint.shader = BitmapShader(bitmap, Shader.TileMode.CLAMP, Shader.TileMode.CLAMP)
+            shaderBitmap = bitmap
+        }
+        shaderMatrix.setScale((right - left) / bitmap.width, (bottom - top) / bitmap.height)
+        shaderMatrix.postTranslate(left, top)
+        shaderPaint.shader.setLocalMatrix(shaderMatrix)
+        
+        drawBounds.set(left, top, right, bottom)
+        canvas.drawRoundRect(drawBounds, radius, radius, shaderPaint)
+    }
+    
     /**
      * Update the fowl entity with the generated cover thumbnail URL
      * In a real implementation, this would update the database
@@ -0,0 +1,296 @@
+package com.rio.rostry.core.media
+
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.launch
+import java.io.BufferedWriter
+import java.io.File
+import java.io.FileOutputStream
+import java.io.IOException
+import java.io.OutputStream
+
+/**
+ * Size-bounded LRU of files in one directory, indexed in memory and backed by a journal
+ *
+ * The index (key to size and last access) is rebuilt from the journal on first use, so a
+ * lookup is a map read: misses never touch the filesystem and hits only return the file.
+ * Writes go to a temp file that is renamed into place, so readers never see a partial
+ * entry. When the total passes [maxBytes] the least recently used entries are deleted on
+ * [scope]. Access records are buffered and written with the next put or remove; losing them
+ * in a crash only makes the eviction order slightly stale.
+ *
+ * Renaming a file into place and deleting one both happen under the same lock as the index
+ * update, so an eviction can never delete the file of a put that re-added its key.
+ *
+ * Keys must be file-name safe (letters, digits, '-' and '_').
+ */
+class JournaledDiskCache(
+    private val directory: File,
+    private val maxBytes: Long,
+    private val scope: CoroutineScope = CoroutineScope(SupervisorJob() + Dispatchers.IO),
+    private val clock: () -> Long = System::currentTimeMillis
+) {
+
+    private class Entry(val size: Long, var lastAccess: Long)
+
+    // Access-ordered: iteration starts at the least recently used entry
+    private val entries = LinkedHashMap<String, Entry>(64, 0.75f, true)
+    private var totalBytes = 0L
+    private var journal: BufferedWriter? = null
+    private var journalLines = 0
+    private var initialized = false
+    private var trimScheduled = false
+
+    private val journalFile = File(directory, JOURNAL)
+
+    /**
+     * The cached file for [key], or null without any filesystem access when absent
+     */
+    fun get(key: String): File? = synchronized(this) {
+        ensureInitialized()
+        val entry = entries[key] ?: return null
+        entry.lastAccess = clock()
+        appendJournal("$ACCESS $key ${entry.lastAccess}", flush = false)
+        File(directory, key)
+    }
+
+    operator fun contains(key: String): Boolean = synchronized(this) {
+        ensureInitialized()
+        entries.containsKey(key)
+    }
+
+    /**
+     * Write an entry through [write]; it becomes visible only once fully written
+     *
+     * @return false if writing failed, in which case nothing is stored
+     */
+    fun put(key: String, write: (OutputStream) -> Unit): Boolean {
+        require(KEY_PATTERN.matches(key)) { "Invalid cache key: $key" }
+        synchronized(this) { ensureInitialized() }
+
+        val temp = File(directory, "$key$TEMP_SUFFIX")
+        val target = File(directory, key)
+        try {
+            FileOutputStream(temp).use { out ->
+                write(out)
+                out.fd.sync()
+            }
+        } catch (e: Exception) {
+            temp.delete()
+            return false
+        }
+
+        val overBudget = synchronized(this) {
+            if (!temp.renameTo(target)) {
+                temp.delete()
+                return false
+            }
+            val size = target.length()
+            entries.remove(key)?.let { totalBytes -= it.size }
+            val now = clock()
+            entries[key] = Entry(size, now)
+            totalBytes += size
+            appendJournal("$PUT $key $size $now", flush = true)
+            totalBytes > maxBytes
+        }
+        if (overBudget) scheduleTrim()
+        return true
+    }
+
+    fun remove(key: String) {
+        synchronized(this) {
+            ensureInitialized()
+            val entry = entries.remove(key) ?: return
+            totalBytes -= entry.size
+            appendJournal("$REMOVE $key", flush = true)
+            File(directory, key).delete()
+        }
+    }
+
+    fun clear() {
+        synchronized(this) {
+            ensureInitialized()
+            entries.clear()
+            totalBytes = 0L
+            directory.listFiles()?.forEach { if (it.name != JOURNAL) it.delete() }
+            rewriteJournal()
+        }
+    }
+
+    /**
+     * Bytes currently indexed; no filesystem access
+     */
+    fun size(): Long = synchronized(this) {
+        ensureInitialized()
+        totalBytes
+    }
+
+    fun maxSize(): Long = maxBytes
+
+    /**
+     * Evict least recently used entries until the total fits [maxBytes]
+     * Runs on [scope] after puts that go over budget; callable directly from a background thread.
+     */
+    fun trimToSize() = synchronized(this) {
+        ensureInitialized()
+        trimScheduled = false
+        var evicted = false
+        val iterator = entries.entries.iterator()
+        while (totalBytes > maxBytes && iterator.hasNext()) {
+            val (key, entry) = iterator.next()
+            iterator.remove()
+            totalBytes -= entry.size
+            appendJournal("$REMOVE $key", flush = false)
+            File(directory, key).delete()
+            evicted = true
+        }
+        if (evicted) journal?.flush()
+        Unit
+    }
+
+    /**
+     * Write out buffered access records
+     */
+    fun flush() = synchronized(this) {
+        journal?.flush()
+        Unit
+    }
+
+    private fun scheduleTrim() {
+        synchronized(this) {
+            if (trimScheduled) return
+            trimScheduled = true
+        }
+        scope.launch { trimToSize() }
+    }
+
+    private fun ensureInitialized() {
+        if (initialized) return
+        initialized = true
+        if (!directory.exists()) directory.mkdirs()
+
+        if (!readJournal()) rebuildFromDirectory()
+        rewriteJournal()
+
+        // Orphans and half-written temp files are cleaned up once, off the lookup path
+        scope.launch { removeOrphans() }
+        if (totalBytes > maxBytes) scheduleTrim()
+    }
+
+    /**
+     * Replay the journal into [entries]; false if it is missing or unreadable
+     */
+    private fun readJournal(): Boolean {
+        if (!journalFile.exists()) return false
+        return try {
+            journalFile.bufferedReader().useLines { lines ->
+                val iterator = lines.iterator()
+                if (!iterator.hasNext() || iterator.next() != HEADER) return false
+                iterator.forEach { line ->
+                    // A line cut short by a crash fails these checks and is skipped
+                    val parts = line.split(' ')
+                    when (parts.firstOrNull()) {
+                        PUT -> {
+                            val size = parts.getOrNull(2)?.toLongOrNull()
+                            val time = parts.getOrNull(3)?.toLongOrNull()
+                            if (parts.size == 4 && size != null && time != null) {
+                                entries.remove(parts[1])?.let { totalBytes -= it.size }
+                                entries[parts[1]] = Entry(size, time)
+                                totalBytes += size
+                            }
+                        }
+                        ACCESS -> {
+                            val time = parts.getOrNull(2)?.toLongOrNull()
+                            if (parts.size == 3 && time != null) entries[parts[1]]?.lastAccess = time
+                        }
+                        REMOVE -> if (parts.size == 2) entries.remove(parts[1])?.let { totalBytes -= it.size }
+                    }
+                }
+            }
+            true
+        } catch (e: IOException) {
+            // Unreadable: fall back to the directory
+            entries.clear()
+            totalBytes = 0L
+            false
+        }
+    }
+
+    /**
+     * Index whatever is on disk, oldest first; used for caches written before the journal
+     */
+    private fun rebuildFromDirectory() {
+        directory.listFiles()
+            ?.filter { it.isFile && it.name != JOURNAL && KEY_PATTERN.matches(it.name) }
+            ?.sortedBy { it.lastModified() }
+            ?.forEach { file ->
+                entries[file.name] = Entry(file.length(), file.lastModified())
+                totalBytes += file.length()
+            }
+    }
+
+    /**
+     * Replace the journal with one PUT line per live entry, in LRU order
+     */
+    private fun rewriteJournal() {
+        journal?.close()
+        val temp = File(directory, "$JOURNAL$TEMP_SUFFIX")
+        try {
+            temp.bufferedWriter().use { writer ->
+                writer.write(HEADER)
+                writer.newLine()
+                entries.forEach { (key, entry) ->
+                    writer.write("$PUT $key ${entry.size} ${entry.lastAccess}")
+                    writer.newLine()
+                }
+            }
+            if (!temp.renameTo(journalFile)) throw IOException("Journal rename failed")
+            journalLines = entries.size
+            journal = FileOutputStream(journalFile, true).bufferedWriter()
+        } catch (e: IOException) {
+            // Keep serving from memory; the directory is re-indexed on next start
+            journal = null
+            temp.delete()
+        }
+    }
+
+    private fun appendJournal(line: String, flush: Boolean) {
+        val writer = journal ?: return
+        try {
+            writer.write(line)
+            writer.newLine()
+            journalLines++
+            if (flush) writer.flush()
+        } catch (e: IOException) {
+            journal = null
+            return
+        }
+        // Access records dominate; compact once most lines are superseded
+        if (journalLines > COMPACT_THRESHOLD && journalLines > entries.size * 2) rewriteJournal()
+    }
+
+    /**
+     * Delete files the index does not know, such as leftovers of a crash mid-put
+     * Recent files are skipped: they may belong to a put that has not been indexed yet.
+     */
+    private fun removeOrphans() {
+        val cutoff = System.currentTimeMillis() - ORPHAN_GRACE_MS
+        directory.listFiles()?.forEach { file ->
+            if (file.name == JOURNAL || file.lastModified() > cutoff) return@forEach
+            synchronized(this) { if (file.name !in entries) file.delete() }
+        }
+    }
+
+    companion object {
+        private const val JOURNAL = "journal"
+        private const val HEADER = "thumbnail-journal 1"
+        private const val TEMP_SUFFIX = ".tmp"
+        private const val PUT = "P"
+        private const val ACCESS = "A"
+        private const val REMOVE = "R"
+        private const val COMPACT_THRESHOLD = 2_000
+        private const val ORPHAN_GRACE_MS = 60_000L
+        private val KEY_PATTERN = Regex("[A-Za-z0-9_-]{1,120}")
+    }
+}
@@ -2,21 +2,18 @@ package com.rio.rostry.core.media
 
 import android.content.Context
 import android.graphics.Bitmap
-import android.graphics.BitmapFactory
 import android.net.Uri
 import com.google.firebase.auth.FirebaseAuth
-import com.google.firebase.storage.FirebaseStorage
-import com.google.firebase.storage.StorageReference
-import com.google.firebase.storage.UploadTask
 import com.rio.rostry.core.common.compression.DataCompressionManager
 import com.rio.rostry.core.common.compression.ImageQuality
+import com.rio.rostry.core.common.compression.SampledImageDecoder
 import com.rio.rostry.core.common.exceptions.SyncException
 import com.rio.rostry.core.database.RIOLocalDatabase
 import com.rio.rostry.core.database.entities.MediaEntity
+import com.rio.rostry.core.media.upload.ResumableUploadEngine
 import com.rio.rostry.core.network.NetworkStateManager
 import kotlinx.coroutines.flow.Flow
 import kotlinx.coroutines.flow.flow
-import kotlinx.coroutines.tasks.await
 import java.io.File
 import java.io.FileOutputStream
 import java.util.*
@@ -30,11 +27,11 @@ import javax.inject.Singleton
 @Singleton
 class MediaManager @Inject constructor(
     private val context: Context,
-    private val storage: FirebaseStorage,
     private val auth: FirebaseAuth,
     private val database: RIOLocalDatabase,
     private val networkStateManager: NetworkStateManager,
-    private val compressionManager: DataCompressionManager
+    private val compressionManager: DataCompressionManager,
+    private val uploadEngine: ResumableUploadEngine
 ) {
     
     private val mediaDao = database.mediaDao()
@@ -98,6 +95,7 @@ class MediaManager @Inject constructor(
                 fileSize = processedFile.length(),
                 mimeType = fileInfo.mimeType,
                 localPath = processedFile.absolutePath,
+                storagePath = storagePath,
                 uploadStatus = "PENDING",
                 compressionApplied = mediaType != MediaType.DOCUMENT,
                 createdAt = Date()
@@ -109,8 +107,8 @@ class MediaManager @Inject constructor(
             
             // Check network and upload strategy
             if (networkStateManager.isConnected.value) {
-                // Upload immediately
-                val uploadResult = performUpload(processedFile, storagePath, mediaEntity)
+                // Upload immediately; if interrupted the row stays queued with its session
+                val uploadResult = uploadEngine.upload(mediaEntity)
                 emit(uploadResult)
             } else {
                 // Queue for later upload
@@ -198,109 +196,29 @@ class MediaManager @Inject constructor(
     
     /**
      * Upload queued media when network becomes available
+     * Uploads run concurrently by connection quality, small images first, resuming any
+     * partially uploaded files.
      */
-    suspend fun uploadQueuedMedia(): Flow<QueueUploadResult> = flow {
-        
-        val pendingMedia = mediaDao.getPendingUploads()
-        emit(QueueUploadResult.Started(pendingMedia.size))
-        
-        var successCount = 0
-        var failureCount = 0
-        
-        for (media in pendingMedia) {
-            try {
-                val localFile = File(media.localPath)
-                if (!localFile.exists()) {
-                    mediaDao.updateUploadStatus(media.id, "FAILED", 0)
-                    failureCount++
-                    continue
-                }
-                
-                val storagePath = reconstructStoragePath(media)
-                val uploadResult = performUpload(localFile, storagePath, media)
-                
-                when (uploadResult) {
-                    is MediaUploadResult.Success -> {
-                        successCount++
-                        emit(QueueUploadResult.Progress(successCount, failureCount, media.fileName))
-                    }
-                    is MediaUploadResult.Error -> {
-                        failureCount++
-                        emit(QueueUploadResult.Progress(successCount, failureCount, media.fileName))
-                    }
-                    else -> { /* Handle other cases */ }
-                }
-                
-            } catch (e: Exception) {
-                failureCount++
-                mediaDao.updateUploadStatus(media.id, "FAILED", 0)
-            }
-        }
-        
-        emit(QueueUploadResult.Completed(successCount, failureCount))
-    }
-    
-    /**
-     * Perform actual upload with progress tracking
-     */
-    private suspend fun performUpload(
-        file: File,
-        storagePath: String,
-        mediaEntity: MediaEntity
-    ): MediaUploadResult {
-        return try {
-            val storageRef = storage.reference.child(storagePath)
-            
-            // Update status to uploading
-            mediaDao.updateUploadStatus(mediaEntity.id, "UPLOADING", 0)
-            
-            // Upload with progress tracking
-            val uploadTask = storageRef.putFile(Uri.fromFile(file))
-            
-            // Track progress
-            uploadTask.addOnProgressListener { taskSnapshot ->
-                val progress = (100.0 * taskSnapshot.bytesTransferred / taskSnapshot.totalByteCount).toInt()
-                // Update progress in database
-                mediaDao.updateUploadStatus(mediaEntity.id, "UPLOADING", progress)
-            }
-            
-            val result = uploadTask.await()
-            val downloadUrl = result.storage.downloadUrl.await()
-            
-            // Update media entity with remote URL
-            mediaDao.updateRemoteUrl(mediaEntity.id, downloadUrl.toString(), Date())
-            mediaDao.updateUploadStatus(mediaEntity.id, "COMPLETED", 100)
-            
-            MediaUploadResult.Success(mediaEntity.id, downloadUrl.toString())
-            
-        } catch (e: Exception) {
-            mediaDao.updateUploadStatus(mediaEntity.id, "FAILED", 0)
-            MediaUploadResult.Error(e.toSyncException())
-        }
-    }
+    suspend fun uploadQueuedMedia(): Flow<QueueUploadResult> = uploadEngine.drain()
     
     /**
      * Compress image based on network quality
      */
     private suspend fun compressImage(uri: Uri, quality: ImageQuality): File {
-        val inputStream = context.contentResolver.openInputStream(uri)
-            ?: throw SyncException.MediaError.FileNotFound("Cannot open input stream")
-        
-        val bitmap = BitmapFactory.decodeStream(inputStream)
-            ?: throw SyncException.MediaError.CompressionFailed("Cannot decode image", "Invalid image format")
+        // Decoded in passes straight to the quality's size, so a camera photo never exists at full resolution
+        val bitmap = SampledImageDecoder.decode(
+            open = {
+                context.contentResolver.openInputStream(uri)
+                    ?: throw SyncException.MediaError.FileNotFound("Cannot open input stream")
+            },
+            maxWidth = quality.maxWidth,
+            maxHeight = quality.maxHeight
+        )?.bitmap ?: throw SyncException.MediaError.CompressionFailed("Cannot decode image", "Invalid image format")
         
         val tempFile = File(context.cacheDir, "compressed_${System.currentTimeMillis()}.jpg")
         val outputStream = FileOutputStream(tempFile)
         
-        val compressionQuality = when (quality) {
-            ImageQuality.HIGH -> 90
-            ImageQuality.MEDIUM -> 70
-            ImageQuality.LOW -> 50
-            ImageQuality.VERY_LOW -> 30
-            ImageQuality.THUMBNAIL -> 60
-        }
-        
-        bitmap.compress(Bitmap.CompressFormat.JPEG, compressionQuality, outputStream)
+        bitmap.compress(Bitmap.CompressFormat.JPEG, quality.jpegQuality, outputStream)
         outputStream.close()
         bitmap.recycle()
         
@@ -452,11 +370,6 @@ class MediaManager @Inject constructor(
         // Implementation for downloading with progress
         return File(context.cacheDir, fileName)
     }
-    
-    private fun reconstructStoragePath(media: MediaEntity): String {
-        // Implementation for reconstructing storage path
-        return ""
-    }
 }
 
 /**
@@ -4,9 +4,19 @@ import android.content.Context
 import android.graphics.Bitmap
 import android.graphics.BitmapFactory
 import androidx.collection.LruCache
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.ExperimentalCoroutinesApi
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.awaitCancellation
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.flow
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.withContext
 import java.io.File
-import java.io.FileOutputStream
 import java.security.MessageDigest
+import java.util.Collections
+import java.util.IdentityHashMap
 
 /**
  * Manager for caching thumbnails to reduce data usage and improve loading times
@@ -18,14 +28,55 @@ class ThumbnailCacheManager private constructor(context: Context) {
         if (!exists()) mkdirs()
     }
     
-    // In-memory LRU cache for bitmaps
-    private val memoryCache = LruCache<String, Bitmap>(CacheConfig.getMemoryCacheSize(context)) {
-        it.byteCount
+    /**
+     * Decode targets and canvases for thumbnails and placeholders
+     */
+    val bitmapPool = BitmapPool(CacheConfig.getBitmapPoolSize(context))
+    
+    // Bitmaps on screen, by holder count; evicted ones go to the pool only once released.
+    // Also the lock under which cache lookups take their hold, so eviction cannot slip between.
+    private val retained = IdentityHashMap<Bitmap, Int>()
+    private val releasedOnEviction = Collections.newSetFromMap(IdentityHashMap<Bitmap, Boolean>())
+    
+    // In-memory LRU cache for bitmaps, sized in kilobytes like CacheConfig.getMemoryCacheSize
+    private val memoryCache = object : LruCache<String, Bitmap>(CacheConfig.getMemoryCacheSize(context)) {
+        override fun sizeOf(key: String, value: Bitmap): Int = value.allocationByteCount / 1024
+        
+        override fun entryRemoved(evicted: Boolean, key: String, oldValue: Bitmap, newValue: Bitmap?) {
+            if (oldValue !== newValue) recycleWhenUnused(oldValue)
+        }
     }
     
     // Disk cache size
     private val diskCacheSize = CacheConfig.getDiskCacheSize(context)
     
+    private val ioScope = CoroutineScope(SupervisorJob() + Dispatchers.IO)
+    
+    // Journaled LRU bounded to diskCacheSize; lookups are answered from its in-memory index
+    private val diskCache = JournaledDiskCache(cacheDir, diskCacheSize, ioScope)
+    
+    // Decodes are CPU bound; more of them in parallel than cores only adds memory pressure
+    @OptIn(ExperimentalCoroutinesApi::class)
+    private val decodeDispatcher = Dispatchers.IO.limitedParallelism(Runtime.getRuntime().availableProcessors())
+    
+    // Rows showing the same photo share one decode. The shared result is not held for any
+    // caller; each takes its own hold through acquire.
+    private val loader = CoalescingLoader<ThumbnailRequest, Bitmap>(
+        scope = ioScope,
+        dispatcher = decodeDispatcher,
+        cached = { memoryCache.get(generateKey(it.filePath, it.maxWidth, it.maxHeight, it.opaque)) },
+        load = { request ->
+            getThumbnail(request.filePath, request.maxWidth, request.maxHeight, request.opaque)?.also { release(it) }
+        }
+    )
+    
+    private data class ThumbnailRequest(val filePath: String, val maxWidth: Int, val maxHeight: Int, val opaque: Boolean)
+    
+    init {
+        // Load the index off the caller's thread so the first lookup does not read the journal
+        ioScope.launch { diskCache.size() }
+    }
+    
     companion object {
         @Volatile
         private var INSTANCE: ThumbnailCacheManager? = null
@@ -36,61 +87,187 @@ class ThumbnailCacheManager private constructor(context: Context) {
             }
         }
         
+        // Loads whose result was evicted before the caller could hold it, before decoding directly
+        private const val MAX_ACQUIRE_ATTEMPTS = 3
+        
         private fun getCacheSize(): Int {
             val maxMemory = (Runtime.getRuntime().maxMemory() / 1024).toInt()
             return maxMemory / 8 // Use 1/8th of available memory for cache
         }
     }
     
+    /**
+     * Get thumbnail from cache or create it on the decode dispatcher
+     * Concurrent calls for the same file and size wait for a single decode; it is cancelled
+     * if every caller is cancelled before it starts.
+     *
+     * The bitmap is returned held, as by [retain]: call [release] once it is no longer drawn.
+     *
+     * @param opaque decode as RGB_565, half the memory of ARGB_8888; only for images without
+     * transparency such as camera photos
+     */
+    suspend fun loadThumbnail(filePath: String, maxWidth: Int = 120, maxHeight: Int = 120, opaque: Boolean = false): Bitmap? {
+        val request = ThumbnailRequest(filePath, maxWidth, maxHeight, opaque)
+        val key = generateKey(filePath, maxWidth, maxHeight, opaque)
+        repeat(MAX_ACQUIRE_ATTEMPTS) {
+            val bitmap = loader.get(request) ?: return null
+            acquire(key, bitmap)?.let { return it }
+            // Evicted, and possibly reused for another image, before this caller got to it
+        }
+        return withContext(decodeDispatcher) { getThumbnail(filePath, maxWidth, maxHeight, opaque) }
+    }
+    
+    /**
+     * Emits the thumbnail once loaded, or completes empty if it cannot be decoded
+     * The bitmap stays held until collection is cancelled, so the flow does not complete after
+     * emitting. Collect from the item's composition so leaving the screen cancels the load.
+     */
+    fun thumbnail(filePath: String, maxWidth: Int = 120, maxHeight: Int = 120, opaque: Boolean = false): Flow<Bitmap> = flow {
+        val bitmap = loadThumbnail(filePath, maxWidth, maxHeight, opaque) ?: return@flow
+        try {
+            emit(bitmap)
+            awaitCancellation()
+        } finally {
+            release(bitmap)
+        }
+    }
+    
+    /**
+     * Mark a thumbnail as displayed so eviction does not hand it to the pool while drawn
+     * Cached bitmaps are reused for other images once evicted; hold them beyond the cache with
+     * retain and [release].
+     */
+    fun retain(bitmap: Bitmap) {
+        synchronized(retained) { retained[bitmap] = (retained[bitmap] ?: 0) + 1 }
+    }
+    
+    /**
+     * Hold [bitmap] if it is still the cached thumbnail for [key]
+     * Anything else may already be in the pool, or decoded over with another image.
+     */
+    private fun acquire(key: String, bitmap: Bitmap): Bitmap? = synchronized(retained) {
+        if (memoryCache.get(key) !== bitmap) return null
+        retain(bitmap)
+        bitmap
+    }
+    
+    /**
+     * The cached thumbnail for [key], held for the caller
+     */
+    private fun getCachedHeld(key: String): Bitmap? = synchronized(retained) {
+        memoryCache.get(key)?.also { retain(it) }
+    }
+    
+    /**
+     * Hold [bitmap] for the caller, then cache it; the hold keeps an immediate eviction from pooling it
+     */
+    private fun cacheHeld(key: String, bitmap: Bitmap) {
+        synchronized(retained) {
+            retain(bitmap)
+            memoryCache.put(key, bitmap)
+        }
+    }
+    
+    fun release(bitmap: Bitmap) {
+        val reusable = synchronized(retained) {
+            val holders = (retained[bitmap] ?: return) - 1
+            if (holders > 0) {
+                retained[bitmap] = holders
+                false
+            } else {
+                retained.remove(bitmap)
+                releasedOnEviction.remove(bitmap)
+            }
+        }
+        if (reusable) bitmapPool.put(bitmap)
+    }
+    
+    private fun recycleWhenUnused(bitmap: Bitmap) {
+        val unused = synchronized(retained) {
+            if (bitmap in retained) {
+                releasedOnEviction.add(bitmap)
+                false
+            } else {
+                true
+            }
+        }
+        if (unused) bitmapPool.put(bitmap)
+    }
+    
     /**
      * Get thumbnail from cache or create it if not exists
+     * Blocks the calling thread and does not share work with other callers; prefer [loadThumbnail].
+     * The bitmap is returned held, as by [retain]: call [release] once it is no longer drawn.
      */
-    fun getThumbnail(filePath: String, maxWidth: Int = 120, maxHeight: Int = 120): Bitmap? {
-        val key = generateKey(filePath, maxWidth, maxHeight)
+    fun getThumbnail(filePath: String, maxWidth: Int = 120, maxHeight: Int = 120, opaque: Boolean = false): Bitmap? {
+        val key = generateKey(filePath, maxWidth, maxHeight, opaque)
+        val config = if (opaque) Bitmap.Config.RGB_565 else Bitmap.Config.ARGB_8888
         
         // Check memory cache first
-        memoryCache.get(key)?.let { return it }
-        
-        // Check disk cache
-        val cachedFile = File(cacheDir, key)
-        if (cachedFile.exists()) {
-            val bitmap = BitmapFactory.decodeFile(cachedFile.absolutePath)
-            bitmap?.let { memoryCache.put(key, it) }
-            return bitmap
+        getCachedHeld(key)?.let { return it }
+        
+        // Check disk cache; a miss is answered from the index without touching the filesystem
+        diskCache.get(key)?.let { cachedFile ->
+            val bitmap = decodeSampled(cachedFile.absolutePath, maxWidth, maxHeight, config)
+            if (bitmap != null) {
+                cacheHeld(key, bitmap)
+                return bitmap
+            }
+            // Deleted or corrupted behind our back; recreate below
+            diskCache.remove(key)
         }
         
         // Create thumbnail and cache it
-        return createAndCacheThumbnail(filePath, key, maxWidth, maxHeight)
+        return createAndCacheThumbnail(filePath, key, maxWidth, maxHeight, config)
     }
     
     /**
-     * Create thumbnail and cache it both in memory and disk
+     * Create thumbnail and cache it both in memory and disk; returned held
      */
-    private fun createAndCacheThumbnail(filePath: String, key: String, maxWidth: Int, maxHeight: Int): Bitmap? {
+    private fun createAndCacheThumbnail(filePath: String, key: String, maxWidth: Int, maxHeight: Int, config: Bitmap.Config): Bitmap? {
+        val bitmap = decodeSampled(filePath, maxWidth, maxHeight, config) ?: return null
+        
+        // Cache in memory; held, so it is not pooled while still being compressed below
+        cacheHeld(key, bitmap)
+        
+        // Cache on disk; on failure the in-memory version is still used
+        diskCache.put(key) { out ->
+            bitmap.compress(Bitmap.CompressFormat.JPEG, 80, out)
+        }
+        
+        return bitmap
+    }
+    
+    /**
+     * Decode [path] sampled down towards the requested size, into a pooled bitmap when one fits
+     */
+    private fun decodeSampled(path: String, maxWidth: Int, maxHeight: Int, config: Bitmap.Config): Bitmap? {
         val options = BitmapFactory.Options().apply {
             inJustDecodeBounds = true
         }
         
-        BitmapFactory.decodeFile(filePath, options)
+        BitmapFactory.decodeFile(path, options)
+        if (options.outWidth <= 0 || options.outHeight <= 0) return null
         
         options.inSampleSize = calculateInSampleSize(options, maxWidth, maxHeight)
         options.inJustDecodeBounds = false
+        options.inPreferredConfig = config
+        options.inMutable = true
         
-        val bitmap = BitmapFactory.decodeFile(filePath, options) ?: return null
-        
-        // Cache in memory
-        memoryCache.put(key, bitmap)
+        // Some decoders round the sampled size up
+        val width = (options.outWidth + options.inSampleSize - 1) / options.inSampleSize
+        val height = (options.outHeight + options.inSampleSize - 1) / options.inSampleSize
+        val reusable = bitmapPool.getReusable(width, height, config)
+        options.inBitmap = reusable
         
-        // Cache on disk
-        val cachedFile = File(cacheDir, key)
-        try {
-            FileOutputStream(cachedFile).use { fos ->
-                bitmap.compress(Bitmap.CompressFormat.JPEG, 80, fos)
-            }
-        } catch (e: Exception) {
-            // Failed to cache to disk, but we can still use the in-memory version
+        val bitmap = try {
+            BitmapFactory.decodeFile(path, options)
+        } catch (e: IllegalArgumentException) {
+            // The decoder could not write into the pooled bitmap; decode into a new one
+            options.inBitmap = null
+            BitmapFactory.decodeFile(path, options)
         }
-        
+        if (reusable != null && bitmap !== reusable) bitmapPool.put(reusable)
         return bitmap
     }
     
@@ -119,37 +296,34 @@ class ThumbnailCacheManager private constructor(context: Context) {
     /**
      * Generate a unique key for the thumbnail based on file path and dimensions
      */
-    private fun generateKey(filePath: String, maxWidth: Int, maxHeight: Int): String {
-        val input = "$filePath-$maxWidth-$maxHeight"
+    private fun generateKey(filePath: String, maxWidth: Int, maxHeight: Int, opaque: Boolean): String {
+        // Opaque thumbnails get their own key so existing ARGB entries stay valid
+        val input = if (opaque) "$filePath-$maxWidth-$maxHeight-565" else "$filePath-$maxWidth-$maxHeight"
         val bytes = MessageDigest.getInstance("MD5").digest(input.toByteArray())
         return bytes.joinToString("") { "%02x".format(it) }
     }
     
     /**
      * Clear all cached thumbnails
+     * Evicted bitmaps still on screen stay held until released; the pool is left alone, since
+     * emptying it recycles bitmaps and it is bounded anyway.
      */
     fun clearCache() {
         memoryCache.evictAll()
-        
-        cacheDir.listFiles()?.forEach { file ->
-            file.delete()
-        }
+        diskCache.clear()
     }
     
     /**
      * Remove a specific thumbnail from cache
      */
-    fun removeThumbnail(filePath: String, maxWidth: Int = 120, maxHeight: Int = 120) {
-        val key = generateKey(filePath, maxWidth, maxHeight)
+    fun removeThumbnail(filePath: String, maxWidth: Int = 120, maxHeight: Int = 120, opaque: Boolean = false) {
+        val key = generateKey(filePath, maxWidth, maxHeight, opaque)
         
         // Remove from memory cache
         memoryCache.remove(key)
         
         // Remove from disk cache
-        val cachedFile = File(cacheDir, key)
-        if (cachedFile.exists()) {
-            cachedFile.delete()
-        }
+        diskCache.remove(key)
     }
     
     /**
@@ -163,7 +337,7 @@ class ThumbnailCacheManager private constructor(context: Context) {
      * Get current disk cache usage
      */
     fun getDiskCacheUsage(): Long {
-        return cacheDir.walk().sumOf { it.length() }
+        return diskCache.size()
     }
     
     /**
@@ -0,0 +1,54 @@
+package com.rio.rostry.core.media
+
+import android.graphics.Bitmap
+import androidx.compose.runtime.Composable
+import androidx.compose.runtime.DisposableEffect
+import androidx.compose.runtime.State
+import androidx.compose.runtime.produceState
+import androidx.compose.runtime.remember
+import androidx.compose.ui.Modifier
+import androidx.compose.ui.draw.drawBehind
+import androidx.compose.ui.graphics.drawscope.drawIntoCanvas
+import androidx.compose.ui.graphics.nativeCanvas
+import androidx.compose.ui.platform.LocalContext
+
+/**
+ * Thumbnail for a list item, null until loaded
+ *
+ * The load is tied to the composition: when the item scrolls out of a lazy list it is
+ * cancelled, and skipped entirely if no other visible item is waiting for the same image.
+ * While shown, the bitmap is retained so cache eviction cannot hand it to the bitmap pool.
+ */
+@Composable
+fun rememberThumbnail(
+    filePath: String,
+    maxWidth: Int = 120,
+    maxHeight: Int = 120,
+    opaque: Boolean = false
+): State<Bitmap?> {
+    val manager = ThumbnailCacheManager.getInstance(LocalContext.current)
+    val thumbnail = produceState<Bitmap?>(initialValue = null, filePath, maxWidth, maxHeight, opaque) {
+        manager.thumbnail(filePath, maxWidth, maxHeight, opaque).collect { value = it }
+    }
+    thumbnail.value?.let { bitmap ->
+        DisposableEffect(bitmap) {
+            manager.retain(bitmap)
+            onDispose { manager.release(bitmap) }
+        }
+    }
+    return thumbnail
+}
+
+/**
+ * Draws the initials placeholder behind the content, without allocating a bitmap
+ */
+@Composable
+fun Modifier.initialsPlaceholder(name: String?, colorSeed: String): Modifier {
+    val context = LocalContext.current
+    val generator = remember(context) { CoverThumbnailGenerator(context) }
+    return drawBehind {
+        drawIntoCanvas { canvas ->
+            generator.drawPlaceholder(canvas.nativeCanvas, size.width, size.height, name, colorSeed)
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.rio.rostry.core.media.di
+
+import com.rio.rostry.core.common.performance.LatencyRegistry
+import com.rio.rostry.core.database.RIOLocalDatabase
+import com.rio.rostry.core.media.upload.FirebaseResumableUploader
+import com.rio.rostry.core.media.upload.ResumableUploadEngine
+import com.rio.rostry.core.media.upload.ResumableUploader
+import com.rio.rostry.core.network.NetworkStateManager
+import dagger.Module
+import dagger.Provides
+import dagger.hilt.InstallIn
+import dagger.hilt.components.SingletonComponent
+import javax.inject.Singleton
+
+/**
+ * Media upload dependency injection module
+ */
+@Module
+@InstallIn(SingletonComponent::class)
+object MediaUploadModule {
+    
+    @Provides
+    @Singleton
+    fun provideResumableUploader(uploader: FirebaseResumableUploader): ResumableUploader = uploader
+    
+    /**
+     * Upload engine sized per drain from the current connection quality
+     */
+    @Provides
+    @Singleton
+    fun provideResumableUploadEngine(
+        database: RIOLocalDatabase,
+        uploader: ResumableUploader,
+        latencyRegistry: LatencyRegistry,
+        networkStateManager: NetworkStateManager
+    ): ResumableUploadEngine = ResumableUploadEngine(
+        mediaDao = database.mediaDao(),
+        uploader = uploader,
+        latencyRegistry = latencyRegistry
+    ) {
+        ResumableUploadEngine.parallelismFor(networkStateManager.connectionQuality.value)
+    }
+}
@@ -0,0 +1,81 @@
+package com.rio.rostry.core.media.upload
+
+import android.net.Uri
+import com.google.firebase.storage.FirebaseStorage
+import com.google.firebase.storage.StorageException
+import com.google.firebase.storage.StorageMetadata
+import com.google.firebase.storage.UploadTask
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.channels.Channel
+import kotlinx.coroutines.coroutineScope
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.tasks.await
+import java.io.File
+import java.io.IOException
+import javax.inject.Inject
+
+/**
+ * Resumable uploads through Firebase Storage
+ *
+ * Firebase uploads in chunks over its own resumable sessions; the session URI from the task
+ * snapshots is reported to the listener and passed back to putFile to resume, at which point
+ * Firebase asks the server for the committed offset itself.
+ */
+class FirebaseResumableUploader @Inject constructor(
+    private val storage: FirebaseStorage
+) : ResumableUploader {
+
+    override suspend fun upload(
+        file: File,
+        storagePath: String,
+        contentType: String,
+        sessionUri: String?,
+        listener: UploadListener
+    ): String = coroutineScope {
+        val reference = storage.reference.child(storagePath)
+        val metadata = StorageMetadata.Builder().setContentType(contentType).build()
+        val task = if (sessionUri != null) {
+            reference.putFile(Uri.fromFile(file), metadata, Uri.parse(sessionUri))
+        } else {
+            reference.putFile(Uri.fromFile(file), metadata)
+        }
+
+        // Progress callbacks arrive on the main thread; persist them from this coroutine
+        val snapshots = Channel<UploadTask.TaskSnapshot>(Channel.CONFLATED)
+        task.addOnProgressListener { snapshots.trySend(it) }
+        val persist = launch {
+            var knownSession = sessionUri
+            for (snapshot in snapshots) {
+                val session = snapshot.uploadSessionUri?.toString()
+                if (session != null && session != knownSession) {
+                    knownSession = session
+                    listener.onSession(session)
+                }
+                listener.onCommitted(snapshot.bytesTransferred, snapshot.totalByteCount)
+            }
+        }
+
+        try {
+            val result = task.await()
+            snapshots.close()
+            persist.join()
+            result.storage.downloadUrl.await().toString()
+        } catch (e: CancellationException) {
+            // Pausing rather than cancelling keeps the server session for the next attempt
+            task.pause()
+            throw e
+        } catch (e: StorageException) {
+            persist.cancel()
+            when {
+                // A stale session is not resumable; start a fresh one
+                sessionUri != null && e.errorCode == StorageException.ERROR_OBJECT_NOT_FOUND ->
+                    upload(file, storagePath, contentType, null, listener)
+                e.isRecoverableException || e.errorCode == StorageException.ERROR_RETRY_LIMIT_EXCEEDED ->
+                    throw IOException(e.message, e)
+                else -> throw UploadRejectedException(e.httpResultCode, e.message ?: "Upload rejected")
+            }
+        } finally {
+            snapshots.close()
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package com.rio.rostry.core.media.upload
+
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.currentCoroutineContext
+import kotlinx.coroutines.ensureActive
+import kotlinx.coroutines.withContext
+import java.io.File
+import java.io.IOException
+import java.io.RandomAccessFile
+import java.net.HttpURLConnection
+import java.net.URL
+import java.net.URLEncoder
+
+/**
+ * Chunked resumable uploads over the Cloud Storage resumable protocol
+ *
+ * A POST to [uploadUrl] opens a session whose URI comes back in the Location header. The file
+ * is then PUT in [chunkSize] pieces with a Content-Range; the server answers 308 with the
+ * committed Range until the last piece, then 200/201 with the object. Resuming sends an empty
+ * PUT with an unknown range to learn the committed bytes and continues from there.
+ *
+ * [chunkSize] must be a multiple of 256KiB for Cloud Storage.
+ */
+class HttpResumableUploader(
+    private val uploadUrl: String,
+    private val chunkSize: Int = DEFAULT_CHUNK_SIZE,
+    private val authToken: suspend () -> String? = { null },
+    private val timeoutMs: Int = 30_000
+) : ResumableUploader {
+
+    override suspend fun upload(
+        file: File,
+        storagePath: String,
+        contentType: String,
+        sessionUri: String?,
+        listener: UploadListener
+    ): String = withContext(Dispatchers.IO) {
+        val total = file.length()
+        val token = authToken()
+
+        suspend fun newSession(): String =
+            startSession(storagePath, contentType, total, token).also { listener.onSession(it) }
+
+        // Resume if the server still knows the session, otherwise start over
+        var session: String? = null
+        var offset = 0L
+        if (sessionUri != null) {
+            when (val status = queryStatus(sessionUri, total, token)) {
+                is Status.Complete -> return@withContext status.downloadUrl
+                is Status.Committed -> {
+                    session = sessionUri
+                    offset = status.bytes
+                }
+                null -> Unit
+            }
+        }
+        var current = session ?: newSession()
+        var restarted = session == null
+        listener.onCommitted(offset, total)
+
+        var downloadUrl: String? = null
+        RandomAccessFile(file, "r").use { input ->
+            val buffer = ByteArray(chunkSize)
+            while (downloadUrl == null) {
+                currentCoroutineContext().ensureActive()
+                input.seek(offset)
+                val length = if (offset >= total) 0 else input.read(buffer, 0, minOf(chunkSize.toLong(), total - offset).toInt())
+                val status = try {
+                    putChunk(current, buffer, offset, length, total, token)
+                } catch (e: SessionExpiredException) {
+                    // Expired part way through: start once more from zero, then give up
+                    if (restarted) throw e
+                    restarted = true
+                    current = newSession()
+                    offset = 0L
+                    continue
+                }
+                when (status) {
+                    is Status.Complete -> downloadUrl = status.downloadUrl
+                    // The server may commit less than was sent; continue from what it has
+                    is Status.Committed -> offset = status.bytes
+                }
+                listener.onCommitted(if (downloadUrl != null) total else offset, total)
+            }
+        }
+        downloadUrl!!
+    }
+
+    private sealed class Status {
+        data class Committed(val bytes: Long) : Status()
+        data class Complete(val downloadUrl: String) : Status()
+    }
+
+    private fun startSession(storagePath: String, contentType: String, total: Long, token: String?): String {
+        val url = URL("$uploadUrl?uploadType=resumable&name=${URLEncoder.encode(storagePath, "UTF-8")}")
+        val connection = open(url, "POST", token).apply {
+            setRequestProperty("X-Upload-Content-Type", contentType)
+            setRequestProperty("X-Upload-Content-Length", total.toString())
+            setFixedLengthStreamingMode(0)
+            doOutput = true
+        }
+        try {
+            connection.outputStream.close()
+            val code = connection.responseCode
+            if (code !in 200..299) throw failure(code, "start session")
+            return connection.getHeaderField("Location")
+                ?: throw IOException("No session URI in response")
+        } finally {
+            connection.disconnect()
+        }
+    }
+
+    /**
+     * Committed bytes of [sessionUri], or null if the session no longer exists
+     */
+    private fun queryStatus(sessionUri: String, total: Long, token: String?): Status? {
+        val connection = open(URL(sessionUri), "PUT", token).apply {
+            setRequestProperty("Content-Range", "bytes */$total")
+            setFixedLengthStreamingMode(0)
+            doOutput = true
+        }
+        try {
+            connection.outputStream.close()
+            return when (val code = connection.responseCode) {
+                HTTP_RESUME_INCOMPLETE -> Status.Committed(committedBytes(connection))
+                200, 201 -> Status.Complete(downloadUrl(connection))
+                404, 410 -> null
+                else -> throw failure(code, "query session")
+            }
+        } finally {
+            connection.disconnect()
+        }
+    }
+
+    private fun putChunk(sessionUri: String, buffer: ByteArray, offset: Long, length: Int, total: Long, token: String?): Status {
+        val connection = open(URL(sessionUri), "PUT", token).apply {
+            val range = if (length == 0) "bytes */$total" else "bytes $offset-${offset + length - 1}/$total"
+            setRequestProperty("Content-Range", range)
+            setFixedLengthStreamingMode(length)
+            doOutput = true
+        }
+        try {
+            connection.outputStream.use { it.write(buffer, 0, length) }
+            return when (val code = connection.responseCode) {
+                HTTP_RESUME_INCOMPLETE -> Status.Committed(committedBytes(connection))
+                200, 201 -> Status.Complete(downloadUrl(connection))
+                404, 410 -> throw SessionExpiredException()
+                else -> throw failure(code, "upload chunk")
+            }
+        } finally {
+            connection.disconnect()
+        }
+    }
+
+    private fun open(url: URL, method: String, token: String?): HttpURLConnection =
+        (url.openConnection() as HttpURLConnection).apply {
+            requestMethod = method
+            connectTimeout = timeoutMs
+            readTimeout = timeoutMs
+            useCaches = false
+            // 308 here means "resume incomplete", not a redirect
+            instanceFollowRedirects = false
+            token?.let { setRequestProperty("Authorization", "Bearer $it") }
+        }
+
+    // "Range: bytes=0-N" means N+1 bytes committed; no header means none
+    private fun committedBytes(connection: HttpURLConnection): Long =
+        connection.getHeaderField("Range")?.substringAfterLast('-')?.toLongOrNull()?.plus(1) ?: 0L
+
+    private fun downloadUrl(connection: HttpURLConnection): String {
+        val body = connection.inputStream.bufferedReader().use { it.readText() }
+        return DOWNLOAD_URL.find(body)?.groupValues?.get(2)
+            ?: throw IOException("No download URL in upload response")
+    }
+
+    private fun failure(code: Int, action: String): Exception = when {
+        // Server-side and throttling errors are transient
+        code >= 500 || code == 408 || code == 429 -> IOException("HTTP $code during $action")
+        else -> UploadRejectedException(code, "HTTP $code during $action")
+    }
+
+    /**
+     * The session vanished part way through the upload
+     */
+    class SessionExpiredException : IOException("Upload session expired")
+
+    companion object {
+        const val DEFAULT_CHUNK_SIZE = 256 * 1024
+        private const val HTTP_RESUME_INCOMPLETE = 308
+        private val DOWNLOAD_URL = Regex(""""(downloadUrl|mediaLink)"\s*:\s*"([^"]+)"""")
+    }
+}
@@ -0,0 +1,143 @@
+package com.rio.rostry.core.media.upload
+
+import com.rio.rostry.core.common.exceptions.SyncException
+import com.rio.rostry.core.common.exceptions.toSyncException
+import com.rio.rostry.core.common.performance.LatencyRegistry
+import com.rio.rostry.core.database.dao.MediaDao
+import com.rio.rostry.core.database.entities.MediaEntity
+import com.rio.rostry.core.media.MediaUploadResult
+import com.rio.rostry.core.media.QueueUploadResult
+import com.rio.rostry.core.network.ConnectionQuality
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.channels.Channel
+import kotlinx.coroutines.coroutineScope
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.channelFlow
+import kotlinx.coroutines.launch
+import java.io.File
+import java.util.Date
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * Works through the media upload queue with resumable uploads
+ *
+ * The queue is the media table: pending rows are taken smallest images first, videos last,
+ * by up to [parallelism] uploads at once. Session URIs and committed bytes are written back
+ * as the upload runs, so a dropped connection or a killed process resumes where the server
+ * stopped instead of at byte zero. Transient failures leave the row PENDING for the next
+ * drain; it is marked FAILED once rejected by the server or after
+ * [MediaDao.MAX_UPLOAD_ATTEMPTS] attempts.
+ */
+class ResumableUploadEngine(
+    private val mediaDao: MediaDao,
+    private val uploader: ResumableUploader,
+    private val latencyRegistry: LatencyRegistry,
+    private val parallelism: () -> Int
+) {
+
+    // Rows being uploaded by this process; a second drain skips them
+    private val active = ConcurrentHashMap.newKeySet<String>()
+
+    /**
+     * Upload every pending row, reporting progress as each one finishes
+     */
+    fun drain(): Flow<QueueUploadResult> = channelFlow {
+        val pending = mediaDao.getPendingUploads().filter { it.id !in active }
+        send(QueueUploadResult.Started(pending.size))
+
+        // Workers take rows in queue order, so small images start before videos
+        val queue = Channel<MediaEntity>(Channel.UNLIMITED)
+        pending.forEach { queue.trySend(it) }
+        queue.close()
+
+        val successes = AtomicInteger()
+        val failures = AtomicInteger()
+        coroutineScope {
+            repeat(parallelism().coerceIn(1, maxOf(1, pending.size))) {
+                launch {
+                    for (media in queue) {
+                        when (upload(media)) {
+                            is MediaUploadResult.Success -> successes.incrementAndGet()
+                            is MediaUploadResult.Error -> failures.incrementAndGet()
+                            else -> continue
+                        }
+                        send(QueueUploadResult.Progress(successes.get(), failures.get(), media.fileName))
+                    }
+                }
+            }
+        }
+        send(QueueUploadResult.Completed(successes.get(), failures.get()))
+    }
+
+    /**
+     * Upload one row, resuming its stored session if it has one
+     */
+    suspend fun upload(media: MediaEntity): MediaUploadResult {
+        if (!active.add(media.id)) {
+            return MediaUploadResult.QueuedForUpload(media.id, "Upload already in progress")
+        }
+        val startNanos = System.nanoTime()
+        return try {
+            val file = File(media.localPath)
+            if (!file.exists() || media.storagePath.isBlank()) {
+                mediaDao.recordUploadFailure(media.id, STATUS_FAILED, "Local file or storage path missing")
+                return MediaUploadResult.Error(SyncException.MediaError.FileNotFound(media.localPath))
+            }
+
+            mediaDao.updateUploadStatus(media.id, STATUS_UPLOADING, media.uploadProgress)
+            val downloadUrl = uploader.upload(file, media.storagePath, media.mimeType, media.uploadSessionUri, progressWriter(media))
+            latencyRegistry.recordNanos("media.upload", System.nanoTime() - startNanos)
+
+            mediaDao.completeUpload(media.id, STATUS_COMPLETED, downloadUrl, Date())
+            MediaUploadResult.Success(media.id, downloadUrl)
+        } catch (e: CancellationException) {
+            // The row stays UPLOADING with its session; the next drain resumes it
+            throw e
+        } catch (e: UploadRejectedException) {
+            latencyRegistry.recordNanos("media.upload.failed", System.nanoTime() - startNanos)
+            mediaDao.recordUploadFailure(media.id, STATUS_FAILED, e.message)
+            MediaUploadResult.Error(SyncException.MediaError.UploadFailed(media.fileName, e.message ?: "Rejected"))
+        } catch (e: Exception) {
+            latencyRegistry.recordNanos("media.upload.failed", System.nanoTime() - startNanos)
+            val exhausted = media.uploadAttempts + 1 >= MediaDao.MAX_UPLOAD_ATTEMPTS
+            mediaDao.recordUploadFailure(media.id, if (exhausted) STATUS_FAILED else STATUS_PENDING, e.message)
+            MediaUploadResult.Error(e.toSyncException())
+        } finally {
+            active.remove(media.id)
+        }
+    }
+
+    private fun progressWriter(media: MediaEntity) = object : UploadListener {
+        private var lastProgress = -1
+
+        override suspend fun onSession(sessionUri: String) {
+            mediaDao.updateUploadSession(media.id, sessionUri, 0L)
+        }
+
+        override suspend fun onCommitted(bytes: Long, totalBytes: Long) {
+            // One write per percent is enough to resume from; callbacks can be far more frequent
+            val progress = if (totalBytes > 0) (100 * bytes / totalBytes).toInt() else 0
+            if (progress == lastProgress) return
+            lastProgress = progress
+            mediaDao.updateUploadedBytes(media.id, bytes, progress)
+        }
+    }
+
+    companion object {
+        const val STATUS_PENDING = "PENDING"
+        const val STATUS_UPLOADING = "UPLOADING"
+        const val STATUS_COMPLETED = "COMPLETED"
+        const val STATUS_FAILED = "FAILED"
+
+        /**
+         * Concurrent uploads for a connection; slow links do better finishing one file at a time
+         */
+        fun parallelismFor(quality: ConnectionQuality): Int = when (quality) {
+            ConnectionQuality.EXCELLENT -> 4
+            ConnectionQuality.GOOD -> 3
+            ConnectionQuality.FAIR -> 2
+            ConnectionQuality.POOR, ConnectionQuality.VERY_POOR, ConnectionQuality.UNKNOWN -> 1
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.rio.rostry.core.media.upload
+
+import java.io.File
+
+/**
+ * Uploads a file in resumable sessions
+ *
+ * A session is identified by a URI that outlives the process. Given the URI of an
+ * unfinished session, an implementation asks the server how much it has committed and
+ * sends only the rest. If the session has expired a new one is started.
+ */
+interface ResumableUploader {
+
+    /**
+     * Upload [file] to [storagePath], resuming [sessionUri] when possible
+     *
+     * @return the download URL of the stored object
+     * @throws java.io.IOException for transient failures worth retrying; the session stays resumable
+     * @throws UploadRejectedException when the server refuses the upload
+     */
+    suspend fun upload(
+        file: File,
+        storagePath: String,
+        contentType: String,
+        sessionUri: String?,
+        listener: UploadListener
+    ): String
+}
+
+/**
+ * Persists upload state as it changes so an interrupted upload can resume
+ */
+interface UploadListener {
+
+    /**
+     * A new session was started; called before any data is sent on it
+     */
+    suspend fun onSession(sessionUri: String)
+
+    /**
+     * The server has committed [bytes] bytes of the current session
+     */
+    suspend fun onCommitted(bytes: Long, totalBytes: Long)
+}
+
+/**
+ * The server refused the upload; retrying the same request will not help
+ */
+class UploadRejectedException(val statusCode: Int, message: String) : Exception(message)
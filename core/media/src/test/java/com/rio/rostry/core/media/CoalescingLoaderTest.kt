@@ -0,0 +1,128 @@
+package com.rio.rostry.core.media
+
+import kotlinx.coroutines.CompletableDeferred
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.CoroutineStart
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.ExperimentalCoroutinesApi
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.async
+import kotlinx.coroutines.awaitAll
+import kotlinx.coroutines.cancel
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.runBlocking
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * Decode counts under fan-in, with a fake decoder standing in for BitmapFactory
+ */
+@OptIn(ExperimentalCoroutinesApi::class)
+class CoalescingLoaderTest {
+
+    private val scope = CoroutineScope(SupervisorJob() + Dispatchers.IO)
+    private val dispatcher = Dispatchers.IO.limitedParallelism(Runtime.getRuntime().availableProcessors())
+    private val memory = ConcurrentHashMap<String, String>()
+    private val decodes = AtomicInteger()
+
+    private fun fakeDecode(key: String): String {
+        decodes.incrementAndGet()
+        Thread.sleep(DECODE_MS)
+        return "bitmap:$key".also { memory[key] = it }
+    }
+
+    @After
+    fun tearDown() {
+        scope.cancel()
+    }
+
+    @Test
+    fun concurrentRowsForOnePhotoDecodeOnce() = runBlocking {
+        val loader = CoalescingLoader<String, String>(scope, dispatcher, { memory[it] }, ::fakeDecode)
+
+        val results = (1..ROWS_PER_PHOTO).map { async(Dispatchers.Default) { loader.get("fowl") } }.awaitAll()
+
+        assertEquals(1, decodes.get())
+        assertTrue(results.all { it == "bitmap:fowl" })
+        assertEquals(0, loader.pending())
+    }
+
+    @Test
+    fun fanInBenchmark() = runBlocking {
+        val keys = (0 until PHOTOS).map { "photo$it" }
+        val requests = keys.flatMap { key -> List(ROWS_PER_PHOTO) { key } }.shuffled()
+
+        val naiveStart = System.nanoTime()
+        requests.map { key -> async(dispatcher) { fakeDecode(key) } }.awaitAll()
+        val naiveMs = (System.nanoTime() - naiveStart) / 1_000_000
+        val naiveDecodes = decodes.getAndSet(0)
+        memory.clear()
+
+        val loader = CoalescingLoader<String, String>(scope, dispatcher, { memory[it] }, ::fakeDecode)
+        val start = System.nanoTime()
+        requests.map { key -> async(Dispatchers.Default) { loader.get(key) } }.awaitAll()
+        val coalescedMs = (System.nanoTime() - start) / 1_000_000
+
+        assertEquals(requests.size, naiveDecodes)
+        assertEquals(PHOTOS, decodes.get())
+        // A fifth of the decodes over the same dispatcher cannot take longer than all of them
+        assertTrue("coalesced ${coalescedMs}ms vs naive ${naiveMs}ms", coalescedMs < naiveMs)
+    }
+
+    @Test
+    fun loadIsSkippedWhenEveryWaiterLeavesWhileQueued() = runBlocking {
+        // Occupy the only decode slot so the next load stays queued
+        val single = Dispatchers.IO.limitedParallelism(1)
+        val release = CountDownLatch(1)
+        val busy = CompletableDeferred<Unit>()
+        val loader = CoalescingLoader<String, String>(scope, single, { null }) { key ->
+            if (key == "busy") {
+                busy.complete(Unit)
+                release.await()
+            }
+            fakeDecode(key)
+        }
+        val busyLoad = launch(Dispatchers.Default) { loader.get("busy") }
+        busy.await()
+
+        // Undispatched: each row has joined the shared load by the time launch returns
+        val rows = List(3) { launch(start = CoroutineStart.UNDISPATCHED) { loader.get("offscreen") } }
+        assertEquals(2, loader.pending())
+        rows.forEach { it.cancel() }
+        rows.forEach { it.join() }
+        release.countDown()
+        busyLoad.join()
+
+        assertEquals(1, loader.loadsStarted)
+        assertEquals(0, loader.pending())
+    }
+
+    @Test
+    fun oneWaiterLeavingDoesNotCancelTheOthers() = runBlocking {
+        val release = CountDownLatch(1)
+        val loader = CoalescingLoader<String, String>(scope, dispatcher, { null }) { key ->
+            release.await()
+            fakeDecode(key)
+        }
+
+        val staying = async(start = CoroutineStart.UNDISPATCHED) { loader.get("fowl") }
+        val leaving = launch(start = CoroutineStart.UNDISPATCHED) { loader.get("fowl") }
+        leaving.cancel()
+        leaving.join()
+        release.countDown()
+
+        assertEquals("bitmap:fowl", staying.await())
+        assertEquals(1, decodes.get())
+    }
+
+    companion object {
+        private const val PHOTOS = 20
+        private const val ROWS_PER_PHOTO = 5
+        private const val DECODE_MS = 5L
+    }
+}
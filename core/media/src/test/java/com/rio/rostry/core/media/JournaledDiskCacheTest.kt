@@ -0,0 +1,141 @@
+package com.rio.rostry.core.media
+
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.File
+import java.util.concurrent.CountDownLatch
+import kotlin.concurrent.thread
+
+class JournaledDiskCacheTest {
+
+    @get:Rule
+    val folder = TemporaryFolder()
+
+    private var now = 1_000L
+
+    // Unconfined runs background trims inline, so their effect is visible on return
+    private fun open(dir: File = folder.root, maxBytes: Long = 300L) =
+        JournaledDiskCache(dir, maxBytes, CoroutineScope(Dispatchers.Unconfined)) { now++ }
+
+    private fun JournaledDiskCache.putBytes(key: String, size: Int) =
+        put(key) { it.write(ByteArray(size)) }
+
+    @Test
+    fun evictsLeastRecentlyUsedOnceOverBudget() {
+        val cache = open()
+        cache.putBytes("a", 100)
+        cache.putBytes("b", 100)
+        cache.putBytes("c", 100)
+        cache.get("a")
+
+        cache.putBytes("d", 100)
+
+        assertFalse("b" in cache)
+        assertFalse(File(folder.root, "b").exists())
+        assertTrue("a" in cache && "c" in cache && "d" in cache)
+        assertEquals(300L, cache.size())
+    }
+
+    @Test
+    fun indexAndRecencySurviveRestart() {
+        val first = open()
+        first.putBytes("a", 100)
+        first.putBytes("b", 100)
+        first.get("a")
+        first.flush()
+
+        val second = open()
+        assertEquals(200L, second.size())
+        second.putBytes("c", 100)
+        second.putBytes("d", 100)
+
+        assertFalse("b" in second)
+        assertTrue("a" in second)
+    }
+
+    @Test
+    fun truncatedJournalLineIsIgnored() {
+        open().apply {
+            putBytes("a", 100)
+            flush()
+        }
+        File(folder.root, "journal").appendText("P b 10")
+
+        val reopened = open()
+
+        assertTrue("a" in reopened)
+        assertFalse("b" in reopened)
+        assertEquals(100L, reopened.size())
+    }
+
+    @Test
+    fun missesComeFromTheIndexNotTheDirectory() {
+        val cache = open()
+        cache.putBytes("a", 10)
+        File(folder.root, "stray").writeBytes(ByteArray(10))
+
+        assertNull(cache.get("stray"))
+        assertEquals(File(folder.root, "a"), cache.get("a"))
+    }
+
+    @Test
+    fun failedWriteStoresNothing() {
+        val cache = open()
+
+        val stored = cache.put("a") { error("encoder failed") }
+
+        assertFalse(stored)
+        assertFalse("a" in cache)
+        assertEquals(listOf("journal"), folder.root.list()!!.toList())
+    }
+
+    @Test
+    fun existingThumbnailsAreIndexedWithoutAJournal() {
+        val dir = folder.newFolder("legacy")
+        File(dir, "old").writeBytes(ByteArray(200))
+        File(dir, "new").writeBytes(ByteArray(200))
+        File(dir, "old").setLastModified(10_000L)
+        File(dir, "new").setLastModified(20_000L)
+
+        val cache = open(dir)
+
+        // Over budget on open: the older file goes first
+        assertFalse("old" in cache)
+        assertTrue("new" in cache)
+    }
+
+    @Test
+    fun evictionNeverDeletesTheFileOfAConcurrentPut() {
+        val cache = open(maxBytes = 250L)
+        val keys = listOf("a0", "a1", "b0", "b1")
+        val start = CountDownLatch(1)
+        // Each writer owns its keys; the evictor removes and trims underneath both
+        val writers = listOf("a", "b").map { prefix ->
+            thread {
+                start.await()
+                repeat(500) { i -> cache.putBytes("$prefix${i % 2}", 100) }
+            }
+        }
+        val evictor = thread {
+            start.await()
+            repeat(500) { i ->
+                cache.remove(keys[i % keys.size])
+                cache.trimToSize()
+            }
+        }
+        start.countDown()
+        (writers + evictor).forEach { it.join() }
+
+        // Every indexed entry still has its file, and the index adds up to what is on disk
+        val indexed = keys.filter { it in cache }
+        indexed.forEach { assertTrue("$it lost its file", File(folder.root, it).exists()) }
+        assertEquals(indexed.sumOf { File(folder.root, it).length() }, cache.size())
+    }
+}
@@ -0,0 +1,93 @@
+package com.rio.rostry.core.media
+
+import android.graphics.Bitmap
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import org.junit.runner.RunWith
+
+/**
+ * Bitmap bytes allocated while scrolling a thumbnail list, with and without the pool
+ *
+ * A scroll binds [ROWS] rows through a window of [VISIBLE] on screen; rows leaving the window
+ * give their bitmap back, as evicted cache entries do.
+ */
+@RunWith(AndroidJUnit4::class)
+class ScrollAllocationBenchmarkTest {
+
+    // Photos come in a few aspect ratios, each sampled to fit 120x120
+    private val sizes = listOf(120 to 120, 120 to 90, 90 to 120, 120 to 68)
+
+    private fun scroll(bind: (Int, Int) -> Bitmap, unbind: (Bitmap) -> Unit) {
+        val onScreen = ArrayDeque<Bitmap>()
+        repeat(ROWS) { row ->
+            val (width, height) = sizes[row % sizes.size]
+            onScreen.addLast(bind(width, height))
+            if (onScreen.size > VISIBLE) unbind(onScreen.removeFirst())
+        }
+        onScreen.forEach(unbind)
+    }
+
+    private class Allocation(val unpooled: Long, val missBytes: Long, val hitBytes: Long)
+
+    private fun allocatedPerScroll(config: Bitmap.Config): Allocation {
+        var unpooled = 0L
+        scroll({ w, h -> Bitmap.createBitmap(w, h, config).also { unpooled += it.allocationByteCount } }, { it.recycle() })
+
+        val pool = BitmapPool(maxBytes = 1024L * 1024)
+        scroll({ w, h -> pool.get(w, h, config) }, pool::put)
+
+        return Allocation(unpooled, pool.missBytes, pool.hitBytes)
+    }
+
+    // At most one allocation per row on screen at once (plus the row coming in)
+    private fun windowCeiling(config: Bitmap.Config) = (VISIBLE + 1) * BitmapPool.byteCount(120, 120, config)
+
+    @Test
+    fun poolBoundsAllocationToTheVisibleWindow() {
+        val allocation = allocatedPerScroll(Bitmap.Config.ARGB_8888)
+
+        assertTrue(allocation.missBytes <= windowCeiling(Bitmap.Config.ARGB_8888))
+        // Every row is served either way; everything past the window comes from the pool
+        assertEquals(allocation.unpooled, allocation.missBytes + allocation.hitBytes)
+        assertTrue(allocation.hitBytes >= allocation.unpooled - windowCeiling(Bitmap.Config.ARGB_8888))
+    }
+
+    @Test
+    fun opaqueThumbnailsHalveTheBytes() {
+        val argb = allocatedPerScroll(Bitmap.Config.ARGB_8888)
+        val rgb565 = allocatedPerScroll(Bitmap.Config.RGB_565)
+
+        assertEquals(argb.unpooled / 2, rgb565.unpooled)
+        assertTrue(rgb565.missBytes <= windowCeiling(Bitmap.Config.RGB_565))
+        assertEquals(argb.missBytes / 2, rgb565.missBytes)
+    }
+
+    @Test
+    fun poolHandsOutBitmapsOfTheRequestedSize() {
+        val pool = BitmapPool(maxBytes = 1024L * 1024)
+        pool.put(Bitmap.createBitmap(120, 120, Bitmap.Config.ARGB_8888))
+
+        val reused = pool.get(120, 90, Bitmap.Config.ARGB_8888)
+
+        assertEquals(120, reused.width)
+        assertEquals(90, reused.height)
+        assertEquals(0L, pool.missBytes)
+        assertEquals(0L, pool.size())
+    }
+
+    @Test
+    fun oversizedBitmapsAreNotReusedForSmallRequests() {
+        val pool = BitmapPool(maxBytes = 1024L * 1024)
+        pool.put(Bitmap.createBitmap(240, 240, Bitmap.Config.ARGB_8888))
+
+        assertNull(pool.getReusable(60, 60, Bitmap.Config.ARGB_8888))
+    }
+
+    companion object {
+        private const val ROWS = 200
+        private const val VISIBLE = 8
+    }
+}
@@ -0,0 +1,74 @@
+package com.rio.rostry.core.media
+
+import android.content.Context
+import android.graphics.Bitmap
+import androidx.test.core.app.ApplicationProvider
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import kotlinx.coroutines.runBlocking
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertSame
+import org.junit.Test
+import org.junit.runner.RunWith
+import java.io.File
+
+/**
+ * Thumbnails handed out by the cache stay out of the bitmap pool until released
+ */
+@RunWith(AndroidJUnit4::class)
+class ThumbnailCacheManagerTest {
+
+    private val context: Context = ApplicationProvider.getApplicationContext()
+    private val manager = ThumbnailCacheManager.getInstance(context)
+
+    private fun photo(name: String): String {
+        val file = File(context.cacheDir, "$name.png")
+        file.outputStream().use { out ->
+            Bitmap.createBitmap(200, 150, Bitmap.Config.ARGB_8888).compress(Bitmap.CompressFormat.PNG, 100, out)
+        }
+        return file.absolutePath
+    }
+
+    @After
+    fun tearDown() {
+        manager.clearCache()
+    }
+
+    @Test
+    fun evictedThumbnailIsPooledOnlyOnceReleased() {
+        val path = photo("evicted")
+        val bitmap = checkNotNull(manager.getThumbnail(path))
+        val pooledBefore = manager.bitmapPool.size()
+
+        manager.removeThumbnail(path)
+
+        // Returned held: eviction leaves it to the caller
+        assertEquals(pooledBefore, manager.bitmapPool.size())
+        assertFalse(bitmap.isRecycled)
+
+        manager.release(bitmap)
+        assertEquals(pooledBefore + bitmap.allocationByteCount, manager.bitmapPool.size())
+    }
+
+    @Test
+    fun clearingTheCacheNeverRecyclesAThumbnailOnScreen() = runBlocking {
+        val path = photo("cleared")
+        val first = checkNotNull(manager.loadThumbnail(path))
+        val second = checkNotNull(manager.loadThumbnail(path))
+        assertSame(first, second)
+        val pooledBefore = manager.bitmapPool.size()
+
+        manager.clearCache()
+
+        assertFalse(first.isRecycled)
+        assertEquals(pooledBefore, manager.bitmapPool.size())
+
+        // One hold per caller: the first release keeps it out of the pool
+        manager.release(first)
+        assertEquals(pooledBefore, manager.bitmapPool.size())
+        manager.release(second)
+        assertFalse(first.isRecycled)
+        assertEquals(pooledBefore + first.allocationByteCount, manager.bitmapPool.size())
+    }
+}
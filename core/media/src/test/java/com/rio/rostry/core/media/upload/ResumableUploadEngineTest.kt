@@ -0,0 +1,280 @@
+package com.rio.rostry.core.media.upload
+
+import com.rio.rostry.core.common.performance.LatencyRegistry
+import com.rio.rostry.core.database.dao.MediaDao
+import com.rio.rostry.core.database.entities.MediaEntity
+import com.rio.rostry.core.media.QueueUploadResult
+import com.sun.net.httpserver.HttpExchange
+import com.sun.net.httpserver.HttpServer
+import kotlinx.coroutines.flow.toList
+import kotlinx.coroutines.runBlocking
+import org.junit.After
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNotNull
+import org.junit.Assert.assertTrue
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.ByteArrayOutputStream
+import java.io.File
+import java.net.InetSocketAddress
+import java.util.Date
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.Executors
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
+import kotlin.random.Random
+
+/**
+ * Queue uploads against a local server speaking the resumable protocol, with dropped chunks
+ */
+class ResumableUploadEngineTest {
+
+    @get:Rule
+    val folder = TemporaryFolder()
+
+    private val server = FakeStorageServer()
+    private val dao = FakeMediaDao()
+
+    @After
+    fun tearDown() {
+        server.close()
+    }
+
+    private fun engine(parallelism: Int) = ResumableUploadEngine(
+        dao,
+        HttpResumableUploader(server.uploadUrl, chunkSize = CHUNK),
+        LatencyRegistry()
+    ) { parallelism }
+
+    private fun queue(id: String, mediaType: String, size: Int): ByteArray {
+        val bytes = Random(id.hashCode()).nextBytes(size)
+        val file = File(folder.root, id).apply { writeBytes(bytes) }
+        dao.rows[id] = MediaEntity(
+            id = id,
+            entityType = "TRANSFER",
+            entityId = "transfer-1",
+            mediaType = mediaType,
+            fileName = id,
+            fileSize = size.toLong(),
+            mimeType = if (mediaType == "VIDEO") "video/mp4" else "image/jpeg",
+            localPath = file.absolutePath,
+            storagePath = "proofs/$id",
+            uploadStatus = ResumableUploadEngine.STATUS_PENDING,
+            createdAt = Date()
+        )
+        return bytes
+    }
+
+    @Test
+    fun droppedUploadResumesFromCommittedOffset() = runBlocking {
+        val bytes = queue("video.mp4", "VIDEO", CHUNK * 10)
+        // The connection drops on the sixth chunk of the first attempt
+        server.failChunk = { _, offset -> if (offset == CHUNK * 5L) 503 else null }
+
+        val first = engine(1).drain().toList()
+        assertEquals(QueueUploadResult.Completed(0, 1), first.last())
+        val interrupted = dao.rows.getValue("video.mp4")
+        assertEquals(ResumableUploadEngine.STATUS_PENDING, interrupted.uploadStatus)
+        assertNotNull(interrupted.uploadSessionUri)
+        assertEquals(CHUNK * 5L, interrupted.uploadedBytes)
+
+        server.failChunk = { _, _ -> null }
+        val sentBeforeResume = server.bytesReceived.get()
+        val second = engine(1).drain().toList()
+
+        assertEquals(QueueUploadResult.Completed(1, 0), second.last())
+        // Only the uncommitted half goes over the wire again, on the same session
+        assertEquals(CHUNK * 5L, server.bytesReceived.get() - sentBeforeResume)
+        assertEquals(1, server.sessionsStarted.get())
+        assertArrayEquals(bytes, server.objects.getValue("proofs/video.mp4"))
+
+        val done = dao.rows.getValue("video.mp4")
+        assertEquals(ResumableUploadEngine.STATUS_COMPLETED, done.uploadStatus)
+        assertEquals("https://storage.test/proofs/video.mp4", done.remoteUrl)
+        assertEquals(null, done.uploadSessionUri)
+    }
+
+    @Test
+    fun imagesGoFirstAndParallelismIsBounded() = runBlocking {
+        queue("video.mp4", "VIDEO", CHUNK * 6)
+        queue("large.jpg", "IMAGE", CHUNK * 3)
+        queue("small.jpg", "IMAGE", CHUNK)
+        val sequential = engine(1).drain().toList()
+
+        assertEquals(QueueUploadResult.Completed(3, 0), sequential.last())
+        assertEquals(listOf("proofs/small.jpg", "proofs/large.jpg", "proofs/video.mp4"), server.sessionOrder)
+        assertEquals(1, server.maxInFlight.get())
+
+        repeat(8) { queue("photo-$it.jpg", "IMAGE", CHUNK * 2) }
+        val parallel = engine(3).drain().toList()
+
+        assertEquals(QueueUploadResult.Completed(8, 0), parallel.last())
+        assertTrue("max in flight ${server.maxInFlight.get()}", server.maxInFlight.get() in 2..3)
+    }
+
+    @Test
+    fun rejectedUploadFailsWithoutRetry() = runBlocking {
+        queue("photo.jpg", "IMAGE", CHUNK * 2)
+        server.failChunk = { _, _ -> 403 }
+
+        engine(1).drain().toList()
+
+        val row = dao.rows.getValue("photo.jpg")
+        assertEquals(ResumableUploadEngine.STATUS_FAILED, row.uploadStatus)
+        assertEquals(1, row.uploadAttempts)
+        assertTrue(dao.getPendingUploads().isEmpty())
+    }
+
+    /**
+     * Minimal Cloud Storage resumable endpoint: POST opens a session, PUTs append chunks
+     */
+    private class FakeStorageServer : AutoCloseable {
+        private class Session(val name: String) {
+            val data = ByteArrayOutputStream()
+        }
+
+        private val http = HttpServer.create(InetSocketAddress("127.0.0.1", 0), 0)
+        private val sessions = ConcurrentHashMap<String, Session>()
+        private val inFlight = AtomicInteger()
+
+        val objects = ConcurrentHashMap<String, ByteArray>()
+        val sessionOrder = CopyOnWriteArrayList<String>()
+        val sessionsStarted = AtomicInteger()
+        val bytesReceived = AtomicLong()
+        val maxInFlight = AtomicInteger()
+
+        // Status to answer a chunk with instead of committing it
+        @Volatile
+        var failChunk: (name: String, offset: Long) -> Int? = { _, _ -> null }
+
+        val uploadUrl: String get() = "http://127.0.0.1:${http.address.port}/upload"
+
+        init {
+            http.executor = Executors.newCachedThreadPool()
+            http.createContext("/upload") { exchange -> respond(exchange, ::startSession) }
+            http.createContext("/session/") { exchange -> respond(exchange, ::putChunk) }
+            http.start()
+        }
+
+        private fun respond(exchange: HttpExchange, handler: (HttpExchange) -> Unit) {
+            try {
+                handler(exchange)
+            } finally {
+                exchange.close()
+            }
+        }
+
+        private fun startSession(exchange: HttpExchange) {
+            val name = exchange.requestURI.query.substringAfter("name=").replace("%2F", "/")
+            val id = "s${sessionsStarted.incrementAndGet()}"
+            sessions[id] = Session(name)
+            sessionOrder += name
+            exchange.responseHeaders.add("Location", "http://127.0.0.1:${http.address.port}/session/$id")
+            exchange.sendResponseHeaders(200, -1)
+        }
+
+        private fun putChunk(exchange: HttpExchange) {
+            val session = sessions[exchange.requestURI.path.substringAfterLast('/')]
+                ?: return exchange.sendResponseHeaders(404, -1)
+            val range = exchange.requestHeaders.getFirst("Content-Range")
+            val total = range.substringAfter('/').toLong()
+            val body = exchange.requestBody.readBytes()
+
+            if (!range.startsWith("bytes */")) {
+                maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), ::maxOf)
+                try {
+                    Thread.sleep(CHUNK_MS)
+                    bytesReceived.addAndGet(body.size.toLong())
+                    val offset = range.removePrefix("bytes ").substringBefore('-').toLong()
+                    failChunk(session.name, offset)?.let { return exchange.sendResponseHeaders(it, -1) }
+                    synchronized(session) {
+                        if (offset == session.data.size().toLong()) session.data.write(body)
+                    }
+                } finally {
+                    inFlight.decrementAndGet()
+                }
+            }
+
+            val committed = synchronized(session) { session.data.size().toLong() }
+            if (committed == total) {
+                objects[session.name] = session.data.toByteArray()
+                val response = """{"name":"${session.name}","downloadUrl":"https://storage.test/${session.name}"}"""
+                    .toByteArray()
+                exchange.sendResponseHeaders(200, response.size.toLong())
+                exchange.responseBody.use { it.write(response) }
+            } else {
+                if (committed > 0) exchange.responseHeaders.add("Range", "bytes=0-${committed - 1}")
+                exchange.sendResponseHeaders(308, -1)
+            }
+        }
+
+        override fun close() {
+            http.stop(0)
+        }
+    }
+
+    /**
+     * The upload queue queries of [MediaDao] over a map
+     */
+    private class FakeMediaDao : MediaDao {
+        val rows = ConcurrentHashMap<String, MediaEntity>()
+
+        private fun update(id: String, change: (MediaEntity) -> MediaEntity): Int =
+            if (rows.computeIfPresent(id) { _, row -> change(row) } != null) 1 else 0
+
+        override suspend fun getById(id: String) = rows[id]
+
+        override suspend fun getForEntity(entityType: String, entityId: String) =
+            rows.values.filter { it.entityType == entityType && it.entityId == entityId }.sortedBy { it.createdAt }
+
+        override suspend fun getPendingUploads(maxAttempts: Int) = rows.values
+            .filter { it.uploadStatus in setOf("PENDING", "UPLOADING") && it.uploadAttempts < maxAttempts }
+            .sortedWith(
+                compareBy<MediaEntity>({ when (it.mediaType) { "IMAGE" -> 0; "DOCUMENT" -> 1; else -> 2 } })
+                    .thenBy { it.fileSize }
+                    .thenBy { it.createdAt }
+            )
+
+        override suspend fun insert(media: MediaEntity): Long {
+            rows[media.id] = media
+            return rows.size.toLong()
+        }
+
+        override suspend fun updateUploadStatus(id: String, status: String, progress: Int) =
+            update(id) { it.copy(uploadStatus = status, uploadProgress = progress) }
+
+        override suspend fun updateUploadSession(id: String, sessionUri: String?, uploadedBytes: Long) =
+            update(id) { it.copy(uploadSessionUri = sessionUri, uploadedBytes = uploadedBytes) }
+
+        override suspend fun updateUploadedBytes(id: String, uploadedBytes: Long, progress: Int) =
+            update(id) { it.copy(uploadedBytes = uploadedBytes, uploadProgress = progress) }
+
+        override suspend fun recordUploadFailure(id: String, status: String, error: String?) =
+            update(id) { it.copy(uploadStatus = status, uploadAttempts = it.uploadAttempts + 1, lastError = error) }
+
+        override suspend fun completeUpload(id: String, status: String, remoteUrl: String, uploadedAt: Date) =
+            update(id) {
+                it.copy(
+                    remoteUrl = remoteUrl,
+                    uploadedAt = uploadedAt,
+                    uploadStatus = status,
+                    uploadProgress = 100,
+                    uploadSessionUri = null,
+                    lastError = null
+                )
+            }
+
+        override suspend fun updateLocalPath(id: String, localPath: String) =
+            update(id) { it.copy(localPath = localPath) }
+
+        override suspend fun deleteById(id: String) = if (rows.remove(id) != null) 1 else 0
+    }
+
+    companion object {
+        private const val CHUNK = 16 * 1024
+        private const val CHUNK_MS = 5L
+    }
+}
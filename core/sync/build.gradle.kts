@@ -60,6 +60,10 @@ dependencies {
     
     // Coroutines
     implementation(libs.kotlinx.coroutines.android)
+    implementation(libs.kotlinx.coroutines.play.services)
+    
+    // JSON payloads for queued offline actions
+    implementation(libs.gson)
     
     // Work Manager for background sync
     implementation(libs.androidx.work.runtime.ktx)
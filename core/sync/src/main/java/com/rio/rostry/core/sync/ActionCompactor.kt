@@ -0,0 +1,114 @@
+package com.rio.rostry.core.sync
+
+import com.rio.rostry.core.database.OfflineActionEntity
+
+/**
+ * Compaction planner for queued actions targeting one (entityType, entityId)
+ *
+ * Rules, applied in queue order:
+ * - successive UPDATEs merge into the first one, carrying the latest payload
+ * - UPDATEs after a pending CREATE fold into that CREATE
+ * - a CREATE followed by a DELETE cancels both, along with anything folded in between
+ *
+ * Any other action type breaks the run, so transfers and payments are never reordered.
+ * dependsOn edges of merged actions move to the survivor.
+ */
+object ActionCompactor {
+
+    /**
+     * @param actions queued actions for a single entity, in any order
+     */
+    fun plan(actions: List<OfflineActionEntity>): CompactionPlan {
+        val ordered = actions.sortedWith(compareBy<OfflineActionEntity> { it.queuedAt }.thenBy { it.id })
+        val rewritten = linkedMapOf<String, OfflineActionEntity>()
+        val mergedInto = mutableMapOf<String, String>()
+        val cancelled = mutableSetOf<String>()
+
+        var survivor: OfflineActionEntity? = null
+        val absorbed = mutableListOf<String>()
+
+        fun closeRun() {
+            val current = survivor
+            if (current != null && absorbed.isNotEmpty()) {
+                val removed = absorbed.toSet() + current.id
+                rewritten[current.id] = current.copy(
+                    dependsOn = current.dependsOn.filter { it !in removed }.distinct()
+                )
+                absorbed.forEach { mergedInto[it] = current.id }
+            }
+            survivor = null
+            absorbed.clear()
+        }
+
+        ordered.forEach { action ->
+            val current = survivor
+            when (action.actionType) {
+                OfflineActionType.CREATE.name -> {
+                    closeRun()
+                    survivor = action
+                }
+                OfflineActionType.UPDATE.name -> {
+                    if (current == null) {
+                        survivor = action
+                    } else {
+                        survivor = current.copy(
+                            actionData = action.actionData,
+                            priority = minOf(current.priority, action.priority),
+                            dependsOn = current.dependsOn + action.dependsOn
+                        )
+                        absorbed.add(action.id)
+                    }
+                }
+                OfflineActionType.DELETE.name -> {
+                    if (current?.actionType == OfflineActionType.CREATE.name) {
+                        cancelled.add(current.id)
+                        cancelled.addAll(absorbed)
+                        cancelled.add(action.id)
+                        survivor = null
+                        absorbed.clear()
+                    } else {
+                        closeRun()
+                    }
+                }
+                else -> closeRun()
+            }
+        }
+        closeRun()
+
+        return CompactionPlan(
+            rewritten = rewritten.values.toList(),
+            mergedInto = mergedInto,
+            cancelled = cancelled
+        )
+    }
+
+    /**
+     * Rewrite a dependency list after compaction
+     * Edges to merged actions point at their survivor; edges to cancelled actions are dropped.
+     */
+    fun remapDependencies(
+        action: OfflineActionEntity,
+        plan: CompactionPlan
+    ): List<String> {
+        return action.dependsOn
+            .filter { it !in plan.cancelled }
+            .map { plan.mergedInto[it] ?: it }
+            .filter { it != action.id }
+            .distinct()
+    }
+}
+
+/**
+ * Result of compacting one entity's queued actions
+ */
+data class CompactionPlan(
+    val rewritten: List<OfflineActionEntity>,
+    val mergedInto: Map<String, String>, // removed action id -> surviving action id
+    val cancelled: Set<String>
+) {
+    val removedIds: Set<String>
+        get() = mergedInto.keys + cancelled
+
+    val isEmpty: Boolean
+        get() = mergedInto.isEmpty() && cancelled.isEmpty()
+}
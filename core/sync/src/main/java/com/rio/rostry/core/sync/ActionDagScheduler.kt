@@ -0,0 +1,121 @@
+package com.rio.rostry.core.sync
+
+import java.util.*
+
+/**
+ * Kahn's-algorithm scheduler for queued offline actions
+ * Releases an action only once all of its in-queue predecessors have completed,
+ * and detects dependency cycles up front instead of recursing into them.
+ *
+ * Dependencies that are not part of the scheduled set are ignored here; they are
+ * validated against the database when the action runs.
+ *
+ * Not thread-safe: callers running actions concurrently must guard access.
+ */
+class ActionDagScheduler<T>(
+    items: List<T>,
+    private val idOf: (T) -> String,
+    dependenciesOf: (T) -> List<String>,
+    comparator: Comparator<T>
+) {
+
+    private val nodes: Map<String, T> = items.associateBy(idOf)
+    private val dependents = mutableMapOf<String, MutableList<String>>()
+    private val remainingDependencies = mutableMapOf<String, Int>()
+    private val ready = PriorityQueue(maxOf(1, items.size), comparator)
+    private val released = mutableSetOf<String>()
+
+    /**
+     * Dependency depth of each schedulable action (0 = no in-queue predecessors)
+     */
+    val levels: Map<String, Int>
+
+    /**
+     * Actions that can never run because they are part of, or depend on, a cycle
+     */
+    val cyclic: List<T>
+
+    init {
+        nodes.values.forEach { item ->
+            val id = idOf(item)
+            val inQueueDependencies = dependenciesOf(item).distinct().filter { it in nodes }
+            remainingDependencies[id] = inQueueDependencies.size
+            inQueueDependencies.forEach { dependencyId ->
+                dependents.getOrPut(dependencyId) { mutableListOf() }.add(id)
+            }
+        }
+
+        // Dry run of Kahn's algorithm to assign levels and find cycles
+        val indegree = remainingDependencies.toMutableMap()
+        val computedLevels = mutableMapOf<String, Int>()
+        val frontier = ArrayDeque<String>()
+        indegree.filterValues { it == 0 }.keys.forEach { id ->
+            computedLevels[id] = 0
+            frontier.add(id)
+        }
+        while (frontier.isNotEmpty()) {
+            val id = frontier.poll()
+            val level = computedLevels.getValue(id)
+            dependents[id]?.forEach { dependentId ->
+                computedLevels[dependentId] = maxOf(computedLevels[dependentId] ?: 0, level + 1)
+                val remaining = indegree.getValue(dependentId) - 1
+                indegree[dependentId] = remaining
+                if (remaining == 0) frontier.add(dependentId)
+            }
+        }
+
+        levels = computedLevels
+        cyclic = nodes.values.filter { idOf(it) !in computedLevels }
+
+        nodes.values
+            .filter { remainingDependencies[idOf(it)] == 0 }
+            .forEach { release(it) }
+    }
+
+    /**
+     * Number of actions that can be scheduled (excludes cyclic ones)
+     */
+    val schedulableCount: Int
+        get() = levels.size
+
+    /**
+     * Next ready action in priority order, or null if none is ready right now
+     */
+    fun poll(): T? = ready.poll()
+
+    /**
+     * Mark an action as completed and release dependents that are now unblocked
+     */
+    fun complete(id: String) {
+        dependents[id]?.forEach { dependentId ->
+            val remaining = (remainingDependencies[dependentId] ?: return@forEach) - 1
+            remainingDependencies[dependentId] = remaining
+            if (remaining == 0) {
+                nodes[dependentId]?.let { release(it) }
+            }
+        }
+    }
+
+    /**
+     * Mark an action as failed and return every transitive dependent that can no
+     * longer run in this pass
+     */
+    fun fail(id: String): List<T> {
+        val blocked = mutableListOf<T>()
+        val pending = ArrayDeque<String>()
+        dependents[id]?.let { pending.addAll(it) }
+        while (pending.isNotEmpty()) {
+            val dependentId = pending.poll()
+            if (remainingDependencies.remove(dependentId) == null) continue
+            nodes[dependentId]?.let { blocked.add(it) }
+            dependents[dependentId]?.let { pending.addAll(it) }
+        }
+        return blocked
+    }
+
+    private fun release(item: T) {
+        if (released.add(idOf(item))) {
+            ready.add(item)
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.rio.rostry.core.sync
+
+import com.rio.rostry.core.database.OfflineActionDao
+import com.rio.rostry.core.database.OfflineActionEntity
+import java.util.Date
+
+/**
+ * Retry bookkeeping for failed offline actions
+ * An action with retries left is pushed back by [RetryBackoff], and its queued dependents are
+ * pushed back with it so none of them is due before it; one that runs out is marked
+ * FAILED. Whenever an action ends FAILED or CANCELLED, every queued action that depends on it,
+ * directly or through other queued actions, is closed with the same status. Left QUEUED they
+ * could never run, and the queue would never drain.
+ */
+class ActionFailureHandler(
+    private val dao: OfflineActionDao,
+    private val retryBackoff: RetryBackoff = RetryBackoff(),
+    private val currentTimeMillis: () -> Long = System::currentTimeMillis
+) {
+
+    /**
+     * Reschedule [action] after a failed attempt, or fail it once its retries are spent
+     *
+     * @return dependents closed because [action] is now FAILED
+     */
+    suspend fun onFailure(action: OfflineActionEntity, error: String?): List<OfflineActionEntity> {
+        val newRetryCount = action.retryCount + 1
+        val now = currentTimeMillis()
+        if (newRetryCount < action.maxRetries) {
+            val nextAttempt = now + retryBackoff.delayFor(newRetryCount)
+            dao.updateRetryCount(action.id, newRetryCount, Date(nextAttempt))
+            deferDependents(action.id, nextAttempt)
+            return emptyList()
+        }
+        dao.updateStatus(action.id, OfflineActionStatus.FAILED.name, Date(now), error)
+        return closeDependents(action.id, OfflineActionStatus.FAILED)
+    }
+
+    /**
+     * Close every queued action that transitively depends on [dependencyId], which ended with [status]
+     *
+     * @return the closed actions
+     */
+    suspend fun closeDependents(dependencyId: String, status: OfflineActionStatus): List<OfflineActionEntity> {
+        require(status == OfflineActionStatus.FAILED || status == OfflineActionStatus.CANCELLED) {
+            "Dependents are only closed behind a FAILED or CANCELLED action"
+        }
+
+        val closed = queuedDependentsOf(dependencyId)
+        if (closed.isEmpty()) return emptyList()
+
+        // Every dependent names the root cause, however deep it sits in the chain
+        val reason = "Dependency $dependencyId ${status.name.lowercase()}"
+        val now = Date(currentTimeMillis())
+        closed.map { it.id }.chunked(SQLITE_MAX_BIND_ARGS).forEach { ids ->
+            dao.closeQueued(ids, status.name, now, reason)
+        }
+        return closed
+    }
+
+    /**
+     * Make sure nothing that transitively depends on [dependencyId] is due before [nextAttempt]
+     * The retry scheduler sleeps until the earliest next_attempt, so a dependent left due
+     * behind a backing-off dependency would wake it for drains that cannot run anything.
+     */
+    suspend fun deferDependents(dependencyId: String, nextAttempt: Long) {
+        queuedDependentsOf(dependencyId)
+            .filter { it.nextAttempt.time < nextAttempt }
+            .map { it.id }
+            .chunked(SQLITE_MAX_BIND_ARGS)
+            .forEach { ids -> dao.deferQueued(ids, nextAttempt) }
+    }
+
+    private suspend fun queuedDependentsOf(dependencyId: String): List<OfflineActionEntity> =
+        ReverseDependencies(dao.getQueuedWithDependencies()).transitive(dependencyId)
+
+    companion object {
+        // Stay under SQLite's default host parameter limit of 999
+        private const val SQLITE_MAX_BIND_ARGS = 900
+    }
+}
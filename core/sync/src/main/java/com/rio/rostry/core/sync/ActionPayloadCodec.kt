@@ -0,0 +1,83 @@
+package com.rio.rostry.core.sync
+
+import com.google.gson.Gson
+import com.google.gson.TypeAdapter
+import java.util.concurrent.ConcurrentHashMap
+import javax.inject.Inject
+import javax.inject.Singleton
+
+/**
+ * Shared codec for queued action payloads
+ * Uses one Gson instance and resolves each payload type adapter once, instead of
+ * building a new Gson (and re-reflecting the payload class) for every action.
+ *
+ * Encoded payloads carry a schema version prefix ("1:{...}"). Bare JSON written
+ * before versioning is read as version 0.
+ */
+@Singleton
+class ActionPayloadCodec @Inject constructor() {
+
+    private val gson = Gson()
+    private val adapters = ConcurrentHashMap<Class<*>, TypeAdapter<*>>()
+
+    init {
+        PAYLOAD_TYPES.forEach { type -> adapters[type] = gson.getAdapter(type) }
+    }
+
+    /**
+     * Decode an actionData column value into its payload class
+     */
+    fun <T : Any> decode(actionData: String, type: Class<T>): T {
+        val json = stripVersion(actionData)
+        return try {
+            adapterFor(type).fromJson(json)
+                ?: throw IllegalArgumentException("Empty action data")
+        } catch (e: IllegalArgumentException) {
+            throw e
+        } catch (e: Exception) {
+            throw IllegalArgumentException("Failed to parse action data: ${e.message}")
+        }
+    }
+
+    /**
+     * Encode a payload for the actionData column at the current schema version
+     */
+    fun <T : Any> encode(payload: T, type: Class<T>): String {
+        return "$SCHEMA_VERSION$VERSION_SEPARATOR${adapterFor(type).toJson(payload)}"
+    }
+
+    inline fun <reified T : Any> decode(actionData: String): T = decode(actionData, T::class.java)
+
+    inline fun <reified T : Any> encode(payload: T): String = encode(payload, T::class.java)
+
+    @Suppress("UNCHECKED_CAST")
+    private fun <T : Any> adapterFor(type: Class<T>): TypeAdapter<T> {
+        return adapters.getOrPut(type) { gson.getAdapter(type) } as TypeAdapter<T>
+    }
+
+    private fun stripVersion(actionData: String): String {
+        if (actionData.isEmpty() || actionData[0] == '{') return actionData
+
+        val separator = actionData.indexOf(VERSION_SEPARATOR)
+        val version = (if (separator > 0) actionData.substring(0, separator).toIntOrNull() else null)
+            ?: throw IllegalArgumentException("Malformed action data header")
+        if (version > SCHEMA_VERSION) {
+            throw IllegalArgumentException("Unsupported action data schema version: $version")
+        }
+        return actionData.substring(separator + 1)
+    }
+
+    companion object {
+        const val SCHEMA_VERSION = 1
+        private const val VERSION_SEPARATOR = ':'
+
+        private val PAYLOAD_TYPES = listOf(
+            FowlActionData::class.java,
+            MarketplaceActionData::class.java,
+            MessageActionData::class.java,
+            TransferActionData::class.java,
+            UserActionData::class.java,
+            PaymentActionData::class.java
+        )
+    }
+}
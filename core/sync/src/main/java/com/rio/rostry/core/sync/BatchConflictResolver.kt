@@ -0,0 +1,290 @@
+package com.rio.rostry.core.sync
+
+import androidx.room.withTransaction
+import com.rio.rostry.core.database.RIOLocalDatabase
+import com.rio.rostry.core.database.entities.*
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.async
+import kotlinx.coroutines.awaitAll
+import kotlinx.coroutines.coroutineScope
+import java.util.concurrent.ConcurrentHashMap
+import javax.inject.Inject
+import javax.inject.Singleton
+
+/**
+ * Streams conflicted rows through the resolver one page at a time
+ *
+ * Each page is keyset-paged from its [ConflictSource], split by resolution strategy and
+ * resolved in parallel on [Dispatchers.Default]. All outcomes of a page are then written
+ * back in a single Room transaction, so a page is applied completely or not at all and
+ * memory stays bounded by the page size however many conflicts piled up offline.
+ */
+@Singleton
+class BatchConflictResolver(
+    private val strategyOf: (SyncableEntity) -> ConflictResolutionStrategy,
+    private val resolve: suspend (ConflictCandidate) -> ConflictResolution,
+    private val runInTransaction: suspend (suspend () -> Unit) -> Unit,
+    private val config: BatchConflictConfig = BatchConflictConfig()
+) {
+
+    @Inject
+    constructor(conflictResolver: ConflictResolver, database: RIOLocalDatabase) : this(
+        strategyOf = conflictResolver::strategyFor,
+        resolve = { candidate ->
+            val remote = candidate.remote
+            if (remote != null) {
+                conflictResolver.resolveConflict(candidate.local, remote, candidate.base)
+            } else {
+                conflictResolver.resolveConflict(candidate.local)
+            }
+        },
+        runInTransaction = { block -> database.withTransaction { block() } }
+    )
+
+    /**
+     * Resolve every conflicted row in [source]
+     *
+     * @param onProgress called after each committed page with (processed, total)
+     */
+    suspend fun <T : SyncableEntity> resolveAll(
+        source: ConflictSource<T>,
+        onProgress: (processed: Int, total: Int) -> Unit = { _, _ -> }
+    ): SyncResult {
+        val startTime = System.currentTimeMillis()
+        val total = source.conflictCount()
+        var processed = 0
+        var resolved = 0
+        var failed = 0
+        val errors = mutableListOf<SyncError>()
+        var afterId: String? = null
+
+        while (true) {
+            val page = source.conflictedPage(afterId, config.pageSize)
+            if (page.isEmpty()) break
+            afterId = page.last().id
+
+            val ids = page.map { it.id }
+            val remotes = source.remoteCopies(ids)
+            val bases = source.baseCopies(ids)
+            val outcomes = resolvePage(page.map { local ->
+                ConflictCandidate(local, remotes[local.id], bases[local.id])
+            })
+
+            runInTransaction {
+                @Suppress("UNCHECKED_CAST")
+                source.apply(outcomes as List<ResolvedConflict<T>>)
+            }
+
+            outcomes.forEach { outcome ->
+                if (outcome.resolution.resolved) {
+                    resolved++
+                } else {
+                    failed++
+                    if (errors.size < config.maxReportedErrors) {
+                        errors.add(SyncError(
+                            entityId = outcome.local.id,
+                            errorType = SyncErrorType.CONFLICT_ERROR,
+                            message = outcome.resolution.resolution
+                        ))
+                    }
+                }
+            }
+
+            processed += page.size
+            onProgress(processed, maxOf(total, processed))
+            if (page.size < config.pageSize) break
+        }
+
+        return SyncResult(
+            entityType = source.entityType,
+            totalItems = processed,
+            successCount = resolved,
+            failureCount = failed,
+            conflictCount = failed,
+            bytesTransferred = 0L,
+            duration = System.currentTimeMillis() - startTime,
+            errors = errors
+        )
+    }
+
+    /**
+     * Group by strategy and resolve each group in slices on the default dispatcher
+     * Results come back in page order.
+     */
+    private suspend fun resolvePage(candidates: List<ConflictCandidate>): List<ResolvedConflict<SyncableEntity>> =
+        coroutineScope {
+            val results = arrayOfNulls<ResolvedConflict<SyncableEntity>>(candidates.size)
+            val byStrategy = candidates.indices.groupBy { strategyOf(candidates[it].local) }
+            val sliceSize = maxOf(config.minSliceSize, candidates.size / config.parallelism + 1)
+
+            byStrategy.values.flatMap { indices ->
+                indices.chunked(sliceSize).map { slice ->
+                    async(Dispatchers.Default) {
+                        slice.forEach { index ->
+                            val candidate = candidates[index]
+                            val resolution = try {
+                                resolve(candidate)
+                            } catch (e: CancellationException) {
+                                throw e
+                            } catch (e: Exception) {
+                                ConflictResolution(
+                                    resolved = false,
+                                    strategy = strategyOf(candidate.local),
+                                    resolvedEntity = null,
+                                    resolution = e.message ?: "Conflict resolution failed"
+                                )
+                            }
+                            results[index] = ResolvedConflict(candidate.local, candidate.remote, resolution)
+                        }
+                    }
+                }
+            }.awaitAll()
+
+            results.map { it!! }
+        }
+}
+
+/**
+ * Page size and parallelism for [BatchConflictResolver]
+ */
+data class BatchConflictConfig(
+    val pageSize: Int = 200,
+    val parallelism: Int = Runtime.getRuntime().availableProcessors().coerceAtLeast(1),
+    val minSliceSize: Int = 16,
+    val maxReportedErrors: Int = 100
+)
+
+/**
+ * A conflicted local row with the copies needed to resolve it
+ *
+ * @param remote server copy, if the source could fetch it
+ * @param base last synced copy, enabling a three-way merge
+ */
+data class ConflictCandidate(
+    val local: SyncableEntity,
+    val remote: SyncableEntity? = null,
+    val base: SyncableEntity? = null
+)
+
+/**
+ * Resolver output for one row
+ * A resolved outcome with a null resolvedEntity means the server copy wins.
+ */
+data class ResolvedConflict<T : SyncableEntity>(
+    val local: T,
+    val remote: T?,
+    val resolution: ConflictResolution
+)
+
+/**
+ * Conflicted rows of one entity type, paged by id
+ */
+interface ConflictSource<T : SyncableEntity> {
+    val entityType: String
+
+    suspend fun conflictCount(): Int
+
+    /**
+     * Up to [limit] conflicted rows with id greater than [afterId], ordered by id
+     */
+    suspend fun conflictedPage(afterId: String?, limit: Int): List<T>
+
+    /**
+     * Server copies by id; rows without one resolve from local data only
+     */
+    suspend fun remoteCopies(ids: List<String>): Map<String, T> = emptyMap()
+
+    /**
+     * Last synced copies by id; rows without one fall back to a two-way merge
+     */
+    suspend fun baseCopies(ids: List<String>): Map<String, T> = emptyMap()
+
+    /**
+     * Persist a page of outcomes; runs inside one Room transaction
+     */
+    suspend fun apply(outcomes: List<ResolvedConflict<T>>)
+}
+
+/**
+ * Server copies of rows by id, e.g. [FirestoreRemoteCopies]
+ */
+fun interface RemoteCopySource<T : SyncableEntity> {
+    suspend fun fetch(ids: List<String>): Map<String, T>
+}
+
+/**
+ * [ConflictSource] over a DAO's has_conflict rows
+ *
+ * Server copies come from [remote], so the resolver can compare both sides. A resolved
+ * entity is written back and its conflict cleared. When the server copy wins, that copy is
+ * written and marked SYNCED; if none could be fetched the row is flagged PENDING_DOWNLOAD
+ * but stays conflicted, so the local edit is not dropped before a server copy replaces it.
+ * Unresolved rows stay conflicted for the next run.
+ */
+class DaoConflictSource<T : SyncableEntity>(
+    override val entityType: String,
+    private val dao: ConflictPagingDao<T>,
+    private val remote: RemoteCopySource<T> = RemoteCopySource { emptyMap() }
+) : ConflictSource<T> {
+
+    override suspend fun conflictCount() = dao.getConflictCount()
+
+    override suspend fun conflictedPage(afterId: String?, limit: Int) =
+        dao.getConflictedAfter(afterId.orEmpty(), limit)
+
+    override suspend fun remoteCopies(ids: List<String>) = remote.fetch(ids)
+
+    override suspend fun apply(outcomes: List<ResolvedConflict<T>>) {
+        val cleared = mutableListOf<String>()
+        val serverCopies = mutableListOf<String>()
+        val awaitingDownload = mutableListOf<String>()
+        outcomes.filter { it.resolution.resolved }.forEach { outcome ->
+            @Suppress("UNCHECKED_CAST")
+            val entity = outcome.resolution.resolvedEntity as T?
+            val serverCopy = outcome.remote
+            when {
+                entity != null -> {
+                    dao.update(entity)
+                    cleared.add(outcome.local.id)
+                }
+                serverCopy != null -> {
+                    dao.update(serverCopy)
+                    serverCopies.add(outcome.local.id)
+                    cleared.add(outcome.local.id)
+                }
+                else -> awaitingDownload.add(outcome.local.id)
+            }
+        }
+        serverCopies.chunked(SQLITE_MAX_BIND_ARGS).forEach { dao.markSynced(it) }
+        awaitingDownload.chunked(SQLITE_MAX_BIND_ARGS).forEach { dao.markPendingDownload(it) }
+        cleared.chunked(SQLITE_MAX_BIND_ARGS).forEach { dao.clearConflicts(it) }
+    }
+
+    private companion object {
+        // Stay under SQLite's default host parameter limit of 999
+        const val SQLITE_MAX_BIND_ARGS = 900
+    }
+}
+
+/**
+ * Conflict sources keyed by entity type ("fowls", "marketplace", ...)
+ * Sources bound into the set by ConflictSourceModule are registered on creation. Entity
+ * types without a source are resolved one row at a time by SyncManager.
+ */
+@Singleton
+class ConflictSourceRegistry @Inject constructor(
+    sources: Set<@JvmSuppressWildcards ConflictSource<*>>
+) {
+    private val sources = ConcurrentHashMap<String, ConflictSource<*>>()
+
+    init {
+        sources.forEach { register(it) }
+    }
+
+    fun register(source: ConflictSource<*>) {
+        sources[source.entityType] = source
+    }
+
+    fun sourceFor(entityType: String): ConflictSource<*>? = sources[entityType]
+}
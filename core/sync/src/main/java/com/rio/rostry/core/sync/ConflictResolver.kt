@@ -30,9 +30,31 @@ class ConflictResolver @Inject constructor(
         }
     }
     
+    /**
+     * Resolve a conflict knowing both copies and, when available, the last synced [base]
+     * Merge-strategy entities are merged field by field; other strategies ignore the copies.
+     */
+    suspend fun resolveConflict(
+        local: SyncableEntity,
+        remote: SyncableEntity,
+        base: SyncableEntity? = null
+    ): ConflictResolution {
+        val strategy = getResolutionStrategy(local)
+        if (strategy == ConflictResolutionStrategy.LAST_WRITER_WINS) {
+            return lastWriterWins(local.syncMetadata.hybridTimestamp, remote.syncMetadata.hybridTimestamp, local)
+        }
+        if (strategy != ConflictResolutionStrategy.MERGE_STRATEGY || local.javaClass != remote.javaClass) {
+            return resolveConflict(local)
+        }
+        return mergeThreeWay(local, remote, base?.takeIf { it.javaClass == local.javaClass })
+            ?: resolveMergeStrategy(local)
+    }
+    
     /**
      * Get appropriate resolution strategy based on entity type and conflict
      */
+    fun strategyFor(entity: SyncableEntity): ConflictResolutionStrategy = getResolutionStrategy(entity)
+
     private fun getResolutionStrategy(entity: SyncableEntity): ConflictResolutionStrategy {
         return when (entity) {
             is TransferEntity -> {
@@ -73,12 +95,19 @@ class ConflictResolver @Inject constructor(
         val localVersion = entity.conflictMetadata.localVersion ?: 0L
         val serverVersion = entity.conflictMetadata.serverVersion ?: 0L
         
-        return if (localVersion > serverVersion) {
+        return lastWriterWins(localVersion, serverVersion, entity)
+    }
+    
+    /**
+     * Compare hybrid timestamps; ties go to the server copy
+     */
+    private fun lastWriterWins(localStamp: Long, serverStamp: Long, local: SyncableEntity): ConflictResolution {
+        return if (localStamp > serverStamp) {
             // Local version is newer - use local
             ConflictResolution(
                 resolved = true,
                 strategy = ConflictResolutionStrategy.LAST_WRITER_WINS,
-                resolvedEntity = entity,
+                resolvedEntity = local,
                 resolution = "Local version is newer"
             )
         } else {
@@ -130,6 +159,42 @@ class ConflictResolver @Inject constructor(
         }
     }
     
+    /**
+     * Field-level three-way merge; null when the entity type has no field table
+     * Non-overlapping edits merge automatically. Overlapping edits to server-owned columns
+     * take the server value; any other overlap needs the user.
+     */
+    private fun <T : SyncableEntity> mergeThreeWay(local: T, remote: T, base: T?): ConflictResolution? {
+        val differ = EntityDiffers.forEntity(local) ?: return null
+        val remoteWins = EntityDiffers.serverOwnedFields(local) ?: FieldMask.empty(differ.fieldCount)
+        val outcome = differ.merge(base, local, remote, remoteWins)
+        
+        val details = mapOf(
+            "local_fields" to differ.names(outcome.localChanges.andNot(outcome.takenFromRemote)).joinToString(","),
+            "remote_fields" to differ.names(outcome.takenFromRemote).joinToString(","),
+            "conflicting_fields" to differ.names(outcome.conflicts).joinToString(",")
+        )
+        
+        return if (outcome.isClean) {
+            ConflictResolution(
+                resolved = true,
+                strategy = ConflictResolutionStrategy.MERGE_STRATEGY,
+                resolvedEntity = outcome.merged,
+                resolution = "Merged non-overlapping field changes",
+                mergeDetails = details
+            )
+        } else {
+            ConflictResolution(
+                resolved = false,
+                strategy = ConflictResolutionStrategy.MERGE_STRATEGY,
+                resolvedEntity = outcome.merged,
+                resolution = "Both sides changed ${outcome.conflicts.cardinality()} field(s)",
+                requiresUserInput = true,
+                mergeDetails = details
+            )
+        }
+    }
+    
     /**
      * Merge user entity fields
      */
@@ -202,107 +267,55 @@ class ConflictResolver @Inject constructor(
     
     /**
      * Detect conflicts between local and server entities
+     * Writes are ordered by [HybridTimestamp], so device clock skew cannot fake a conflict;
+     * the reported versions are the two hybrid timestamps.
      */
     fun detectConflict(local: SyncableEntity, server: SyncableEntity): ConflictDetection {
         if (local.id != server.id) {
             return ConflictDetection(hasConflict = false, reason = "Different entities")
         }
         
-        val localVersion = local.conflictVersion
-        val serverVersion = server.conflictVersion
-        val localUpdated = local.updatedAt
-        val serverUpdated = server.updatedAt
+        val localStamp = local.syncMetadata.hybridTimestamp
+        val serverStamp = server.syncMetadata.hybridTimestamp
+        val localUpdated = Date(HybridTimestamp.physicalMillis(localStamp))
+        val serverUpdated = Date(HybridTimestamp.physicalMillis(serverStamp))
         
-        // Check for version conflicts
-        if (localVersion != serverVersion) {
-            return ConflictDetection(
-                hasConflict = true,
-                reason = "Version mismatch",
-                conflictType = ConflictType.VERSION_CONFLICT,
-                localVersion = localVersion,
-                serverVersion = serverVersion,
-                localTimestamp = localUpdated,
-                serverTimestamp = serverUpdated
-            )
+        // Same stamp means the server copy is our own upload echoed back
+        if (local.syncMetadata.hlc != HybridTimestamp.NONE && localStamp == serverStamp) {
+            return ConflictDetection(hasConflict = false, reason = "Same write")
         }
         
-        // Check for timestamp conflicts (same version but different timestamps)
-        if (Math.abs(localUpdated.time - serverUpdated.time) > 1000) { // 1 second tolerance
-            return ConflictDetection(
-                hasConflict = true,
-                reason = "Timestamp mismatch",
-                conflictType = ConflictType.TIMESTAMP_CONFLICT,
-                localVersion = localVersion,
-                serverVersion = serverVersion,
-                localTimestamp = localUpdated,
-                serverTimestamp = serverUpdated
-            )
+        // Without unsynced local writes the server copy simply replaces ours
+        if (local.syncStatus == SyncStatus.SYNCED) {
+            return ConflictDetection(hasConflict = false, reason = "No local changes")
         }
         
-        // Check for field-level conflicts
-        val fieldConflicts = detectFieldConflicts(local, server)
-        if (fieldConflicts.isNotEmpty()) {
-            return ConflictDetection(
-                hasConflict = true,
-                reason = "Field conflicts detected",
-                conflictType = ConflictType.FIELD_CONFLICT,
-                localVersion = localVersion,
-                serverVersion = serverVersion,
-                localTimestamp = localUpdated,
-                serverTimestamp = serverUpdated,
-                conflictingFields = fieldConflicts
-            )
+        // Both sides wrote since the last sync; only differing content is a conflict
+        val changed = changedFields(local, server)
+        if (changed != null && changed.isEmpty) {
+            return ConflictDetection(hasConflict = false, reason = "Identical content")
         }
         
-        return ConflictDetection(hasConflict = false, reason = "No conflicts detected")
-    }
-    
-    /**
-     * Detect field-level conflicts between entities
-     */
-    private fun detectFieldConflicts(local: SyncableEntity, server: SyncableEntity): List<String> {
-        val conflicts = mutableListOf<String>()
-        
-        // Convert entities to maps for comparison
-        val localMap = entityToMap(local)
-        val serverMap = entityToMap(server)
-        
-        // Compare each field
-        localMap.forEach { (key, localValue) ->
-            val serverValue = serverMap[key]
-            if (serverValue != null && localValue != serverValue) {
-                // Exclude sync metadata fields from conflict detection
-                if (!key.startsWith("sync_") && !key.startsWith("conflict_")) {
-                    conflicts.add(key)
-                }
-            }
-        }
-        
-        return conflicts
+        val fieldConflicts = changed?.let { EntityDiffers.forEntity(local)?.names(it) }.orEmpty()
+        return ConflictDetection(
+            hasConflict = true,
+            reason = if (fieldConflicts.isNotEmpty()) "Field conflicts detected" else "Concurrent writes",
+            conflictType = if (fieldConflicts.isNotEmpty()) ConflictType.FIELD_CONFLICT else ConflictType.VERSION_CONFLICT,
+            localVersion = localStamp,
+            serverVersion = serverStamp,
+            localTimestamp = localUpdated,
+            serverTimestamp = serverUpdated,
+            conflictingFields = fieldConflicts
+        )
     }
     
     /**
-     * Convert entity to map for field comparison
+     * Changed columns between a local row and a downloaded copy, or null for entity types
+     * without a field table. Cheap enough to call for every document in a bulk download.
      */
-    private fun entityToMap(entity: SyncableEntity): Map<String, Any?> {
-        // Simplified implementation - would use reflection or serialization
-        return when (entity) {
-            is UserEntity -> mapOf(
-                "display_name" to entity.displayName,
-                "email" to entity.email,
-                "user_tier" to entity.userTier,
-                "verification_status" to entity.verificationStatus
-                // Add other fields as needed
-            )
-            is FowlEntity -> mapOf(
-                "name" to entity.name,
-                "breed_primary" to entity.breedPrimary,
-                "owner_id" to entity.ownerId,
-                "health_status" to entity.healthStatus
-                // Add other fields as needed
-            )
-            else -> emptyMap()
-        }
+    fun changedFields(local: SyncableEntity, remote: SyncableEntity): FieldMask? {
+        if (local.javaClass != remote.javaClass) return null
+        return EntityDiffers.forEntity(local)?.diff(local, remote)
     }
     
     /**
@@ -0,0 +1,288 @@
+package com.rio.rostry.core.sync
+
+import androidx.room.withTransaction
+import com.google.firebase.Timestamp
+import com.google.firebase.firestore.DocumentSnapshot
+import com.google.firebase.firestore.FieldPath
+import com.google.firebase.firestore.FirebaseFirestore
+import com.google.firebase.firestore.Query
+import com.rio.rostry.core.database.RIOLocalDatabase
+import com.rio.rostry.core.database.entities.HybridTimestamp
+import com.rio.rostry.core.database.entities.SyncWatermarkEntity
+import kotlinx.coroutines.tasks.await
+import java.util.*
+import java.util.concurrent.ConcurrentHashMap
+import javax.inject.Inject
+import javax.inject.Singleton
+
+/**
+ * Incremental pull sync driven by per-scope high-water marks
+ *
+ * Each pull asks Firestore only for documents ordered after the stored
+ * (updatedAt, documentId) cursor, one page at a time. Every page is upserted and the
+ * cursor advanced in a single Room transaction, so an interrupted pull resumes where it
+ * stopped and never skips a page it did not apply.
+ *
+ * Documents must carry an `updatedAt` timestamp that moves forward on every write; set it
+ * with FieldValue.serverTimestamp() so client clock skew cannot hide changes. The hybrid
+ * timestamp a document carries in its `hlc` field is merged into [clock] as it is read.
+ */
+@Singleton
+class DeltaDownloader @Inject constructor(
+    private val firestore: FirebaseFirestore,
+    private val database: RIOLocalDatabase,
+    private val clock: HybridLogicalClock
+) {
+
+    /**
+     * Pull everything in [scope] changed since its watermark and apply it via [source]
+     *
+     * @param maxPages stop after this many pages; the next pull continues from the cursor
+     */
+    suspend fun <T> pull(
+        scope: SyncScope,
+        source: DeltaSource<T>,
+        pageSize: Int = DEFAULT_PAGE_SIZE,
+        maxPages: Int = Int.MAX_VALUE
+    ): DeltaPullResult {
+        val startTime = System.currentTimeMillis()
+        val watermarkDao = database.syncWatermarkDao()
+        var cursor = watermarkDao.get(scope.key)?.let { SyncWatermark(it.updatedAt, it.documentId) }
+        val changed = HashMap<String, Long>()
+        var applied = 0
+        var skipped = 0
+        var pages = 0
+
+        while (pages < maxPages) {
+            val documents = scope.query(firestore, cursor)
+                .limit(pageSize.toLong())
+                .get()
+                .await()
+                .documents
+            if (documents.isEmpty()) break
+
+            val items = ArrayList<T>(documents.size)
+            documents.forEach { document ->
+                val stamp = clock.receiveRemote(document.get(HybridTimestamp.FIELD))
+                changed[document.id] = if (stamp != HybridTimestamp.NONE) {
+                    stamp
+                } else {
+                    // Written before stamping existed: order it by its server time
+                    HybridTimestamp.fromDate(Date(document.updatedAtMillis() ?: 0L))
+                }
+                val item = source.map(document)
+                if (item != null) items.add(item) else skipped++
+            }
+
+            val last = documents.last()
+            val next = SyncWatermark(
+                updatedAt = last.updatedAtMillis() ?: cursor?.updatedAt ?: 0L,
+                documentId = last.id
+            )
+
+            database.withTransaction {
+                if (items.isNotEmpty()) source.upsert(items)
+                watermarkDao.upsert(scope.toEntity(next, System.currentTimeMillis()))
+            }
+
+            cursor = next
+            applied += items.size
+            pages++
+            if (documents.size < pageSize) break
+        }
+
+        return DeltaPullResult(
+            scope = scope,
+            applied = applied,
+            skipped = skipped,
+            pages = pages,
+            watermark = cursor,
+            changed = changed,
+            duration = System.currentTimeMillis() - startTime
+        )
+    }
+
+    suspend fun watermark(scope: SyncScope): SyncWatermark? {
+        return database.syncWatermarkDao().get(scope.key)?.let { SyncWatermark(it.updatedAt, it.documentId) }
+    }
+
+    /**
+     * Forget the cursor so the next pull re-downloads the whole scope
+     */
+    suspend fun reset(scope: SyncScope) {
+        database.syncWatermarkDao().delete(scope.key)
+    }
+
+    /**
+     * Forget every cursor for a collection, across all owners and regions
+     */
+    suspend fun resetCollection(collection: String) {
+        database.syncWatermarkDao().deleteForCollection(collection)
+    }
+
+    companion object {
+        const val UPDATED_AT_FIELD = "updatedAt"
+        const val DEFAULT_PAGE_SIZE = 200
+    }
+}
+
+/**
+ * Maps Firestore documents of one collection into local rows
+ */
+interface DeltaSource<T> {
+    /**
+     * Return null to skip a malformed document; it still advances the cursor
+     */
+    fun map(document: DocumentSnapshot): T?
+
+    /**
+     * Batched upsert, called inside the page transaction
+     */
+    suspend fun upsert(items: List<T>)
+}
+
+/**
+ * Delta sources registered per entity type ("fowls", "marketplace", ...)
+ * Entity types without a source fall back to the repository's full download.
+ */
+@Singleton
+class DeltaSourceRegistry @Inject constructor() {
+    private val sources = ConcurrentHashMap<String, Pair<String, DeltaSource<*>>>()
+
+    fun register(entityType: String, collection: String, source: DeltaSource<*>) {
+        sources[entityType] = collection to source
+    }
+
+    fun collectionFor(entityType: String): String? = sources[entityType]?.first
+
+    fun sourceFor(entityType: String): DeltaSource<*>? = sources[entityType]?.second
+}
+
+/**
+ * One collection, optionally narrowed by owner and region/district
+ * Each distinct scope keeps its own watermark.
+ */
+data class SyncScope(
+    val collection: String,
+    val ownerId: String? = null,
+    val region: String? = null,
+    val district: String? = null
+) {
+    val key: String
+        get() = listOf(collection, ownerId.orEmpty(), region.orEmpty(), district.orEmpty()).joinToString("|")
+
+    /**
+     * Firestore query for changes after [cursor]
+     * Equality filters plus orderBy(updatedAt, __name__) need a matching composite index.
+     */
+    fun query(firestore: FirebaseFirestore, cursor: SyncWatermark?): Query {
+        var query: Query = firestore.collection(collection)
+        ownerId?.let { query = query.whereEqualTo("ownerId", it) }
+        region?.let { query = query.whereEqualTo("region", it) }
+        district?.let { query = query.whereEqualTo("district", it) }
+        query = query
+            .orderBy(DeltaDownloader.UPDATED_AT_FIELD)
+            .orderBy(FieldPath.documentId())
+        return cursor?.let { query.startAfter(Timestamp(Date(it.updatedAt)), it.documentId) } ?: query
+    }
+
+    fun toEntity(watermark: SyncWatermark, syncedAt: Long) = SyncWatermarkEntity(
+        scopeKey = key,
+        collection = collection,
+        ownerId = ownerId,
+        region = region,
+        district = district,
+        updatedAt = watermark.updatedAt,
+        documentId = watermark.documentId,
+        syncedAt = syncedAt
+    )
+}
+
+/**
+ * (updatedAt, documentId) cursor of the last applied document
+ * Stored in millis; Firestore timestamps truncate downwards, so resuming may re-read a
+ * document from the same millisecond but never skips one.
+ */
+data class SyncWatermark(
+    val updatedAt: Long,
+    val documentId: String
+)
+
+/**
+ * Outcome of one delta pull
+ *
+ * @param changed document id -> remote [HybridTimestamp] for everything seen, used by [SyncDiff]
+ */
+data class DeltaPullResult(
+    val scope: SyncScope,
+    val applied: Int,
+    val skipped: Int,
+    val pages: Int,
+    val watermark: SyncWatermark?,
+    val changed: Map<String, Long>,
+    val duration: Long
+)
+
+/**
+ * Set-based comparisons between local rows and a delta pull
+ * Rows are ordered by [HybridTimestamp], never by a device's wall clock, so a phone whose
+ * clock runs ahead cannot keep an edit the server has since superseded.
+ */
+object SyncDiff {
+
+    /**
+     * Local candidates that still need uploading
+     * A candidate is dropped when the pull just delivered a remote copy stamped at least as
+     * late, since that copy has already overwritten the local row. One hash lookup per candidate.
+     *
+     * @param stampOf hybrid timestamp of the local row's last write
+     */
+    fun <T> pendingUploads(
+        candidates: Collection<T>,
+        remoteChanges: Map<String, Long>,
+        idOf: (T) -> String,
+        stampOf: (T) -> Long
+    ): List<T> {
+        return candidates.filter { candidate ->
+            val remoteStamp = remoteChanges[idOf(candidate)]
+            remoteStamp == null || remoteStamp < stampOf(candidate)
+        }
+    }
+
+    /**
+     * Pulled rows that may overwrite the local copy
+     * A remote row older than a dirty local row of the same id is dropped, so the pull
+     * never replaces an edit that has not been uploaded yet. This is the mirror image of
+     * [pendingUploads]: each id ends up either applied from remote or uploaded, never both.
+     *
+     * @param localChanges dirty local rows by id, read before the pull starts
+     * @param stampOf hybrid timestamp of a row's last write, local or remote
+     */
+    fun <T> remoteWins(
+        remote: Collection<T>,
+        localChanges: Map<String, T>,
+        idOf: (T) -> String,
+        stampOf: (T) -> Long
+    ): List<T> {
+        return remote.filter { item ->
+            val local = localChanges[idOf(item)]
+            local == null || stampOf(item) >= stampOf(local)
+        }
+    }
+
+    /**
+     * Ids present locally but absent from [remoteIds]
+     */
+    fun missingRemotely(localIds: Collection<String>, remoteIds: Set<String>): Set<String> {
+        return localIds.filterTo(LinkedHashSet()) { it !in remoteIds }
+    }
+}
+
+/**
+ * Hybrid timestamp of the document's last write, for [DeltaSource.map] to store in SyncMetadata.hlc
+ */
+fun DocumentSnapshot.hybridTimestamp(): Long = HybridTimestamp.fromField(get(HybridTimestamp.FIELD))
+
+private fun DocumentSnapshot.updatedAtMillis(): Long? {
+    return getTimestamp(DeltaDownloader.UPDATED_AT_FIELD)?.toDate()?.time
+}
@@ -0,0 +1,235 @@
+package com.rio.rostry.core.sync
+
+import com.rio.rostry.core.database.entities.SyncableEntity
+
+/**
+ * Field-by-field comparison and three-way merge for one entity type
+ *
+ * A differ is a table of typed getters plus a copy function per field, so comparing two
+ * entities reads each field directly (no reflection, no intermediate maps, no boxing for
+ * primitive columns) and reports the changed columns as a [FieldMask]. Sync bookkeeping
+ * columns (versions, timestamps, retry counters) are deliberately left out of the table.
+ */
+class EntityDiffer<T : SyncableEntity> internal constructor(
+    private val fields: Array<DiffField<T>>
+) {
+
+    val fieldCount: Int
+        get() = fields.size
+
+    fun fieldName(index: Int): String = fields[index].name
+
+    fun indexOf(name: String): Int = fields.indexOfFirst { it.name == name }
+
+    /**
+     * Mask of fields whose names are in [names]; unknown names are ignored
+     */
+    fun maskOf(vararg names: String): FieldMask {
+        val mask = FieldMask.empty(fields.size)
+        names.forEach { name -> indexOf(name).takeIf { it >= 0 }?.let { mask.set(it) } }
+        return mask
+    }
+
+    /**
+     * Columns that differ between [a] and [b]
+     */
+    fun diff(a: T, b: T): FieldMask {
+        val mask = FieldMask.empty(fields.size)
+        for (i in fields.indices) {
+            if (!fields[i].sameValue(a, b)) mask.set(i)
+        }
+        return mask
+    }
+
+    fun names(mask: FieldMask): List<String> {
+        val names = ArrayList<String>(mask.cardinality())
+        mask.forEach { names.add(fields[it].name) }
+        return names
+    }
+
+    /**
+     * Three-way merge of [local] and [remote] against their common ancestor [base]
+     *
+     * Fields changed on one side only are taken from that side. Fields changed on both
+     * sides to the same value are not conflicts. Remaining overlaps are resolved in favour
+     * of [remote] when listed in [remoteWins], otherwise left in the local value and
+     * reported in [MergeOutcome.conflicts]. Without a base every differing field counts as
+     * changed on both sides.
+     */
+    fun merge(base: T?, local: T, remote: T, remoteWins: FieldMask = FieldMask.empty(fields.size)): MergeOutcome<T> {
+        val localChanges = if (base != null) diff(base, local) else diff(local, remote)
+        val remoteChanges = if (base != null) diff(base, remote) else localChanges.copy()
+
+        val overlap = localChanges.and(remoteChanges)
+        overlap.forEach { if (fields[it].sameValue(local, remote)) overlap.clear(it) }
+
+        val takeRemote = remoteChanges.andNot(localChanges).or(overlap.and(remoteWins))
+        val conflicts = overlap.andNot(remoteWins)
+
+        // Start from whichever side needs fewer field copies
+        val merged = if (takeRemote.cardinality() * 2 <= fields.size || !conflicts.isEmpty) {
+            applyFields(local, remote, takeRemote)
+        } else {
+            val keepLocal = FieldMask.empty(fields.size)
+            for (i in fields.indices) {
+                if (!takeRemote.contains(i) && !fields[i].sameValue(local, remote)) keepLocal.set(i)
+            }
+            applyFields(remote, local, keepLocal)
+        }
+
+        return MergeOutcome(
+            merged = merged,
+            localChanges = localChanges,
+            remoteChanges = remoteChanges,
+            takenFromRemote = takeRemote,
+            conflicts = conflicts
+        )
+    }
+
+    private fun applyFields(target: T, source: T, mask: FieldMask): T {
+        var result = target
+        mask.forEach { result = fields[it].copy(result, source) }
+        return result
+    }
+}
+
+/**
+ * Result of [EntityDiffer.merge]; [merged] keeps local values for any [conflicts]
+ */
+data class MergeOutcome<T>(
+    val merged: T,
+    val localChanges: FieldMask,
+    val remoteChanges: FieldMask,
+    val takenFromRemote: FieldMask,
+    val conflicts: FieldMask
+) {
+    val isClean: Boolean
+        get() = conflicts.isEmpty
+}
+
+/**
+ * Fixed-width bitset of column indices
+ */
+class FieldMask private constructor(private val words: LongArray) {
+
+    val isEmpty: Boolean
+        get() = words.all { it == 0L }
+
+    fun contains(index: Int): Boolean = words[index ushr 6] and (1L shl index) != 0L
+
+    internal fun set(index: Int) {
+        words[index ushr 6] = words[index ushr 6] or (1L shl index)
+    }
+
+    internal fun clear(index: Int) {
+        words[index ushr 6] = words[index ushr 6] and (1L shl index).inv()
+    }
+
+    fun cardinality(): Int = words.sumOf { java.lang.Long.bitCount(it) }
+
+    fun and(other: FieldMask) = combine(other) { a, b -> a and b }
+
+    fun or(other: FieldMask) = combine(other) { a, b -> a or b }
+
+    fun andNot(other: FieldMask) = combine(other) { a, b -> a and b.inv() }
+
+    fun copy() = FieldMask(words.copyOf())
+
+    inline fun forEach(action: (Int) -> Unit) {
+        for (word in 0 until wordCount) {
+            var bits = word(word)
+            while (bits != 0L) {
+                val bit = java.lang.Long.numberOfTrailingZeros(bits)
+                action(word * 64 + bit)
+                bits = bits and (bits - 1)
+            }
+        }
+    }
+
+    @PublishedApi
+    internal val wordCount: Int
+        get() = words.size
+
+    @PublishedApi
+    internal fun word(index: Int): Long = words[index]
+
+    private inline fun combine(other: FieldMask, op: (Long, Long) -> Long): FieldMask {
+        return FieldMask(LongArray(words.size) { op(words[it], other.words[it]) })
+    }
+
+    override fun equals(other: Any?): Boolean = other is FieldMask && words.contentEquals(other.words)
+
+    override fun hashCode(): Int = words.contentHashCode()
+
+    override fun toString(): String = buildString {
+        append('[')
+        var first = true
+        forEach {
+            if (!first) append(',')
+            append(it)
+            first = false
+        }
+        append(']')
+    }
+
+    companion object {
+        fun empty(fieldCount: Int) = FieldMask(LongArray(maxOf(1, (fieldCount + 63) ushr 6)))
+    }
+}
+
+internal abstract class DiffField<T>(val name: String, val copy: (T, T) -> T) {
+    abstract fun sameValue(a: T, b: T): Boolean
+}
+
+fun interface IntGetter<T> { fun get(entity: T): Int }
+fun interface LongGetter<T> { fun get(entity: T): Long }
+fun interface DoubleGetter<T> { fun get(entity: T): Double }
+fun interface BooleanGetter<T> { fun get(entity: T): Boolean }
+
+/**
+ * Builder for an [EntityDiffer] field table
+ *
+ * @param copy returns the first entity with this field taken from the second
+ */
+class EntityDifferBuilder<T : SyncableEntity> internal constructor() {
+    private val fields = mutableListOf<DiffField<T>>()
+
+    fun field(name: String, get: (T) -> Any?, copy: (T, T) -> T) {
+        fields += object : DiffField<T>(name, copy) {
+            override fun sameValue(a: T, b: T) = get(a) == get(b)
+        }
+    }
+
+    fun int(name: String, get: IntGetter<T>, copy: (T, T) -> T) {
+        fields += object : DiffField<T>(name, copy) {
+            override fun sameValue(a: T, b: T) = get.get(a) == get.get(b)
+        }
+    }
+
+    fun long(name: String, get: LongGetter<T>, copy: (T, T) -> T) {
+        fields += object : DiffField<T>(name, copy) {
+            override fun sameValue(a: T, b: T) = get.get(a) == get.get(b)
+        }
+    }
+
+    fun double(name: String, get: DoubleGetter<T>, copy: (T, T) -> T) {
+        fields += object : DiffField<T>(name, copy) {
+            override fun sameValue(a: T, b: T) = java.lang.Double.compare(get.get(a), get.get(b)) == 0
+        }
+    }
+
+    fun bool(name: String, get: BooleanGetter<T>, copy: (T, T) -> T) {
+        fields += object : DiffField<T>(name, copy) {
+            override fun sameValue(a: T, b: T) = get.get(a) == get.get(b)
+        }
+    }
+
+    internal fun build(): EntityDiffer<T> {
+        check(fields.map { it.name }.toSet().size == fields.size) { "Duplicate field names" }
+        return EntityDiffer(fields.toTypedArray())
+    }
+}
+
+fun <T : SyncableEntity> entityDiffer(block: EntityDifferBuilder<T>.() -> Unit): EntityDiffer<T> {
+    return EntityDifferBuilder<T>().apply(block).build()
+}
@@ -0,0 +1,376 @@
+package com.rio.rostry.core.sync
+
+import com.rio.rostry.core.database.entities.*
+
+/**
+ * Field tables for every syncable entity
+ *
+ * One line per persisted, user-editable column, named after the column. Keep these in
+ * step with the entity constructors: a column missing here is invisible to conflict
+ * detection and is never merged.
+ */
+object EntityDiffers {
+
+    val user: EntityDiffer<UserEntity> = entityDiffer {
+        field("email", { it.email }) { e, from -> e.copy(email = from.email) }
+        field("display_name", { it.displayName }) { e, from -> e.copy(displayName = from.displayName) }
+        field("phone_number", { it.phoneNumber }) { e, from -> e.copy(phoneNumber = from.phoneNumber) }
+        field("photo_url", { it.photoUrl }) { e, from -> e.copy(photoUrl = from.photoUrl) }
+        field("tier", { it.tier }) { e, from -> e.copy(tier = from.tier) }
+        int("coin_balance", { it.coinBalance }) { e, from -> e.copy(coinBalance = from.coinBalance) }
+        int("pending_coin_balance", { it.pendingCoinBalance }) { e, from -> e.copy(pendingCoinBalance = from.pendingCoinBalance) }
+        field("region", { it.region }) { e, from -> e.copy(region = from.region) }
+        field("district", { it.district }) { e, from -> e.copy(district = from.district) }
+        field("language", { it.language }) { e, from -> e.copy(language = from.language) }
+        bool("is_email_verified", { it.isEmailVerified }) { e, from -> e.copy(isEmailVerified = from.isEmailVerified) }
+        bool("is_phone_verified", { it.isPhoneVerified }) { e, from -> e.copy(isPhoneVerified = from.isPhoneVerified) }
+        field("last_login_at", { it.lastLoginAt }) { e, from -> e.copy(lastLoginAt = from.lastLoginAt) }
+    }
+
+    val fowl: EntityDiffer<FowlEntity> = entityDiffer {
+        field("owner_id", { it.ownerId }) { e, from -> e.copy(ownerId = from.ownerId) }
+        field("name", { it.name }) { e, from -> e.copy(name = from.name) }
+        field("breed_primary", { it.breedPrimary }) { e, from -> e.copy(breedPrimary = from.breedPrimary) }
+        field("breed_secondary", { it.breedSecondary }) { e, from -> e.copy(breedSecondary = from.breedSecondary) }
+        int("generation", { it.generation }) { e, from -> e.copy(generation = from.generation) }
+        field("inbreeding_coefficient", { it.inbreedingCoefficient }) { e, from -> e.copy(inbreedingCoefficient = from.inbreedingCoefficient) }
+        field("siblings", { it.siblings }) { e, from -> e.copy(siblings = from.siblings) }
+        field("offspring", { it.offspring }) { e, from -> e.copy(offspring = from.offspring) }
+        field("father_id", { it.parentMaleId }) { e, from -> e.copy(parentMaleId = from.parentMaleId) }
+        field("mother_id", { it.parentFemaleId }) { e, from -> e.copy(parentFemaleId = from.parentFemaleId) }
+        field("health_status", { it.healthStatus }) { e, from -> e.copy(healthStatus = from.healthStatus) }
+        field("availability_status", { it.availabilityStatus }) { e, from -> e.copy(availabilityStatus = from.availabilityStatus) }
+        field("current_farm", { it.currentFarm }) { e, from -> e.copy(currentFarm = from.currentFarm) }
+        field("registration_number", { it.registrationNumber }) { e, from -> e.copy(registrationNumber = from.registrationNumber) }
+        field("microchip_id", { it.microchipId }) { e, from -> e.copy(microchipId = from.microchipId) }
+        field("tattoo_id", { it.tattooId }) { e, from -> e.copy(tattooId = from.tattooId) }
+        field("certificates", { it.certificates }) { e, from -> e.copy(certificates = from.certificates) }
+        field("qr_code", { it.qrCode }) { e, from -> e.copy(qrCode = from.qrCode) }
+        field("primary_photo", { it.primaryPhoto }) { e, from -> e.copy(primaryPhoto = from.primaryPhoto) }
+        int("photo_count", { it.photoCount }) { e, from -> e.copy(photoCount = from.photoCount) }
+        int("video_count", { it.videoCount }) { e, from -> e.copy(videoCount = from.videoCount) }
+        field("photos", { it.photos }) { e, from -> e.copy(photos = from.photos) }
+        field("egg_production_monthly", { it.eggProductionMonthly }) { e, from -> e.copy(eggProductionMonthly = from.eggProductionMonthly) }
+        int("total_offspring", { it.totalOffspring }) { e, from -> e.copy(totalOffspring = from.totalOffspring) }
+        int("fighting_wins", { it.fightingWins }) { e, from -> e.copy(fightingWins = from.fightingWins) }
+        int("fighting_losses", { it.fightingLosses }) { e, from -> e.copy(fightingLosses = from.fightingLosses) }
+        int("show_wins", { it.showWins }) { e, from -> e.copy(showWins = from.showWins) }
+        field("awards", { it.awards }) { e, from -> e.copy(awards = from.awards) }
+        field("search_terms", { it.searchTerms }) { e, from -> e.copy(searchTerms = from.searchTerms) }
+        field("tags", { it.tags }) { e, from -> e.copy(tags = from.tags) }
+        field("notes", { it.notes }) { e, from -> e.copy(notes = from.notes) }
+        field("region", { it.region }) { e, from -> e.copy(region = from.region) }
+        field("district", { it.district }) { e, from -> e.copy(district = from.district) }
+        field("mandal", { it.mandal }) { e, from -> e.copy(mandal = from.mandal) }
+        field("cover_thumbnail_url", { it.coverThumbnailUrl }) { e, from -> e.copy(coverThumbnailUrl = from.coverThumbnailUrl) }
+        field("village", { it.village }) { e, from -> e.copy(village = from.village) }
+        field("latitude", { it.latitude }) { e, from -> e.copy(latitude = from.latitude) }
+        field("longitude", { it.longitude }) { e, from -> e.copy(longitude = from.longitude) }
+    }
+
+    val marketplace: EntityDiffer<MarketplaceEntity> = entityDiffer {
+        field("seller_id", { it.sellerId }) { e, from -> e.copy(sellerId = from.sellerId) }
+        field("fowl_id", { it.fowlId }) { e, from -> e.copy(fowlId = from.fowlId) }
+        field("listing_type", { it.listingType }) { e, from -> e.copy(listingType = from.listingType) }
+        double("base_price", { it.basePrice }) { e, from -> e.copy(basePrice = from.basePrice) }
+        field("currency", { it.currency }) { e, from -> e.copy(currency = from.currency) }
+        field("reserve_price", { it.reservePrice }) { e, from -> e.copy(reservePrice = from.reservePrice) }
+        field("buy_now_price", { it.buyNowPrice }) { e, from -> e.copy(buyNowPrice = from.buyNowPrice) }
+        field("current_bid", { it.currentBid }) { e, from -> e.copy(currentBid = from.currentBid) }
+        field("bid_increment", { it.bidIncrement }) { e, from -> e.copy(bidIncrement = from.bidIncrement) }
+        field("breeding_fee", { it.breedingFee }) { e, from -> e.copy(breedingFee = from.breedingFee) }
+        field("stud_fee", { it.studFee }) { e, from -> e.copy(studFee = from.studFee) }
+        bool("delivery_available", { it.deliveryAvailable }) { e, from -> e.copy(deliveryAvailable = from.deliveryAvailable) }
+        int("delivery_radius", { it.deliveryRadius }) { e, from -> e.copy(deliveryRadius = from.deliveryRadius) }
+        double("delivery_cost", { it.deliveryCost }) { e, from -> e.copy(deliveryCost = from.deliveryCost) }
+        field("delivery_methods", { it.deliveryMethods }) { e, from -> e.copy(deliveryMethods = from.deliveryMethods) }
+        field("auction_start_time", { it.auctionStartTime }) { e, from -> e.copy(auctionStartTime = from.auctionStartTime) }
+        field("auction_end_time", { it.auctionEndTime }) { e, from -> e.copy(auctionEndTime = from.auctionEndTime) }
+        bool("auto_extend", { it.autoExtend }) { e, from -> e.copy(autoExtend = from.autoExtend) }
+        int("extension_time_minutes", { it.extensionTimeMinutes }) { e, from -> e.copy(extensionTimeMinutes = from.extensionTimeMinutes) }
+        int("minimum_bidders", { it.minimumBidders }) { e, from -> e.copy(minimumBidders = from.minimumBidders) }
+        int("total_bids", { it.totalBids }) { e, from -> e.copy(totalBids = from.totalBids) }
+        field("highest_bidder_id", { it.highestBidderId }) { e, from -> e.copy(highestBidderId = from.highestBidderId) }
+        field("listing_status", { it.listingStatus }) { e, from -> e.copy(listingStatus = from.listingStatus) }
+        field("visibility", { it.visibility }) { e, from -> e.copy(visibility = from.visibility) }
+        bool("featured", { it.featured }) { e, from -> e.copy(featured = from.featured) }
+        bool("promoted", { it.promoted }) { e, from -> e.copy(promoted = from.promoted) }
+        bool("is_available", { it.isAvailable }) { e, from -> e.copy(isAvailable = from.isAvailable) }
+        field("reserved_by", { it.reservedBy }) { e, from -> e.copy(reservedBy = from.reservedBy) }
+        field("reserved_until", { it.reservedUntil }) { e, from -> e.copy(reservedUntil = from.reservedUntil) }
+        field("sold_to", { it.soldTo }) { e, from -> e.copy(soldTo = from.soldTo) }
+        field("sold_at", { it.soldAt }) { e, from -> e.copy(soldAt = from.soldAt) }
+        int("views", { it.views }) { e, from -> e.copy(views = from.views) }
+        int("unique_views", { it.uniqueViews }) { e, from -> e.copy(uniqueViews = from.uniqueViews) }
+        int("favorites", { it.favorites }) { e, from -> e.copy(favorites = from.favorites) }
+        int("shares", { it.shares }) { e, from -> e.copy(shares = from.shares) }
+        int("inquiries", { it.inquiries }) { e, from -> e.copy(inquiries = from.inquiries) }
+        int("contact_clicks", { it.contactClicks }) { e, from -> e.copy(contactClicks = from.contactClicks) }
+        field("keywords", { it.keywords }) { e, from -> e.copy(keywords = from.keywords) }
+        field("tags", { it.tags }) { e, from -> e.copy(tags = from.tags) }
+        field("category", { it.category }) { e, from -> e.copy(category = from.category) }
+        field("subcategory", { it.subcategory }) { e, from -> e.copy(subcategory = from.subcategory) }
+        field("published_at", { it.publishedAt }) { e, from -> e.copy(publishedAt = from.publishedAt) }
+        field("expires_at", { it.expiresAt }) { e, from -> e.copy(expiresAt = from.expiresAt) }
+        int("renewal_count", { it.renewalCount }) { e, from -> e.copy(renewalCount = from.renewalCount) }
+        field("last_renewed_at", { it.lastRenewedAt }) { e, from -> e.copy(lastRenewedAt = from.lastRenewedAt) }
+        bool("auto_renew", { it.autoRenew }) { e, from -> e.copy(autoRenew = from.autoRenew) }
+        bool("accept_offers", { it.acceptOffers }) { e, from -> e.copy(acceptOffers = from.acceptOffers) }
+        field("minimum_offer", { it.minimumOffer }) { e, from -> e.copy(minimumOffer = from.minimumOffer) }
+        field("preferred_buyers", { it.preferredBuyers }) { e, from -> e.copy(preferredBuyers = from.preferredBuyers) }
+        field("blacklisted_buyers", { it.blacklistedBuyers }) { e, from -> e.copy(blacklistedBuyers = from.blacklistedBuyers) }
+        bool("allow_direct_messages", { it.allowDirectMessages }) { e, from -> e.copy(allowDirectMessages = from.allowDirectMessages) }
+        bool("allow_phone_calls", { it.allowPhoneCalls }) { e, from -> e.copy(allowPhoneCalls = from.allowPhoneCalls) }
+        field("preferred_contact_method", { it.preferredContactMethod }) { e, from -> e.copy(preferredContactMethod = from.preferredContactMethod) }
+        field("response_time", { it.responseTime }) { e, from -> e.copy(responseTime = from.responseTime) }
+        field("moderation_status", { it.moderationStatus }) { e, from -> e.copy(moderationStatus = from.moderationStatus) }
+        field("moderated_by", { it.moderatedBy }) { e, from -> e.copy(moderatedBy = from.moderatedBy) }
+        field("moderated_at", { it.moderatedAt }) { e, from -> e.copy(moderatedAt = from.moderatedAt) }
+        field("listing_quality", { it.listingQuality }) { e, from -> e.copy(listingQuality = from.listingQuality) }
+        field("region", { it.region }) { e, from -> e.copy(region = from.region) }
+        field("district", { it.district }) { e, from -> e.copy(district = from.district) }
+        field("mandal", { it.mandal }) { e, from -> e.copy(mandal = from.mandal) }
+        field("village", { it.village }) { e, from -> e.copy(village = from.village) }
+        field("latitude", { it.latitude }) { e, from -> e.copy(latitude = from.latitude) }
+        field("longitude", { it.longitude }) { e, from -> e.copy(longitude = from.longitude) }
+    }
+
+    val transfer: EntityDiffer<TransferEntity> = entityDiffer {
+        double("delivery_fee", { it.deliveryFee }) { e, from -> e.copy(deliveryFee = from.deliveryFee) }
+        field("total_amount", { it.totalAmount }) { e, from -> e.copy(totalAmount = from.totalAmount) }
+        field("initiated_at", { it.initiatedAt }) { e, from -> e.copy(initiatedAt = from.initiatedAt) }
+        field("approved_at", { it.approvedAt }) { e, from -> e.copy(approvedAt = from.approvedAt) }
+        field("shipped_at", { it.shippedAt }) { e, from -> e.copy(shippedAt = from.shippedAt) }
+        field("delivered_at", { it.deliveredAt }) { e, from -> e.copy(deliveredAt = from.deliveredAt) }
+        field("completed_at", { it.completedAt }) { e, from -> e.copy(completedAt = from.completedAt) }
+        field("cancelled_at", { it.cancelledAt }) { e, from -> e.copy(cancelledAt = from.cancelledAt) }
+        field("expected_delivery_date", { it.expectedDeliveryDate }) { e, from -> e.copy(expectedDeliveryDate = from.expectedDeliveryDate) }
+        bool("verification_required", { it.verificationRequired }) { e, from -> e.copy(verificationRequired = from.verificationRequired) }
+        field("verification_status", { it.verificationStatus }) { e, from -> e.copy(verificationStatus = from.verificationStatus) }
+        field("verification_documents", { it.verificationDocuments }) { e, from -> e.copy(verificationDocuments = from.verificationDocuments) }
+        field("verification_notes", { it.verificationNotes }) { e, from -> e.copy(verificationNotes = from.verificationNotes) }
+        field("verified_by", { it.verifiedBy }) { e, from -> e.copy(verifiedBy = from.verifiedBy) }
+        field("verified_at", { it.verifiedAt }) { e, from -> e.copy(verifiedAt = from.verifiedAt) }
+        field("transfer_certificate", { it.transferCertificate }) { e, from -> e.copy(transferCertificate = from.transferCertificate) }
+        field("ownership_proof", { it.ownershipProof }) { e, from -> e.copy(ownershipProof = from.ownershipProof) }
+        field("pickup_address", { it.pickupAddress }) { e, from -> e.copy(pickupAddress = from.pickupAddress) }
+        field("delivery_address", { it.deliveryAddress }) { e, from -> e.copy(deliveryAddress = from.deliveryAddress) }
+        field("delivery_instructions", { it.deliveryInstructions }) { e, from -> e.copy(deliveryInstructions = from.deliveryInstructions) }
+        field("tracking_number", { it.trackingNumber }) { e, from -> e.copy(trackingNumber = from.trackingNumber) }
+        field("courier_service", { it.courierService }) { e, from -> e.copy(courierService = from.courierService) }
+        field("delivery_contact_name", { it.deliveryContactName }) { e, from -> e.copy(deliveryContactName = from.deliveryContactName) }
+        field("delivery_contact_phone", { it.deliveryContactPhone }) { e, from -> e.copy(deliveryContactPhone = from.deliveryContactPhone) }
+        field("conditions", { it.conditions }) { e, from -> e.copy(conditions = from.conditions) }
+        field("warranty_period_days", { it.warrantyPeriodDays }) { e, from -> e.copy(warrantyPeriodDays = from.warrantyPeriodDays) }
+        field("return_policy", { it.returnPolicy }) { e, from -> e.copy(returnPolicy = from.returnPolicy) }
+        bool("health_guarantee", { it.healthGuarantee }) { e, from -> e.copy(healthGuarantee = from.healthGuarantee) }
+        bool("breeding_rights", { it.breedingRights }) { e, from -> e.copy(breedingRights = from.breedingRights) }
+        bool("show_rights", { it.showRights }) { e, from -> e.copy(showRights = from.showRights) }
+        field("transfer_notes", { it.transferNotes }) { e, from -> e.copy(transferNotes = from.transferNotes) }
+        field("seller_notes", { it.sellerNotes }) { e, from -> e.copy(sellerNotes = from.sellerNotes) }
+        field("buyer_notes", { it.buyerNotes }) { e, from -> e.copy(buyerNotes = from.buyerNotes) }
+        field("admin_notes", { it.adminNotes }) { e, from -> e.copy(adminNotes = from.adminNotes) }
+        field("cancellation_reason", { it.cancellationReason }) { e, from -> e.copy(cancellationReason = from.cancellationReason) }
+        field("rejection_reason", { it.rejectionReason }) { e, from -> e.copy(rejectionReason = from.rejectionReason) }
+        field("related_listing_id", { it.relatedListingId }) { e, from -> e.copy(relatedListingId = from.relatedListingId) }
+        field("related_conversation_id", { it.relatedConversationId }) { e, from -> e.copy(relatedConversationId = from.relatedConversationId) }
+        field("parent_transfer_id", { it.parentTransferId }) { e, from -> e.copy(parentTransferId = from.parentTransferId) }
+        field("seller_rating", { it.sellerRating }) { e, from -> e.copy(sellerRating = from.sellerRating) }
+        field("buyer_rating", { it.buyerRating }) { e, from -> e.copy(buyerRating = from.buyerRating) }
+        field("seller_feedback", { it.sellerFeedback }) { e, from -> e.copy(sellerFeedback = from.sellerFeedback) }
+        field("buyer_feedback", { it.buyerFeedback }) { e, from -> e.copy(buyerFeedback = from.buyerFeedback) }
+        field("platform_rating", { it.platformRating }) { e, from -> e.copy(platformRating = from.platformRating) }
+        field("platform_feedback", { it.platformFeedback }) { e, from -> e.copy(platformFeedback = from.platformFeedback) }
+        bool("dispute_raised", { it.disputeRaised }) { e, from -> e.copy(disputeRaised = from.disputeRaised) }
+        field("dispute_reason", { it.disputeReason }) { e, from -> e.copy(disputeReason = from.disputeReason) }
+        field("dispute_status", { it.disputeStatus }) { e, from -> e.copy(disputeStatus = from.disputeStatus) }
+        field("dispute_resolution", { it.disputeResolution }) { e, from -> e.copy(disputeResolution = from.disputeResolution) }
+        field("dispute_resolved_at", { it.disputeResolvedAt }) { e, from -> e.copy(disputeResolvedAt = from.disputeResolvedAt) }
+        field("blockchain_hash", { it.blockchainHash }) { e, from -> e.copy(blockchainHash = from.blockchainHash) }
+        bool("blockchain_verified", { it.blockchainVerified }) { e, from -> e.copy(blockchainVerified = from.blockchainVerified) }
+        field("region", { it.region }) { e, from -> e.copy(region = from.region) }
+        field("district", { it.district }) { e, from -> e.copy(district = from.district) }
+        field("mandal", { it.mandal }) { e, from -> e.copy(mandal = from.mandal) }
+        field("village", { it.village }) { e, from -> e.copy(village = from.village) }
+        field("latitude", { it.latitude }) { e, from -> e.copy(latitude = from.latitude) }
+        field("longitude", { it.longitude }) { e, from -> e.copy(longitude = from.longitude) }
+    }
+
+    val message: EntityDiffer<MessageEntity> = entityDiffer {
+        field("text_content", { it.textContent }) { e, from -> e.copy(textContent = from.textContent) }
+        field("media_url", { it.mediaUrl }) { e, from -> e.copy(mediaUrl = from.mediaUrl) }
+        field("media_caption", { it.mediaCaption }) { e, from -> e.copy(mediaCaption = from.mediaCaption) }
+        field("media_thumbnail", { it.mediaThumbnail }) { e, from -> e.copy(mediaThumbnail = from.mediaThumbnail) }
+        field("media_duration", { it.mediaDuration }) { e, from -> e.copy(mediaDuration = from.mediaDuration) }
+        field("file_name", { it.fileName }) { e, from -> e.copy(fileName = from.fileName) }
+        field("file_size", { it.fileSize }) { e, from -> e.copy(fileSize = from.fileSize) }
+        field("mime_type", { it.mimeType }) { e, from -> e.copy(mimeType = from.mimeType) }
+        field("latitude", { it.latitude }) { e, from -> e.copy(latitude = from.latitude) }
+        field("longitude", { it.longitude }) { e, from -> e.copy(longitude = from.longitude) }
+        field("location_address", { it.locationAddress }) { e, from -> e.copy(locationAddress = from.locationAddress) }
+        field("card_id", { it.cardId }) { e, from -> e.copy(cardId = from.cardId) }
+        field("card_data", { it.cardData }) { e, from -> e.copy(cardData = from.cardData) }
+        field("contact_name", { it.contactName }) { e, from -> e.copy(contactName = from.contactName) }
+        field("contact_phone", { it.contactPhone }) { e, from -> e.copy(contactPhone = from.contactPhone) }
+        field("contact_email", { it.contactEmail }) { e, from -> e.copy(contactEmail = from.contactEmail) }
+        field("system_type", { it.systemType }) { e, from -> e.copy(systemType = from.systemType) }
+        field("system_data", { it.systemData }) { e, from -> e.copy(systemData = from.systemData) }
+        field("reply_to_message_id", { it.replyToMessageId }) { e, from -> e.copy(replyToMessageId = from.replyToMessageId) }
+        bool("forwarded", { it.forwarded }) { e, from -> e.copy(forwarded = from.forwarded) }
+        bool("edited", { it.edited }) { e, from -> e.copy(edited = from.edited) }
+        bool("pinned", { it.pinned }) { e, from -> e.copy(pinned = from.pinned) }
+        field("priority", { it.priority }) { e, from -> e.copy(priority = from.priority) }
+        field("sent_at", { it.sentAt }) { e, from -> e.copy(sentAt = from.sentAt) }
+        field("edited_at", { it.editedAt }) { e, from -> e.copy(editedAt = from.editedAt) }
+        field("expires_at", { it.expiresAt }) { e, from -> e.copy(expiresAt = from.expiresAt) }
+        field("delivery_status", { it.deliveryStatus }) { e, from -> e.copy(deliveryStatus = from.deliveryStatus) }
+        field("delivered_at", { it.deliveredAt }) { e, from -> e.copy(deliveredAt = from.deliveredAt) }
+        field("read_at", { it.readAt }) { e, from -> e.copy(readAt = from.readAt) }
+        field("read_by", { it.readBy }) { e, from -> e.copy(readBy = from.readBy) }
+        field("reactions", { it.reactions }) { e, from -> e.copy(reactions = from.reactions) }
+        field("mentions", { it.mentions }) { e, from -> e.copy(mentions = from.mentions) }
+        field("thread_id", { it.threadId }) { e, from -> e.copy(threadId = from.threadId) }
+        field("root_message_id", { it.rootMessageId }) { e, from -> e.copy(rootMessageId = from.rootMessageId) }
+        int("reply_count", { it.replyCount }) { e, from -> e.copy(replyCount = from.replyCount) }
+        bool("encrypted", { it.encrypted }) { e, from -> e.copy(encrypted = from.encrypted) }
+        field("encryption_key_id", { it.encryptionKeyId }) { e, from -> e.copy(encryptionKeyId = from.encryptionKeyId) }
+        bool("flagged", { it.flagged }) { e, from -> e.copy(flagged = from.flagged) }
+        field("flagged_by", { it.flaggedBy }) { e, from -> e.copy(flaggedBy = from.flaggedBy) }
+        field("flag_reason", { it.flagReason }) { e, from -> e.copy(flagReason = from.flagReason) }
+        field("moderation_status", { it.moderationStatus }) { e, from -> e.copy(moderationStatus = from.moderationStatus) }
+        field("edit_history", { it.editHistory }) { e, from -> e.copy(editHistory = from.editHistory) }
+        field("forward_history", { it.forwardHistory }) { e, from -> e.copy(forwardHistory = from.forwardHistory) }
+    }
+
+    val conversation: EntityDiffer<ConversationEntity> = entityDiffer {
+        field("conversation_type", { it.conversationType }) { e, from -> e.copy(conversationType = from.conversationType) }
+        field("title", { it.title }) { e, from -> e.copy(title = from.title) }
+        field("description", { it.description }) { e, from -> e.copy(description = from.description) }
+        field("participants", { it.participants }) { e, from -> e.copy(participants = from.participants) }
+        field("admins", { it.admins }) { e, from -> e.copy(admins = from.admins) }
+        field("owner_id", { it.ownerId }) { e, from -> e.copy(ownerId = from.ownerId) }
+        field("last_message_id", { it.lastMessageId }) { e, from -> e.copy(lastMessageId = from.lastMessageId) }
+        field("last_activity_at", { it.lastActivityAt }) { e, from -> e.copy(lastActivityAt = from.lastActivityAt) }
+        int("message_count", { it.messageCount }) { e, from -> e.copy(messageCount = from.messageCount) }
+        int("unread_count", { it.unreadCount }) { e, from -> e.copy(unreadCount = from.unreadCount) }
+        bool("is_public", { it.isPublic }) { e, from -> e.copy(isPublic = from.isPublic) }
+        bool("allow_invites", { it.allowInvites }) { e, from -> e.copy(allowInvites = from.allowInvites) }
+        bool("require_approval", { it.requireApproval }) { e, from -> e.copy(requireApproval = from.requireApproval) }
+        bool("mute_notifications", { it.muteNotifications }) { e, from -> e.copy(muteNotifications = from.muteNotifications) }
+        field("muted_until", { it.mutedUntil }) { e, from -> e.copy(mutedUntil = from.mutedUntil) }
+        field("related_listing_id", { it.relatedListingId }) { e, from -> e.copy(relatedListingId = from.relatedListingId) }
+        field("related_fowl_id", { it.relatedFowlId }) { e, from -> e.copy(relatedFowlId = from.relatedFowlId) }
+        field("related_transfer_id", { it.relatedTransferId }) { e, from -> e.copy(relatedTransferId = from.relatedTransferId) }
+    }
+
+    val breedingRecord: EntityDiffer<BreedingRecordEntity> = entityDiffer {
+        field("sireId", { it.sireId }) { e, from -> e.copy(sireId = from.sireId) }
+        field("damId", { it.damId }) { e, from -> e.copy(damId = from.damId) }
+        field("breederId", { it.breederId }) { e, from -> e.copy(breederId = from.breederId) }
+        field("breedingDate", { it.breedingDate }) { e, from -> e.copy(breedingDate = from.breedingDate) }
+        field("expectedHatchDate", { it.expectedHatchDate }) { e, from -> e.copy(expectedHatchDate = from.expectedHatchDate) }
+        field("actualHatchDate", { it.actualHatchDate }) { e, from -> e.copy(actualHatchDate = from.actualHatchDate) }
+        field("eggsLaid", { it.eggsLaid }) { e, from -> e.copy(eggsLaid = from.eggsLaid) }
+        field("chicksHatched", { it.chicksHatched }) { e, from -> e.copy(chicksHatched = from.chicksHatched) }
+        field("breedingMethod", { it.breedingMethod }) { e, from -> e.copy(breedingMethod = from.breedingMethod) }
+        field("breedingPurpose", { it.breedingPurpose }) { e, from -> e.copy(breedingPurpose = from.breedingPurpose) }
+        field("offspringIds", { it.offspringIds }) { e, from -> e.copy(offspringIds = from.offspringIds) }
+        field("notes", { it.notes }) { e, from -> e.copy(notes = from.notes) }
+        field("region", { it.region }) { e, from -> e.copy(region = from.region) }
+        field("district", { it.district }) { e, from -> e.copy(district = from.district) }
+        field("mandal", { it.mandal }) { e, from -> e.copy(mandal = from.mandal) }
+        field("village", { it.village }) { e, from -> e.copy(village = from.village) }
+        field("latitude", { it.latitude }) { e, from -> e.copy(latitude = from.latitude) }
+        field("longitude", { it.longitude }) { e, from -> e.copy(longitude = from.longitude) }
+    }
+
+    val rooster: EntityDiffer<RoosterEntity> = entityDiffer {
+        field("ownerId", { it.ownerId }) { e, from -> e.copy(ownerId = from.ownerId) }
+        field("name", { it.name }) { e, from -> e.copy(name = from.name) }
+        field("breed", { it.breed }) { e, from -> e.copy(breed = from.breed) }
+        field("gender", { it.gender }) { e, from -> e.copy(gender = from.gender) }
+        field("birthDate", { it.birthDate }) { e, from -> e.copy(birthDate = from.birthDate) }
+        field("color", { it.color }) { e, from -> e.copy(color = from.color) }
+        field("weight", { it.weight }) { e, from -> e.copy(weight = from.weight) }
+        field("height", { it.height }) { e, from -> e.copy(height = from.height) }
+        field("fatherId", { it.fatherId }) { e, from -> e.copy(fatherId = from.fatherId) }
+        field("motherId", { it.motherId }) { e, from -> e.copy(motherId = from.motherId) }
+        int("generation", { it.generation }) { e, from -> e.copy(generation = from.generation) }
+        field("healthStatus", { it.healthStatus }) { e, from -> e.copy(healthStatus = from.healthStatus) }
+        bool("lineageVerified", { it.lineageVerified }) { e, from -> e.copy(lineageVerified = from.lineageVerified) }
+        bool("healthCertified", { it.healthCertified }) { e, from -> e.copy(healthCertified = from.healthCertified) }
+        field("primaryPhoto", { it.primaryPhoto }) { e, from -> e.copy(primaryPhoto = from.primaryPhoto) }
+        field("photos", { it.photos }) { e, from -> e.copy(photos = from.photos) }
+        field("registrationNumber", { it.registrationNumber }) { e, from -> e.copy(registrationNumber = from.registrationNumber) }
+        field("qrCode", { it.qrCode }) { e, from -> e.copy(qrCode = from.qrCode) }
+        field("notes", { it.notes }) { e, from -> e.copy(notes = from.notes) }
+        field("tags", { it.tags }) { e, from -> e.copy(tags = from.tags) }
+        field("region", { it.region }) { e, from -> e.copy(region = from.region) }
+        field("district", { it.district }) { e, from -> e.copy(district = from.district) }
+        field("mandal", { it.mandal }) { e, from -> e.copy(mandal = from.mandal) }
+        field("village", { it.village }) { e, from -> e.copy(village = from.village) }
+        field("latitude", { it.latitude }) { e, from -> e.copy(latitude = from.latitude) }
+        field("longitude", { it.longitude }) { e, from -> e.copy(longitude = from.longitude) }
+    }
+
+    val coinTransaction: EntityDiffer<CoinTransactionEntity> = entityDiffer {
+        field("user_id", { it.userId }) { e, from -> e.copy(userId = from.userId) }
+        int("amount", { it.amount }) { e, from -> e.copy(amount = from.amount) }
+        field("transaction_type", { it.transactionType }) { e, from -> e.copy(transactionType = from.transactionType) }
+        field("status", { it.status }) { e, from -> e.copy(status = from.status) }
+        field("purpose", { it.purpose }) { e, from -> e.copy(purpose = from.purpose) }
+        field("description", { it.description }) { e, from -> e.copy(description = from.description) }
+        field("reference_id", { it.referenceId }) { e, from -> e.copy(referenceId = from.referenceId) }
+        field("payment_id", { it.paymentId }) { e, from -> e.copy(paymentId = from.paymentId) }
+        field("order_id", { it.orderId }) { e, from -> e.copy(orderId = from.orderId) }
+        field("completed_at", { it.completedAt }) { e, from -> e.copy(completedAt = from.completedAt) }
+    }
+
+    /**
+     * Differ for [entity]'s concrete type, or null for types without a table
+     */
+    @Suppress("UNCHECKED_CAST")
+    fun <T : SyncableEntity> forEntity(entity: T): EntityDiffer<T>? {
+        val differ: EntityDiffer<*>? = when (entity) {
+            is UserEntity -> user
+            is FowlEntity -> fowl
+            is MarketplaceEntity -> marketplace
+            is TransferEntity -> transfer
+            is MessageEntity -> message
+            is ConversationEntity -> conversation
+            is BreedingRecordEntity -> breedingRecord
+            is RoosterEntity -> rooster
+            is CoinTransactionEntity -> coinTransaction
+            else -> null
+        }
+        return differ as EntityDiffer<T>?
+    }
+
+    /**
+     * Columns owned by the server: on a two-sided edit the server value is kept
+     */
+    @Suppress("UNCHECKED_CAST")
+    fun <T : SyncableEntity> serverOwnedFields(entity: T): FieldMask? {
+        return when (entity) {
+            is UserEntity -> userServerOwned
+            is FowlEntity -> fowlServerOwned
+            is MarketplaceEntity -> marketplaceServerOwned
+            is TransferEntity -> transferServerOwned
+            else -> null
+        }
+    }
+
+    private val userServerOwned = user.maskOf(
+        "tier", "coin_balance", "pending_coin_balance", "is_email_verified", "is_phone_verified"
+    )
+    private val fowlServerOwned = fowl.maskOf(
+        "owner_id", "availability_status", "registration_number", "total_offspring"
+    )
+    private val marketplaceServerOwned = marketplace.maskOf(
+        "current_bid", "total_bids", "highest_bidder_id", "listing_status", "sold_to", "sold_at",
+        "views", "unique_views", "favorites", "shares", "inquiries", "moderation_status"
+    )
+    private val transferServerOwned = transfer.maskOf(
+        "verification_status", "verified_by", "verified_at", "dispute_status", "dispute_resolution"
+    )
+}
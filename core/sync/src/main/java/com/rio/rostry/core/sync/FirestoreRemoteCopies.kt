@@ -0,0 +1,43 @@
+package com.rio.rostry.core.sync
+
+import com.google.firebase.firestore.FieldPath
+import com.google.firebase.firestore.FirebaseFirestore
+import com.rio.rostry.core.database.entities.SyncableEntity
+import kotlinx.coroutines.tasks.await
+
+/**
+ * [RemoteCopySource] reading documents of one Firestore collection by id
+ * Ids are fetched with documentId() `in` queries, [MAX_IN_VALUES] at a time. Documents that
+ * no longer exist or fail to map are left out, so their rows wait for the next pull.
+ */
+class FirestoreRemoteCopies<T : SyncableEntity>(
+    private val firestore: FirebaseFirestore,
+    private val collection: String,
+    private val type: Class<T>
+) : RemoteCopySource<T> {
+
+    override suspend fun fetch(ids: List<String>): Map<String, T> {
+        val copies = HashMap<String, T>(ids.size)
+        ids.distinct().chunked(MAX_IN_VALUES).forEach { chunk ->
+            val documents = firestore.collection(collection)
+                .whereIn(FieldPath.documentId(), chunk)
+                .get()
+                .await()
+                .documents
+            documents.forEach { document ->
+                val copy = try {
+                    document.toObject(type)
+                } catch (e: RuntimeException) {
+                    null
+                }
+                if (copy != null) copies[document.id] = copy
+            }
+        }
+        return copies
+    }
+
+    private companion object {
+        // Firestore caps the values of an `in` filter
+        const val MAX_IN_VALUES = 10
+    }
+}
@@ -0,0 +1,102 @@
+package com.rio.rostry.core.sync
+
+import com.rio.rostry.core.database.entities.HybridClock
+import com.rio.rostry.core.database.entities.HybridTimestamp
+import javax.inject.Inject
+import javax.inject.Singleton
+
+/**
+ * Hybrid logical clock used to stamp local writes
+ *
+ * Issued timestamps never go backwards and always exceed every timestamp the clock has
+ * observed, so a write made after seeing a row is ordered after that row even when the
+ * device clock is hours off. The wall clock only has to be roughly right for timestamps
+ * to stay close to real time; ordering does not depend on it.
+ */
+@Singleton
+class HybridLogicalClock internal constructor(
+    private val wallClock: () -> Long
+) : HybridClock {
+
+    @Inject
+    constructor() : this(System::currentTimeMillis)
+
+    private var lastPhysical = 0L
+    private var lastCounter = 0
+
+    /**
+     * Timestamp for a new local event
+     */
+    @Synchronized
+    override fun now(): Long {
+        val wall = wallClock()
+        if (wall > lastPhysical) {
+            lastPhysical = wall
+            lastCounter = 0
+        } else {
+            advanceCounter()
+        }
+        return current()
+    }
+
+    /**
+     * Merge a timestamp seen on a downloaded or previously stored row and return a
+     * timestamp greater than both it and anything issued before
+     */
+    @Synchronized
+    fun receive(observed: Long): Long {
+        if (observed == HybridTimestamp.NONE) return now()
+        val wall = wallClock()
+        val observedPhysical = HybridTimestamp.physicalMillis(observed)
+        val observedCounter = HybridTimestamp.counter(observed)
+        val physical = maxOf(wall, lastPhysical, observedPhysical)
+
+        when {
+            physical == lastPhysical && physical == observedPhysical -> {
+                lastCounter = maxOf(lastCounter, observedCounter)
+                advanceCounter()
+            }
+            physical == lastPhysical -> advanceCounter()
+            physical == observedPhysical -> {
+                lastPhysical = physical
+                lastCounter = observedCounter
+                advanceCounter()
+            }
+            else -> {
+                lastPhysical = physical
+                lastCounter = 0
+            }
+        }
+        return current()
+    }
+
+    /**
+     * Merge the stamp of a downloaded document, given its [HybridTimestamp.FIELD] value
+     * Called for every pulled document so the next local write is ordered after anything
+     * already on the server, however far this device's clock is behind.
+     *
+     * @return the document's stamp, or [HybridTimestamp.NONE] if it carried none
+     */
+    fun receiveRemote(fieldValue: Any?): Long {
+        val remote = HybridTimestamp.fromField(fieldValue)
+        if (remote != HybridTimestamp.NONE) receive(remote)
+        return remote
+    }
+
+    /**
+     * Stamp for a local write replacing a row last stamped [previous]
+     */
+    fun stampWrite(previous: Long = HybridTimestamp.NONE): Long = receive(previous)
+
+    private fun advanceCounter() {
+        if (lastCounter < HybridTimestamp.MAX_COUNTER) {
+            lastCounter++
+        } else {
+            // More than 65k events in one millisecond: borrow the next one
+            lastPhysical++
+            lastCounter = 0
+        }
+    }
+
+    private fun current(): Long = HybridTimestamp.encode(lastPhysical, lastCounter)
+}
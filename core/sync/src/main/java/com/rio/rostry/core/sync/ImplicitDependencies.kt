@@ -0,0 +1,79 @@
+package com.rio.rostry.core.sync
+
+import com.rio.rostry.core.database.OfflineActionDao
+import com.rio.rostry.core.database.OfflineActionKey
+
+/**
+ * dependsOn edges an action gets without the caller naming them
+ * - every queued action for the same (entityType, entityId), so edits to one entity run in enqueue order
+ * - the queued CREATE of every entity the payload references, e.g. a listing waits for its fowl
+ *
+ * They are written into dependsOn when the action is queued, so drains, retry deferral and
+ * failure propagation treat them exactly like explicit edges.
+ */
+class ImplicitDependencies(
+    private val dao: OfflineActionDao,
+    private val payloadCodec: ActionPayloadCodec
+) {
+
+    /**
+     * Ids of queued actions [action] has to wait for, besides its own dependsOn
+     */
+    suspend fun of(action: OfflineAction): List<String> {
+        val sameEntity = dao.getQueuedForEntity(action.entityType, action.entityId).map { it.id }
+        val creators = references(action)
+            .filter { it != OfflineActionKey(action.entityType, action.entityId) }
+            .flatMap { key ->
+                dao.getQueuedForEntity(key.entityType, key.entityId)
+                    .filter { it.actionType in CREATING_TYPES }
+                    .map { it.id }
+            }
+        return (sameEntity + creators).filter { it != action.id }.distinct()
+    }
+
+    /**
+     * Entities the payload of [action] points at
+     * A payload that does not decode references nothing; running the action reports it.
+     */
+    internal fun references(action: OfflineAction): List<OfflineActionKey> {
+        val keys = try {
+            when {
+                action.actionType == OfflineActionType.TRANSFER -> {
+                    val transfer = payloadCodec.decode(action.actionData, TransferActionData::class.java)
+                    listOf(
+                        OfflineActionKey("fowl", transfer.fowlId),
+                        OfflineActionKey("user", transfer.fromUserId),
+                        OfflineActionKey("user", transfer.toUserId)
+                    )
+                }
+                action.actionType == OfflineActionType.PAYMENT -> {
+                    val payment = payloadCodec.decode(action.actionData, PaymentActionData::class.java)
+                    listOf(OfflineActionKey("transfer", payment.transferId))
+                }
+                action.actionType == OfflineActionType.DELETE -> emptyList()
+                action.entityType == "fowl" -> {
+                    val fowl = payloadCodec.decode(action.actionData, FowlActionData::class.java)
+                    listOf(OfflineActionKey("user", fowl.ownerId))
+                }
+                action.entityType == "marketplace_listing" -> {
+                    val listing = payloadCodec.decode(action.actionData, MarketplaceActionData::class.java)
+                    listOf(OfflineActionKey("fowl", listing.fowlId), OfflineActionKey("user", listing.sellerId))
+                }
+                action.entityType == "message" -> {
+                    val message = payloadCodec.decode(action.actionData, MessageActionData::class.java)
+                    listOf(OfflineActionKey("user", message.senderId))
+                }
+                else -> emptyList()
+            }
+        } catch (e: RuntimeException) {
+            // Undecodable payload, or one missing a field Gson left null
+            emptyList()
+        }
+        return keys.filter { it.entityId.isNotEmpty() }
+    }
+
+    private companion object {
+        // Actions that bring an entity into existence; TRANSFER creates the transfer record
+        val CREATING_TYPES = setOf(OfflineActionType.CREATE.name, OfflineActionType.TRANSFER.name)
+    }
+}
@@ -1,12 +1,27 @@
 package com.rio.rostry.core.sync
 
+import com.rio.rostry.core.database.OfflineActionEntity
+import com.rio.rostry.core.database.OfflineActionKey
 import com.rio.rostry.core.database.RIOLocalDatabase
 import com.rio.rostry.core.database.entities.*
 import com.rio.rostry.core.network.NetworkStateManager
 import com.rio.rostry.core.common.utils.DataValidator
+import androidx.room.withTransaction
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.NonCancellable
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.channels.Channel
 import kotlinx.coroutines.flow.*
+import kotlinx.coroutines.isActive
 import kotlinx.coroutines.launch
 import kotlinx.coroutines.supervisorScope
+import kotlinx.coroutines.withContext
+import kotlinx.coroutines.withTimeoutOrNull
+import kotlinx.coroutines.sync.Mutex
+import kotlinx.coroutines.sync.Semaphore
+import kotlinx.coroutines.sync.withLock
 import java.util.*
 import javax.inject.Inject
 import javax.inject.Singleton
@@ -19,7 +34,9 @@ import javax.inject.Singleton
 class OfflineActionQueue @Inject constructor(
     private val database: RIOLocalDatabase,
     private val networkStateManager: NetworkStateManager,
-    private val dataValidator: DataValidator
+    private val dataValidator: DataValidator,
+    private val payloadCodec: ActionPayloadCodec,
+    private val clock: HybridLogicalClock
 ) {
     
     private val _queueSize = MutableStateFlow(0)
@@ -28,13 +45,35 @@ class OfflineActionQueue @Inject constructor(
     private val _processingStatus = MutableStateFlow<ProcessingStatus>(ProcessingStatus.IDLE)
     val processingStatus: StateFlow<ProcessingStatus> = _processingStatus.asStateFlow()
     
+    /**
+     * Execution tuning for queue drains
+     */
+    @Volatile
+    var executionConfig: QueueExecutionConfig = QueueExecutionConfig()
+    
+    private val scope = CoroutineScope(Dispatchers.IO + SupervisorJob())
+    
+    // Conflated: any number of pokes collapses into one re-evaluation of the next due time
+    private val retryWakeups = Channel<Unit>(Channel.CONFLATED)
+    
+    private val failureHandler = ActionFailureHandler(database.offlineActionDao(), RetryBackoff())
+    
+    private val implicitDependencies = ImplicitDependencies(database.offlineActionDao(), payloadCodec)
+    
+    // Held for the whole of a drain; also keeps enqueue-time compaction off in-flight actions
+    private val drainLock = Mutex()
+    
+    private val _compactedActions = MutableStateFlow(0L)
+    
     init {
-        updateQueueSize()
-        observeNetworkChanges()
+        scope.launch { updateQueueSize() }
+        startRetryScheduler()
     }
     
     /**
      * Queue an action for offline execution
+     * Besides its own dependsOn, the action waits on earlier queued actions for the same entity
+     * and on the queued CREATE of anything it references; see [ImplicitDependencies].
      */
     suspend fun queueAction(action: OfflineAction): Result<String> {
         return try {
@@ -50,15 +89,16 @@ class OfflineActionQueue @Inject constructor(
                 entityId = action.entityId,
                 actionType = action.actionType.name,
                 actionData = action.actionData,
-                priority = action.priority.value,
-                dependsOn = action.dependsOn,
+                priority = action.priority.ordinal, // HIGH sorts first in the drain order
+                dependsOn = (action.dependsOn + implicitDependencies.of(action)).distinct(),
                 validationRules = action.validationRules,
                 retryCount = 0,
                 maxRetries = action.maxRetries,
                 status = OfflineActionStatus.QUEUED.name,
                 queuedAt = Date(),
+                nextAttempt = Date(),
                 syncMetadata = SyncMetadata(
-                    syncPriority = action.priority,
+                    priority = action.priority,
                     createdAt = Date(),
                     updatedAt = Date()
                 )
@@ -66,12 +106,22 @@ class OfflineActionQueue @Inject constructor(
             
             // Save to database
             database.offlineActionDao().insert(queueEntity)
+            
+            // Fold into earlier edits of the same entity unless a drain owns the queue right now
+            if (drainLock.tryLock()) {
+                try {
+                    compactEntity(OfflineActionKey(action.entityType, action.entityId))
+                } finally {
+                    drainLock.unlock()
+                }
+            }
             updateQueueSize()
             
             // Try immediate processing if online
             if (networkStateManager.isConnected.value) {
                 processQueue()
             }
+            retryWakeups.trySend(Unit)
             
             Result.success(action.id)
         } catch (e: Exception) {
@@ -81,83 +131,310 @@ class OfflineActionQueue @Inject constructor(
     
     /**
      * Process all queued actions
+     * Due actions are streamed in (priority, queuedAt, id) keyset windows of
+     * [QueueExecutionConfig.windowSize], so memory stays flat however long the queue is.
+     * Within a window independent actions run concurrently up to
+     * [QueueExecutionConfig.maxParallelism]; an action only waits on its own dependsOn predecessors.
      */
-    suspend fun processQueue(): ProcessingResult = supervisorScope {
-        if (_processingStatus.value == ProcessingStatus.PROCESSING) {
-            return@supervisorScope ProcessingResult.alreadyProcessing()
+    suspend fun processQueue(): ProcessingResult {
+        if (!drainLock.tryLock()) {
+            return ProcessingResult.alreadyProcessing()
         }
         
         _processingStatus.value = ProcessingStatus.PROCESSING
         
-        try {
-            val queuedActions = database.offlineActionDao().getAllQueued()
-            val sortedActions = sortActionsByPriorityAndDependencies(queuedActions)
-            
-            var processedCount = 0
-            var failedCount = 0
-            val errors = mutableListOf<ActionError>()
+        return try {
+            val config = executionConfig
+            val compactedCount = compactQueue()
+            val now = System.currentTimeMillis()
+            val totals = DrainTotals()
+            val waveTracker = WaveTracker()
+            var sweep = 0
             
-            for (actionEntity in sortedActions) {
-                try {
-                    val action = actionEntity.toOfflineAction()
-                    val result = processAction(action)
+            // Actions deferred behind a dependency in a later window get another sweep
+            // as long as the previous one made progress
+            do {
+                sweep++
+                val processedBefore = totals.processedCount
+                var deferred = 0
+                var cursor = QueueCursor.START
+                
+                while (true) {
+                    val window = database.offlineActionDao().getDueQueuedAfter(
+                        now = now,
+                        afterPriority = cursor.priority,
+                        afterQueuedAt = cursor.queuedAt,
+                        afterId = cursor.id,
+                        limit = config.windowSize
+                    )
+                    if (window.isEmpty()) break
                     
-                    if (result.isSuccess) {
-                        // Mark as completed
-                        database.offlineActionDao().updateStatus(
-                            actionEntity.id,
-                            OfflineActionStatus.COMPLETED.name,
-                            Date()
-                        )
-                        processedCount++
-                    } else {
-                        // Handle failure
-                        handleActionFailure(actionEntity, result.error)
-                        failedCount++
-                        errors.add(ActionError(
-                            actionId = actionEntity.id,
-                            entityType = actionEntity.entityType,
-                            error = result.error ?: "Unknown error"
-                        ))
-                    }
-                } catch (e: Exception) {
-                    handleActionFailure(actionEntity, e.message)
-                    failedCount++
-                    errors.add(ActionError(
-                        actionId = actionEntity.id,
-                        entityType = actionEntity.entityType,
-                        error = e.message ?: "Processing failed"
-                    ))
+                    cursor = QueueCursor.after(window.last())
+                    deferred += drainWindow(window, now, config, totals, waveTracker)
+                    
+                    if (window.size < config.windowSize) break
                 }
-            }
+            } while (deferred > 0 && totals.processedCount > processedBefore && sweep < MAX_DRAIN_SWEEPS)
+            
+            val skippedCount = database.offlineActionDao().getDueCount(now)
             
             updateQueueSize()
             _processingStatus.value = ProcessingStatus.IDLE
             
             ProcessingResult(
-                totalActions = sortedActions.size,
-                processedCount = processedCount,
-                failedCount = failedCount,
-                errors = errors
+                totalActions = totals.processedCount + totals.failedCount + skippedCount,
+                processedCount = totals.processedCount,
+                failedCount = totals.failedCount,
+                errors = totals.errors,
+                skippedCount = skippedCount,
+                compactedCount = compactedCount,
+                waves = waveTracker.snapshot()
             )
+        } catch (e: CancellationException) {
+            _processingStatus.value = ProcessingStatus.IDLE
+            throw e
         } catch (e: Exception) {
             _processingStatus.value = ProcessingStatus.FAILED
             ProcessingResult.failure(e.message ?: "Queue processing failed")
+        } finally {
+            drainLock.unlock()
+        }
+    }
+    
+    /**
+     * Compact every entity that has more than one queued action
+     *
+     * @return number of queued actions removed
+     */
+    private suspend fun compactQueue(): Int {
+        return database.offlineActionDao().getCompactableKeys().sumOf { key -> compactEntity(key) }
+    }
+    
+    /**
+     * Merge or cancel redundant queued actions for one entity in a single transaction
+     *
+     * @return number of queued actions removed
+     */
+    private suspend fun compactEntity(key: OfflineActionKey): Int {
+        val dao = database.offlineActionDao()
+        return database.withTransaction {
+            val plan = ActionCompactor.plan(dao.getQueuedForEntity(key.entityType, key.entityId))
+            if (plan.isEmpty) return@withTransaction 0
+            
+            val removedIds = plan.removedIds
+            val now = Date()
+            removedIds.chunked(SQLITE_MAX_BIND_ARGS).forEach { ids ->
+                dao.markCancelled(ids, now, "Compacted")
+            }
+            plan.rewritten.forEach { dao.update(it) }
+            
+            // Re-point edges from other queued actions at the survivors
+            val dependents = ReverseDependencies(dao.getQueuedWithDependencies())
+            removedIds
+                .flatMap { dependents.direct(it) }
+                .distinctBy { it.id }
+                .filter { it.id !in removedIds }
+                .forEach { dependent ->
+                    val current = plan.rewritten.find { it.id == dependent.id } ?: dependent
+                    dao.update(current.copy(dependsOn = ActionCompactor.remapDependencies(current, plan)))
+                }
+            
+            _compactedActions.value += removedIds.size
+            removedIds.size
+        }
+    }
+    
+    /**
+     * Run one window of due actions as a dependency DAG
+     * Dependencies outside the window are resolved lazily with one status lookup:
+     * completed or unknown ones are satisfied, anything still pending defers the dependent,
+     * and a failed or cancelled one closes the dependent with the same status.
+     *
+     * @return number of actions deferred to a later sweep
+     */
+    private suspend fun drainWindow(
+        window: List<OfflineActionEntity>,
+        now: Long,
+        config: QueueExecutionConfig,
+        totals: DrainTotals,
+        waveTracker: WaveTracker
+    ): Int = supervisorScope {
+        // One set-based pre-validation pass for the whole window
+        val snapshot = ValidationSnapshot.load(database, window)
+        val pendingExternal = snapshot.pendingDependencies()
+        
+        // Actions behind a failed or cancelled dependency can never run; close them out first
+        val closedIds = HashSet<String>()
+        snapshot.closedDependencies().forEach { (dependencyId, status) ->
+            val closed = database.withTransaction { failureHandler.closeDependents(dependencyId, status) }
+            closed.forEach { dependent ->
+                if (closedIds.add(dependent.id)) {
+                    totals.recordFailure(dependent, "Dependency $dependencyId ${status.name.lowercase()}")
+                }
+            }
+        }
+        val open = if (closedIds.isEmpty()) window else window.filter { it.id !in closedIds }
+        
+        // Hold back actions waiting on a pending external dependency, and everything behind them
+        val deferredIds = HashSet<String>()
+        var blocked = open.filter { action -> action.dependsOn.any { it in pendingExternal } }
+        while (blocked.isNotEmpty()) {
+            blocked.forEach { deferredIds.add(it.id) }
+            blocked = open.filter { action ->
+                action.id !in deferredIds && action.dependsOn.any { it in deferredIds }
+            }
+        }
+        val runnable = if (deferredIds.isEmpty()) open else open.filter { it.id !in deferredIds }
+        
+        // Deferred actions become due with their dependency, so the scheduler sleeps until then
+        snapshot.backedOffDependencies(now).forEach { (dependencyId, nextAttempt) ->
+            database.withTransaction { failureHandler.deferDependents(dependencyId, nextAttempt) }
+        }
+        
+        val scheduler = ActionDagScheduler(
+            items = runnable,
+            idOf = { it.id },
+            dependenciesOf = { it.dependsOn },
+            comparator = compareBy<OfflineActionEntity> { it.priority }.thenBy { it.queuedAt }.thenBy { it.id }
+        )
+        
+        val stateLock = Mutex()
+        val pendingOutcomes = mutableListOf<ActionOutcome>()
+        var running = 0
+        
+        // Actions caught in a dependency cycle can never run - fail them, and what waits on them, outright
+        if (scheduler.cyclic.isNotEmpty()) {
+            val closed = database.withTransaction {
+                scheduler.cyclic.forEach { actionEntity ->
+                    database.offlineActionDao().updateStatus(
+                        actionEntity.id,
+                        OfflineActionStatus.FAILED.name,
+                        Date(),
+                        "Dependency cycle detected"
+                    )
+                }
+                scheduler.cyclic.flatMap { root ->
+                    failureHandler.closeDependents(root.id, OfflineActionStatus.FAILED)
+                        .map { it to "Dependency ${root.id} failed" }
+                }
+            }
+            scheduler.cyclic.forEach { actionEntity ->
+                totals.recordFailure(actionEntity, "Dependency cycle detected")
+            }
+            closed.distinctBy { it.first.id }.forEach { (dependent, reason) ->
+                totals.recordFailure(dependent, reason)
+            }
+        }
+        
+        val slots = Semaphore(config.maxParallelism)
+        val wakeups = Channel<Unit>(Channel.UNLIMITED)
+        
+        while (true) {
+            slots.acquire()
+            val actionEntity = stateLock.withLock {
+                scheduler.poll()?.also { running++ }
+            }
+            
+            if (actionEntity == null) {
+                slots.release()
+                val idle = stateLock.withLock { running == 0 }
+                if (idle) break
+                wakeups.receive()
+                continue
+            }
+            
+            launch {
+                try {
+                    val level = scheduler.levels[actionEntity.id] ?: 0
+                    val startedAt = System.currentTimeMillis()
+                    val error = try {
+                        val result = processAction(actionEntity.toOfflineAction(), snapshot)
+                        if (result.isSuccess) null else result.error ?: "Unknown error"
+                    } catch (e: CancellationException) {
+                        throw e
+                    } catch (e: Exception) {
+                        e.message ?: "Processing failed"
+                    }
+                    
+                    val batch = stateLock.withLock {
+                        waveTracker.record(level, startedAt, System.currentTimeMillis(), error == null)
+                        pendingOutcomes.add(ActionOutcome(actionEntity, error))
+                        
+                        if (error == null) {
+                            snapshot.recordCompleted(actionEntity)
+                            scheduler.complete(actionEntity.id)
+                            totals.processedCount++
+                        } else {
+                            scheduler.fail(actionEntity.id)
+                            totals.recordFailure(actionEntity, error)
+                        }
+                        
+                        if (pendingOutcomes.size >= config.statusBatchSize) {
+                            pendingOutcomes.toList().also { pendingOutcomes.clear() }
+                        } else {
+                            emptyList()
+                        }
+                    }
+                    
+                    val closed = commitOutcomes(batch)
+                    if (closed.isNotEmpty()) {
+                        stateLock.withLock { closed.forEach { (dependent, reason) -> totals.recordFailure(dependent, reason) } }
+                    }
+                } finally {
+                    // Release the slot even when cancelled, or the window loop never sees it go idle
+                    withContext(NonCancellable) { stateLock.withLock { running-- } }
+                    slots.release()
+                    wakeups.trySend(Unit)
+                }
+            }
+        }
+        
+        // Flush before the next window so its dependency lookups see these results
+        commitOutcomes(pendingOutcomes).forEach { (dependent, reason) -> totals.recordFailure(dependent, reason) }
+        
+        deferredIds.size
+    }
+    
+    /**
+     * Persist completion/failure status for a batch of actions in a single transaction
+     *
+     * @return dependents closed because an action in the batch ran out of retries, with the reason
+     */
+    private suspend fun commitOutcomes(outcomes: List<ActionOutcome>): List<Pair<OfflineActionEntity, String>> {
+        if (outcomes.isEmpty()) return emptyList()
+        
+        return database.withTransaction {
+            outcomes.flatMap { outcome ->
+                if (outcome.error == null) {
+                    database.offlineActionDao().updateStatus(
+                        outcome.action.id,
+                        OfflineActionStatus.COMPLETED.name,
+                        Date()
+                    )
+                    emptyList()
+                } else {
+                    failureHandler.onFailure(outcome.action, outcome.error).map { dependent ->
+                        dependent to "Dependency ${outcome.action.id} failed"
+                    }
+                }
+            }
         }
     }
     
     /**
      * Process a single action
      */
-    private suspend fun processAction(action: OfflineAction): ActionResult {
+    private suspend fun processAction(action: OfflineAction, snapshot: ValidationSnapshot): ActionResult {
         return try {
             when (action.actionType) {
-                OfflineActionType.CREATE -> processCreateAction(action)
-                OfflineActionType.UPDATE -> processUpdateAction(action)
-                OfflineActionType.DELETE -> processDeleteAction(action)
+                OfflineActionType.CREATE -> processCreateAction(action, snapshot)
+                OfflineActionType.UPDATE -> processUpdateAction(action, snapshot)
+                OfflineActionType.DELETE -> processDeleteAction(action, snapshot)
                 OfflineActionType.TRANSFER -> processTransferAction(action)
                 OfflineActionType.PAYMENT -> processPaymentAction(action)
             }
+        } catch (e: CancellationException) {
+            throw e
         } catch (e: Exception) {
             ActionResult.failure(e.message ?: "Action processing failed")
         }
@@ -166,9 +443,9 @@ class OfflineActionQueue @Inject constructor(
     /**
      * Process create action
      */
-    private suspend fun processCreateAction(action: OfflineAction): ActionResult {
+    private suspend fun processCreateAction(action: OfflineAction, snapshot: ValidationSnapshot): ActionResult {
         // Validate dependencies
-        if (!validateDependencies(action)) {
+        if (!action.dependsOn.all { snapshot.isDependencySatisfied(it) }) {
             return ActionResult.failure("Dependencies not met")
         }
         
@@ -185,9 +462,9 @@ class OfflineActionQueue @Inject constructor(
     /**
      * Process update action
      */
-    private suspend fun processUpdateAction(action: OfflineAction): ActionResult {
+    private suspend fun processUpdateAction(action: OfflineAction, snapshot: ValidationSnapshot): ActionResult {
         // Validate entity exists
-        if (!entityExists(action.entityType, action.entityId)) {
+        if (!snapshot.entityExists(action.entityType, action.entityId)) {
             return ActionResult.failure("Entity not found: ${action.entityId}")
         }
         
@@ -203,9 +480,12 @@ class OfflineActionQueue @Inject constructor(
     /**
      * Process delete action
      */
-    private suspend fun processDeleteAction(action: OfflineAction): ActionResult {
-        // Check if entity can be deleted
-        if (!canDeleteEntity(action.entityType, action.entityId)) {
+    private suspend fun processDeleteAction(action: OfflineAction, snapshot: ValidationSnapshot): ActionResult {
+        // Check entity exists and can be deleted (e.g. no active transfers)
+        if (!snapshot.entityExists(action.entityType, action.entityId)) {
+            return ActionResult.failure("Entity not found: ${action.entityId}")
+        }
+        if (!snapshot.canDeleteEntity(action.entityType, action.entityId)) {
             return ActionResult.failure("Entity cannot be deleted")
         }
         
@@ -242,82 +522,37 @@ class OfflineActionQueue @Inject constructor(
     }
     
     /**
-     * Sort actions by priority and dependencies
-     */
-    private fun sortActionsByPriorityAndDependencies(actions: List<OfflineActionEntity>): List<OfflineActionEntity> {
-        val actionMap = actions.associateBy { it.id }
-        val sorted = mutableListOf<OfflineActionEntity>()
-        val processed = mutableSetOf<String>()
-        
-        fun addAction(action: OfflineActionEntity) {
-            if (action.id in processed) return
-            
-            // Add dependencies first
-            action.dependsOn.forEach { dependencyId ->
-                actionMap[dependencyId]?.let { dependency ->
-                    addAction(dependency)
-                }
-            }
-            
-            sorted.add(action)
-            processed.add(action.id)
-        }
-        
-        // Sort by priority first, then add with dependencies
-        actions.sortedBy { it.priority }.forEach { action ->
-            addAction(action)
-        }
-        
-        return sorted
-    }
-    
-    /**
-     * Handle action failure
+     * Drain the queue whenever the earliest backoff expires or connectivity returns
+     * Sleeps until the next due time from the next_attempt index instead of re-scanning the table.
+     * Dependents are never due before the dependency they wait on, so that time is when
+     * something can actually run.
      */
-    private suspend fun handleActionFailure(actionEntity: OfflineActionEntity, error: String?) {
-        val newRetryCount = actionEntity.retryCount + 1
-        
-        if (newRetryCount >= actionEntity.maxRetries) {
-            // Max retries reached - mark as failed
-            database.offlineActionDao().updateStatus(
-                actionEntity.id,
-                OfflineActionStatus.FAILED.name,
-                Date(),
-                error
-            )
-        } else {
-            // Increment retry count and schedule retry
-            database.offlineActionDao().updateRetryCount(
-                actionEntity.id,
-                newRetryCount,
-                calculateRetryDelay(newRetryCount)
-            )
-        }
-    }
-    
-    /**
-     * Calculate exponential backoff retry delay
-     */
-    private fun calculateRetryDelay(retryCount: Int): Date {
-        val baseDelay = 1000L // 1 second
-        val exponentialDelay = baseDelay * Math.pow(2.0, retryCount.toDouble()).toLong()
-        val maxDelay = 300000L // 5 minutes
-        val delay = minOf(exponentialDelay, maxDelay)
-        
-        return Date(System.currentTimeMillis() + delay)
-    }
-    
-    /**
-     * Observe network changes and process queue when connected
-     */
-    private fun observeNetworkChanges() {
+    private fun startRetryScheduler() {
         networkStateManager.isConnected
             .distinctUntilChanged()
-            .onEach { isConnected ->
-                if (isConnected && _queueSize.value > 0) {
+            .filter { isConnected -> isConnected }
+            .onEach { retryWakeups.trySend(Unit) }
+            .launchIn(scope)
+        
+        scope.launch {
+            while (isActive) {
+                val isConnected = networkStateManager.isConnected.value
+                val nextAttempt = database.offlineActionDao().getEarliestNextAttempt()
+                val now = System.currentTimeMillis()
+                
+                if (isConnected && nextAttempt != null && nextAttempt <= now) {
                     processQueue()
                 }
+                
+                val earliest = database.offlineActionDao().getEarliestNextAttempt()
+                val waitMs = if (!networkStateManager.isConnected.value || earliest == null) {
+                    Long.MAX_VALUE
+                } else {
+                    (earliest - System.currentTimeMillis()).coerceAtLeast(MIN_RETRY_WAKE_INTERVAL_MS)
+                }
+                withTimeoutOrNull(waitMs) { retryWakeups.receive() }
             }
+        }
     }
     
     /**
@@ -339,7 +574,9 @@ class OfflineActionQueue @Inject constructor(
             totalFailed = dao.getFailedCount(),
             totalCompleted = dao.getCompletedCount(),
             oldestAction = dao.getOldestQueuedAction()?.queuedAt,
-            averageProcessingTime = dao.getAverageProcessingTime()
+            averageProcessingTime = dao.getAverageProcessingTime(),
+            totalCompacted = dao.getCancelledCount(),
+            compactedSinceStart = _compactedActions.value
         )
     }
     
@@ -357,6 +594,7 @@ class OfflineActionQueue @Inject constructor(
         // Reset failed actions to queued status
         database.offlineActionDao().resetFailedToQueued()
         updateQueueSize()
+        retryWakeups.trySend(Unit)
         
         // Process queue
         return processQueue()
@@ -373,7 +611,7 @@ class OfflineActionQueue @Inject constructor(
             }
 
             // Create fowl entity
-            val fowlEntity = fowlData.toEntity()
+            val fowlEntity = fowlData.toEntity(clock.now())
             database.fowlDao().insert(fowlEntity)
 
             ActionResult.success()
@@ -398,7 +636,7 @@ class OfflineActionQueue @Inject constructor(
             }
 
             // Create listing entity
-            val listingEntity = listingData.toEntity()
+            val listingEntity = listingData.toEntity(clock.now())
             database.marketplaceDao().insert(listingEntity)
 
             ActionResult.success()
@@ -423,7 +661,7 @@ class OfflineActionQueue @Inject constructor(
             }
 
             // Create message entity
-            val messageEntity = messageData.toEntity()
+            val messageEntity = messageData.toEntity(clock.now())
             database.messageDao().insert(messageEntity)
 
             // Update conversation
@@ -455,7 +693,7 @@ class OfflineActionQueue @Inject constructor(
             }
 
             // Create transfer entity
-            val transferEntity = transferData.toEntity()
+            val transferEntity = transferData.toEntity(clock.now())
             database.transferDao().insert(transferEntity)
 
             ActionResult.success()
@@ -479,7 +717,8 @@ class OfflineActionQueue @Inject constructor(
                 id = action.entityId,
                 syncMetadata = existingFowl.syncMetadata.copy(
                     updatedAt = Date(),
-                    conflictVersion = existingFowl.conflictVersion + 1
+                    conflictVersion = existingFowl.conflictVersion + 1,
+                    hlc = clock.stampWrite(existingFowl.syncMetadata.hlc)
                 )
             )
             database.fowlDao().update(updatedEntity)
@@ -509,7 +748,8 @@ class OfflineActionQueue @Inject constructor(
                 id = action.entityId,
                 syncMetadata = existingListing.syncMetadata.copy(
                     updatedAt = Date(),
-                    conflictVersion = existingListing.conflictVersion + 1
+                    conflictVersion = existingListing.conflictVersion + 1,
+                    hlc = clock.stampWrite(existingListing.syncMetadata.hlc)
                 )
             )
             database.marketplaceDao().update(updatedEntity)
@@ -535,7 +775,8 @@ class OfflineActionQueue @Inject constructor(
                 id = action.entityId,
                 syncMetadata = existingUser.syncMetadata.copy(
                     updatedAt = Date(),
-                    conflictVersion = existingUser.conflictVersion + 1
+                    conflictVersion = existingUser.conflictVersion + 1,
+                    hlc = clock.stampWrite(existingUser.syncMetadata.hlc)
                 )
             )
             database.userDao().update(updatedEntity)
@@ -548,19 +789,7 @@ class OfflineActionQueue @Inject constructor(
 
     private suspend fun deleteFowlEntity(action: OfflineAction): ActionResult {
         return try {
-            // Verify fowl exists
-            val fowl = database.fowlDao().getById(action.entityId)
-            if (fowl == null) {
-                return ActionResult.failure("Fowl not found")
-            }
-
-            // Check if fowl can be deleted (no active transfers, etc.)
-            val activeTransfers = database.transferDao().getTransfersByFowl(action.entityId)
-                .filter { it.transferStatus in listOf("INITIATED", "PENDING_APPROVAL", "APPROVED", "IN_TRANSIT") }
-
-            if (activeTransfers.isNotEmpty()) {
-                return ActionResult.failure("Cannot delete fowl with active transfers")
-            }
+            // Existence and active transfers were checked against the batch snapshot
 
             // Mark as deleted
             database.fowlDao().markAsDeleted(action.entityId)
@@ -573,11 +802,7 @@ class OfflineActionQueue @Inject constructor(
 
     private suspend fun deleteMarketplaceListing(action: OfflineAction): ActionResult {
         return try {
-            // Verify listing exists
-            val listing = database.marketplaceDao().getById(action.entityId)
-            if (listing == null) {
-                return ActionResult.failure("Listing not found")
-            }
+            // Existence was checked against the batch snapshot
 
             // Mark as deleted
             database.marketplaceDao().markAsDeleted(action.entityId)
@@ -616,51 +841,6 @@ class OfflineActionQueue @Inject constructor(
     }
 
     // Validation methods
-    private suspend fun validateDependencies(action: OfflineAction): Boolean {
-        return try {
-            action.dependsOn.all { dependencyId ->
-                val dependency = database.offlineActionDao().getById(dependencyId)
-                dependency?.status == "COMPLETED"
-            }
-        } catch (e: Exception) {
-            false
-        }
-    }
-
-    private suspend fun entityExists(entityType: String, entityId: String): Boolean {
-        return try {
-            when (entityType) {
-                "fowl" -> database.fowlDao().getById(entityId) != null
-                "user" -> database.userDao().getById(entityId) != null
-                "marketplace_listing" -> database.marketplaceDao().getById(entityId) != null
-                "message" -> database.messageDao().getById(entityId) != null
-                "transfer" -> database.transferDao().getById(entityId) != null
-                else -> false
-            }
-        } catch (e: Exception) {
-            false
-        }
-    }
-
-    private suspend fun canDeleteEntity(entityType: String, entityId: String): Boolean {
-        return try {
-            when (entityType) {
-                "fowl" -> {
-                    val activeTransfers = database.transferDao().getTransfersByFowl(entityId)
-                        .filter { it.transferStatus in listOf("INITIATED", "PENDING_APPROVAL", "APPROVED", "IN_TRANSIT") }
-                    activeTransfers.isEmpty()
-                }
-                "marketplace_listing" -> {
-                    val listing = database.marketplaceDao().getById(entityId)
-                    listing?.listingStatus != "SOLD"
-                }
-                else -> true
-            }
-        } catch (e: Exception) {
-            false
-        }
-    }
-
     private fun validateTransferData(transferData: TransferActionData): Boolean {
         return transferData.fowlId.isNotEmpty() &&
                 transferData.fromUserId.isNotEmpty() &&
@@ -675,13 +855,19 @@ class OfflineActionQueue @Inject constructor(
                 (paymentData.amount == null || paymentData.amount > 0)
     }
 
+    companion object {
+        // Floor between scheduler passes so a drain that cannot make progress does not spin
+        private const val MIN_RETRY_WAKE_INTERVAL_MS = 1_000L
+        
+        private const val MAX_DRAIN_SWEEPS = 3
+        
+        // Stay under SQLite's default host parameter limit of 999
+        private const val SQLITE_MAX_BIND_ARGS = 900
+    }
+    
     // Helper method to parse action data
-    private inline fun <reified T> parseActionData(actionData: String): T {
-        return try {
-            com.google.gson.Gson().fromJson(actionData, T::class.java)
-        } catch (e: Exception) {
-            throw IllegalArgumentException("Failed to parse action data: ${e.message}")
-        }
+    private inline fun <reified T : Any> parseActionData(actionData: String): T {
+        return payloadCodec.decode(actionData, T::class.java)
     }
 }
 
@@ -752,7 +938,10 @@ data class ProcessingResult(
     val totalActions: Int,
     val processedCount: Int,
     val failedCount: Int,
-    val errors: List<ActionError>
+    val errors: List<ActionError>,
+    val skippedCount: Int = 0, // blocked by a failed predecessor, left queued
+    val compactedCount: Int = 0, // redundant actions merged or cancelled before the drain
+    val waves: List<WaveStats> = emptyList()
 ) {
     companion object {
         fun alreadyProcessing() = ProcessingResult(0, 0, 0, emptyList())
@@ -762,6 +951,102 @@ data class ProcessingResult(
     }
 }
 
+/**
+ * Execution tuning for queue drains
+ */
+data class QueueExecutionConfig(
+    val maxParallelism: Int = 4,
+    val statusBatchSize: Int = 50,
+    val windowSize: Int = 200
+)
+
+/**
+ * Throughput of one dependency level of a drain
+ */
+data class WaveStats(
+    val level: Int,
+    val actionCount: Int,
+    val succeeded: Int,
+    val failed: Int,
+    val durationMs: Long
+) {
+    val actionsPerSecond: Double
+        get() = if (durationMs > 0) actionCount * 1000.0 / durationMs else actionCount.toDouble()
+}
+
+/**
+ * Result of running one action, waiting to be committed
+ */
+private data class ActionOutcome(
+    val action: OfflineActionEntity,
+    val error: String?
+)
+
+/**
+ * Keyset position in the (priority, queuedAt, id) drain order
+ */
+private data class QueueCursor(
+    val priority: Int,
+    val queuedAt: Long,
+    val id: String
+) {
+    companion object {
+        val START = QueueCursor(Int.MIN_VALUE, Long.MIN_VALUE, "")
+        
+        fun after(action: OfflineActionEntity) = QueueCursor(action.priority, action.queuedAt.time, action.id)
+    }
+}
+
+/**
+ * Running totals for a drain; error details are capped so they cannot grow with the queue
+ */
+private class DrainTotals {
+    var processedCount = 0
+    var failedCount = 0
+    val errors = mutableListOf<ActionError>()
+    
+    fun recordFailure(action: OfflineActionEntity, error: String) {
+        failedCount++
+        if (errors.size < MAX_REPORTED_ERRORS) {
+            errors.add(ActionError(
+                actionId = action.id,
+                entityType = action.entityType,
+                error = error
+            ))
+        }
+    }
+    
+    companion object {
+        private const val MAX_REPORTED_ERRORS = 100
+    }
+}
+
+/**
+ * Accumulates per-level timing while a drain runs
+ */
+private class WaveTracker {
+    private class Wave(var startedAt: Long, var finishedAt: Long, var succeeded: Int = 0, var failed: Int = 0)
+    
+    private val waves = sortedMapOf<Int, Wave>()
+    
+    fun record(level: Int, startedAt: Long, finishedAt: Long, success: Boolean) {
+        val wave = waves.getOrPut(level) { Wave(startedAt, finishedAt) }
+        wave.startedAt = minOf(wave.startedAt, startedAt)
+        wave.finishedAt = maxOf(wave.finishedAt, finishedAt)
+        if (success) wave.succeeded++ else wave.failed++
+    }
+    
+    fun snapshot(): List<WaveStats> = waves.map { (level, wave) ->
+        WaveStats(
+            level = level,
+            actionCount = wave.succeeded + wave.failed,
+            succeeded = wave.succeeded,
+            failed = wave.failed,
+            durationMs = wave.finishedAt - wave.startedAt
+        )
+    }
+}
+
 /**
  * Action error
  */
@@ -780,7 +1065,9 @@ data class QueueStatistics(
     val totalFailed: Int,
     val totalCompleted: Int,
     val oldestAction: Date?,
-    val averageProcessingTime: Long? // milliseconds
+    val averageProcessingTime: Long?, // milliseconds
+    val totalCompacted: Int = 0, // merged/cancelled rows still retained
+    val compactedSinceStart: Long = 0 // round trips saved by compaction this process
 )
 
 /**
@@ -804,7 +1091,7 @@ data class FowlActionData(
     val region: String,
     val district: String
 ) {
-    fun toEntity(): FowlEntity {
+    fun toEntity(hlc: Long = HybridTimestamp.NONE): FowlEntity {
         return FowlEntity(
             id = id,
             ownerId = ownerId,
@@ -827,7 +1114,8 @@ data class FowlActionData(
             syncMetadata = SyncMetadata(
                 syncStatus = SyncStatus.PENDING_UPLOAD,
                 createdAt = Date(),
-                updatedAt = Date()
+                updatedAt = Date(),
+                hlc = hlc
             )
         )
     }
@@ -850,7 +1138,7 @@ data class MarketplaceActionData(
     val region: String,
     val district: String
 ) {
-    fun toEntity(): MarketplaceEntity {
+    fun toEntity(hlc: Long = HybridTimestamp.NONE): MarketplaceEntity {
         return MarketplaceEntity(
             id = id,
             sellerId = sellerId,
@@ -872,7 +1160,8 @@ data class MarketplaceActionData(
             syncMetadata = SyncMetadata(
                 syncStatus = SyncStatus.PENDING_UPLOAD,
                 createdAt = Date(),
-                updatedAt = Date()
+                updatedAt = Date(),
+                hlc = hlc
             )
         )
     }
@@ -887,7 +1176,7 @@ data class MessageActionData(
     val mediaUrl: String? = null,
     val sentAt: Date = Date()
 ) {
-    fun toEntity(): MessageEntity {
+    fun toEntity(hlc: Long = HybridTimestamp.NONE): MessageEntity {
         return MessageEntity(
             id = id,
             conversationId = conversationId,
@@ -900,7 +1189,8 @@ data class MessageActionData(
             syncMetadata = SyncMetadata(
                 syncStatus = SyncStatus.PENDING_UPLOAD,
                 createdAt = Date(),
-                updatedAt = Date()
+                updatedAt = Date(),
+                hlc = hlc
             )
         )
     }
@@ -918,7 +1208,7 @@ data class TransferActionData(
     val region: String,
     val district: String
 ) {
-    fun toEntity(): TransferEntity {
+    fun toEntity(hlc: Long = HybridTimestamp.NONE): TransferEntity {
         return TransferEntity(
             id = id,
             fowlId = fowlId,
@@ -936,9 +1226,10 @@ data class TransferActionData(
             regionalMetadata = RegionalMetadata(region = region, district = district),
             syncMetadata = SyncMetadata(
                 syncStatus = SyncStatus.PENDING_UPLOAD,
-                syncPriority = SyncPriority.CRITICAL,
+                priority = SyncPriority.HIGH,
                 createdAt = Date(),
-                updatedAt = Date()
+                updatedAt = Date(),
+                hlc = hlc
             )
         )
     }
@@ -954,7 +1245,7 @@ data class UserActionData(
     val region: String,
     val district: String
 ) {
-    fun toEntity(): UserEntity {
+    fun toEntity(hlc: Long = HybridTimestamp.NONE): UserEntity {
         return UserEntity(
             id = id,
             email = "", // Will be filled from existing entity
@@ -969,7 +1260,8 @@ data class UserActionData(
             syncMetadata = SyncMetadata(
                 syncStatus = SyncStatus.PENDING_UPLOAD,
                 createdAt = Date(),
-                updatedAt = Date()
+                updatedAt = Date(),
+                hlc = hlc
             )
         )
     }
@@ -992,7 +1284,7 @@ fun OfflineActionEntity.toOfflineAction(): OfflineAction {
         entityId = entityId,
         actionType = OfflineActionType.valueOf(actionType),
         actionData = actionData,
-        priority = SyncPriority.values().find { it.value == priority } ?: SyncPriority.MEDIUM,
+        priority = SyncPriority.values().getOrElse(priority) { SyncPriority.NORMAL },
         dependsOn = dependsOn,
         validationRules = validationRules,
         maxRetries = maxRetries,
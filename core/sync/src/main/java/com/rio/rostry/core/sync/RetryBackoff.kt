@@ -0,0 +1,30 @@
+package com.rio.rostry.core.sync
+
+import kotlin.random.Random
+
+/**
+ * Exponential backoff with equal jitter for offline action retries
+ * Half of the capped delay is fixed and half is random, so actions that failed
+ * together on a flaky link do not all come back at the same instant.
+ */
+class RetryBackoff(
+    private val baseDelayMs: Long = 1_000L,
+    private val maxDelayMs: Long = 300_000L, // 5 minutes
+    private val random: Random = Random.Default
+) {
+
+    /**
+     * Delay before attempt number [retryCount] (1-based)
+     */
+    fun delayFor(retryCount: Int): Long {
+        val exponent = retryCount.coerceIn(0, MAX_EXPONENT)
+        val cappedDelay = minOf(baseDelayMs shl exponent, maxDelayMs)
+        val fixedPart = cappedDelay / 2
+        return fixedPart + random.nextLong(cappedDelay - fixedPart + 1)
+    }
+
+    companion object {
+        // Keeps the shift well clear of overflow
+        private const val MAX_EXPONENT = 20
+    }
+}
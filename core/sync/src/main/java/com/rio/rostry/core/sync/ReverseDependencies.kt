@@ -0,0 +1,38 @@
+package com.rio.rostry.core.sync
+
+import com.rio.rostry.core.database.OfflineActionEntity
+
+/**
+ * dependsOn edges of the queued actions, turned around so dependents can be looked up by id
+ * Built once from a single read of the queue; depends_on is a JSON list, which no index can
+ * answer "who depends on X" from.
+ */
+internal class ReverseDependencies(queued: List<OfflineActionEntity>) {
+
+    private val dependents: Map<String, List<OfflineActionEntity>> = buildMap<String, MutableList<OfflineActionEntity>> {
+        queued.forEach { action ->
+            action.dependsOn.distinct().forEach { dependencyId -> getOrPut(dependencyId) { mutableListOf() }.add(action) }
+        }
+    }
+
+    /**
+     * Queued actions that list [actionId] directly
+     */
+    fun direct(actionId: String): List<OfflineActionEntity> = dependents[actionId].orEmpty()
+
+    /**
+     * Queued actions that depend on [actionId] directly or through other queued actions
+     */
+    fun transitive(actionId: String): List<OfflineActionEntity> {
+        val found = LinkedHashMap<String, OfflineActionEntity>()
+        val frontier = ArrayDeque<String>().apply { add(actionId) }
+        while (frontier.isNotEmpty()) {
+            direct(frontier.removeFirst()).forEach { dependent ->
+                if (dependent.id != actionId && found.putIfAbsent(dependent.id, dependent) == null) {
+                    frontier.addLast(dependent.id)
+                }
+            }
+        }
+        return found.values.toList()
+    }
+}
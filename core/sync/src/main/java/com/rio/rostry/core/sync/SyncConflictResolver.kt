@@ -1,11 +1,13 @@
 package com.rio.rostry.core.sync
 
 import com.rio.rostry.core.database.entities.SyncableEntity
+import com.rio.rostry.core.database.entities.hybridTimestamp
 import javax.inject.Inject
 import javax.inject.Singleton
 
 /**
- * Minimal conflict resolver implementing a last-write-wins policy using updatedAt timestamps.
+ * Minimal conflict resolver implementing a last-write-wins policy using hybrid timestamps
+ * (updatedAt for rows stamped before the clock existed).
  * This avoids strong coupling to specific entity types to keep compilation stable.
  */
 @Singleton
@@ -18,8 +20,8 @@ class SyncConflictResolver @Inject constructor() {
         return when (remote) {
             null -> Resolution.UseLocal(local)
             else -> {
-                val localUpdated = local.syncMetadata.updatedAt.time
-                val remoteUpdated = remote.syncMetadata.updatedAt.time
+                val localUpdated = local.syncMetadata.hybridTimestamp
+                val remoteUpdated = remote.syncMetadata.hybridTimestamp
                 if (localUpdated >= remoteUpdated) Resolution.UseLocal(local) else Resolution.UseRemote(
                     remote
                 )
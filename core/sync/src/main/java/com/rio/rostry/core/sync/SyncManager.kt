@@ -2,12 +2,13 @@ package com.rio.rostry.core.sync
 
 import android.content.Context
 import androidx.work.*
-import com.rio.rostry.core.common.network.NetworkStateManager
+import com.rio.rostry.core.common.performance.LatencyRegistry
+import com.rio.rostry.core.common.performance.LatencySummary
+import com.rio.rostry.core.network.NetworkStateManager
+import com.rio.rostry.core.sync.workers.DatabaseMaintenanceWorker
 import com.rio.rostry.core.database.entities.*
 import com.rio.rostry.core.data.repository.*
 import kotlinx.coroutines.flow.*
-import kotlinx.coroutines.launch
-import kotlinx.coroutines.supervisorScope
 import java.util.*
 import java.util.concurrent.TimeUnit
 import javax.inject.Inject
@@ -24,6 +25,12 @@ class SyncManager @Inject constructor(
     private val conflictResolver: ConflictResolver,
     private val syncMetrics: SyncMetrics,
     private val workManager: WorkManager,
+    private val syncOrchestrator: SyncOrchestrator,
+    private val deltaDownloader: DeltaDownloader,
+    private val deltaSources: DeltaSourceRegistry,
+    private val latencyRegistry: LatencyRegistry,
+    private val batchConflictResolver: BatchConflictResolver,
+    private val conflictSources: ConflictSourceRegistry,
     
     // Repository dependencies
     private val userRepository: UserRepository,
@@ -54,8 +61,14 @@ class SyncManager @Inject constructor(
     
     /**
      * Trigger immediate sync of all pending data
+     * Repositories sync concurrently; see [SyncOrchestrator] for how tiers are scheduled.
+     *
+     * @param downloadEntityTypes entity types to refresh from the server in the same pass
      */
-    suspend fun syncAll(force: Boolean = false): SyncResult {
+    suspend fun syncAll(
+        force: Boolean = false,
+        downloadEntityTypes: List<String> = emptyList()
+    ): SyncResult {
         if (!networkStateManager.isConnected.value && !force) {
             return SyncResult.failure("No network connection")
         }
@@ -64,51 +77,28 @@ class SyncManager @Inject constructor(
         _syncProgress.value = SyncProgress(isActive = true)
         
         return try {
-            val results = mutableListOf<SyncResult>()
-            var totalItems = 0
-            var totalSuccess = 0
-            var totalFailures = 0
-            var totalConflicts = 0
-            
-            // Sync in priority order: Critical -> High -> Medium -> Low
+            // Sync in priority order: High (payments, transfers) -> Normal -> Low
             val priorityOrder = listOf(
-                SyncPriority.CRITICAL,
                 SyncPriority.HIGH,
-                SyncPriority.MEDIUM,
+                SyncPriority.NORMAL,
                 SyncPriority.LOW
             )
             
-            for (priority in priorityOrder) {
-                val priorityResults = syncByPriority(priority)
-                results.addAll(priorityResults)
-                
-                priorityResults.forEach { result ->
-                    totalItems += result.totalItems
-                    totalSuccess += result.successCount
-                    totalFailures += result.failureCount
-                    totalConflicts += result.conflictCount
+            val tasks = priorityOrder.flatMap { priority -> uploadTasks(priority) } +
+                downloadTasks(downloadEntityTypes, region = null, district = null)
+            
+            val results = latencyRegistry.time("sync.all") {
+                syncOrchestrator.execute(tasks) { completed, total, task ->
+                    _syncProgress.value = _syncProgress.value.copy(
+                        progress = completed * 100 / total,
+                        currentOperation = "Syncing ${task.priority.name.lowercase()} priority items"
+                    )
                 }
-                
-                // Update progress
-                val progress = (priorityOrder.indexOf(priority) + 1) * 100 / priorityOrder.size
-                _syncProgress.value = _syncProgress.value.copy(
-                    progress = progress,
-                    currentOperation = "Syncing ${priority.name.lowercase()} priority items"
-                )
             }
             
-            val overallResult = SyncResult(
-                entityType = "ALL",
-                totalItems = totalItems,
-                successCount = totalSuccess,
-                failureCount = totalFailures,
-                conflictCount = totalConflicts,
-                bytesTransferred = results.sumOf { it.bytesTransferred },
-                duration = results.sumOf { it.duration },
-                errors = results.flatMap { it.errors }
-            )
+            val overallResult = results.combineResults("ALL")
             
-            _syncStatus.value = if (totalFailures == 0) SyncStatus.COMPLETED else SyncStatus.FAILED
+            _syncStatus.value = if (overallResult.failureCount == 0) SyncStatus.COMPLETED else SyncStatus.FAILED
             _syncProgress.value = SyncProgress(isActive = false, progress = 100)
             
             // Record metrics
@@ -126,21 +116,65 @@ class SyncManager @Inject constructor(
     /**
      * Sync entities by priority level
      */
-    private suspend fun syncByPriority(priority: SyncPriority): List<SyncResult> = supervisorScope {
-        val results = mutableListOf<SyncResult>()
-        
-        repositories.forEach { repository ->
-            launch {
-                try {
-                    val result = repository.syncPendingByPriority(priority)
-                    results.add(result)
-                } catch (e: Exception) {
-                    results.add(SyncResult.failure("${repository.javaClass.simpleName}: ${e.message}"))
+    private suspend fun syncByPriority(priority: SyncPriority): List<SyncResult> {
+        return syncOrchestrator.execute(uploadTasks(priority))
+    }
+    
+    /**
+     * One upload task per repository for the given priority
+     */
+    private fun uploadTasks(priority: SyncPriority): List<SyncTask> {
+        return repositories.map { repository ->
+            SyncTask(
+                label = repository.javaClass.simpleName,
+                priority = priority,
+                direction = SyncDirection.UPLOAD
+            ) {
+                latencyRegistry.time("sync.upload.${repository.getEntityType()}") {
+                    repository.syncPendingByPriority(priority)
+                }
+            }
+        }
+    }
+    
+    /**
+     * One download task per known entity type
+     * Downloads run at NORMAL priority: after the HIGH tier, overlapping with lower-priority uploads.
+     * Entity types with a registered [DeltaSource] pull only changes since their watermark.
+     */
+    private fun downloadTasks(
+        entityTypes: List<String>,
+        region: String?,
+        district: String?
+    ): List<SyncTask> {
+        return entityTypes.mapNotNull { entityType ->
+            val collection = deltaSources.collectionFor(entityType)
+            val source = deltaSources.sourceFor(entityType)
+            if (collection != null && source != null) {
+                SyncTask(
+                    label = "delta:$entityType",
+                    priority = SyncPriority.NORMAL,
+                    direction = SyncDirection.DOWNLOAD
+                ) {
+                    val scope = SyncScope(collection = collection, region = region, district = district)
+                    latencyRegistry.time("sync.download.$entityType") {
+                        deltaDownloader.pull(scope, source).toSyncResult(entityType)
+                    }
+                }
+            } else {
+                getRepositoryForEntityType(entityType)?.let { repository ->
+                    SyncTask(
+                        label = "download:$entityType",
+                        priority = SyncPriority.NORMAL,
+                        direction = SyncDirection.DOWNLOAD
+                    ) {
+                        latencyRegistry.time("sync.download.$entityType") {
+                            repository.downloadFreshData(region, district)
+                        }
+                    }
                 }
             }
         }
-        
-        results
     }
     
     /**
@@ -162,7 +196,9 @@ class SyncManager @Inject constructor(
         
         return try {
             _syncStatus.value = SyncStatus.SYNCING
-            val result = repository.syncPendingToServer()
+            val result = latencyRegistry.time("sync.upload.${entityType.lowercase()}") {
+                repository.syncPendingToServer()
+            }
             _syncStatus.value = if (result.failureCount == 0) SyncStatus.COMPLETED else SyncStatus.FAILED
             
             syncMetrics.recordSyncResult(result)
@@ -177,27 +213,19 @@ class SyncManager @Inject constructor(
      * Sync critical data immediately (transfers, payments)
      */
     suspend fun syncCriticalData(): SyncResult {
-        return syncByPriority(SyncPriority.CRITICAL).let { results ->
-            SyncResult(
-                entityType = "CRITICAL",
-                totalItems = results.sumOf { it.totalItems },
-                successCount = results.sumOf { it.successCount },
-                failureCount = results.sumOf { it.failureCount },
-                conflictCount = results.sumOf { it.conflictCount },
-                bytesTransferred = results.sumOf { it.bytesTransferred },
-                duration = results.sumOf { it.duration },
-                errors = results.flatMap { it.errors }
-            )
-        }
+        return syncByPriority(SyncPriority.HIGH).combineResults("CRITICAL")
     }
     
     /**
      * Download fresh data from server
+     * Incremental by default; [fullResync] drops the stored watermarks for the requested
+     * entity types first so their next pull starts from scratch.
      */
     suspend fun downloadFreshData(
         entityTypes: List<String> = listOf("users", "fowls", "marketplace", "messages", "transfers"),
         region: String? = null,
-        district: String? = null
+        district: String? = null,
+        fullResync: Boolean = false
     ): SyncResult {
         if (!networkStateManager.isConnected.value) {
             return SyncResult.failure("No network connection")
@@ -206,26 +234,13 @@ class SyncManager @Inject constructor(
         _syncStatus.value = SyncStatus.DOWNLOADING
         
         return try {
-            val results = mutableListOf<SyncResult>()
-            
-            entityTypes.forEach { entityType ->
-                val repository = getRepositoryForEntityType(entityType)
-                if (repository != null) {
-                    val result = repository.downloadFreshData(region, district)
-                    results.add(result)
-                }
+            if (fullResync) {
+                entityTypes.mapNotNull { deltaSources.collectionFor(it) }
+                    .forEach { deltaDownloader.resetCollection(it) }
             }
             
-            val overallResult = SyncResult(
-                entityType = "DOWNLOAD",
-                totalItems = results.sumOf { it.totalItems },
-                successCount = results.sumOf { it.successCount },
-                failureCount = results.sumOf { it.failureCount },
-                conflictCount = results.sumOf { it.conflictCount },
-                bytesTransferred = results.sumOf { it.bytesTransferred },
-                duration = results.sumOf { it.duration },
-                errors = results.flatMap { it.errors }
-            )
+            val results = syncOrchestrator.execute(downloadTasks(entityTypes, region, district))
+            val overallResult = results.combineResults("DOWNLOAD")
             
             _syncStatus.value = if (overallResult.failureCount == 0) SyncStatus.COMPLETED else SyncStatus.FAILED
             overallResult
@@ -239,17 +254,57 @@ class SyncManager @Inject constructor(
      * Resolve sync conflicts
      */
     suspend fun resolveConflicts(): SyncResult {
-        val conflictedEntities = mutableListOf<SyncableEntity>()
-        
-        // Collect all conflicted entities
-        repositories.forEach { repository ->
-            conflictedEntities.addAll(repository.getConflictedEntities())
+        val startTime = System.currentTimeMillis()
+        val entityTypes = listOf("users", "fowls", "marketplace", "messages", "transfers")
+        val results = mutableListOf<SyncResult>()
+
+        _syncProgress.value = SyncProgress(isActive = true, currentOperation = "Resolving conflicts")
+
+        entityTypes.forEachIndexed { typeIndex, entityType ->
+            val source = conflictSources.sourceFor(entityType)
+            val result = if (source != null) {
+                batchConflictResolver.resolveAll(source) { processed, total ->
+                    val typeShare = if (total > 0) processed.toDouble() / total else 1.0
+                    _syncProgress.value = _syncProgress.value.copy(
+                        progress = ((typeIndex + typeShare) * 100 / entityTypes.size).toInt(),
+                        currentOperation = "Resolving $entityType conflicts ($processed/$total)"
+                    )
+                }
+            } else {
+                getRepositoryForEntityType(entityType)?.let { resolveConflictsOneByOne(entityType, it) }
+            }
+            result?.let { results.add(it) }
+            _syncProgress.value = _syncProgress.value.copy(
+                progress = (typeIndex + 1) * 100 / entityTypes.size
+            )
         }
-        
+
+        _syncProgress.value = SyncProgress(isActive = false, progress = 100)
+
+        return SyncResult(
+            entityType = "CONFLICTS",
+            totalItems = results.sumOf { it.totalItems },
+            successCount = results.sumOf { it.successCount },
+            failureCount = results.sumOf { it.failureCount },
+            conflictCount = 0,
+            bytesTransferred = 0L,
+            duration = System.currentTimeMillis() - startTime,
+            errors = results.flatMap { it.errors }
+        )
+    }
+
+    /**
+     * Fallback for repositories without a registered [ConflictSource]
+     */
+    private suspend fun resolveConflictsOneByOne(
+        entityType: String,
+        repository: BaseOfflineRepository<*, *>
+    ): SyncResult {
+        val conflictedEntities = repository.getConflictedEntities()
         var resolvedCount = 0
         var failedCount = 0
         val errors = mutableListOf<SyncError>()
-        
+
         conflictedEntities.forEach { entity ->
             try {
                 val resolution = conflictResolver.resolveConflict(entity)
@@ -272,9 +327,9 @@ class SyncManager @Inject constructor(
                 ))
             }
         }
-        
+
         return SyncResult(
-            entityType = "CONFLICTS",
+            entityType = entityType,
             totalItems = conflictedEntities.size,
             successCount = resolvedCount,
             failureCount = failedCount,
@@ -303,7 +358,8 @@ class SyncManager @Inject constructor(
             conflicts = conflictCounts,
             lastSyncTime = syncMetrics.getLastSyncTime(),
             syncSuccess = syncMetrics.getSyncSuccessRate(),
-            averageSyncDuration = syncMetrics.getAverageSyncDuration()
+            averageSyncDuration = syncMetrics.getAverageSyncDuration(),
+            latency = latencyRegistry.summaries("sync.")
         )
     }
     
@@ -343,6 +399,9 @@ class SyncManager @Inject constructor(
             ExistingPeriodicWorkPolicy.KEEP,
             fullSyncRequest
         )
+        
+        // Database cleanup in short windows while idle and charging
+        DatabaseMaintenanceWorker.schedule(workManager)
     }
     
     /**
@@ -425,9 +484,25 @@ data class SyncStatistics(
     val conflicts: Map<String, Int>,
     val lastSyncTime: Date?,
     val syncSuccess: Double, // 0.0 - 1.0
-    val averageSyncDuration: Long // milliseconds
+    val averageSyncDuration: Long, // milliseconds
+    val latency: List<LatencySummary> = emptyList() // p50/p95/p99 per sync operation
 )
 
+/**
+ * Report a delta pull as a download SyncResult
+ */
+fun DeltaPullResult.toSyncResult(entityType: String): SyncResult {
+    return SyncResult(
+        entityType = entityType,
+        totalItems = applied + skipped,
+        successCount = applied,
+        failureCount = 0,
+        conflictCount = 0,
+        bytesTransferred = 0L,
+        duration = duration
+    )
+}
+
 /**
  * Extension function for SyncResult
  */
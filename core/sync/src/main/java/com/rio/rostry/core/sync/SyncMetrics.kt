@@ -1,201 +1,201 @@
 package com.rio.rostry.core.sync
 
-import android.content.SharedPreferences
+import android.content.Context
+import android.util.Log
 import com.rio.rostry.core.database.entities.SyncResult
+import dagger.hilt.android.qualifiers.ApplicationContext
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.delay
 import kotlinx.coroutines.flow.MutableStateFlow
 import kotlinx.coroutines.flow.StateFlow
 import kotlinx.coroutines.flow.asStateFlow
+import kotlinx.coroutines.flow.update
+import kotlinx.coroutines.flow.updateAndGet
+import kotlinx.coroutines.isActive
+import kotlinx.coroutines.launch
+import java.io.File
 import java.util.*
-import java.util.concurrent.ConcurrentLinkedQueue
 import javax.inject.Inject
 import javax.inject.Singleton
 
 /**
  * Sync metrics for monitoring sync performance and success rates
  * Tracks sync operations and provides analytics for optimization
+ *
+ * Samples go into a [SyncTimeSeries] whose hourly buckets answer every query in
+ * O(buckets), and are appended to a memory-mapped [SyncMetricsFile] that is forced to
+ * disk every [FLUSH_INTERVAL_MS] instead of on every sync.
  */
 @Singleton
 class SyncMetrics @Inject constructor(
-    private val sharedPreferences: SharedPreferences
+    @ApplicationContext context: Context
 ) {
-    
-    private val syncHistory = ConcurrentLinkedQueue<SyncRecord>()
-    private val maxHistorySize = 1000
-    
+
+    private val series = SyncTimeSeries()
+    private val store: SyncMetricsFile? = try {
+        SyncMetricsFile(File(context.filesDir, METRICS_FILE_NAME), series.capacity)
+    } catch (e: Exception) {
+        Log.w(TAG, "Sync metrics will not be persisted", e)
+        null
+    }
+    private val scope = CoroutineScope(Dispatchers.IO + SupervisorJob())
+
     private val _currentMetrics = MutableStateFlow(SyncMetricsData())
     val currentMetrics: StateFlow<SyncMetricsData> = _currentMetrics.asStateFlow()
-    
+
     init {
         loadStoredMetrics()
+        scope.launch {
+            while (isActive) {
+                delay(FLUSH_INTERVAL_MS)
+                flush()
+            }
+        }
     }
-    
+
     /**
      * Record sync result
      */
     fun recordSyncResult(result: SyncResult) {
-        val record = SyncRecord(
-            timestamp = Date(),
+        val sample = SyncSample(
+            timestamp = System.currentTimeMillis(),
             entityType = result.entityType,
+            networkType = getCurrentNetworkType(),
             totalItems = result.totalItems,
             successCount = result.successCount,
             failureCount = result.failureCount,
             conflictCount = result.conflictCount,
-            duration = result.duration,
-            bytesTransferred = result.bytesTransferred,
-            networkType = getCurrentNetworkType(),
-            connectionQuality = getCurrentConnectionQuality()
+            durationMs = result.duration,
+            bytesTransferred = result.bytesTransferred
         )
-        
-        addSyncRecord(record)
+
+        series.record(sample)
+        store?.append(sample)
         updateMetrics()
-        persistMetrics()
     }
-    
+
     /**
      * Record sync start
      */
     fun recordSyncStart(entityType: String) {
-        val metrics = _currentMetrics.value
-        _currentMetrics.value = metrics.copy(
-            activeSyncs = metrics.activeSyncs + 1,
-            lastSyncStartTime = Date()
-        )
+        _currentMetrics.update {
+            it.copy(activeSyncs = it.activeSyncs + 1, lastSyncStartTime = Date())
+        }
     }
-    
+
     /**
      * Record sync completion
      */
     fun recordSyncCompletion(entityType: String, success: Boolean) {
-        val metrics = _currentMetrics.value
-        _currentMetrics.value = metrics.copy(
-            activeSyncs = maxOf(0, metrics.activeSyncs - 1),
-            totalSyncs = metrics.totalSyncs + 1,
-            successfulSyncs = if (success) metrics.successfulSyncs + 1 else metrics.successfulSyncs,
-            lastSyncTime = Date()
+        val metrics = _currentMetrics.updateAndGet {
+            it.copy(
+                activeSyncs = maxOf(0, it.activeSyncs - 1),
+                totalSyncs = it.totalSyncs + 1,
+                successfulSyncs = if (success) it.successfulSyncs + 1 else it.successfulSyncs,
+                lastSyncTime = Date()
+            )
+        }
+        store?.counters = SyncCounters(
+            totalSyncs = metrics.totalSyncs,
+            successfulSyncs = metrics.successfulSyncs,
+            lastSyncTime = metrics.lastSyncTime?.time ?: 0L
         )
     }
-    
+
     /**
      * Get sync success rate
      */
     fun getSyncSuccessRate(): Double {
-        val recentRecords = getRecentRecords(24 * 60 * 60 * 1000) // Last 24 hours
-        if (recentRecords.isEmpty()) return 1.0
-        
-        val totalOperations = recentRecords.sumOf { it.totalItems }
-        val successfulOperations = recentRecords.sumOf { it.successCount }
-        
-        return if (totalOperations > 0) {
-            successfulOperations.toDouble() / totalOperations.toDouble()
-        } else {
-            1.0
-        }
+        return series.totals(DAY_HOURS).successRate
     }
-    
+
     /**
      * Get average sync duration
      */
     fun getAverageSyncDuration(): Long {
-        val recentRecords = getRecentRecords(24 * 60 * 60 * 1000) // Last 24 hours
-        if (recentRecords.isEmpty()) return 0L
-        
-        return recentRecords.map { it.duration }.average().toLong()
+        return series.totals(DAY_HOURS).averageDuration
     }
-    
+
     /**
      * Get last sync time
      */
     fun getLastSyncTime(): Date? {
-        return syncHistory.maxByOrNull { it.timestamp }?.timestamp
+        return series.lastTimestamp.takeIf { it > 0 }?.let { Date(it) }
     }
-    
+
     /**
      * Get sync performance by entity type
      */
     fun getSyncPerformanceByEntityType(): Map<String, EntitySyncMetrics> {
-        val recentRecords = getRecentRecords(7 * 24 * 60 * 60 * 1000) // Last 7 days
-        
-        return recentRecords.groupBy { it.entityType }.mapValues { (_, records) ->
+        return series.totalsByEntityType(WEEK_HOURS).mapValues { (_, totals) ->
             EntitySyncMetrics(
-                totalSyncs = records.size,
-                totalItems = records.sumOf { it.totalItems },
-                successfulItems = records.sumOf { it.successCount },
-                failedItems = records.sumOf { it.failureCount },
-                conflictedItems = records.sumOf { it.conflictCount },
-                averageDuration = records.map { it.duration }.average().toLong(),
-                totalBytesTransferred = records.sumOf { it.bytesTransferred },
-                successRate = if (records.sumOf { it.totalItems } > 0) {
-                    records.sumOf { it.successCount }.toDouble() / records.sumOf { it.totalItems }.toDouble()
-                } else 1.0
+                totalSyncs = totals.syncs,
+                totalItems = totals.totalItems,
+                successfulItems = totals.successfulItems,
+                failedItems = totals.failedItems,
+                conflictedItems = totals.conflictedItems,
+                averageDuration = totals.averageDuration,
+                totalBytesTransferred = totals.bytesTransferred,
+                successRate = totals.successRate
             )
         }
     }
-    
+
     /**
      * Get sync performance by network type
      */
     fun getSyncPerformanceByNetworkType(): Map<String, NetworkSyncMetrics> {
-        val recentRecords = getRecentRecords(7 * 24 * 60 * 60 * 1000) // Last 7 days
-        
-        return recentRecords.groupBy { it.networkType }.mapValues { (_, records) ->
+        return series.totalsByNetworkType(WEEK_HOURS).mapValues { (_, totals) ->
             NetworkSyncMetrics(
-                totalSyncs = records.size,
-                averageDuration = records.map { it.duration }.average().toLong(),
-                averageBytesPerSecond = calculateAverageBytesPerSecond(records),
-                successRate = if (records.sumOf { it.totalItems } > 0) {
-                    records.sumOf { it.successCount }.toDouble() / records.sumOf { it.totalItems }.toDouble()
-                } else 1.0,
-                averageItemsPerSync = if (records.isNotEmpty()) {
-                    records.sumOf { it.totalItems }.toDouble() / records.size
+                totalSyncs = totals.syncs,
+                averageDuration = totals.averageDuration,
+                averageBytesPerSecond = totals.bytesPerSecond,
+                successRate = totals.successRate,
+                averageItemsPerSync = if (totals.syncs > 0) {
+                    totals.totalItems.toDouble() / totals.syncs
                 } else 0.0
             )
         }
     }
-    
+
     /**
      * Get sync trends over time
+     * Hour keys are epoch hours; periods beyond the bucket window are capped at 7 days.
      */
     fun getSyncTrends(periodHours: Int = 24): SyncTrends {
-        val cutoffTime = Date(System.currentTimeMillis() - periodHours * 60 * 60 * 1000)
-        val recentRecords = syncHistory.filter { it.timestamp.after(cutoffTime) }
-        
-        // Group by hour
-        val hourlyData = recentRecords.groupBy { 
-            it.timestamp.time / (60 * 60 * 1000) // Hour bucket
-        }.mapValues { (_, records) ->
+        val hourlyData = series.hourly(periodHours).mapValues { (_, totals) ->
             HourlySyncData(
-                syncCount = records.size,
-                totalItems = records.sumOf { it.totalItems },
-                successfulItems = records.sumOf { it.successCount },
-                failedItems = records.sumOf { it.failureCount },
-                averageDuration = if (records.isNotEmpty()) {
-                    records.map { it.duration }.average().toLong()
-                } else 0L
+                syncCount = totals.syncs,
+                totalItems = totals.totalItems,
+                successfulItems = totals.successfulItems,
+                failedItems = totals.failedItems,
+                averageDuration = totals.averageDuration
             )
         }
-        
+
         return SyncTrends(
             periodHours = periodHours,
             hourlyData = hourlyData,
-            totalSyncs = recentRecords.size,
+            totalSyncs = hourlyData.values.sumOf { it.syncCount },
             peakSyncHour = hourlyData.maxByOrNull { it.value.syncCount }?.key,
             averageSuccessRate = getSyncSuccessRate()
         )
     }
-    
+
     /**
      * Get conflict analysis
      */
     fun getConflictAnalysis(): ConflictAnalysis {
-        val recentRecords = getRecentRecords(7 * 24 * 60 * 60 * 1000) // Last 7 days
-        val totalConflicts = recentRecords.sumOf { it.conflictCount }
-        val totalItems = recentRecords.sumOf { it.totalItems }
-        
-        val conflictsByEntityType = recentRecords
-            .filter { it.conflictCount > 0 }
-            .groupBy { it.entityType }
-            .mapValues { (_, records) -> records.sumOf { it.conflictCount } }
-        
+        val byEntityType = series.totalsByEntityType(WEEK_HOURS)
+        val totalConflicts = byEntityType.values.sumOf { it.conflictedItems }
+        val totalItems = byEntityType.values.sumOf { it.totalItems }
+
+        val conflictsByEntityType = byEntityType
+            .filterValues { it.conflictedItems > 0 }
+            .mapValues { (_, totals) -> totals.conflictedItems }
+
         return ConflictAnalysis(
             totalConflicts = totalConflicts,
             conflictRate = if (totalItems > 0) {
@@ -205,133 +205,91 @@ class SyncMetrics @Inject constructor(
             mostConflictedEntityType = conflictsByEntityType.maxByOrNull { it.value }?.key
         )
     }
-    
+
     /**
      * Get bandwidth usage statistics
      */
     fun getBandwidthUsage(): BandwidthUsage {
-        val recentRecords = getRecentRecords(24 * 60 * 60 * 1000) // Last 24 hours
-        val totalBytes = recentRecords.sumOf { it.bytesTransferred }
-        val totalDuration = recentRecords.sumOf { it.duration }
-        
-        val usageByNetworkType = recentRecords.groupBy { it.networkType }
-            .mapValues { (_, records) -> records.sumOf { it.bytesTransferred } }
-        
+        val totals = series.totals(DAY_HOURS)
+
         return BandwidthUsage(
-            totalBytesTransferred = totalBytes,
-            averageBytesPerSync = if (recentRecords.isNotEmpty()) {
-                totalBytes / recentRecords.size
+            totalBytesTransferred = totals.bytesTransferred,
+            averageBytesPerSync = if (totals.syncs > 0) {
+                totals.bytesTransferred / totals.syncs
             } else 0L,
-            averageBytesPerSecond = if (totalDuration > 0) {
-                (totalBytes * 1000) / totalDuration
-            } else 0L,
-            usageByNetworkType = usageByNetworkType
+            averageBytesPerSecond = totals.bytesPerSecond,
+            usageByNetworkType = series.totalsByNetworkType(DAY_HOURS)
+                .mapValues { (_, networkTotals) -> networkTotals.bytesTransferred }
         )
     }
-    
+
     /**
      * Reset metrics
      */
     fun resetMetrics() {
-        syncHistory.clear()
+        series.clear()
+        store?.clear()
         _currentMetrics.value = SyncMetricsData()
-        clearStoredMetrics()
     }
-    
+
     /**
-     * Add sync record to history
+     * Force pending samples to disk; also runs every [FLUSH_INTERVAL_MS]
      */
-    private fun addSyncRecord(record: SyncRecord) {
-        syncHistory.offer(record)
-        
-        // Maintain max history size
-        while (syncHistory.size > maxHistorySize) {
-            syncHistory.poll()
+    fun flush() {
+        try {
+            store?.flush()
+        } catch (e: Exception) {
+            Log.w(TAG, "Failed to flush sync metrics", e)
         }
     }
-    
+
     /**
      * Update current metrics
      */
     private fun updateMetrics() {
-        val recentRecords = getRecentRecords(24 * 60 * 60 * 1000) // Last 24 hours
-        
-        _currentMetrics.value = _currentMetrics.value.copy(
-            totalItemsSynced = recentRecords.sumOf { it.totalItems },
-            totalBytesTransferred = recentRecords.sumOf { it.bytesTransferred },
-            averageSyncDuration = getAverageSyncDuration(),
-            successRate = getSyncSuccessRate()
-        )
-    }
-    
-    /**
-     * Get recent records within time period
-     */
-    private fun getRecentRecords(periodMs: Long): List<SyncRecord> {
-        val cutoffTime = Date(System.currentTimeMillis() - periodMs)
-        return syncHistory.filter { it.timestamp.after(cutoffTime) }
-    }
-    
-    /**
-     * Calculate average bytes per second
-     */
-    private fun calculateAverageBytesPerSecond(records: List<SyncRecord>): Long {
-        val totalBytes = records.sumOf { it.bytesTransferred }
-        val totalDuration = records.sumOf { it.duration }
-        
-        return if (totalDuration > 0) {
-            (totalBytes * 1000) / totalDuration
-        } else 0L
-    }
-    
-    /**
-     * Persist metrics to storage
-     */
-    private fun persistMetrics() {
-        val editor = sharedPreferences.edit()
-        val metrics = _currentMetrics.value
-        
-        editor.putInt("total_syncs", metrics.totalSyncs)
-        editor.putInt("successful_syncs", metrics.successfulSyncs)
-        editor.putLong("total_items_synced", metrics.totalItemsSynced)
-        editor.putLong("total_bytes_transferred", metrics.totalBytesTransferred)
-        editor.putLong("last_sync_time", metrics.lastSyncTime?.time ?: 0L)
-        editor.putFloat("success_rate", metrics.successRate.toFloat())
-        
-        editor.apply()
+        val totals = series.totals(DAY_HOURS)
+
+        _currentMetrics.update {
+            it.copy(
+                totalItemsSynced = totals.totalItems.toLong(),
+                totalBytesTransferred = totals.bytesTransferred,
+                averageSyncDuration = totals.averageDuration,
+                successRate = totals.successRate
+            )
+        }
     }
-    
+
     /**
-     * Load stored metrics
+     * Replay the metrics file into the in-memory series
      */
     private fun loadStoredMetrics() {
-        val totalSyncs = sharedPreferences.getInt("total_syncs", 0)
-        val successfulSyncs = sharedPreferences.getInt("successful_syncs", 0)
-        val totalItemsSynced = sharedPreferences.getLong("total_items_synced", 0L)
-        val totalBytesTransferred = sharedPreferences.getLong("total_bytes_transferred", 0L)
-        val lastSyncTime = sharedPreferences.getLong("last_sync_time", 0L)
-        val successRate = sharedPreferences.getFloat("success_rate", 1.0f).toDouble()
-        
-        _currentMetrics.value = SyncMetricsData(
-            totalSyncs = totalSyncs,
-            successfulSyncs = successfulSyncs,
-            totalItemsSynced = totalItemsSynced,
-            totalBytesTransferred = totalBytesTransferred,
-            lastSyncTime = if (lastSyncTime > 0) Date(lastSyncTime) else null,
-            successRate = successRate
-        )
-    }
-    
-    /**
-     * Clear stored metrics
-     */
-    private fun clearStoredMetrics() {
-        sharedPreferences.edit().clear().apply()
+        val store = store ?: return
+        try {
+            store.forEachSample { series.record(it) }
+            val counters = store.counters
+            _currentMetrics.value = SyncMetricsData(
+                totalSyncs = counters.totalSyncs,
+                successfulSyncs = counters.successfulSyncs,
+                lastSyncTime = if (counters.lastSyncTime > 0) Date(counters.lastSyncTime) else null
+            )
+            updateMetrics()
+        } catch (e: Exception) {
+            Log.w(TAG, "Discarding unreadable sync metrics", e)
+            series.clear()
+            store.clear()
+        }
     }
-    
+
     // Placeholder methods for network info
     private fun getCurrentNetworkType(): String = "UNKNOWN"
-    private fun getCurrentConnectionQuality(): String = "UNKNOWN"
+
+    companion object {
+        private const val TAG = "SyncMetrics"
+        private const val METRICS_FILE_NAME = "sync_metrics.bin"
+        private const val FLUSH_INTERVAL_MS = 30_000L
+        private const val DAY_HOURS = 24
+        private const val WEEK_HOURS = 7 * 24
+    }
 }
 
 /**
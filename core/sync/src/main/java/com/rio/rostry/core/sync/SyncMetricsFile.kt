@@ -0,0 +1,197 @@
+package com.rio.rostry.core.sync
+
+import java.io.Closeable
+import java.io.File
+import java.io.RandomAccessFile
+import java.nio.MappedByteBuffer
+import java.nio.channels.FileChannel
+
+/**
+ * Append-only, memory-mapped store for sync samples
+ *
+ * The file is a fixed-size header followed by a circular region of fixed-width records.
+ * Appending a sample is a few stores into the mapping plus a sequence bump; the pages
+ * reach the kernel immediately, so they survive a process kill. [flush] forces them to
+ * disk and is meant to run on a timer rather than per sync.
+ *
+ * Layout (little bookkeeping, no variable-length data outside the header):
+ * - 0 magic, 4 version, 8 capacity, 16 write sequence
+ * - 24 total syncs, 32 successful syncs, 40 last sync time
+ * - 64 entity type names, then network type names; [NAME_SIZE] bytes each
+ * - [HEADER_SIZE] records of [RECORD_SIZE] bytes, slot = sequence % capacity
+ */
+class SyncMetricsFile(
+    file: File,
+    val capacity: Int = SyncTimeSeries.DEFAULT_CAPACITY,
+    private val maxKeys: Int = SyncTimeSeries.DEFAULT_MAX_KEYS
+) : Closeable {
+
+    private val raf = RandomAccessFile(file, "rw")
+    private val buffer: MappedByteBuffer
+    private val entityNames = ArrayList<String>()
+    private val networkNames = ArrayList<String>()
+    private val networkNamesOffset = NAMES_OFFSET + maxKeys * NAME_SIZE
+    private var dirty = false
+
+    init {
+        require(networkNamesOffset + maxKeys * NAME_SIZE <= HEADER_SIZE) { "Too many keys for header" }
+        val length = HEADER_SIZE.toLong() + capacity.toLong() * RECORD_SIZE
+        buffer = raf.channel.map(FileChannel.MapMode.READ_WRITE, 0, length)
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION || buffer.getInt(8) != capacity) {
+            reset()
+        } else {
+            readNames(NAMES_OFFSET, entityNames)
+            readNames(networkNamesOffset, networkNames)
+        }
+    }
+
+    @Synchronized
+    fun append(sample: SyncSample) {
+        val sequence = buffer.getLong(16)
+        val position = HEADER_SIZE + (sequence % capacity).toInt() * RECORD_SIZE
+        buffer.putLong(position, sample.timestamp)
+        buffer.putShort(position + 8, intern(sample.entityType, entityNames, NAMES_OFFSET).toShort())
+        buffer.putShort(position + 10, intern(sample.networkType, networkNames, networkNamesOffset).toShort())
+        buffer.putInt(position + 12, sample.totalItems)
+        buffer.putInt(position + 16, sample.successCount)
+        buffer.putInt(position + 20, sample.failureCount)
+        buffer.putInt(position + 24, sample.conflictCount)
+        buffer.putLong(position + 28, sample.durationMs)
+        buffer.putLong(position + 36, sample.bytesTransferred)
+        // Publish the record only once it is fully written
+        buffer.putLong(16, sequence + 1)
+        dirty = true
+    }
+
+    /**
+     * Visit stored samples, oldest first
+     */
+    @Synchronized
+    fun forEachSample(action: (SyncSample) -> Unit) {
+        val written = buffer.getLong(16)
+        for (sequence in maxOf(0L, written - capacity) until written) {
+            val position = HEADER_SIZE + (sequence % capacity).toInt() * RECORD_SIZE
+            val entityKey = buffer.getShort(position + 8).toInt()
+            val networkKey = buffer.getShort(position + 10).toInt()
+            if (entityKey !in entityNames.indices || networkKey !in networkNames.indices) continue
+            action(
+                SyncSample(
+                    timestamp = buffer.getLong(position),
+                    entityType = entityNames[entityKey],
+                    networkType = networkNames[networkKey],
+                    totalItems = buffer.getInt(position + 12),
+                    successCount = buffer.getInt(position + 16),
+                    failureCount = buffer.getInt(position + 20),
+                    conflictCount = buffer.getInt(position + 24),
+                    durationMs = buffer.getLong(position + 28),
+                    bytesTransferred = buffer.getLong(position + 36)
+                )
+            )
+        }
+    }
+
+    @get:Synchronized
+    @set:Synchronized
+    var counters: SyncCounters
+        get() = SyncCounters(
+            totalSyncs = buffer.getLong(24).toInt(),
+            successfulSyncs = buffer.getLong(32).toInt(),
+            lastSyncTime = buffer.getLong(40)
+        )
+        set(value) {
+            buffer.putLong(24, value.totalSyncs.toLong())
+            buffer.putLong(32, value.successfulSyncs.toLong())
+            buffer.putLong(40, value.lastSyncTime)
+            dirty = true
+        }
+
+    /**
+     * Force mapped pages to disk if anything changed since the last flush
+     */
+    @Synchronized
+    fun flush() {
+        if (!dirty) return
+        buffer.force()
+        dirty = false
+    }
+
+    @Synchronized
+    fun clear() {
+        reset()
+        buffer.force()
+        dirty = false
+    }
+
+    @Synchronized
+    override fun close() {
+        flush()
+        raf.close()
+    }
+
+    private fun reset() {
+        for (offset in 0 until HEADER_SIZE step 8) buffer.putLong(offset, 0L)
+        buffer.putInt(0, MAGIC)
+        buffer.putInt(4, VERSION)
+        buffer.putInt(8, capacity)
+        entityNames.clear()
+        networkNames.clear()
+        dirty = true
+    }
+
+    private fun intern(rawName: String, names: MutableList<String>, offset: Int): Int {
+        val name = storedName(rawName)
+        val index = names.indexOf(name)
+        if (index >= 0) return index
+        val other = names.indexOf(SyncTimeSeries.OTHER)
+        if (names.size >= maxKeys - 1) {
+            return if (other >= 0) other else writeName(SyncTimeSeries.OTHER, names, offset)
+        }
+        return writeName(name, names, offset)
+    }
+
+    private fun writeName(name: String, names: MutableList<String>, offset: Int): Int {
+        val bytes = name.toByteArray(Charsets.UTF_8)
+        val position = offset + names.size * NAME_SIZE
+        buffer.put(position, bytes.size.toByte())
+        bytes.forEachIndexed { i, b -> buffer.put(position + 1 + i, b) }
+        names.add(name)
+        return names.size - 1
+    }
+
+    /**
+     * Names longer than a slot are cut to fit, so lookups must use the stored form
+     */
+    private fun storedName(name: String): String {
+        var stored = name
+        while (stored.toByteArray(Charsets.UTF_8).size >= NAME_SIZE) stored = stored.dropLast(1)
+        return stored
+    }
+
+    private fun readNames(offset: Int, names: MutableList<String>) {
+        for (i in 0 until maxKeys) {
+            val position = offset + i * NAME_SIZE
+            val length = buffer.get(position).toInt()
+            if (length <= 0 || length >= NAME_SIZE) break
+            val bytes = ByteArray(length) { buffer.get(position + 1 + it) }
+            names.add(String(bytes, Charsets.UTF_8))
+        }
+    }
+
+    companion object {
+        const val HEADER_SIZE = 4096
+        const val RECORD_SIZE = 48
+        const val NAME_SIZE = 32
+        private const val NAMES_OFFSET = 64
+        private const val MAGIC = 0x52534D46 // "RSMF"
+        private const val VERSION = 1
+    }
+}
+
+/**
+ * Lifetime counters kept in the metrics file header
+ */
+data class SyncCounters(
+    val totalSyncs: Int = 0,
+    val successfulSyncs: Int = 0,
+    val lastSyncTime: Long = 0L
+)
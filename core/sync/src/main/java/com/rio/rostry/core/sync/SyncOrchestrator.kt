@@ -0,0 +1,168 @@
+package com.rio.rostry.core.sync
+
+import com.rio.rostry.core.database.entities.*
+import com.rio.rostry.core.network.NetworkStateManager
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.CoroutineStart
+import kotlinx.coroutines.async
+import kotlinx.coroutines.awaitAll
+import kotlinx.coroutines.supervisorScope
+import kotlinx.coroutines.sync.Mutex
+import kotlinx.coroutines.sync.Semaphore
+import kotlinx.coroutines.sync.withLock
+import kotlinx.coroutines.sync.withPermit
+import java.util.concurrent.atomic.AtomicInteger
+import javax.inject.Inject
+import javax.inject.Singleton
+
+/**
+ * Runs per-repository sync tasks concurrently with a parallelism cap tuned to the network
+ *
+ * On a good connection every task is pipelined through one shared, FIFO permit pool in
+ * priority order: HIGH tasks (payments, transfers) take permits first, and lower-priority
+ * uploads start as soon as a permit is free, overlapping with higher-priority work still in
+ * flight. On constrained connections each tier completes before the next one starts.
+ */
+@Singleton
+class SyncOrchestrator @Inject constructor(
+    private val networkStateManager: NetworkStateManager
+) {
+
+    @Volatile
+    var config: SyncOrchestratorConfig = SyncOrchestratorConfig()
+
+    /**
+     * Execute [tasks] and return one result per task
+     *
+     * @param onProgress called after each task with (completed, total, task)
+     */
+    suspend fun execute(
+        tasks: List<SyncTask>,
+        onProgress: (Int, Int, SyncTask) -> Unit = { _, _, _ -> }
+    ): List<SyncResult> {
+        if (tasks.isEmpty()) return emptyList()
+
+        val parallelism = config.parallelismFor(networkStateManager.getOptimalBatchSize())
+        val pipelined = parallelism > 1 && !networkStateManager.shouldDeferNonCritical()
+        return runSyncTasks(tasks, parallelism, pipelined, onProgress)
+    }
+}
+
+/**
+ * Scheduling core of [SyncOrchestrator], separate from the network probe
+ * Each task is started undispatched so it queues on the permit pool in the order it was
+ * launched; the pool is FIFO, so that order is the order tasks get to run.
+ *
+ * @param pipelined run every tier through the pool together instead of tier by tier
+ */
+internal suspend fun runSyncTasks(
+    tasks: List<SyncTask>,
+    parallelism: Int,
+    pipelined: Boolean,
+    onProgress: (Int, Int, SyncTask) -> Unit = { _, _, _ -> }
+): List<SyncResult> = supervisorScope {
+    val permits = Semaphore(parallelism.coerceAtLeast(1))
+    val aggregator = SyncResultAggregator()
+    val completed = AtomicInteger(0)
+
+    suspend fun runTier(tier: List<SyncTask>) {
+        tier.map { task ->
+            async(start = CoroutineStart.UNDISPATCHED) {
+                val result = permits.withPermit {
+                    try {
+                        task.block()
+                    } catch (e: CancellationException) {
+                        throw e
+                    } catch (e: Exception) {
+                        SyncResult.failure("${task.label}: ${e.message}")
+                    }
+                }
+                aggregator.add(result)
+                onProgress(completed.incrementAndGet(), tasks.size, task)
+            }
+        }.awaitAll()
+    }
+
+    val ordered = tasks.sortedWith(compareBy<SyncTask> { it.priority.ordinal }.thenBy { it.direction.ordinal })
+    if (pipelined) {
+        runTier(ordered)
+    } else {
+        ordered.groupBy { it.priority }.values.forEach { tier -> runTier(tier) }
+    }
+
+    aggregator.results()
+}
+
+/**
+ * Parallelism limits per network class, keyed off NetworkStateManager.getOptimalBatchSize
+ */
+data class SyncOrchestratorConfig(
+    val excellentParallelism: Int = 6, // batch size >= 100 (WiFi / excellent cellular)
+    val goodParallelism: Int = 4,      // batch size >= 50
+    val fairParallelism: Int = 2,      // batch size >= 25
+    val poorParallelism: Int = 1
+) {
+    fun parallelismFor(optimalBatchSize: Int): Int {
+        val parallelism = when {
+            optimalBatchSize >= 100 -> excellentParallelism
+            optimalBatchSize >= 50 -> goodParallelism
+            optimalBatchSize >= 25 -> fairParallelism
+            else -> poorParallelism
+        }
+        return parallelism.coerceAtLeast(1)
+    }
+}
+
+/**
+ * One unit of sync work, typically one repository at one priority
+ */
+data class SyncTask(
+    val label: String,
+    val priority: SyncPriority,
+    val direction: SyncDirection,
+    val block: suspend () -> SyncResult
+)
+
+/**
+ * Direction of a sync task; uploads sort ahead of downloads within a tier
+ */
+enum class SyncDirection {
+    UPLOAD,
+    DOWNLOAD
+}
+
+/**
+ * Thread-safe collector for results produced by concurrent sync tasks
+ */
+class SyncResultAggregator {
+    private val lock = Mutex()
+    private val results = mutableListOf<SyncResult>()
+
+    suspend fun add(result: SyncResult) {
+        lock.withLock { results.add(result) }
+    }
+
+    suspend fun results(): List<SyncResult> = lock.withLock { results.toList() }
+
+    /**
+     * Combine everything collected so far into a single result
+     */
+    suspend fun combined(entityType: String): SyncResult = results().combineResults(entityType)
+}
+
+/**
+ * Merge per-task results into one overall result
+ * Tasks run concurrently, so duration is the longest task rather than the sum.
+ */
+fun List<SyncResult>.combineResults(entityType: String): SyncResult {
+    return SyncResult(
+        entityType = entityType,
+        totalItems = sumOf { it.totalItems },
+        successCount = sumOf { it.successCount },
+        failureCount = sumOf { it.failureCount },
+        conflictCount = sumOf { it.conflictCount },
+        bytesTransferred = sumOf { it.bytesTransferred },
+        duration = maxOfOrNull { it.duration } ?: 0L,
+        errors = flatMap { it.errors }
+    )
+}
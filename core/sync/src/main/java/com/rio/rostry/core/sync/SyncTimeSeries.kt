@@ -0,0 +1,354 @@
+package com.rio.rostry.core.sync
+
+/**
+ * Fixed-memory time series of sync samples
+ *
+ * Raw samples live in a primitive-array ring buffer; every sample is also folded into
+ * per-hour buckets keyed by entity type and by network type. Recording is O(1) and every
+ * query walks at most [bucketHours] buckets, however many samples have been recorded.
+ * Buckets are recycled in place when the hour they hold falls out of the window.
+ *
+ * Writers and readers share one monitor; the critical sections are a handful of array
+ * stores or a bucket scan, never a walk over history.
+ */
+class SyncTimeSeries(
+    val capacity: Int = DEFAULT_CAPACITY,
+    val bucketHours: Int = DEFAULT_BUCKET_HOURS,
+    maxKeys: Int = DEFAULT_MAX_KEYS
+) {
+
+    // Raw sample ring
+    private val timestamps = LongArray(capacity)
+    private val entityKeys = IntArray(capacity)
+    private val networkKeys = IntArray(capacity)
+    private val totalItems = IntArray(capacity)
+    private val successCounts = IntArray(capacity)
+    private val failureCounts = IntArray(capacity)
+    private val conflictCounts = IntArray(capacity)
+    private val durations = LongArray(capacity)
+    private val bytes = LongArray(capacity)
+    private var written = 0L
+
+    // Hour buckets; bucketHour[slot] is the absolute hour the slot currently holds
+    private val bucketHour = LongArray(bucketHours) { -1L }
+    private val entityBuckets = BucketDimension(bucketHours, maxKeys)
+    private val networkBuckets = BucketDimension(bucketHours, maxKeys)
+
+    val entityTypes = KeyTable(maxKeys)
+    val networkTypes = KeyTable(maxKeys)
+
+    @get:Synchronized
+    var lastTimestamp: Long = 0L
+        private set
+
+    @get:Synchronized
+    val size: Int
+        get() = minOf(written, capacity.toLong()).toInt()
+
+    @Synchronized
+    fun record(
+        timestamp: Long,
+        entityType: String,
+        networkType: String,
+        items: Int,
+        succeeded: Int,
+        failed: Int,
+        conflicts: Int,
+        durationMs: Long,
+        bytesTransferred: Long
+    ) {
+        val entityKey = entityTypes.intern(entityType)
+        val networkKey = networkTypes.intern(networkType)
+
+        val index = (written % capacity).toInt()
+        timestamps[index] = timestamp
+        entityKeys[index] = entityKey
+        networkKeys[index] = networkKey
+        totalItems[index] = items
+        successCounts[index] = succeeded
+        failureCounts[index] = failed
+        conflictCounts[index] = conflicts
+        durations[index] = durationMs
+        bytes[index] = bytesTransferred
+        written++
+        lastTimestamp = maxOf(lastTimestamp, timestamp)
+
+        val hour = hourOf(timestamp)
+        val slot = slotOf(hour)
+        when {
+            bucketHour[slot] == hour -> Unit
+            bucketHour[slot] < hour -> {
+                entityBuckets.clear(slot)
+                networkBuckets.clear(slot)
+                bucketHour[slot] = hour
+            }
+            else -> return // older than the window this slot now covers
+        }
+        entityBuckets.add(slot, entityKey, items, succeeded, failed, conflicts, durationMs, bytesTransferred)
+        networkBuckets.add(slot, networkKey, items, succeeded, failed, conflicts, durationMs, bytesTransferred)
+    }
+
+    fun record(sample: SyncSample) = record(
+        timestamp = sample.timestamp,
+        entityType = sample.entityType,
+        networkType = sample.networkType,
+        items = sample.totalItems,
+        succeeded = sample.successCount,
+        failed = sample.failureCount,
+        conflicts = sample.conflictCount,
+        durationMs = sample.durationMs,
+        bytesTransferred = sample.bytesTransferred
+    )
+
+    /**
+     * Totals over the last [hours] hour buckets, current hour included
+     */
+    @Synchronized
+    fun totals(hours: Int, now: Long = System.currentTimeMillis()): SyncBucketTotals {
+        val accumulator = TotalsAccumulator()
+        forEachLiveSlot(hours, now) { _, slot -> entityBuckets.addAllKeysTo(slot, accumulator) }
+        return accumulator.toTotals()
+    }
+
+    @Synchronized
+    fun totalsByEntityType(hours: Int, now: Long = System.currentTimeMillis()): Map<String, SyncBucketTotals> {
+        return entityBuckets.totalsByKey(entityTypes, hours, now)
+    }
+
+    @Synchronized
+    fun totalsByNetworkType(hours: Int, now: Long = System.currentTimeMillis()): Map<String, SyncBucketTotals> {
+        return networkBuckets.totalsByKey(networkTypes, hours, now)
+    }
+
+    /**
+     * Per-hour totals keyed by absolute hour (epoch millis / 1h); empty hours are omitted
+     */
+    @Synchronized
+    fun hourly(hours: Int, now: Long = System.currentTimeMillis()): Map<Long, SyncBucketTotals> {
+        val result = LinkedHashMap<Long, SyncBucketTotals>()
+        forEachLiveSlot(hours, now) { hour, slot ->
+            val accumulator = TotalsAccumulator()
+            entityBuckets.addAllKeysTo(slot, accumulator)
+            if (accumulator.syncs > 0) result[hour] = accumulator.toTotals()
+        }
+        return result
+    }
+
+    /**
+     * Visit retained raw samples, oldest first
+     */
+    @Synchronized
+    fun forEachSample(action: (SyncSample) -> Unit) {
+        val start = maxOf(0L, written - capacity)
+        for (sequence in start until written) {
+            val i = (sequence % capacity).toInt()
+            action(
+                SyncSample(
+                    timestamp = timestamps[i],
+                    entityType = entityTypes.nameOf(entityKeys[i]),
+                    networkType = networkTypes.nameOf(networkKeys[i]),
+                    totalItems = totalItems[i],
+                    successCount = successCounts[i],
+                    failureCount = failureCounts[i],
+                    conflictCount = conflictCounts[i],
+                    durationMs = durations[i],
+                    bytesTransferred = bytes[i]
+                )
+            )
+        }
+    }
+
+    @Synchronized
+    fun clear() {
+        written = 0L
+        lastTimestamp = 0L
+        bucketHour.fill(-1L)
+        entityBuckets.clearAll()
+        networkBuckets.clearAll()
+        entityTypes.clear()
+        networkTypes.clear()
+    }
+
+    private inline fun forEachLiveSlot(hours: Int, now: Long, action: (hour: Long, slot: Int) -> Unit) {
+        val currentHour = hourOf(now)
+        val span = hours.coerceIn(1, bucketHours)
+        for (hour in (currentHour - span + 1)..currentHour) {
+            val slot = slotOf(hour)
+            if (bucketHour[slot] == hour) action(hour, slot)
+        }
+    }
+
+    private fun BucketDimension.totalsByKey(keys: KeyTable, hours: Int, now: Long): Map<String, SyncBucketTotals> {
+        val accumulators = arrayOfNulls<TotalsAccumulator>(keys.size)
+        forEachLiveSlot(hours, now) { _, slot ->
+            for (key in 0 until keys.size) {
+                if (syncsAt(slot, key) == 0) continue
+                val accumulator = accumulators[key] ?: TotalsAccumulator().also { accumulators[key] = it }
+                addKeyTo(slot, key, accumulator)
+            }
+        }
+        val result = LinkedHashMap<String, SyncBucketTotals>()
+        accumulators.forEachIndexed { key, accumulator ->
+            if (accumulator != null) result[keys.nameOf(key)] = accumulator.toTotals()
+        }
+        return result
+    }
+
+    private fun hourOf(timestamp: Long) = timestamp / HOUR_MS
+
+    private fun slotOf(hour: Long) = Math.floorMod(hour, bucketHours.toLong()).toInt()
+
+    /**
+     * Column-per-metric bucket storage, indexed by slot * maxKeys + key
+     */
+    private class BucketDimension(slots: Int, private val maxKeys: Int) {
+        private val syncs = IntArray(slots * maxKeys)
+        private val items = IntArray(slots * maxKeys)
+        private val succeeded = IntArray(slots * maxKeys)
+        private val failed = IntArray(slots * maxKeys)
+        private val conflicts = IntArray(slots * maxKeys)
+        private val durations = LongArray(slots * maxKeys)
+        private val bytes = LongArray(slots * maxKeys)
+
+        fun add(slot: Int, key: Int, itemCount: Int, successCount: Int, failureCount: Int, conflictCount: Int, durationMs: Long, byteCount: Long) {
+            val i = slot * maxKeys + key
+            syncs[i]++
+            items[i] += itemCount
+            succeeded[i] += successCount
+            failed[i] += failureCount
+            conflicts[i] += conflictCount
+            durations[i] += durationMs
+            bytes[i] += byteCount
+        }
+
+        fun syncsAt(slot: Int, key: Int) = syncs[slot * maxKeys + key]
+
+        fun addKeyTo(slot: Int, key: Int, accumulator: TotalsAccumulator) {
+            val i = slot * maxKeys + key
+            accumulator.syncs += syncs[i]
+            accumulator.items += items[i]
+            accumulator.succeeded += succeeded[i]
+            accumulator.failed += failed[i]
+            accumulator.conflicts += conflicts[i]
+            accumulator.durationMs += durations[i]
+            accumulator.bytes += bytes[i]
+        }
+
+        fun addAllKeysTo(slot: Int, accumulator: TotalsAccumulator) {
+            for (key in 0 until maxKeys) addKeyTo(slot, key, accumulator)
+        }
+
+        fun clear(slot: Int) {
+            val from = slot * maxKeys
+            val to = from + maxKeys
+            syncs.fill(0, from, to)
+            items.fill(0, from, to)
+            succeeded.fill(0, from, to)
+            failed.fill(0, from, to)
+            conflicts.fill(0, from, to)
+            durations.fill(0L, from, to)
+            bytes.fill(0L, from, to)
+        }
+
+        fun clearAll() {
+            syncs.fill(0)
+            items.fill(0)
+            succeeded.fill(0)
+            failed.fill(0)
+            conflicts.fill(0)
+            durations.fill(0L)
+            bytes.fill(0L)
+        }
+    }
+
+    private class TotalsAccumulator {
+        var syncs = 0
+        var items = 0
+        var succeeded = 0
+        var failed = 0
+        var conflicts = 0
+        var durationMs = 0L
+        var bytes = 0L
+
+        fun toTotals() = SyncBucketTotals(syncs, items, succeeded, failed, conflicts, durationMs, bytes)
+    }
+
+    /**
+     * Small string -> index dictionary; the last index collects overflow as [OTHER]
+     */
+    class KeyTable(private val maxKeys: Int) {
+        private val names = arrayOfNulls<String>(maxKeys)
+        private val indices = HashMap<String, Int>()
+
+        var size = 0
+            private set
+
+        fun intern(name: String): Int {
+            indices[name]?.let { return it }
+            if (size == maxKeys - 1) {
+                names[size] = OTHER
+                indices[OTHER] = size
+                size++
+            }
+            if (size >= maxKeys) return maxKeys - 1
+            names[size] = name
+            indices[name] = size
+            return size++
+        }
+
+        fun nameOf(index: Int): String = names[index] ?: OTHER
+
+        fun names(): List<String> = (0 until size).map { nameOf(it) }
+
+        fun clear() {
+            names.fill(null)
+            indices.clear()
+            size = 0
+        }
+    }
+
+    companion object {
+        const val HOUR_MS = 60 * 60 * 1000L
+        const val DEFAULT_CAPACITY = 4096
+        const val DEFAULT_BUCKET_HOURS = 7 * 24
+        const val DEFAULT_MAX_KEYS = 32
+        const val OTHER = "OTHER"
+    }
+}
+
+/**
+ * One recorded sync result
+ */
+data class SyncSample(
+    val timestamp: Long,
+    val entityType: String,
+    val networkType: String,
+    val totalItems: Int,
+    val successCount: Int,
+    val failureCount: Int,
+    val conflictCount: Int,
+    val durationMs: Long,
+    val bytesTransferred: Long
+)
+
+/**
+ * Sums over a range of hour buckets
+ */
+data class SyncBucketTotals(
+    val syncs: Int,
+    val totalItems: Int,
+    val successfulItems: Int,
+    val failedItems: Int,
+    val conflictedItems: Int,
+    val durationMs: Long,
+    val bytesTransferred: Long
+) {
+    val averageDuration: Long
+        get() = if (syncs > 0) durationMs / syncs else 0L
+
+    val successRate: Double
+        get() = if (totalItems > 0) successfulItems.toDouble() / totalItems else 1.0
+
+    val bytesPerSecond: Long
+        get() = if (durationMs > 0) bytesTransferred * 1000 / durationMs else 0L
+}
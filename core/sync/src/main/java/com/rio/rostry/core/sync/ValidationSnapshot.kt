@@ -0,0 +1,158 @@
+package com.rio.rostry.core.sync
+
+import com.rio.rostry.core.database.OfflineActionEntity
+import com.rio.rostry.core.database.RIOLocalDatabase
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * In-memory view of everything a batch of queued actions needs to be validated
+ * Loaded once per drain window with chunked `WHERE id IN (...)` queries, so validation
+ * costs one round trip per entity type instead of one per action.
+ *
+ * The snapshot is kept current as the window runs: creates, deletes and completions
+ * made by earlier actions are visible to later ones.
+ */
+class ValidationSnapshot private constructor(
+    private val existing: MutableSet<String>,
+    private val fowlsWithActiveTransfers: Set<String>,
+    private val soldListings: Set<String>,
+    private val dependencyStatuses: Map<String, String>,
+    private val dependencyNextAttempts: Map<String, Long>
+) {
+
+    private val completedInBatch: MutableSet<String> = ConcurrentHashMap.newKeySet()
+
+    fun entityExists(entityType: String, entityId: String): Boolean {
+        return key(entityType, entityId) in existing
+    }
+
+    fun canDeleteEntity(entityType: String, entityId: String): Boolean {
+        return when (entityType) {
+            "fowl" -> entityId !in fowlsWithActiveTransfers
+            "marketplace_listing" -> entityId !in soldListings
+            else -> true
+        }
+    }
+
+    /**
+     * True if the dependency completed earlier in this batch or before it
+     */
+    fun isDependencySatisfied(actionId: String): Boolean {
+        return actionId in completedInBatch ||
+            dependencyStatuses[actionId] == OfflineActionStatus.COMPLETED.name
+    }
+
+    /**
+     * Ids of dependencies outside the batch that are still waiting to run
+     */
+    fun pendingDependencies(): Set<String> {
+        return dependencyStatuses.filterValues {
+            it == OfflineActionStatus.QUEUED.name || it == OfflineActionStatus.PROCESSING.name
+        }.keys
+    }
+
+    /**
+     * Pending dependencies outside the batch that are backing off until after [now], with their next attempt
+     */
+    fun backedOffDependencies(now: Long): Map<String, Long> {
+        return pendingDependencies()
+            .mapNotNull { id -> dependencyNextAttempts[id]?.takeIf { it > now }?.let { id to it } }
+            .toMap()
+    }
+
+    /**
+     * Dependencies outside the batch that ended FAILED or CANCELLED, by status
+     * Their dependents can never run.
+     */
+    fun closedDependencies(): Map<String, OfflineActionStatus> {
+        return dependencyStatuses.mapNotNull { (id, status) ->
+            when (status) {
+                OfflineActionStatus.FAILED.name -> id to OfflineActionStatus.FAILED
+                OfflineActionStatus.CANCELLED.name -> id to OfflineActionStatus.CANCELLED
+                else -> null
+            }
+        }.toMap()
+    }
+
+    /**
+     * Fold a successful action into the snapshot
+     */
+    fun recordCompleted(action: OfflineActionEntity) {
+        completedInBatch.add(action.id)
+        when (action.actionType) {
+            OfflineActionType.CREATE.name -> existing.add(key(action.entityType, action.entityId))
+            OfflineActionType.DELETE.name -> existing.remove(key(action.entityType, action.entityId))
+        }
+    }
+
+    companion object {
+        // Stay under SQLite's default host parameter limit of 999
+        private const val CHUNK_SIZE = 900
+
+        private fun key(entityType: String, entityId: String) = "$entityType:$entityId"
+
+        /**
+         * Resolve every id referenced by [actions] with one chunked query per entity type
+         */
+        suspend fun load(database: RIOLocalDatabase, actions: List<OfflineActionEntity>): ValidationSnapshot {
+            val validationDao = database.offlineValidationDao()
+
+            val idsByType = actions
+                .filter { it.actionType == OfflineActionType.UPDATE.name || it.actionType == OfflineActionType.DELETE.name }
+                .groupBy({ it.entityType }, { it.entityId })
+                .mapValues { (_, ids) -> ids.distinct() }
+
+            val existing: MutableSet<String> = ConcurrentHashMap.newKeySet()
+            idsByType.forEach { (entityType, ids) ->
+                val lookup: (suspend (List<String>) -> List<String>)? = when (entityType) {
+                    "fowl" -> validationDao::getExistingFowlIds
+                    "user" -> validationDao::getExistingUserIds
+                    "marketplace_listing" -> validationDao::getExistingListingIds
+                    "message" -> validationDao::getExistingMessageIds
+                    "transfer" -> validationDao::getExistingTransferIds
+                    else -> null
+                }
+                lookup?.let { query ->
+                    ids.chunked(CHUNK_SIZE).forEach { chunk ->
+                        query(chunk).forEach { existing.add(key(entityType, it)) }
+                    }
+                }
+            }
+
+            val deletes = actions.filter { it.actionType == OfflineActionType.DELETE.name }
+            val fowlsWithActiveTransfers = deletes
+                .filter { it.entityType == "fowl" }
+                .map { it.entityId }
+                .distinct()
+                .chunked(CHUNK_SIZE)
+                .flatMapTo(HashSet()) { validationDao.getFowlIdsWithActiveTransfers(it) }
+            val soldListings = deletes
+                .filter { it.entityType == "marketplace_listing" }
+                .map { it.entityId }
+                .distinct()
+                .chunked(CHUNK_SIZE)
+                .flatMapTo(HashSet()) { validationDao.getSoldListingIds(it) }
+
+            val batchIds = actions.mapTo(HashSet()) { it.id }
+            val dependencyStatuses = HashMap<String, String>()
+            val dependencyNextAttempts = HashMap<String, Long>()
+            actions.flatMap { it.dependsOn }
+                .filterTo(HashSet()) { it !in batchIds }
+                .chunked(CHUNK_SIZE)
+                .forEach { chunk ->
+                    database.offlineActionDao().getStatuses(chunk).forEach {
+                        dependencyStatuses[it.id] = it.status
+                        dependencyNextAttempts[it.id] = it.nextAttempt.time
+                    }
+                }
+
+            return ValidationSnapshot(
+                existing,
+                fowlsWithActiveTransfers,
+                soldListings,
+                dependencyStatuses,
+                dependencyNextAttempts
+            )
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.rio.rostry.core.sync.di
+
+import com.rio.rostry.core.database.entities.HybridClock
+import com.rio.rostry.core.sync.HybridLogicalClock
+import dagger.Binds
+import dagger.Module
+import dagger.hilt.InstallIn
+import dagger.hilt.components.SingletonComponent
+
+/**
+ * Hilt module exposing the app-wide HybridLogicalClock as the HybridClock repositories stamp writes with
+ */
+@Module
+@InstallIn(SingletonComponent::class)
+abstract class ClockModule {
+
+    @Binds
+    abstract fun bindHybridClock(clock: HybridLogicalClock): HybridClock
+}
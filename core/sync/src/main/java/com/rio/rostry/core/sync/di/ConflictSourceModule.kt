@@ -0,0 +1,48 @@
+package com.rio.rostry.core.sync.di
+
+import com.google.firebase.firestore.FirebaseFirestore
+import com.rio.rostry.core.database.dao.FowlDaoV2
+import com.rio.rostry.core.database.dao.MarketplaceDao
+import com.rio.rostry.core.database.entities.FowlEntity
+import com.rio.rostry.core.database.entities.MarketplaceEntity
+import com.rio.rostry.core.sync.ConflictSource
+import com.rio.rostry.core.sync.DaoConflictSource
+import com.rio.rostry.core.sync.FirestoreRemoteCopies
+import dagger.Module
+import dagger.Provides
+import dagger.hilt.InstallIn
+import dagger.hilt.components.SingletonComponent
+import dagger.multibindings.IntoSet
+
+/**
+ * Hilt module binding the DAO-backed conflict sources into ConflictSourceRegistry
+ * Entity type keys match the ones SyncManager.resolveConflicts walks; server copies are
+ * read from the collections the repositories upload to.
+ */
+@Module
+@InstallIn(SingletonComponent::class)
+object ConflictSourceModule {
+
+    @Provides
+    @IntoSet
+    fun provideFowlConflictSource(fowlDao: FowlDaoV2, firestore: FirebaseFirestore): ConflictSource<*> {
+        return DaoConflictSource(
+            "fowls",
+            fowlDao,
+            FirestoreRemoteCopies(firestore, "fowls", FowlEntity::class.java)
+        )
+    }
+
+    @Provides
+    @IntoSet
+    fun provideMarketplaceConflictSource(
+        marketplaceDao: MarketplaceDao,
+        firestore: FirebaseFirestore
+    ): ConflictSource<*> {
+        return DaoConflictSource(
+            "marketplace",
+            marketplaceDao,
+            FirestoreRemoteCopies(firestore, "marketplace", MarketplaceEntity::class.java)
+        )
+    }
+}
@@ -0,0 +1,87 @@
+package com.rio.rostry.core.sync.workers
+
+import android.content.Context
+import androidx.hilt.work.HiltWorker
+import androidx.work.Constraints
+import androidx.work.CoroutineWorker
+import androidx.work.ExistingPeriodicWorkPolicy
+import androidx.work.PeriodicWorkRequestBuilder
+import androidx.work.WorkManager
+import androidx.work.WorkerParameters
+import androidx.work.workDataOf
+import com.rio.rostry.core.common.performance.LatencyRegistry
+import com.rio.rostry.core.database.RIOLocalDatabase
+import com.rio.rostry.core.database.optimization.IncrementalMaintenance
+import com.rio.rostry.core.database.optimization.MaintenanceBudget
+import dagger.assisted.Assisted
+import dagger.assisted.AssistedInject
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.withContext
+import java.util.concurrent.TimeUnit
+
+/**
+ * WorkManager worker for database maintenance
+ * Runs one time-boxed [IncrementalMaintenance] window while the device is idle and charging;
+ * whatever is left over is picked up by the next run.
+ */
+@HiltWorker
+class DatabaseMaintenanceWorker @AssistedInject constructor(
+    @Assisted appContext: Context,
+    @Assisted workerParams: WorkerParameters,
+    private val database: RIOLocalDatabase,
+    private val latencyRegistry: LatencyRegistry
+) : CoroutineWorker(appContext, workerParams) {
+
+    override suspend fun doWork(): Result = withContext(Dispatchers.IO) {
+        try {
+            val report = IncrementalMaintenance(latencyRegistry).run(
+                database = database.openHelper.writableDatabase,
+                budget = MaintenanceBudget(
+                    timeBudgetMs = TIME_BUDGET_MS,
+                    allowAutoVacuumConversion = true
+                ),
+                shouldStop = { isStopped }
+            )
+
+            Result.success(
+                workDataOf(
+                    "rows_deleted" to report.totalRowsDeleted,
+                    "pages_reclaimed" to report.pagesReclaimed,
+                    "bytes_reclaimed" to report.bytesReclaimed,
+                    "free_pages_remaining" to report.freePagesRemaining,
+                    "budget_exhausted" to report.budgetExhausted,
+                    "duration_ms" to report.durationMs
+                )
+            )
+        } catch (e: CancellationException) {
+            // Stopped by WorkManager; the next run resumes where this window left off
+            throw e
+        } catch (e: Exception) {
+            Result.retry()
+        }
+    }
+
+    companion object {
+        const val WORK_NAME = "database_maintenance"
+        private const val TIME_BUDGET_MS = 20_000L
+
+        fun schedule(workManager: WorkManager) {
+            val request = PeriodicWorkRequestBuilder<DatabaseMaintenanceWorker>(
+                1, TimeUnit.DAYS
+            ).setConstraints(
+                Constraints.Builder()
+                    .setRequiresDeviceIdle(true)
+                    .setRequiresCharging(true)
+                    .setRequiresBatteryNotLow(true)
+                    .build()
+            ).build()
+
+            workManager.enqueueUniquePeriodicWork(
+                WORK_NAME,
+                ExistingPeriodicWorkPolicy.KEEP,
+                request
+            )
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.rio.rostry.core.sync
+
+import com.rio.rostry.core.database.OfflineActionEntity
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.util.*
+
+class ActionCompactorTest {
+
+    private fun action(
+        id: String,
+        type: OfflineActionType,
+        queuedAt: Long,
+        data: String = "{}",
+        dependsOn: List<String> = emptyList()
+    ) = OfflineActionEntity(
+        id = id,
+        entityType = "fowl",
+        entityId = "fowl-1",
+        actionType = type.name,
+        actionData = data,
+        priority = 2,
+        dependsOn = dependsOn,
+        queuedAt = Date(queuedAt)
+    )
+
+    @Test
+    fun successiveUpdatesMergeIntoFirstWithLatestPayload() {
+        val plan = ActionCompactor.plan(listOf(
+            action("u1", OfflineActionType.UPDATE, 1, "{\"v\":1}"),
+            action("u2", OfflineActionType.UPDATE, 2, "{\"v\":2}"),
+            action("u3", OfflineActionType.UPDATE, 3, "{\"v\":3}")
+        ))
+
+        assertEquals(listOf("u1"), plan.rewritten.map { it.id })
+        assertEquals("{\"v\":3}", plan.rewritten.single().actionData)
+        assertEquals(mapOf("u2" to "u1", "u3" to "u1"), plan.mergedInto)
+        assertTrue(plan.cancelled.isEmpty())
+    }
+
+    @Test
+    fun updatesFoldIntoPendingCreate() {
+        val plan = ActionCompactor.plan(listOf(
+            action("c", OfflineActionType.CREATE, 1, "{\"v\":0}"),
+            action("u", OfflineActionType.UPDATE, 2, "{\"v\":1}", dependsOn = listOf("c", "other"))
+        ))
+
+        val survivor = plan.rewritten.single()
+        assertEquals("c", survivor.id)
+        assertEquals(OfflineActionType.CREATE.name, survivor.actionType)
+        assertEquals("{\"v\":1}", survivor.actionData)
+        assertEquals(listOf("other"), survivor.dependsOn)
+    }
+
+    @Test
+    fun createThenDeleteCancelsEverything() {
+        val plan = ActionCompactor.plan(listOf(
+            action("c", OfflineActionType.CREATE, 1),
+            action("u", OfflineActionType.UPDATE, 2),
+            action("d", OfflineActionType.DELETE, 3)
+        ))
+
+        assertEquals(setOf("c", "u", "d"), plan.cancelled)
+        assertTrue(plan.rewritten.isEmpty())
+    }
+
+    @Test
+    fun transfersBreakTheRun() {
+        val plan = ActionCompactor.plan(listOf(
+            action("u1", OfflineActionType.UPDATE, 1),
+            action("t", OfflineActionType.TRANSFER, 2),
+            action("u2", OfflineActionType.UPDATE, 3)
+        ))
+
+        assertTrue(plan.isEmpty)
+    }
+
+    @Test
+    fun dependentsArePointedAtSurvivors() {
+        val plan = ActionCompactor.plan(listOf(
+            action("u1", OfflineActionType.UPDATE, 1),
+            action("u2", OfflineActionType.UPDATE, 2)
+        ))
+        val listing = action("listing", OfflineActionType.CREATE, 5, dependsOn = listOf("u2", "cancelled-elsewhere"))
+            .copy(entityType = "marketplace_listing", entityId = "l-1")
+
+        assertEquals(
+            listOf("u1", "cancelled-elsewhere"),
+            ActionCompactor.remapDependencies(listing, plan)
+        )
+    }
+}
@@ -0,0 +1,79 @@
+package com.rio.rostry.core.sync
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+class ActionDagSchedulerTest {
+
+    private data class Node(val id: String, val priority: Int, val dependsOn: List<String> = emptyList())
+
+    private fun scheduler(vararg nodes: Node) = ActionDagScheduler(
+        items = nodes.toList(),
+        idOf = { it.id },
+        dependenciesOf = { it.dependsOn },
+        comparator = compareBy { it.priority }
+    )
+
+    @Test
+    fun independentActionsAreReadyInPriorityOrder() {
+        val dag = scheduler(Node("b", 2), Node("a", 1), Node("c", 3))
+
+        assertEquals("a", dag.poll()?.id)
+        assertEquals("b", dag.poll()?.id)
+        assertEquals("c", dag.poll()?.id)
+        assertNull(dag.poll())
+    }
+
+    @Test
+    fun dependentIsReleasedOnlyAfterPredecessorCompletes() {
+        val dag = scheduler(Node("child", 0, listOf("parent")), Node("parent", 5))
+
+        assertEquals("parent", dag.poll()?.id)
+        assertNull(dag.poll())
+
+        dag.complete("parent")
+        assertEquals("child", dag.poll()?.id)
+        assertEquals(1, dag.levels["child"])
+    }
+
+    @Test
+    fun cyclesAreDetectedWithoutBlockingOtherActions() {
+        val dag = scheduler(
+            Node("a", 1, listOf("b")),
+            Node("b", 1, listOf("a")),
+            Node("downstream", 1, listOf("a")),
+            Node("free", 1)
+        )
+
+        assertEquals(setOf("a", "b", "downstream"), dag.cyclic.map { it.id }.toSet())
+        assertEquals("free", dag.poll()?.id)
+        assertNull(dag.poll())
+    }
+
+    @Test
+    fun failureBlocksTransitiveDependents() {
+        val dag = scheduler(
+            Node("root", 1),
+            Node("mid", 1, listOf("root")),
+            Node("leaf", 1, listOf("mid")),
+            Node("other", 2)
+        )
+
+        assertEquals("root", dag.poll()?.id)
+        val blocked = dag.fail("root").map { it.id }
+
+        assertEquals(listOf("mid", "leaf"), blocked)
+        assertEquals("other", dag.poll()?.id)
+        assertNull(dag.poll())
+    }
+
+    @Test
+    fun dependenciesOutsideTheBatchAreIgnored() {
+        val dag = scheduler(Node("a", 1, listOf("already-synced")))
+
+        assertTrue(dag.cyclic.isEmpty())
+        assertEquals("a", dag.poll()?.id)
+    }
+}
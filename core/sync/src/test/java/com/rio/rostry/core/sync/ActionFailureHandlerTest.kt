@@ -0,0 +1,116 @@
+package com.rio.rostry.core.sync
+
+import com.rio.rostry.core.database.OfflineActionEntity
+import kotlinx.coroutines.runBlocking
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.util.*
+import kotlin.random.Random
+
+class ActionFailureHandlerTest {
+
+    private val dao = FakeOfflineActionDao()
+    private var now = 1_000_000L
+    private val handler = ActionFailureHandler(dao, RetryBackoff(random = Random(7))) { now }
+
+    private fun queue(id: String, vararg dependsOn: String, maxRetries: Int = 3) = runBlocking {
+        dao.insert(OfflineActionEntity(
+            id = id,
+            entityType = "fowl",
+            entityId = "fowl-$id",
+            actionType = OfflineActionType.UPDATE.name,
+            actionData = "{}",
+            priority = 2,
+            dependsOn = dependsOn.toList(),
+            maxRetries = maxRetries,
+            queuedAt = Date(now)
+        ))
+    }
+
+    private fun status(id: String) = dao.rows.getValue(id).status
+
+    @Test
+    fun dependencyExhaustingItsRetriesFailsEverythingBehindIt() = runBlocking {
+        queue("parent", maxRetries = 3)
+        queue("child", "parent")
+        queue("grandchild", "child")
+        queue("other")
+        queue("behind-other", "other")
+
+        // Two failed attempts only push the parent back
+        repeat(2) {
+            val parent = dao.rows.getValue("parent")
+            assertTrue(handler.onFailure(parent, "Server unavailable").isEmpty())
+            now = dao.rows.getValue("parent").nextAttempt.time
+        }
+        assertEquals(OfflineActionStatus.QUEUED.name, status("parent"))
+        assertEquals(2, dao.rows.getValue("parent").retryCount)
+        assertEquals(OfflineActionStatus.QUEUED.name, status("grandchild"))
+
+        val closed = handler.onFailure(dao.rows.getValue("parent"), "Server unavailable")
+
+        assertEquals(listOf("child", "grandchild"), closed.map { it.id })
+        assertEquals(OfflineActionStatus.FAILED.name, status("parent"))
+        assertEquals(OfflineActionStatus.FAILED.name, status("child"))
+        assertEquals(OfflineActionStatus.FAILED.name, status("grandchild"))
+        assertEquals("Dependency parent failed", dao.rows.getValue("grandchild").errorMessage)
+
+        // Unrelated work is untouched, and nothing is left waiting on the failed chain
+        assertEquals(OfflineActionStatus.QUEUED.name, status("other"))
+        assertEquals(OfflineActionStatus.QUEUED.name, status("behind-other"))
+        assertEquals(2, dao.getQueuedCount())
+    }
+
+    @Test
+    fun backingOffDependencyHoldsItsDependentsUntilItsNextAttempt() = runBlocking {
+        queue("parent")
+        queue("child", "parent")
+        queue("grandchild", "child")
+
+        handler.onFailure(dao.rows.getValue("parent"), "Timeout")
+
+        // The scheduler's next wake-up is the parent's retry, not the dependents that are due now
+        val retryAt = dao.rows.getValue("parent").nextAttempt.time
+        assertTrue(retryAt > now)
+        assertEquals(retryAt, dao.getEarliestNextAttempt())
+        assertEquals(0, dao.getDueCount(now))
+        assertEquals(retryAt, dao.rows.getValue("grandchild").nextAttempt.time)
+
+        // A dependent already waiting longer than that is not brought forward
+        val later = retryAt + 60_000
+        dao.updateRetryCount("child", 1, Date(later))
+        handler.deferDependents("parent", retryAt)
+        assertEquals(later, dao.rows.getValue("child").nextAttempt.time)
+    }
+
+    @Test
+    fun cancelledDependencyCancelsDependentsOnce() = runBlocking {
+        queue("root")
+        queue("left", "root")
+        queue("right", "root")
+        queue("join", "left", "right")
+        dao.updateStatus("root", OfflineActionStatus.CANCELLED.name, Date(now), "Cancelled by user")
+
+        val closed = handler.closeDependents("root", OfflineActionStatus.CANCELLED)
+
+        assertEquals(listOf("left", "right", "join"), closed.map { it.id })
+        listOf("left", "right", "join").forEach {
+            assertEquals(OfflineActionStatus.CANCELLED.name, status(it))
+            assertEquals("Dependency root cancelled", dao.rows.getValue(it).errorMessage)
+        }
+        assertEquals(0, dao.getQueuedCount())
+    }
+
+    @Test
+    fun retriedFailedChainCanRunAgain() = runBlocking {
+        queue("parent", maxRetries = 1)
+        queue("child", "parent")
+        handler.onFailure(dao.rows.getValue("parent"), "Rejected")
+
+        dao.resetFailedToQueued(now)
+
+        assertEquals(OfflineActionStatus.QUEUED.name, status("parent"))
+        assertEquals(OfflineActionStatus.QUEUED.name, status("child"))
+    }
+}
@@ -0,0 +1,73 @@
+package com.rio.rostry.core.sync
+
+import com.google.gson.Gson
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+class ActionPayloadCodecTest {
+
+    private val codec = ActionPayloadCodec()
+
+    private val transfer = TransferActionData(
+        id = "t-1",
+        fowlId = "f-1",
+        fromUserId = "seller",
+        toUserId = "buyer",
+        transferType = "SALE",
+        amount = 1500.0,
+        deliveryAddress = "Village road 4",
+        region = "Telangana",
+        district = "Warangal"
+    )
+
+    @Test
+    fun roundTripsAtCurrentSchemaVersion() {
+        val encoded = codec.encode(transfer)
+
+        assertTrue(encoded.startsWith("${ActionPayloadCodec.SCHEMA_VERSION}:"))
+        assertEquals(transfer, codec.decode<TransferActionData>(encoded))
+    }
+
+    @Test
+    fun readsLegacyBareJson() {
+        val legacy = Gson().toJson(transfer)
+
+        assertEquals(transfer, codec.decode<TransferActionData>(legacy))
+    }
+
+    @Test(expected = IllegalArgumentException::class)
+    fun rejectsNewerSchemaVersions() {
+        codec.decode<TransferActionData>("99:{}")
+    }
+
+    /**
+     * Microbenchmark: per-call Gson (previous parseActionData) vs the shared codec
+     */
+    @Test
+    fun sharedCodecBenchmark() {
+        val legacy = Gson().toJson(transfer)
+        val encoded = codec.encode(transfer)
+        val iterations = 20_000
+
+        // Warm up both paths
+        repeat(2_000) {
+            Gson().fromJson(legacy, TransferActionData::class.java)
+            codec.decode<TransferActionData>(encoded)
+        }
+
+        val perCallStart = System.nanoTime()
+        repeat(iterations) { Gson().fromJson(legacy, TransferActionData::class.java) }
+        val perCallNanos = System.nanoTime() - perCallStart
+
+        val sharedStart = System.nanoTime()
+        repeat(iterations) { codec.decode<TransferActionData>(encoded) }
+        val sharedNanos = System.nanoTime() - sharedStart
+
+        assertTrue(
+            "shared codec ${sharedNanos / 1_000_000}ms vs per-call Gson ${perCallNanos / 1_000_000}ms",
+            sharedNanos < perCallNanos
+        )
+        assertEquals(transfer, codec.decode<TransferActionData>(encoded))
+    }
+}
@@ -0,0 +1,143 @@
+package com.rio.rostry.core.sync
+
+import com.rio.rostry.core.database.entities.ConflictPagingDao
+import kotlinx.coroutines.runBlocking
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertSame
+import org.junit.Test
+
+class BatchConflictResolverTest {
+
+    private class FakeSource(rows: List<Bird>) : ConflictSource<Bird> {
+        override val entityType = "fowls"
+        val conflicted = rows.sortedBy { it.id }.toMutableList()
+        val appliedPages = mutableListOf<List<String>>()
+
+        override suspend fun conflictCount() = conflicted.size
+
+        override suspend fun conflictedPage(afterId: String?, limit: Int): List<Bird> =
+            conflicted.filter { afterId == null || it.id > afterId }.take(limit)
+
+        override suspend fun apply(outcomes: List<ResolvedConflict<Bird>>) {
+            appliedPages.add(outcomes.map { it.local.id })
+        }
+    }
+
+    /**
+     * [ConflictPagingDao] over a map, following the SQL of each query
+     */
+    private class FakeConflictDao(rows: List<Bird>) : ConflictPagingDao<Bird> {
+        val rows = rows.associateByTo(sortedMapOf()) { it.id }
+        val conflicted = rows.mapTo(mutableSetOf()) { it.id }
+        val pendingDownload = mutableSetOf<String>()
+        val synced = mutableSetOf<String>()
+
+        override suspend fun getConflictCount() = conflicted.size
+
+        override suspend fun getConflictedAfter(afterId: String, limit: Int) =
+            rows.values.filter { it.id in conflicted && it.id > afterId }.take(limit)
+
+        override suspend fun update(entity: Bird): Int {
+            rows[entity.id] = entity
+            return 1
+        }
+
+        override suspend fun clearConflicts(ids: List<String>) = ids.count { conflicted.remove(it) }
+
+        override suspend fun markPendingDownload(ids: List<String>) = ids.count { pendingDownload.add(it) }
+
+        override suspend fun markSynced(ids: List<String>) = ids.count { synced.add(it) }
+    }
+
+    private fun resolver(transactions: MutableList<Int>) = BatchConflictResolver(
+        strategyOf = { entity ->
+            if ((entity as Bird).ownerId == "server") ConflictResolutionStrategy.SERVER_AUTHORITATIVE
+            else ConflictResolutionStrategy.LAST_WRITER_WINS
+        },
+        resolve = { candidate ->
+            val bird = candidate.local as Bird
+            if (bird.id.endsWith("7")) error("unresolvable ${bird.id}")
+            ConflictResolution(
+                resolved = true,
+                strategy = ConflictResolutionStrategy.LAST_WRITER_WINS,
+                resolvedEntity = if (bird.ownerId == "server") null else bird.copy(name = "merged"),
+                resolution = "ok"
+            )
+        },
+        runInTransaction = { block -> transactions.add(1); block() },
+        config = BatchConflictConfig(pageSize = 10, parallelism = 4, minSliceSize = 2)
+    )
+
+    private fun birds(count: Int) = (0 until count).map {
+        Bird("b%02d".format(it), ownerId = if (it % 3 == 0) "server" else "u1")
+    }
+
+    @Test
+    fun pagesAreResolvedInOrderWithOneTransactionEach() = runBlocking {
+        val rows = birds(25)
+        val source = FakeSource(rows)
+        val transactions = mutableListOf<Int>()
+        val progress = mutableListOf<Pair<Int, Int>>()
+
+        val result = resolver(transactions).resolveAll(source) { done, total -> progress.add(done to total) }
+
+        assertEquals(3, transactions.size)
+        assertEquals(rows.map { it.id }, source.appliedPages.flatten())
+        assertEquals(listOf(10 to 25, 20 to 25, 25 to 25), progress)
+        assertEquals(25, result.totalItems)
+        assertEquals(23, result.successCount)
+        assertEquals(listOf("b07", "b17"), result.errors.map { it.entityId })
+    }
+
+    @Test
+    fun emptySourceCommitsNothing() = runBlocking {
+        val transactions = mutableListOf<Int>()
+        val result = resolver(transactions).resolveAll(FakeSource(emptyList()))
+
+        assertEquals(0, transactions.size)
+        assertEquals(0, result.totalItems)
+    }
+
+    @Test
+    fun registeredDaoSourceWritesOutcomesBack() = runBlocking {
+        val dao = FakeConflictDao(birds(25))
+        val source = DaoConflictSource("fowls", dao)
+        val registry = ConflictSourceRegistry(setOf(source))
+
+        @Suppress("UNCHECKED_CAST")
+        val registered = registry.sourceFor("fowls") as ConflictSource<Bird>
+        assertSame(source, registered)
+        assertEquals(null, registry.sourceFor("marketplace"))
+
+        val result = resolver(mutableListOf()).resolveAll(registered)
+
+        assertEquals(23, result.successCount)
+        val serverRows = setOf("b00", "b03", "b06", "b09", "b12", "b15", "b18", "b21", "b24")
+        // Without a server copy to write, server-authoritative rows keep their conflict for the next pull
+        assertEquals(serverRows + setOf("b07", "b17"), dao.conflicted)
+        assertEquals(serverRows, dao.pendingDownload)
+        assertEquals("merged", dao.rows.getValue("b01").name)
+        assertEquals("", dao.rows.getValue("b07").name)
+        assertEquals("", dao.rows.getValue("b03").name)
+    }
+
+    @Test
+    fun serverCopyReplacesTheLocalRowWhenTheServerWins() = runBlocking {
+        val dao = FakeConflictDao(birds(25))
+        val fetched = mutableListOf<List<String>>()
+        val source = DaoConflictSource("fowls", dao, RemoteCopySource { ids ->
+            fetched.add(ids)
+            // b24 is gone from the server
+            ids.filter { it != "b24" }.associateWith { Bird(it, name = "server", ownerId = "server") }
+        })
+
+        resolver(mutableListOf()).resolveAll(source)
+
+        assertEquals(listOf(10, 10, 5), fetched.map { it.size })
+        assertEquals("server", dao.rows.getValue("b03").name)
+        assertEquals(setOf("b00", "b03", "b06", "b09", "b12", "b15", "b18", "b21"), dao.synced)
+        assertEquals(setOf("b07", "b17", "b24"), dao.conflicted)
+        assertEquals(setOf("b24"), dao.pendingDownload)
+        assertEquals("merged", dao.rows.getValue("b01").name)
+    }
+}
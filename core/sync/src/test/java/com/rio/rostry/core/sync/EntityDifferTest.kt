@@ -0,0 +1,73 @@
+package com.rio.rostry.core.sync
+
+import com.rio.rostry.core.database.entities.SyncMetadata
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+class EntityDifferTest {
+
+    private val differ = entityDiffer<Bird> {
+        field("name", { it.name }) { e, from -> e.copy(name = from.name) }
+        double("weight", { it.weight }) { e, from -> e.copy(weight = from.weight) }
+        int("eggs", { it.eggs }) { e, from -> e.copy(eggs = from.eggs) }
+        field("tags", { it.tags }) { e, from -> e.copy(tags = from.tags) }
+        field("owner_id", { it.ownerId }) { e, from -> e.copy(ownerId = from.ownerId) }
+    }
+
+    private val base = Bird("b1", "Raja", 2.5, 10, listOf("aseel"), "u1")
+
+    @Test
+    fun diffReportsChangedColumnsOnly() {
+        val changed = differ.diff(base, base.copy(eggs = 12, tags = listOf("aseel", "show")))
+
+        assertEquals(listOf("eggs", "tags"), differ.names(changed))
+        assertTrue(differ.diff(base, base.copy(syncMetadata = SyncMetadata(retryCount = 3))).isEmpty)
+    }
+
+    @Test
+    fun nonOverlappingEditsMergeCleanly() {
+        val local = base.copy(name = "Raja II", weight = 2.7)
+        val remote = base.copy(eggs = 14)
+
+        val outcome = differ.merge(base, local, remote)
+
+        assertTrue(outcome.isClean)
+        assertEquals(base.copy(name = "Raja II", weight = 2.7, eggs = 14), outcome.merged)
+        assertEquals(listOf("eggs"), differ.names(outcome.takenFromRemote))
+    }
+
+    @Test
+    fun identicalEditsOnBothSidesAreNotConflicts() {
+        val outcome = differ.merge(base, base.copy(eggs = 11), base.copy(eggs = 11, name = "R"))
+
+        assertTrue(outcome.isClean)
+        assertEquals(base.copy(eggs = 11, name = "R"), outcome.merged)
+    }
+
+    @Test
+    fun overlappingEditsConflictUnlessServerOwned() {
+        val local = base.copy(name = "Local", ownerId = "u2")
+        val remote = base.copy(name = "Remote", ownerId = "u3")
+
+        val outcome = differ.merge(base, local, remote, remoteWins = differ.maskOf("owner_id"))
+
+        assertFalse(outcome.isClean)
+        assertEquals(listOf("name"), differ.names(outcome.conflicts))
+        assertEquals("u3", outcome.merged.ownerId)
+        assertEquals("Local", outcome.merged.name)
+    }
+
+    @Test
+    fun masksSpanMoreThanSixtyFourFields() {
+        val mask = FieldMask.empty(130)
+        val other = FieldMask.empty(130)
+        mask.set(3); mask.set(64); mask.set(129)
+        other.set(64)
+
+        assertEquals(3, mask.cardinality())
+        assertTrue(mask.contains(129))
+        assertEquals("[3,129]", mask.andNot(other).toString())
+    }
+}
@@ -0,0 +1,134 @@
+package com.rio.rostry.core.sync
+
+import com.rio.rostry.core.database.OfflineActionDao
+import com.rio.rostry.core.database.OfflineActionEntity
+import com.rio.rostry.core.database.OfflineActionKey
+import com.rio.rostry.core.database.OfflineActionStatusTuple
+import java.util.*
+
+/**
+ * [OfflineActionDao] over a map, following the SQL of each query
+ */
+class FakeOfflineActionDao : OfflineActionDao {
+
+    val rows = LinkedHashMap<String, OfflineActionEntity>()
+
+    private val queued get() = rows.values.filter { it.status == OfflineActionStatus.QUEUED.name }
+
+    private fun update(id: String, change: (OfflineActionEntity) -> OfflineActionEntity) {
+        rows[id]?.let { rows[id] = change(it) }
+    }
+
+    override suspend fun getById(id: String) = rows[id]
+
+    override suspend fun getAllQueued() = queued.sortedWith(compareBy({ it.priority }, { it.queuedAt }))
+
+    override suspend fun getEarliestNextAttempt() = queued.minOfOrNull { it.nextAttempt.time }
+
+    override suspend fun getDueQueuedAfter(
+        now: Long,
+        afterPriority: Int,
+        afterQueuedAt: Long,
+        afterId: String,
+        limit: Int
+    ) = queued
+        .filter { it.nextAttempt.time <= now }
+        .filter {
+            it.priority > afterPriority ||
+                (it.priority == afterPriority && it.queuedAt.time > afterQueuedAt) ||
+                (it.priority == afterPriority && it.queuedAt.time == afterQueuedAt && it.id > afterId)
+        }
+        .sortedWith(compareBy({ it.priority }, { it.queuedAt }, { it.id }))
+        .take(limit)
+
+    override suspend fun getDueCount(now: Long) = queued.count { it.nextAttempt.time <= now }
+
+    override suspend fun getStatuses(ids: List<String>) =
+        ids.mapNotNull { rows[it] }.map { OfflineActionStatusTuple(it.id, it.status, it.nextAttempt) }
+
+    override suspend fun getQueuedForEntity(entityType: String, entityId: String) = queued
+        .filter { it.entityType == entityType && it.entityId == entityId }
+        .sortedWith(compareBy({ it.queuedAt }, { it.id }))
+
+    override suspend fun getCompactableKeys() = queued
+        .groupBy { OfflineActionKey(it.entityType, it.entityId) }
+        .filterValues { it.size > 1 }
+        .keys.toList()
+
+    override suspend fun getQueuedWithDependencies() = queued.filter { it.dependsOn.isNotEmpty() }
+
+    override suspend fun markCancelled(ids: List<String>, processedAt: Date, reason: String) {
+        ids.forEach { id ->
+            update(id) { it.copy(status = OfflineActionStatus.CANCELLED.name, processedAt = processedAt, errorMessage = reason) }
+        }
+    }
+
+    override suspend fun closeQueued(ids: List<String>, status: String, processedAt: Date, reason: String) {
+        ids.filter { rows[it]?.status == OfflineActionStatus.QUEUED.name }.forEach { id ->
+            update(id) { it.copy(status = status, processedAt = processedAt, errorMessage = reason) }
+        }
+    }
+
+    override suspend fun deferQueued(ids: List<String>, nextAttempt: Long) {
+        ids.forEach { id ->
+            update(id) {
+                if (it.status == OfflineActionStatus.QUEUED.name && it.nextAttempt.time < nextAttempt) {
+                    it.copy(nextAttempt = Date(nextAttempt))
+                } else {
+                    it
+                }
+            }
+        }
+    }
+
+    override suspend fun insert(action: OfflineActionEntity) {
+        rows[action.id] = action
+    }
+
+    override suspend fun update(action: OfflineActionEntity) {
+        if (action.id in rows) rows[action.id] = action
+    }
+
+    override suspend fun updateStatus(id: String, status: String, processedAt: Date, errorMessage: String?) {
+        update(id) { it.copy(status = status, processedAt = processedAt, errorMessage = errorMessage) }
+    }
+
+    override suspend fun updateRetryCount(id: String, retryCount: Int, nextAttempt: Date) {
+        update(id) { it.copy(retryCount = retryCount, nextAttempt = nextAttempt) }
+    }
+
+    override suspend fun resetFailedToQueued(now: Long) {
+        rows.values.filter { it.status == OfflineActionStatus.FAILED.name }.forEach { action ->
+            update(action.id) {
+                it.copy(status = OfflineActionStatus.QUEUED.name, retryCount = 0, nextAttempt = Date(now), errorMessage = null)
+            }
+        }
+    }
+
+    override suspend fun getQueuedCount() = queued.size
+
+    override suspend fun getProcessingCount() = rows.values.count { it.status == OfflineActionStatus.PROCESSING.name }
+
+    override suspend fun getFailedCount() = rows.values.count { it.status == OfflineActionStatus.FAILED.name }
+
+    override suspend fun getCompletedCount() = rows.values.count { it.status == OfflineActionStatus.COMPLETED.name }
+
+    override suspend fun getCancelledCount() = rows.values.count { it.status == OfflineActionStatus.CANCELLED.name }
+
+    override suspend fun getOldestQueuedAction() = queued.minByOrNull { it.queuedAt }
+
+    override suspend fun getAverageProcessingTime(): Long? = rows.values
+        .filter { it.status == OfflineActionStatus.COMPLETED.name && it.processedAt != null }
+        .map { it.processedAt!!.time - it.queuedAt.time }
+        .takeIf { it.isNotEmpty() }
+        ?.average()?.toLong()
+
+    override suspend fun deleteCompletedOlderThan(olderThan: Date): Int {
+        val doomed = rows.values.filter {
+            (it.status == OfflineActionStatus.COMPLETED.name || it.status == OfflineActionStatus.CANCELLED.name) &&
+                it.processedAt?.before(olderThan) == true
+        }
+        doomed.forEach { rows.remove(it.id) }
+        return doomed.size
+    }
+}
@@ -0,0 +1,123 @@
+package com.rio.rostry.core.sync
+
+import com.rio.rostry.core.database.entities.HybridTimestamp
+import com.rio.rostry.core.database.entities.SyncMetadata
+import com.rio.rostry.core.database.entities.SyncStatus
+import com.rio.rostry.core.database.entities.hybridTimestamp
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.util.*
+
+class HybridLogicalClockTest {
+
+    private var wall = 1_700_000_000_000L
+    private val clock = HybridLogicalClock { wall }
+
+    @Test
+    fun timestampsIncreaseWhenWallClockStallsOrGoesBack() {
+        val first = clock.now()
+        val second = clock.now()
+        wall -= 60_000
+        val third = clock.now()
+
+        assertTrue(second > first)
+        assertTrue(third > second)
+        assertEquals(2, HybridTimestamp.counter(third))
+    }
+
+    @Test
+    fun writesAfterAFastDeviceAreOrderedAfterIt() {
+        // The other device is an hour ahead; our next write must still win
+        val remote = HybridTimestamp.encode(wall + 3_600_000, 7)
+        val stamped = clock.stampWrite(remote)
+
+        assertTrue(stamped > remote)
+        assertEquals(wall + 3_600_000, HybridTimestamp.physicalMillis(stamped))
+        assertEquals(8, HybridTimestamp.counter(stamped))
+        assertTrue(clock.now() > stamped)
+    }
+
+    @Test
+    fun encodingRoundTrips() {
+        val stamp = HybridTimestamp.encode(wall, 513)
+
+        assertEquals(stamp, HybridTimestamp.parse(HybridTimestamp.format(stamp)))
+        assertEquals("$wall.513", HybridTimestamp.format(stamp))
+        assertEquals(
+            HybridTimestamp.encode(wall, 0),
+            SyncMetadata(updatedAt = Date(wall)).hybridTimestamp
+        )
+    }
+
+    @Test
+    fun skewedClocksDoNotLoseTheLaterWrite() {
+        val resolver = SyncConflictResolver()
+        // Server copy carries a wall time from a clock running ahead, but our write saw it
+        val remoteStamp = HybridTimestamp.encode(wall + 30_000, 0)
+        val local = TestEntity("1", "local", SyncMetadata(
+            syncStatus = SyncStatus.PENDING_UPLOAD,
+            updatedAt = Date(wall),
+            hlc = clock.stampWrite(remoteStamp)
+        ))
+        val remote = TestEntity("1", "remote", SyncMetadata(updatedAt = Date(wall + 30_000), hlc = remoteStamp))
+
+        val result = resolver.resolve(local, remote)
+        require(result is Resolution.UseLocal)
+    }
+
+    @Test
+    fun stampsRoundTripThroughTheServerAndOrderWritesAcrossSkewedDevices() {
+        // Device A runs an hour fast; device B has the right time
+        val deviceA = HybridLogicalClock { wall + 3_600_000 }
+        val deviceB = HybridLogicalClock { wall }
+        val server = HashMap<String, Map<String, Any?>>()
+
+        fun upload(entity: TestEntity) {
+            server[entity.id] = mapOf(
+                "value" to entity.value,
+                HybridTimestamp.FIELD to HybridTimestamp.toField(entity.syncMetadata.hlc)
+            )
+        }
+
+        // What a DeltaSource does with each pulled document
+        fun download(clock: HybridLogicalClock, id: String): TestEntity {
+            val document = server.getValue(id)
+            val stamp = clock.receiveRemote(document[HybridTimestamp.FIELD])
+            return TestEntity(id, document["value"] as String, SyncMetadata(syncStatus = SyncStatus.SYNCED, hlc = stamp))
+        }
+
+        val first = TestEntity("1", "from A", SyncMetadata(
+            syncStatus = SyncStatus.PENDING_UPLOAD,
+            updatedAt = Date(wall + 3_600_000),
+            hlc = deviceA.stampWrite()
+        ))
+        upload(first)
+
+        // A's own upload comes back with the same stamp, which is how echoes are recognised
+        assertEquals(first.syncMetadata.hlc, download(deviceA, "1").syncMetadata.hlc)
+
+        // B edits after pulling; its wall clock is an hour behind A's, its stamp is not
+        val seenByB = download(deviceB, "1")
+        val edit = seenByB.copy(value = "from B", syncMetadata = SyncMetadata(
+            syncStatus = SyncStatus.PENDING_UPLOAD,
+            updatedAt = Date(wall),
+            hlc = deviceB.stampWrite(seenByB.syncMetadata.hlc)
+        ))
+        assertTrue(edit.syncMetadata.updatedAt < first.syncMetadata.updatedAt)
+        assertTrue(edit.syncMetadata.hlc > first.syncMetadata.hlc)
+        upload(edit)
+
+        // A pulls B's edit: it replaces A's copy, and A's next write is ordered after it
+        val pulledByA = download(deviceA, "1")
+        val syncedOnA = first.copy(syncMetadata = first.syncMetadata.copy(syncStatus = SyncStatus.SYNCED))
+        val result = SyncConflictResolver().resolve(syncedOnA, pulledByA)
+        require(result is Resolution.UseRemote)
+        assertEquals("from B", result.entity.value)
+        assertTrue(deviceA.now() > edit.syncMetadata.hlc)
+
+        // Documents written before stamps were uploaded leave the clock alone
+        assertEquals(HybridTimestamp.NONE, deviceB.receiveRemote(null))
+        assertEquals(HybridTimestamp.NONE, HybridTimestamp.fromField("not a stamp"))
+    }
+}
@@ -0,0 +1,104 @@
+package com.rio.rostry.core.sync
+
+import com.rio.rostry.core.database.OfflineActionEntity
+import com.rio.rostry.core.database.entities.SyncPriority
+import kotlinx.coroutines.runBlocking
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.util.*
+
+class ImplicitDependenciesTest {
+
+    private val dao = FakeOfflineActionDao()
+    private val implicit = ImplicitDependencies(dao, ActionPayloadCodec())
+    private var clock = 1_000L
+
+    /**
+     * Queue an action the way OfflineActionQueue.queueAction does
+     */
+    private fun queue(
+        id: String,
+        entityType: String,
+        entityId: String,
+        type: OfflineActionType,
+        data: String = "{}",
+        priority: SyncPriority = SyncPriority.NORMAL
+    ): OfflineActionEntity = runBlocking {
+        val action = OfflineAction(
+            id = id,
+            entityType = entityType,
+            entityId = entityId,
+            actionType = type,
+            actionData = data,
+            priority = priority
+        )
+        OfflineActionEntity(
+            id = id,
+            entityType = entityType,
+            entityId = entityId,
+            actionType = type.name,
+            actionData = data,
+            priority = priority.ordinal,
+            dependsOn = implicit.of(action),
+            queuedAt = Date(clock++)
+        ).also { dao.insert(it) }
+    }
+
+    private fun scheduler() = ActionDagScheduler(
+        items = dao.rows.values.toList(),
+        idOf = { it.id },
+        dependenciesOf = { it.dependsOn },
+        comparator = compareBy<OfflineActionEntity> { it.priority }.thenBy { it.queuedAt }.thenBy { it.id }
+    )
+
+    @Test
+    fun actionsOnOneEntityKeepTheirEnqueueOrder() {
+        queue("rename", "fowl", "fowl-1", OfflineActionType.UPDATE)
+        // Queued later at a higher priority, which alone would let it run first
+        queue("sold", "fowl", "fowl-1", OfflineActionType.UPDATE, priority = SyncPriority.HIGH)
+
+        val dag = scheduler()
+
+        assertEquals("rename", dag.poll()?.id)
+        assertNull(dag.poll())
+        dag.complete("rename")
+        assertEquals("sold", dag.poll()?.id)
+    }
+
+    @Test
+    fun otherEntitiesStayIndependent() {
+        queue("a", "fowl", "fowl-1", OfflineActionType.UPDATE)
+        queue("b", "fowl", "fowl-2", OfflineActionType.UPDATE)
+
+        assertTrue(dao.rows.values.all { it.dependsOn.isEmpty() })
+    }
+
+    @Test
+    fun referencingActionWaitsForTheCreateOfWhatItReferences() {
+        queue("create-fowl", "fowl", "fowl-1", OfflineActionType.CREATE, """{"id":"fowl-1","ownerId":"u1"}""")
+        val listing = queue(
+            "list", "marketplace_listing", "listing-1", OfflineActionType.CREATE,
+            """{"id":"listing-1","sellerId":"u1","fowlId":"fowl-1"}"""
+        )
+        val transfer = queue(
+            "transfer", "transfer", "transfer-1", OfflineActionType.TRANSFER,
+            """{"id":"transfer-1","fowlId":"fowl-1","fromUserId":"u1","toUserId":"u2"}"""
+        )
+        val payment = queue("pay", "transfer", "transfer-1", OfflineActionType.PAYMENT, """{"transferId":"transfer-1"}""")
+
+        assertEquals(listOf("create-fowl"), listing.dependsOn)
+        assertEquals(listOf("create-fowl"), transfer.dependsOn)
+        // Same entity as the transfer, and the transfer is what creates it
+        assertEquals(listOf("transfer"), payment.dependsOn)
+    }
+
+    @Test
+    fun undecodablePayloadOnlyGetsSameEntityEdges() {
+        queue("create-fowl", "fowl", "fowl-1", OfflineActionType.CREATE)
+        val listing = queue("list", "marketplace_listing", "listing-1", OfflineActionType.CREATE, "not json")
+
+        assertTrue(listing.dependsOn.isEmpty())
+    }
+}
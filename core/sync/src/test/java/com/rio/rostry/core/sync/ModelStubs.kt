@@ -14,3 +14,13 @@ data class TestEntity(
         updatedAt = Date()
     )
 ) : SyncableEntity
+
+data class Bird(
+    override val id: String,
+    val name: String = "",
+    val weight: Double = 0.0,
+    val eggs: Int = 0,
+    val tags: List<String> = emptyList(),
+    val ownerId: String = "u1",
+    override val syncMetadata: SyncMetadata = SyncMetadata()
+) : SyncableEntity
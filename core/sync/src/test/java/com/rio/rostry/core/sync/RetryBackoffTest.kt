@@ -0,0 +1,38 @@
+package com.rio.rostry.core.sync
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import kotlin.random.Random
+
+class RetryBackoffTest {
+
+    @Test
+    fun delayStaysWithinEqualJitterBounds() {
+        val backoff = RetryBackoff(baseDelayMs = 1_000L, maxDelayMs = 300_000L, random = Random(42))
+
+        repeat(100) {
+            val delay = backoff.delayFor(3)
+            assertTrue(delay in 4_000L..8_000L)
+        }
+    }
+
+    @Test
+    fun delayIsCappedForLargeRetryCounts() {
+        val backoff = RetryBackoff(baseDelayMs = 1_000L, maxDelayMs = 300_000L, random = Random(7))
+
+        repeat(100) {
+            val delay = backoff.delayFor(1_000)
+            assertTrue(delay in 150_000L..300_000L)
+        }
+    }
+
+    @Test
+    fun jitterSpreadsRetriesApart() {
+        val backoff = RetryBackoff(random = Random(1))
+
+        val delays = (1..20).map { backoff.delayFor(5) }.toSet()
+        assertTrue(delays.size > 1)
+        assertEquals(20, (1..20).count { backoff.delayFor(5) >= 16_000L })
+    }
+}
@@ -0,0 +1,75 @@
+package com.rio.rostry.core.sync
+
+import com.rio.rostry.core.database.entities.HybridTimestamp
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNotEquals
+import org.junit.Test
+
+class SyncDiffTest {
+
+    private data class Row(val id: String, val stamp: Long)
+
+    @Test
+    fun pendingUploadsSkipRowsSupersededByThePull() {
+        val local = listOf(Row("a", 10), Row("b", 10), Row("c", 30), Row("d", 5))
+        val remote = mapOf("a" to 20L, "b" to 10L, "c" to 25L)
+
+        val pending = SyncDiff.pendingUploads(local, remote, { it.id }, { it.stamp })
+
+        assertEquals(listOf("c", "d"), pending.map { it.id })
+    }
+
+    @Test
+    fun pullDoesNotOverwriteNewerLocalEdits() {
+        val local = listOf(Row("a", 10), Row("b", 10), Row("c", 30), Row("d", 5))
+        val remote = listOf(Row("a", 20), Row("b", 10), Row("c", 25), Row("e", 1))
+
+        val applied = SyncDiff.remoteWins(remote, local.associateBy { it.id }, { it.id }, { it.stamp })
+        val uploaded = SyncDiff.pendingUploads(
+            local,
+            remote.associate { it.id to it.stamp },
+            { it.id },
+            { it.stamp }
+        )
+
+        assertEquals(listOf("a", "b", "e"), applied.map { it.id })
+        assertEquals(listOf("c", "d"), uploaded.map { it.id })
+        // Every id is settled exactly one way
+        assertEquals(emptySet<String>(), applied.map { it.id }.intersect(uploaded.map { it.id }.toSet()))
+    }
+
+    @Test
+    fun deviceClockAheadDoesNotBeatALaterRemoteWrite() {
+        // Edited on a phone whose clock runs an hour fast
+        val local = Row("a", HybridTimestamp.encode(HOUR + 1_000, 0))
+        // Another device saw that edit and wrote after it at the real time
+        val remote = Row("a", HybridTimestamp.encode(HOUR + 1_000, 1))
+
+        val applied = SyncDiff.remoteWins(listOf(remote), mapOf("a" to local), { it.id }, { it.stamp })
+        val uploaded = SyncDiff.pendingUploads(listOf(local), mapOf("a" to remote.stamp), { it.id }, { it.stamp })
+
+        assertEquals(listOf("a"), applied.map { it.id })
+        assertEquals(emptyList<Row>(), uploaded)
+    }
+
+    @Test
+    fun missingRemotelyKeepsLocalOrder() {
+        assertEquals(
+            listOf("z", "x"),
+            SyncDiff.missingRemotely(listOf("z", "y", "x"), setOf("y")).toList()
+        )
+    }
+
+    @Test
+    fun scopesWithDifferentFiltersDoNotShareWatermarks() {
+        val byOwner = SyncScope(collection = "fowls", ownerId = "u1")
+        val byRegion = SyncScope(collection = "fowls", region = "u1")
+
+        assertNotEquals(byOwner.key, byRegion.key)
+        assertEquals(byOwner.key, SyncScope(collection = "fowls", ownerId = "u1").key)
+    }
+
+    private companion object {
+        const val HOUR = 3_600_000L
+    }
+}
@@ -0,0 +1,123 @@
+package com.rio.rostry.core.sync
+
+import com.rio.rostry.core.database.entities.SyncPriority
+import com.rio.rostry.core.database.entities.SyncResult
+import kotlinx.coroutines.CompletableDeferred
+import kotlinx.coroutines.awaitCancellation
+import kotlinx.coroutines.cancelAndJoin
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.runBlocking
+import kotlinx.coroutines.yield
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.util.Collections
+
+class SyncOrchestratorTest {
+
+    private val started: MutableList<String> = Collections.synchronizedList(mutableListOf())
+
+    private fun ok(label: String) = SyncResult(label, 1, 1, 0, 0, 0L, 0L)
+
+    private fun task(
+        label: String,
+        priority: SyncPriority,
+        direction: SyncDirection = SyncDirection.UPLOAD,
+        body: suspend () -> Unit = {}
+    ) = SyncTask(label, priority, direction) {
+        started.add(label)
+        body()
+        ok(label)
+    }
+
+    @Test
+    fun tasksTakePermitsInPriorityThenDirectionOrder() = runBlocking {
+        val tasks = listOf(
+            task("low-up", SyncPriority.LOW),
+            task("normal-down", SyncPriority.NORMAL, SyncDirection.DOWNLOAD),
+            task("high-up", SyncPriority.HIGH),
+            task("normal-up", SyncPriority.NORMAL)
+        )
+
+        val results = runSyncTasks(tasks, parallelism = 1, pipelined = true)
+
+        assertEquals(listOf("high-up", "normal-up", "normal-down", "low-up"), started)
+        assertEquals(4, results.size)
+    }
+
+    @Test
+    fun pipelinedTiersOverlapWithUnfinishedHighWork() = runBlocking {
+        val releaseHigh = CompletableDeferred<Unit>()
+        val lowStarted = CompletableDeferred<Unit>()
+        val tasks = listOf(
+            task("high-up", SyncPriority.HIGH) { releaseHigh.await() },
+            task("low-up", SyncPriority.LOW) { lowStarted.complete(Unit) }
+        )
+
+        val run = launch { runSyncTasks(tasks, parallelism = 2, pipelined = true) }
+
+        // LOW gets the free permit while HIGH is still in flight
+        lowStarted.await()
+        assertFalse(releaseHigh.isCompleted)
+        releaseHigh.complete(Unit)
+        run.join()
+    }
+
+    @Test
+    fun constrainedTiersRunOneAfterAnother() = runBlocking {
+        val releaseHigh = CompletableDeferred<Unit>()
+        val tasks = listOf(
+            task("high-up", SyncPriority.HIGH) { releaseHigh.await() },
+            task("low-up", SyncPriority.LOW)
+        )
+
+        val run = launch { runSyncTasks(tasks, parallelism = 2, pipelined = false) }
+        repeat(5) { yield() }
+
+        assertEquals(listOf("high-up"), started)
+        releaseHigh.complete(Unit)
+        run.join()
+        assertEquals(listOf("high-up", "low-up"), started)
+    }
+
+    @Test
+    fun failingTaskIsReportedWithoutStoppingTheOthers() = runBlocking {
+        val tasks = listOf(
+            task("high-up", SyncPriority.HIGH) { throw IllegalStateException("boom") },
+            task("normal-up", SyncPriority.NORMAL)
+        )
+
+        val results = runSyncTasks(tasks, parallelism = 2, pipelined = true)
+
+        assertEquals(2, results.size)
+        assertEquals(1, results.sumOf { it.failureCount })
+        assertTrue(results.flatMap { it.errors }.single().message.contains("high-up: boom"))
+    }
+
+    @Test
+    fun cancellationStopsRunningTasksInsteadOfCountingThemFailed() = runBlocking {
+        val cancelled = CompletableDeferred<Unit>()
+        var progressCalls = 0
+        val tasks = listOf(
+            task("high-up", SyncPriority.HIGH) {
+                try {
+                    awaitCancellation()
+                } finally {
+                    cancelled.complete(Unit)
+                }
+            },
+            task("low-up", SyncPriority.LOW)
+        )
+
+        val run = launch { runSyncTasks(tasks, parallelism = 1, pipelined = true) { _, _, _ -> progressCalls++ } }
+        repeat(5) { yield() }
+        run.cancelAndJoin()
+
+        assertTrue(cancelled.isCompleted)
+        assertTrue(run.isCancelled)
+        // Neither task reported: the cancelled one is not a failure and the queued one never ran
+        assertEquals(0, progressCalls)
+        assertEquals(listOf("high-up"), started)
+    }
+}
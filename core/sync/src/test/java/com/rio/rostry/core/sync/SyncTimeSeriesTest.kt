@@ -0,0 +1,97 @@
+package com.rio.rostry.core.sync
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.io.File
+
+class SyncTimeSeriesTest {
+
+    private val hour = SyncTimeSeries.HOUR_MS
+    private val now = 1_000 * hour + 30 * 60 * 1000L
+
+    private fun sample(at: Long, entity: String = "fowls", network: String = "WIFI", items: Int = 10, ok: Int = 8) =
+        SyncSample(at, entity, network, items, ok, items - ok, 1, 100L, 1_000L)
+
+    @Test
+    fun bucketsAggregateByHourAndEntityType() {
+        val series = SyncTimeSeries(capacity = 16, bucketHours = 48)
+        series.record(sample(now, "fowls"))
+        series.record(sample(now - 10_000, "chats"))
+        series.record(sample(now - 3 * hour, "fowls"))
+
+        val day = series.totals(24, now)
+        assertEquals(3, day.syncs)
+        assertEquals(30, day.totalItems)
+        assertEquals(3_000L, day.bytesTransferred)
+
+        val byEntity = series.totalsByEntityType(24, now)
+        assertEquals(2, byEntity.getValue("fowls").syncs)
+        assertEquals(1, byEntity.getValue("chats").syncs)
+
+        assertEquals(setOf(1000L, 997L), series.hourly(24, now).keys)
+        assertEquals(2, series.totals(1, now).syncs)
+    }
+
+    @Test
+    fun staleBucketsAreRecycledAndDropOutOfTheWindow() {
+        val series = SyncTimeSeries(capacity = 16, bucketHours = 24)
+        series.record(sample(now - 24 * hour)) // same slot as the current hour
+        assertEquals(0, series.totals(24, now).syncs)
+
+        series.record(sample(now))
+        series.record(sample(now - 24 * hour)) // now older than the slot, kept out of buckets
+        assertEquals(1, series.totals(24, now).syncs)
+        assertEquals(3, series.size)
+    }
+
+    @Test
+    fun ringKeepsOnlyTheNewestSamples() {
+        val series = SyncTimeSeries(capacity = 4, bucketHours = 24)
+        repeat(10) { series.record(sample(now + it)) }
+
+        val kept = mutableListOf<Long>()
+        series.forEachSample { kept.add(it.timestamp - now) }
+        assertEquals(listOf(6L, 7L, 8L, 9L), kept)
+        assertEquals(10, series.totals(24, now + 10).syncs)
+    }
+
+    @Test
+    fun keysBeyondTheTableCollapseIntoOther() {
+        val series = SyncTimeSeries(capacity = 16, bucketHours = 24, maxKeys = 3)
+        listOf("a", "b", "c", "d").forEach { series.record(sample(now, entity = it)) }
+
+        val byEntity = series.totalsByEntityType(24, now)
+        assertEquals(setOf("a", "b", SyncTimeSeries.OTHER), byEntity.keys)
+        assertEquals(2, byEntity.getValue(SyncTimeSeries.OTHER).syncs)
+    }
+
+    @Test
+    fun metricsFileReplaysSamplesAfterReopening() {
+        val file = File.createTempFile("sync_metrics", ".bin")
+        try {
+            SyncMetricsFile(file, capacity = 4).use { store ->
+                repeat(6) { store.append(sample(now + it, entity = if (it % 2 == 0) "fowls" else "chats")) }
+                store.counters = SyncCounters(totalSyncs = 6, successfulSyncs = 5, lastSyncTime = now)
+            }
+
+            SyncMetricsFile(file, capacity = 4).use { store ->
+                val replayed = mutableListOf<SyncSample>()
+                store.forEachSample { replayed.add(it) }
+                assertEquals(listOf(2L, 3L, 4L, 5L), replayed.map { it.timestamp - now })
+                assertEquals(listOf("fowls", "chats", "fowls", "chats"), replayed.map { it.entityType })
+                assertEquals(SyncCounters(6, 5, now), store.counters)
+            }
+
+            // A different capacity is a different layout; the file starts over
+            SyncMetricsFile(file, capacity = 8).use { store ->
+                var count = 0
+                store.forEachSample { count++ }
+                assertEquals(0, count)
+                assertTrue(store.counters.totalSyncs == 0)
+            }
+        } finally {
+            file.delete()
+        }
+    }
+}
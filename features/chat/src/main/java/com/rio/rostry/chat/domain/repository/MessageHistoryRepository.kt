@@ -0,0 +1,20 @@
+package com.rio.rostry.chat.domain.repository
+
+import com.rio.rostry.chat.domain.model.Message
+
+/**
+ * Repository interface for reading conversation history
+ */
+interface MessageHistoryRepository {
+
+    /**
+     * Messages of [conversationId] newest first, strictly older than [before] by (sentAt, id)
+     * A null [before] starts at the latest message. Implementations seek from the key
+     * (MessageDaoV2.getMessagesPage) rather than skipping rows with OFFSET.
+     */
+    suspend fun getMessagesBefore(
+        conversationId: String,
+        before: Message?,
+        limit: Int
+    ): List<Message>
+}
@@ -0,0 +1,42 @@
+package com.rio.rostry.chat.domain.usecases
+
+import com.rio.rostry.chat.domain.model.Message
+import com.rio.rostry.chat.domain.repository.MessageHistoryRepository
+import com.rio.rostry.core.common.model.Result
+import kotlinx.coroutines.CancellationException
+import javax.inject.Inject
+
+/**
+ * Use case for paging back through a conversation's history
+ *
+ * Older pages are keyed by the oldest message loaded rather than a page number, so scrolling
+ * far back costs the same per page as the latest messages.
+ */
+class GetMessagesUseCase @Inject constructor(
+    private val repository: MessageHistoryRepository
+) {
+
+    /**
+     * The page older than [oldest]; null loads the latest messages
+     */
+    suspend fun before(
+        conversationId: String,
+        oldest: Message?,
+        pageSize: Int
+    ): Result<List<Message>> = try {
+        Result.Success(messagesBefore(conversationId, oldest, pageSize))
+    } catch (e: CancellationException) {
+        throw e
+    } catch (e: Exception) {
+        Result.Error(e)
+    }
+
+    /**
+     * Same page as [before], for a PagingSource: failures are thrown for it to report
+     */
+    suspend fun messagesBefore(
+        conversationId: String,
+        oldest: Message?,
+        pageSize: Int
+    ): List<Message> = repository.getMessagesBefore(conversationId, oldest, pageSize)
+}
@@ -1,8 +1,13 @@
 package com.rio.rostry.chat.ui.viewmodels
 
 import androidx.lifecycle.viewModelScope
+import androidx.paging.Pager
+import androidx.paging.PagingConfig
+import androidx.paging.PagingData
+import androidx.paging.cachedIn
 import com.rio.rostry.core.common.base.BaseViewModel
 import com.rio.rostry.core.common.model.*
+import com.rio.rostry.core.common.paging.KeysetPagingSource
 import com.rio.rostry.chat.domain.model.*
 import com.rio.rostry.chat.domain.usecases.*
 import dagger.hilt.android.lifecycle.HiltViewModel
@@ -132,17 +137,19 @@ class ChatViewModel @Inject constructor(
 
     /**
      * Load messages for a conversation
+     * More history continues before the oldest loaded message (sentAt, id) rather than at an offset.
      */
     fun loadMessages(conversationId: String, loadMore: Boolean = false) {
         if (!loadMore) {
             _messages.value = _messages.value.copy(isLoading = true)
         }
 
-        val page = if (loadMore) _messages.value.items.size / DEFAULT_PAGE_SIZE else 0
+        // Optimistic messages are local only and never the oldest in the list
+        val before = if (loadMore) _messages.value.items.lastOrNull { !it.id.startsWith(TEMP_MESSAGE_PREFIX) } else null
 
         executeWithResult(
             showLoading = false,
-            action = { getMessagesUseCase(conversationId, page, DEFAULT_PAGE_SIZE) },
+            action = { getMessagesUseCase.before(conversationId, before, DEFAULT_PAGE_SIZE) },
             onSuccess = { messageList ->
                 val currentMessages = if (loadMore) _messages.value.items else emptyList()
                 val allMessages = (currentMessages + messageList).distinctBy { it.id }
@@ -162,6 +169,18 @@ class ChatViewModel @Inject constructor(
         )
     }
 
+    /**
+     * Conversation history as Paging 3 data; each page seeks from the oldest message loaded
+     */
+    fun messagePages(conversationId: String): Flow<PagingData<Message>> = Pager(
+        config = PagingConfig(pageSize = DEFAULT_PAGE_SIZE, enablePlaceholders = false)
+    ) {
+        KeysetPagingSource<Message, Message>(
+            fetch = { before, limit -> getMessagesUseCase.messagesBefore(conversationId, before, limit) },
+            keyOf = { it }
+        )
+    }.flow.cachedIn(viewModelScope)
+
     /**
      * Send a text message
      */
@@ -519,7 +538,7 @@ class ChatViewModel @Inject constructor(
     ): Message {
         val currentUserId = getCurrentUserId() ?: ""
         return Message(
-            id = "temp_${System.currentTimeMillis()}",
+            id = "$TEMP_MESSAGE_PREFIX${System.currentTimeMillis()}",
             conversationId = conversationId,
             senderId = currentUserId,
             content = content,
@@ -618,6 +637,7 @@ class ChatViewModel @Inject constructor(
 
     companion object {
         private const val DEFAULT_PAGE_SIZE = 50
+        private const val TEMP_MESSAGE_PREFIX = "temp_"
     }
 }
 
@@ -0,0 +1,85 @@
+package com.rio.rostry.chat.domain.usecases
+
+import com.rio.rostry.chat.domain.model.Message
+import com.rio.rostry.chat.domain.model.MessageContent
+import com.rio.rostry.chat.domain.model.MessageMetadata
+import com.rio.rostry.chat.domain.model.MessageStatus
+import com.rio.rostry.chat.domain.repository.MessageHistoryRepository
+import com.rio.rostry.core.common.model.Result
+import kotlinx.coroutines.runBlocking
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Assert.fail
+import org.junit.Test
+import java.io.IOException
+import java.util.Date
+
+class GetMessagesUseCaseTest {
+
+    private val repository = FakeHistoryRepository()
+    private val useCase = GetMessagesUseCase(repository)
+
+    @Test
+    fun olderPagesContinueBeforeTheOldestMessageLoaded() = runBlocking {
+        repository.messages += listOf(
+            message("m1", 100), message("m2", 200), message("m3", 200),
+            message("m4", 300), message("m5", 400)
+        )
+        repository.messages += message("other", 250, conversationId = "c2")
+
+        val seen = mutableListOf<String>()
+        var oldest: Message? = null
+        do {
+            val page = (useCase.before("c1", oldest, 2) as Result.Success).data
+            seen += page.map { it.id }
+            oldest = page.lastOrNull()
+        } while (page.size == 2)
+
+        assertEquals(listOf("m5", "m4", "m3", "m2", "m1"), seen)
+        assertEquals(listOf(null, "m4", "m2"), repository.keys)
+    }
+
+    @Test
+    fun failuresAreReturnedToTheViewModelAndThrownToThePager() = runBlocking {
+        repository.failure = IOException("offline")
+
+        val result = useCase.before("c1", null, 20)
+        assertTrue(result is Result.Error && result.exception is IOException)
+
+        try {
+            useCase.messagesBefore("c1", null, 20)
+            fail("Expected the PagingSource path to throw")
+        } catch (expected: IOException) {
+        }
+    }
+
+    /**
+     * Keyset semantics of the DAO: newest first, strictly before (sentAt, id)
+     */
+    private class FakeHistoryRepository : MessageHistoryRepository {
+        val messages = mutableListOf<Message>()
+        val keys = mutableListOf<String?>()
+        var failure: Exception? = null
+
+        override suspend fun getMessagesBefore(conversationId: String, before: Message?, limit: Int): List<Message> {
+            failure?.let { throw it }
+            keys += before?.id
+            val order = compareByDescending<Message> { it.sentAt }.thenByDescending { it.id }
+            return messages
+                .filter { it.conversationId == conversationId }
+                .filter { before == null || order.compare(it, before) > 0 }
+                .sortedWith(order)
+                .take(limit)
+        }
+    }
+
+    private fun message(id: String, sentAt: Long, conversationId: String = "c1") = Message(
+        id = id,
+        conversationId = conversationId,
+        senderId = "u1",
+        content = MessageContent.Text("hello $id"),
+        status = MessageStatus(sent = true),
+        metadata = MessageMetadata(),
+        sentAt = Date(sentAt)
+    )
+}
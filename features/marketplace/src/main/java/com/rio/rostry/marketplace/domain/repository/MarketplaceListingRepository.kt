@@ -0,0 +1,21 @@
+package com.rio.rostry.marketplace.domain.repository
+
+import com.rio.rostry.marketplace.domain.model.MarketplaceListing
+
+/**
+ * Repository interface for browsing marketplace listings
+ */
+interface MarketplaceListingRepository {
+
+    /**
+     * Active listings newest first, strictly after [after] by (createdAt, id)
+     * A null [after] starts at the newest listing; with [sellerId], that seller's listings in
+     * any state. Implementations seek from the key (MarketplaceDao.getActiveListingsPage,
+     * getSellerListingsPage) rather than skipping rows with OFFSET.
+     */
+    suspend fun getListingsAfter(
+        after: MarketplaceListing?,
+        limit: Int,
+        sellerId: String? = null
+    ): List<MarketplaceListing>
+}
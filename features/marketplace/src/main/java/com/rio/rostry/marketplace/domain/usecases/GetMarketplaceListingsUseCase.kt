@@ -0,0 +1,50 @@
+package com.rio.rostry.marketplace.domain.usecases
+
+import com.rio.rostry.core.common.model.Result
+import com.rio.rostry.marketplace.domain.model.MarketplaceListing
+import com.rio.rostry.marketplace.domain.model.MarketplaceSearchResult
+import com.rio.rostry.marketplace.domain.repository.MarketplaceListingRepository
+import kotlinx.coroutines.CancellationException
+import javax.inject.Inject
+
+/**
+ * Use case for paging through marketplace listings, newest first
+ *
+ * Pages are keyed by the last listing shown rather than a page number, so loading page N
+ * costs the same as loading the first.
+ */
+class GetMarketplaceListingsUseCase @Inject constructor(
+    private val repository: MarketplaceListingRepository
+) {
+
+    /**
+     * The page after [last]; null loads the first page
+     */
+    suspend fun after(
+        last: MarketplaceListing?,
+        pageSize: Int,
+        sellerId: String? = null
+    ): Result<MarketplaceSearchResult> = try {
+        val listings = listingsAfter(last, pageSize, sellerId)
+        Result.Success(
+            MarketplaceSearchResult(
+                listings = listings,
+                totalCount = listings.size,
+                hasMore = listings.size == pageSize
+            )
+        )
+    } catch (e: CancellationException) {
+        throw e
+    } catch (e: Exception) {
+        Result.Error(e)
+    }
+
+    /**
+     * Same page as [after], for a PagingSource: failures are thrown for it to report
+     */
+    suspend fun listingsAfter(
+        last: MarketplaceListing?,
+        pageSize: Int,
+        sellerId: String? = null
+    ): List<MarketplaceListing> = repository.getListingsAfter(last, pageSize, sellerId)
+}
@@ -1,8 +1,13 @@
 package com.rio.rostry.marketplace.ui.viewmodels
 
 import androidx.lifecycle.viewModelScope
+import androidx.paging.Pager
+import androidx.paging.PagingConfig
+import androidx.paging.PagingData
+import androidx.paging.cachedIn
 import com.rio.rostry.core.common.base.BaseViewModel
 import com.rio.rostry.core.common.model.*
+import com.rio.rostry.core.common.paging.KeysetPagingSource
 import com.rio.rostry.marketplace.domain.model.*
 import com.rio.rostry.marketplace.domain.usecases.*
 import dagger.hilt.android.lifecycle.HiltViewModel
@@ -63,6 +68,18 @@ class MarketplaceViewModel @Inject constructor(
     private val _paginationState = MutableStateFlow(PaginationState())
     val paginationState: StateFlow<PaginationState> = _paginationState.asStateFlow()
 
+    /**
+     * Marketplace feed as Paging 3 data; each page seeks from the last listing loaded
+     */
+    val listingPages: Flow<PagingData<MarketplaceListing>> = Pager(
+        config = PagingConfig(pageSize = DEFAULT_PAGE_SIZE, enablePlaceholders = false)
+    ) {
+        KeysetPagingSource<MarketplaceListing, MarketplaceListing>(
+            fetch = { after, limit -> getMarketplaceListingsUseCase.listingsAfter(after, limit) },
+            keyOf = { it }
+        )
+    }.flow.cachedIn(viewModelScope)
+
     // Search facets
     private val _searchFacets = MutableStateFlow<SearchFacets?>(null)
     val searchFacets: StateFlow<SearchFacets?> = _searchFacets.asStateFlow()
@@ -100,7 +117,7 @@ class MarketplaceViewModel @Inject constructor(
 
         executeWithResult(
             showLoading = false,
-            action = { getMarketplaceListingsUseCase(0, DEFAULT_PAGE_SIZE) },
+            action = { getMarketplaceListingsUseCase.after(null, DEFAULT_PAGE_SIZE) },
             onSuccess = { result ->
                 _marketplaceListings.value = ListState(
                     items = result.listings,
@@ -179,7 +196,7 @@ class MarketplaceViewModel @Inject constructor(
 
             executeWithResult(
                 showLoading = false,
-                action = { getMarketplaceListingsUseCase(0, DEFAULT_PAGE_SIZE, currentUserId) },
+                action = { getMarketplaceListingsUseCase.after(null, DEFAULT_PAGE_SIZE, currentUserId) },
                 onSuccess = { result ->
                     _userListings.value = ListState(
                         items = result.listings,
@@ -456,6 +473,7 @@ class MarketplaceViewModel @Inject constructor(
 
     /**
      * Load more listings for pagination
+     * Continues after the last listing shown (created_at, id), so deep pages cost the same as the first.
      */
     fun loadMoreListings() {
         if (_paginationState.value.isLoadingMore || !_paginationState.value.hasMore) return
@@ -463,10 +481,11 @@ class MarketplaceViewModel @Inject constructor(
         _paginationState.value = _paginationState.value.copy(isLoadingMore = true)
 
         val nextPage = _paginationState.value.currentPage + 1
+        val lastListing = _marketplaceListings.value.items.lastOrNull()
 
         executeWithResult(
             showLoading = false,
-            action = { getMarketplaceListingsUseCase(nextPage, DEFAULT_PAGE_SIZE) },
+            action = { getMarketplaceListingsUseCase.after(lastListing, DEFAULT_PAGE_SIZE) },
             onSuccess = { result ->
                 val currentList = _marketplaceListings.value.items.toMutableList()
                 currentList.addAll(result.listings)
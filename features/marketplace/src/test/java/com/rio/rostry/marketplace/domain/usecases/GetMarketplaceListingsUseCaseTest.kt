@@ -0,0 +1,135 @@
+package com.rio.rostry.marketplace.domain.usecases
+
+import com.rio.rostry.core.common.model.DataQuality
+import com.rio.rostry.core.common.model.Result
+import com.rio.rostry.marketplace.domain.model.*
+import com.rio.rostry.marketplace.domain.repository.MarketplaceListingRepository
+import kotlinx.coroutines.runBlocking
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Assert.fail
+import org.junit.Test
+import java.io.IOException
+import java.util.Date
+
+class GetMarketplaceListingsUseCaseTest {
+
+    private val repository = FakeListingRepository()
+    private val useCase = GetMarketplaceListingsUseCase(repository)
+
+    @Test
+    fun pagesContinueAfterTheLastListingShown() = runBlocking {
+        // Three listings share a timestamp, so pages split on the id tiebreaker
+        repository.listings += listOf(
+            listing("a", 500), listing("b", 400), listing("c", 400),
+            listing("d", 400), listing("e", 300), listing("f", 200), listing("g", 100)
+        )
+
+        val seen = mutableListOf<String>()
+        var last: MarketplaceListing? = null
+        do {
+            val page = (useCase.after(last, 3) as Result.Success).data
+            seen += page.listings.map { it.id }
+            last = page.listings.lastOrNull()
+        } while (page.hasMore)
+
+        assertEquals(listOf("a", "d", "c", "b", "e", "f", "g"), seen)
+        assertEquals(listOf(null, "c", "f"), repository.keys)
+    }
+
+    @Test
+    fun sellerFilterIsPassedThrough() = runBlocking {
+        repository.listings += listOf(listing("a", 300, seller = "s1"), listing("b", 200, seller = "s2"))
+
+        val page = (useCase.after(null, 10, sellerId = "s2") as Result.Success).data
+
+        assertEquals(listOf("b"), page.listings.map { it.id })
+        assertFalse(page.hasMore)
+    }
+
+    @Test
+    fun failuresAreReturnedToTheViewModelAndThrownToThePager() = runBlocking {
+        repository.failure = IOException("offline")
+
+        val result = useCase.after(null, 10)
+        assertTrue(result is Result.Error && result.exception is IOException)
+
+        try {
+            useCase.listingsAfter(null, 10)
+            fail("Expected the PagingSource path to throw")
+        } catch (expected: IOException) {
+        }
+    }
+
+    /**
+     * Keyset semantics of the DAO: newest first, strictly after (createdAt, id)
+     */
+    private class FakeListingRepository : MarketplaceListingRepository {
+        val listings = mutableListOf<MarketplaceListing>()
+        val keys = mutableListOf<String?>()
+        var failure: Exception? = null
+
+        override suspend fun getListingsAfter(
+            after: MarketplaceListing?,
+            limit: Int,
+            sellerId: String?
+        ): List<MarketplaceListing> {
+            failure?.let { throw it }
+            keys += after?.id
+            val order = compareByDescending<MarketplaceListing> { it.createdAt }.thenByDescending { it.id }
+            return listings
+                .filter { sellerId == null || it.sellerId == sellerId }
+                .filter { after == null || order.compare(it, after) > 0 }
+                .sortedWith(order)
+                .take(limit)
+        }
+    }
+
+    private fun listing(id: String, createdAt: Long, seller: String = "s1"): MarketplaceListing {
+        val at = Date(createdAt)
+        return MarketplaceListing(
+            id = id,
+            sellerId = seller,
+            fowlId = "fowl-$id",
+            listingType = ListingType.FIXED_PRICE,
+            pricing = PricingInfo(basePrice = 1500.0),
+            details = ListingDetails(
+                title = "Listing $id",
+                description = "",
+                breed = "Aseel",
+                gender = "MALE",
+                age = "12 weeks",
+                weight = 2.5,
+                color = "Red",
+                healthStatus = "HEALTHY",
+                vaccinated = true,
+                pedigreeAvailable = false,
+                registrationPapers = false
+            ),
+            media = ListingMedia(),
+            location = ListingLocation(
+                district = "D1",
+                region = "R1",
+                delivery = DeliveryInfo(available = false, radius = 0, cost = 0.0, methods = emptyList())
+            ),
+            status = ListingStatus(
+                current = ListingState.ACTIVE,
+                visibility = ListingVisibility.PUBLIC,
+                availability = AvailabilityInfo(isAvailable = true)
+            ),
+            engagement = EngagementMetrics(),
+            searchData = SearchData(
+                keywords = emptyList(),
+                tags = emptyList(),
+                category = "POULTRY",
+                filters = SearchFilters(priceRange = "", ageGroup = "", breedGroup = "", location = "")
+            ),
+            timeline = ListingTimeline(createdAt = at, lastUpdatedAt = at),
+            sellerPreferences = SellerPreferences(communication = CommunicationPreferences()),
+            metadata = ListingMetadata(listingQuality = DataQuality.MEDIUM, moderationStatus = ModerationStatus.APPROVED),
+            createdAt = at,
+            updatedAt = at
+        )
+    }
+}